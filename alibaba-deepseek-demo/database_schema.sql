@@ -31,30 +31,30 @@ CREATE TABLE users (
 -- 2. ECMO评估记录表 (ecmo_assessments) - 存储评估的详细数据
 CREATE TABLE ecmo_assessments (
     id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '评估ID',
-    user_id BIGINT NOT NULL COMMENT '医生用户ID',
+    user_id BIGINT NULL COMMENT '医生用户ID(匿名评估为空)',
     patient_id VARCHAR(50) COMMENT '患者ID',
     assessment_title VARCHAR(200) COMMENT '评估标题',
 
-    -- 基本信息
-    age INT NOT NULL COMMENT '年龄',
-    gender VARCHAR(10) NOT NULL COMMENT '性别',
-    weight DECIMAL(5,2) NOT NULL COMMENT '体重(kg)',
+    -- 基本信息（患者参数均为选填，未提供的临床参数为空）
+    age INT NULL COMMENT '年龄',
+    gender VARCHAR(10) NULL COMMENT '性别',
+    weight DECIMAL(5,2) NULL COMMENT '体重(kg)',
     height DECIMAL(5,2) COMMENT '身高(cm)',
 
     -- 生命体征
-    heart_rate INT NOT NULL COMMENT '心率(次/分)',
-    systolic_bp INT NOT NULL COMMENT '收缩压(mmHg)',
-    diastolic_bp INT NOT NULL COMMENT '舒张压(mmHg)',
+    heart_rate INT NULL COMMENT '心率(次/分)',
+    systolic_bp INT NULL COMMENT '收缩压(mmHg)',
+    diastolic_bp INT NULL COMMENT '舒张压(mmHg)',
     temperature DECIMAL(4,2) COMMENT '体温(°C)',
-    respiratory_rate INT NOT NULL COMMENT '呼吸频率(次/分)',
-    oxygen_saturation DECIMAL(5,2) NOT NULL COMMENT '血氧饱和度(%)',
+    respiratory_rate INT NULL COMMENT '呼吸频率(次/分)',
+    oxygen_saturation DECIMAL(5,2) NULL COMMENT '血氧饱和度(%)',
 
     -- 血气分析
-    ph DECIMAL(4,3) NOT NULL COMMENT 'pH值',
-    pco2 DECIMAL(5,2) NOT NULL COMMENT 'PCO2(mmHg)',
-    po2 DECIMAL(5,2) NOT NULL COMMENT 'PO2(mmHg)',
+    ph DECIMAL(4,3) NULL COMMENT 'pH值',
+    pco2 DECIMAL(5,2) NULL COMMENT 'PCO2(mmHg)',
+    po2 DECIMAL(5,2) NULL COMMENT 'PO2(mmHg)',
     hco3 DECIMAL(5,2) COMMENT 'HCO3-(mEq/L)',
-    lactate DECIMAL(5,2) NOT NULL COMMENT '乳酸(mmol/L)',
+    lactate DECIMAL(5,2) NULL COMMENT '乳酸(mmol/L)',
 
     -- 心脏功能
     ejection_fraction DECIMAL(5,2) COMMENT '射血分数(%)',
@@ -79,6 +79,8 @@ CREATE TABLE ecmo_assessments (
     -- 其他信息
     notes TEXT COMMENT '备注',
     assessment_type VARCHAR(20) DEFAULT 'STANDARD' COMMENT '评估类型: STANDARD/QUICK',
+    assessment_key VARCHAR(64) NOT NULL COMMENT '评估ID(前端使用, 如ECMO_ASSESS_...)',
+    result_json TEXT COMMENT '完整评估结果(JSON)',
 
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '评估时间',
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
@@ -87,6 +89,7 @@ CREATE TABLE ecmo_assessments (
     INDEX idx_patient_id (patient_id),
     INDEX idx_created_at (created_at),
     INDEX idx_risk_level (risk_level),
+    UNIQUE KEY uk_assessment_key (assessment_key),
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='ECMO评估记录表';
 
@@ -117,6 +120,17 @@ CREATE TABLE assessment_history (
     FOREIGN KEY (assessment_id) REFERENCES ecmo_assessments(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='评估历史表';
 
+-- 评估记录和评估历史的序列主键(MySQL上由Hibernate以表模拟序列，每次预分配50个ID)
+CREATE TABLE ecmo_assessments_seq (
+    next_val BIGINT COMMENT '下一批ID的起始值'
+) ENGINE=InnoDB COMMENT='ecmo_assessments主键序列';
+INSERT INTO ecmo_assessments_seq (next_val) VALUES (1);
+
+CREATE TABLE assessment_history_seq (
+    next_val BIGINT COMMENT '下一批ID的起始值'
+) ENGINE=InnoDB COMMENT='assessment_history主键序列';
+INSERT INTO assessment_history_seq (next_val) VALUES (1);
+
 -- 4. ECMO诊疗数据库 (knowledge_base) - 存储医学知识
 CREATE TABLE knowledge_base (
     id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '知识ID',
@@ -0,0 +1,49 @@
+-- ECMO诊疗专家系统数据库升级脚本
+-- 适用于已按旧版 database_schema.sql 建库的环境，新建库直接执行 database_schema.sql 即可
+-- 执行前请先备份数据库，并停止所有应用节点
+
+USE `ECMO`;
+
+-- 1. ecmo_assessments: 评估结果写库
+-- 匿名评估和部分参数缺失的评估也需保存，放宽非空约束（患者参数均为选填，写库时保存接口提供的临床参数）
+ALTER TABLE ecmo_assessments
+    MODIFY user_id BIGINT NULL COMMENT '医生用户ID(匿名评估为空)',
+    MODIFY age INT NULL COMMENT '年龄',
+    MODIFY gender VARCHAR(10) NULL COMMENT '性别',
+    MODIFY weight DECIMAL(5,2) NULL COMMENT '体重(kg)',
+    MODIFY heart_rate INT NULL COMMENT '心率(次/分)',
+    MODIFY systolic_bp INT NULL COMMENT '收缩压(mmHg)',
+    MODIFY diastolic_bp INT NULL COMMENT '舒张压(mmHg)',
+    MODIFY respiratory_rate INT NULL COMMENT '呼吸频率(次/分)',
+    MODIFY oxygen_saturation DECIMAL(5,2) NULL COMMENT '血氧饱和度(%)',
+    MODIFY ph DECIMAL(4,3) NULL COMMENT 'pH值',
+    MODIFY pco2 DECIMAL(5,2) NULL COMMENT 'PCO2(mmHg)',
+    MODIFY po2 DECIMAL(5,2) NULL COMMENT 'PO2(mmHg)',
+    MODIFY lactate DECIMAL(5,2) NULL COMMENT '乳酸(mmol/L)';
+
+-- 按评估ID查询报告，完整评估结果以JSON快照保存
+-- 已有记录没有评估ID，以LEGACY_加主键补齐后再加非空约束
+ALTER TABLE ecmo_assessments
+    ADD COLUMN assessment_key VARCHAR(64) COMMENT '评估ID(前端使用, 如ECMO_ASSESS_...)' AFTER assessment_type,
+    ADD COLUMN result_json TEXT COMMENT '完整评估结果(JSON)' AFTER assessment_key;
+UPDATE ecmo_assessments SET assessment_key = CONCAT('LEGACY_', id) WHERE assessment_key IS NULL;
+ALTER TABLE ecmo_assessments
+    MODIFY assessment_key VARCHAR(64) NOT NULL COMMENT '评估ID(前端使用, 如ECMO_ASSESS_...)',
+    ADD UNIQUE KEY uk_assessment_key (assessment_key);
+
+-- 2. 评估记录和评估历史的序列主键
+-- 主键改由Hibernate序列分配(MySQL上以表模拟，每次预分配50个ID，取得的值V对应ID区间V-49..V)，
+-- 序列初值须不小于现有最大ID + 50，否则新分配的ID会与已有记录冲突
+CREATE TABLE IF NOT EXISTS ecmo_assessments_seq (
+    next_val BIGINT COMMENT '下一批ID的起始值'
+) ENGINE=InnoDB COMMENT='ecmo_assessments主键序列';
+DELETE FROM ecmo_assessments_seq;
+INSERT INTO ecmo_assessments_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 50 FROM ecmo_assessments;
+
+CREATE TABLE IF NOT EXISTS assessment_history_seq (
+    next_val BIGINT COMMENT '下一批ID的起始值'
+) ENGINE=InnoDB COMMENT='assessment_history主键序列';
+DELETE FROM assessment_history_seq;
+INSERT INTO assessment_history_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 50 FROM assessment_history;
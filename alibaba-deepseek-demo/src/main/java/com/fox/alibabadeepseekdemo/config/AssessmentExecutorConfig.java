@@ -0,0 +1,101 @@
+package com.fox.alibabadeepseekdemo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ECMO评估任务执行器配置
+ * 并发数和排队深度均有上限，队列满时拒绝提交，避免突发请求耗尽Tomcat工作线程。
+ * 各执行器均使用平台线程：项目以Java 17构建，线程数由上述并发上限控制。
+ */
+@Configuration
+@EnableScheduling
+public class AssessmentExecutorConfig {
+
+    @Value("${ecmo.jobs.concurrency:32}")
+    private int concurrency;
+
+    @Value("${ecmo.jobs.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${ecmo.batch.parallelism:8}")
+    private int batchParallelism;
+
+    @Value("${ecmo.batch.queue-capacity:400}")
+    private int batchQueueCapacity;
+
+    @Value("${ecmo.llm.bulkhead.max-concurrent:16}")
+    private int modelMaxConcurrent;
+
+    @Value("${ecmo.tiered.backfill-concurrency:2}")
+    private int backfillConcurrency;
+
+    @Value("${ecmo.tiered.backfill-queue-capacity:20}")
+    private int backfillQueueCapacity;
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor assessmentJobExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory("ecmo-job-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 批量评估执行器，并发数即批量评估对模型服务的最大扇出
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor batchAssessmentExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(batchParallelism, batchParallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(batchQueueCapacity),
+                threadFactory("ecmo-batch-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 大模型同步调用执行器，并发由ModelCallGuard的并发名额限制，调用线程可在超时后立即返回
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor modelCallExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(modelMaxConcurrent, modelMaxConcurrent, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(modelMaxConcurrent),
+                threadFactory("ecmo-llm-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 分层评估后台补充执行器，与评估任务隔离，补充评估积压时直接放弃而不占用任务队列
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor tieredBackfillExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(backfillConcurrency, backfillConcurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(backfillQueueCapacity),
+                threadFactory("ecmo-backfill-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 以prefix加序号命名的守护平台线程
+     */
+    ThreadFactory threadFactory(String prefix) {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory(prefix);
+        factory.setDaemon(true);
+        return factory;
+    }
+}
@@ -1,5 +1,7 @@
 package com.fox.alibabadeepseekdemo.config;
 
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
@@ -7,6 +9,10 @@ import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.HttpComponentsClientHttpConnector;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
 
 @Configuration
 public class ChatConfig {
@@ -20,9 +26,22 @@ public class ChatConfig {
     @Value("${spring.ai.openai.chat.options.model:deepseek-chat}")
     private String model;
 
+    @Value("${spring.ai.openai.chat.options.max-tokens:2000}")
+    private int maxTokens;
+
+    /**
+     * 同步和流式调用分别使用 {@link LlmHttpClientConfig} 中的长连接池
+     */
     @Bean
-    public OpenAiApi openAiApi() {
-        return new OpenAiApi(baseUrl, apiKey);
+    public OpenAiApi openAiApi(CloseableHttpClient llmHttpClient, CloseableHttpAsyncClient llmStreamHttpClient) {
+        return OpenAiApi.builder()
+                .baseUrl(baseUrl)
+                .apiKey(apiKey)
+                .restClientBuilder(RestClient.builder()
+                        .requestFactory(new HttpComponentsClientHttpRequestFactory(llmHttpClient)))
+                .webClientBuilder(WebClient.builder()
+                        .clientConnector(new HttpComponentsClientHttpConnector(llmStreamHttpClient)))
+                .build();
     }
 
     @Bean
@@ -30,7 +49,7 @@ public class ChatConfig {
         OpenAiChatOptions options = OpenAiChatOptions.builder()
                 .model(model)
                 .temperature(0.7)
-                .maxTokens(2000)
+                .maxTokens(maxTokens)
                 .build();
 
         return new OpenAiChatModel(openAiApi, options);
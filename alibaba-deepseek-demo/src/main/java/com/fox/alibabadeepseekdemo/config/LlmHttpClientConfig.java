@@ -0,0 +1,126 @@
+package com.fox.alibabadeepseekdemo.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 大模型调用的HTTP传输配置
+ * 同步调用（RestClient）和流式调用（WebClient）各使用一个长连接池，复用到模型服务的TCP/TLS连接；
+ * 空闲超过idle-timeout的连接由后台线程回收，连接存活超过time-to-live后重建以感知DNS变化。
+ * 经典客户端只支持HTTP/1.1，http2开启时流式调用通过ALPN协商HTTP/2，多路复用同一连接。
+ * 两个连接池的容量、已借出、空闲和等待数通过 httpcomponents.httpclient.pool.* 指标暴露。
+ */
+@Configuration
+public class LlmHttpClientConfig {
+
+    @Value("${ecmo.llm.http.max-connections:64}")
+    private int maxConnections;
+
+    @Value("${ecmo.llm.http.max-connections-per-route:32}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${ecmo.llm.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${ecmo.llm.http.read-timeout:120s}")
+    private Duration readTimeout;
+
+    @Value("${ecmo.llm.http.pool-acquire-timeout:5s}")
+    private Duration poolAcquireTimeout;
+
+    @Value("${ecmo.llm.http.idle-timeout:60s}")
+    private Duration idleTimeout;
+
+    @Value("${ecmo.llm.http.time-to-live:10m}")
+    private Duration timeToLive;
+
+    @Value("${ecmo.llm.http.http2:false}")
+    private boolean http2;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager llmConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(connectionConfig())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient llmHttpClient(PoolingHttpClientConnectionManager llmConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(llmConnectionManager)
+                .setDefaultRequestConfig(requestConfig())
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .evictExpiredConnections()
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public PoolingAsyncClientConnectionManager llmStreamConnectionManager() {
+        return PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(connectionConfig())
+                .setDefaultTlsConfig(TlsConfig.custom()
+                        .setVersionPolicy(http2 ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_1)
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpAsyncClient llmStreamHttpClient(PoolingAsyncClientConnectionManager llmStreamConnectionManager) {
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(llmStreamConnectionManager)
+                .setDefaultRequestConfig(requestConfig())
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+        client.start();
+        return client;
+    }
+
+    @Bean
+    public MeterBinder llmConnectionPoolMetrics(@Qualifier("llmConnectionManager") PoolingHttpClientConnectionManager llmConnectionManager,
+                                                @Qualifier("llmStreamConnectionManager") PoolingAsyncClientConnectionManager llmStreamConnectionManager) {
+        return registry -> {
+            new PoolingHttpClientConnectionManagerMetricsBinder(llmConnectionManager, "llm").bindTo(registry);
+            new PoolingHttpClientConnectionManagerMetricsBinder(llmStreamConnectionManager, "llm-stream").bindTo(registry);
+        };
+    }
+
+    private ConnectionConfig connectionConfig() {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .setTimeToLive(TimeValue.of(timeToLive))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build();
+    }
+
+    private RequestConfig requestConfig() {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(poolAcquireTimeout))
+                .setResponseTimeout(Timeout.of(readTimeout))
+                .build();
+    }
+}
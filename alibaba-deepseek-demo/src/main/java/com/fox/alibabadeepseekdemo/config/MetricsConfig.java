@@ -0,0 +1,98 @@
+package com.fox.alibabadeepseekdemo.config;
+
+import com.fox.alibabadeepseekdemo.service.AssessmentCache;
+import com.fox.alibabadeepseekdemo.service.AssessmentPromptBuilder;
+import com.fox.alibabadeepseekdemo.service.AssessmentSingleFlight;
+import com.fox.alibabadeepseekdemo.service.AssessmentStore;
+import com.fox.alibabadeepseekdemo.service.LlmConnectionWarmup;
+import com.fox.alibabadeepseekdemo.service.ModelCallGuard;
+import com.fox.alibabadeepseekdemo.service.ModelCascadePolicy;
+import com.fox.alibabadeepseekdemo.service.ModelRateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+/**
+ * 将已有的管理端统计（/api/admin 下的熔断、限流、缓存、请求合并、模型级联、提示词token、连接预热、评估存储）和评估执行器注册为指标，
+ * 与评估链路指标一同通过 /actuator/prometheus 暴露
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder assessmentStatsMetrics(ModelCallGuard modelCallGuard,
+                                              ModelRateLimiter rateLimiter,
+                                              AssessmentCache assessmentCache,
+                                              AssessmentSingleFlight singleFlight,
+                                              ModelCascadePolicy cascadePolicy,
+                                              AssessmentPromptBuilder promptBuilder,
+                                              LlmConnectionWarmup connectionWarmup,
+                                              AssessmentStore assessmentStore) {
+        return registry -> {
+            bindStats(registry, "ecmo.llm.circuit", modelCallGuard::stats);
+            bindStats(registry, "ecmo.llm.rate.limit", rateLimiter::stats);
+            bindStats(registry, "ecmo.assessment.cache", assessmentCache::stats);
+            bindStats(registry, "ecmo.assessment.single.flight", singleFlight::stats);
+            bindStats(registry, "ecmo.llm.cascade", cascadePolicy::stats);
+            bindStats(registry, "ecmo.prompt", promptBuilder::stats);
+            bindStats(registry, "ecmo.llm.warmup", connectionWarmup::stats);
+            bindStats(registry, "ecmo.assessment.store", assessmentStore::stats);
+            for (ModelCallGuard.State state : ModelCallGuard.State.values()) {
+                Gauge.builder("ecmo.llm.circuit.state", modelCallGuard, guard -> guard.getState() == state ? 1 : 0)
+                        .description("熔断器当前状态，当前状态为1")
+                        .tag("state", state.name())
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder assessmentExecutorMetrics(@Qualifier("assessmentJobExecutor") ThreadPoolExecutor assessmentJobExecutor,
+                                                 @Qualifier("batchAssessmentExecutor") ThreadPoolExecutor batchAssessmentExecutor,
+                                                 @Qualifier("modelCallExecutor") ThreadPoolExecutor modelCallExecutor) {
+        return registry -> {
+            new ExecutorServiceMetrics(assessmentJobExecutor, "assessmentJobExecutor", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(batchAssessmentExecutor, "batchAssessmentExecutor", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(modelCallExecutor, "modelCallExecutor", Tags.empty()).bindTo(registry);
+        };
+    }
+
+    /**
+     * 统计中的每个数值项注册为一个gauge，名称为 前缀.项名（驼峰转为点分），采集时重新读取统计。
+     * 只注册绑定时存在的数值项，各统计须在启动时就输出全部数值项，不能在有数据后才添加或以null占位
+     */
+    private static void bindStats(MeterRegistry registry, String prefix, Supplier<Map<String, Object>> stats) {
+        stats.get().forEach((key, value) -> {
+            if (value instanceof Number) {
+                Gauge.builder(prefix + "." + toMeterName(key), stats, s -> {
+                            Object current = s.get().get(key);
+                            return current instanceof Number number ? number.doubleValue() : Double.NaN;
+                        })
+                        .strongReference(true)
+                        .register(registry);
+            }
+        });
+    }
+
+    private static String toMeterName(String key) {
+        StringBuilder name = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                name.append('.').append(Character.toLowerCase(c));
+            } else {
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+}
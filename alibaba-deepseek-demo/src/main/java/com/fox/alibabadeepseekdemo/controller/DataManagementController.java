@@ -1,13 +1,33 @@
 package com.fox.alibabadeepseekdemo.controller;
 
 import com.fox.alibabadeepseekdemo.entity.AppUser;
-import com.fox.alibabadeepseekdemo.entity.AssessmentHistory;
 import com.fox.alibabadeepseekdemo.repository.AppUserRepository;
-import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.service.AdminStatsCounters;
+import com.fox.alibabadeepseekdemo.service.AssessmentCache;
+import com.fox.alibabadeepseekdemo.service.AssessmentJobService;
+import com.fox.alibabadeepseekdemo.service.AssessmentPromptBuilder;
+import com.fox.alibabadeepseekdemo.service.AssessmentSingleFlight;
+import com.fox.alibabadeepseekdemo.service.AssessmentStore;
+import com.fox.alibabadeepseekdemo.service.CompiledScoringRules;
+import com.fox.alibabadeepseekdemo.service.GuidelineRetriever;
+import com.fox.alibabadeepseekdemo.service.HistorySearchIndex;
+import com.fox.alibabadeepseekdemo.service.KnowledgeSearchIndex;
+import com.fox.alibabadeepseekdemo.service.LlmConnectionWarmup;
+import com.fox.alibabadeepseekdemo.service.ModelCallGuard;
+import com.fox.alibabadeepseekdemo.service.ModelCascadePolicy;
+import com.fox.alibabadeepseekdemo.service.ModelRateLimiter;
+import com.fox.alibabadeepseekdemo.service.RiskScoringEngine;
+import com.fox.alibabadeepseekdemo.service.TieredAssessmentPolicy;
+import com.fox.alibabadeepseekdemo.service.UserDirectoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -22,50 +42,300 @@ import java.util.Map;
 public class DataManagementController {
 
     @Autowired
-    private AppUserRepository userRepository;
+    private AssessmentCache assessmentCache;
 
     @Autowired
-    private AssessmentHistoryRepository assessmentRepository;
+    private AssessmentJobService assessmentJobService;
+
+    @Autowired
+    private TieredAssessmentPolicy tieredAssessmentPolicy;
+
+    @Autowired
+    private RiskScoringEngine riskScoringEngine;
+
+    @Autowired
+    private ModelCallGuard modelCallGuard;
+
+    @Autowired
+    private ModelRateLimiter modelRateLimiter;
+
+    @Autowired
+    private AssessmentSingleFlight assessmentSingleFlight;
+
+    @Autowired
+    private ModelCascadePolicy modelCascadePolicy;
+
+    @Autowired
+    private AssessmentPromptBuilder assessmentPromptBuilder;
+
+    @Autowired
+    private LlmConnectionWarmup llmConnectionWarmup;
+
+    @Autowired
+    private AssessmentStore assessmentStore;
+
+    @Autowired
+    private UserDirectoryService userDirectoryService;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private AdminStatsCounters adminStatsCounters;
+
+    @Autowired
+    private KnowledgeSearchIndex knowledgeSearchIndex;
+
+    @Autowired
+    private GuidelineRetriever guidelineRetriever;
+
+    @Autowired
+    private HistorySearchIndex historySearchIndex;
 
     /**
-     * 获取系统数据统计
+     * 获取系统数据统计（内存计数，定期与数据库对账）
      */
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getSystemStats() {
-        Map<String, Object> stats = new HashMap<>();
-
-        // 用户统计
-        long totalUsers = userRepository.count();
-        long todayUsers = userRepository.countByCreatedAtAfter(
-            LocalDateTime.now().minusDays(1).atZone(java.time.ZoneId.systemDefault()).toInstant()
-        );
-
-        // 评估统计
-        long totalAssessments = assessmentRepository.count();
-        long todayAssessments = assessmentRepository.countByAssessmentDateAfter(
-            LocalDateTime.now().minusDays(1)
-        );
-
-        stats.put("totalUsers", totalUsers);
-        stats.put("todayUsers", todayUsers);
-        stats.put("totalAssessments", totalAssessments);
-        stats.put("todayAssessments", todayAssessments);
+        Map<String, Object> stats = new HashMap<>(adminStatsCounters.snapshot());
         stats.put("lastUpdated", LocalDateTime.now());
-
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * 新增用户和评估的趋势，granularity为hour（默认）或day
+     */
+    @GetMapping("/stats/trend")
+    public ResponseEntity<Map<String, Object>> getStatsTrend(@RequestParam(defaultValue = "hour") String granularity) {
+        return ResponseEntity.ok(adminStatsCounters.trend("day".equalsIgnoreCase(granularity)));
+    }
+
+    /**
+     * 立即与数据库对账统计计数（如手工导入数据后）
+     */
+    @PostMapping("/stats/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcileStats() {
+        adminStatsCounters.reconcile();
+        return ResponseEntity.ok(adminStatsCounters.stats());
+    }
+
     /**
      * 获取用户列表
+     * 保持原有的数组返回格式，按page、size分页，不再一次加载全部用户；新调用方请使用/users/page
      */
     @GetMapping("/users")
     public ResponseEntity<List<AppUser>> getUsers(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 0),
+                Math.min(Math.max(size, 1), UserDirectoryService.MAX_PAGE_SIZE));
+        return ResponseEntity.ok(appUserRepository.findAll(pageRequest).getContent());
+    }
+
+    /**
+     * 获取用户列表（键集分页）
+     * 可按医院、科室、状态筛选，按id（默认，最新注册在前）或username排序；
+     * 响应中的nextCursor作为下一页的cursor参数传入，为null表示没有更多记录。
+     */
+    @GetMapping("/users/page")
+    public ResponseEntity<Map<String, Object>> getUserPage(
+            @RequestParam(required = false) String hospital,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            UserDirectoryService.UserPage page =
+                    userDirectoryService.findPage(hospital, department, status, sort, direction, cursor, size);
+            result.put("success", true);
+            result.put("users", page.items());
+            result.put("nextCursor", page.nextCursor());
+            result.put("hasMore", page.hasMore());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+
+    /**
+     * 导出用户列表为CSV，筛选条件同用户列表，结果逐行写出不在内存中汇总
+     */
+    @GetMapping("/users/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(required = false) String hospital,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) Integer status) {
+        StreamingResponseBody body = out -> userDirectoryService.exportCsv(hospital, department, status, out);
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"")
+                .body(body);
+    }
+
+    /**
+     * 评估缓存统计：命中、未命中、淘汰次数等
+     */
+    @GetMapping("/assessment-cache")
+    public ResponseEntity<Map<String, Object>> getAssessmentCacheStats() {
+        return ResponseEntity.ok(assessmentCache.stats());
+    }
+
+    /**
+     * 清空评估缓存
+     */
+    @DeleteMapping("/assessment-cache")
+    public ResponseEntity<Map<String, Object>> flushAssessmentCache() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("cleared", assessmentCache.clear());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 异步评估任务执行器状态
+     */
+    @GetMapping("/assessment-jobs")
+    public ResponseEntity<Map<String, Object>> getAssessmentJobStats() {
+        return ResponseEntity.ok(assessmentJobService.stats());
+    }
+
+    /**
+     * 分层评估统计：规则快速通道与大模型评估的流量占比
+     */
+    @GetMapping("/assessment-tiers")
+    public ResponseEntity<Map<String, Object>> getAssessmentTierStats() {
+        return ResponseEntity.ok(tieredAssessmentPolicy.stats());
+    }
+
+    /**
+     * 大模型调用熔断器和并发隔离状态
+     */
+    @GetMapping("/model-circuit")
+    public ResponseEntity<Map<String, Object>> getModelCircuitStats() {
+        return ResponseEntity.ok(modelCallGuard.stats());
+    }
+
+    /**
+     * 大模型调用限流统计：排队等待时间和RPM/TPM配额使用率
+     */
+    @GetMapping("/model-rate-limit")
+    public ResponseEntity<Map<String, Object>> getModelRateLimitStats() {
+        return ResponseEntity.ok(modelRateLimiter.stats());
+    }
+
+    /**
+     * 相同评估请求合并统计
+     */
+    @GetMapping("/assessment-single-flight")
+    public ResponseEntity<Map<String, Object>> getSingleFlightStats() {
+        return ResponseEntity.ok(assessmentSingleFlight.stats());
+    }
+
+    /**
+     * 模型级联统计：升级率、升级原因和估算节省的时间
+     */
+    @GetMapping("/model-cascade")
+    public ResponseEntity<Map<String, Object>> getModelCascadeStats() {
+        return ResponseEntity.ok(modelCascadePolicy.stats());
+    }
 
-        // 这里应该使用分页，简化版本
-        List<AppUser> users = userRepository.findAll();
-        return ResponseEntity.ok(users);
+    /**
+     * 提示词token统计：当前模式、平均输入token和精简模式的节省比例
+     */
+    @GetMapping("/prompt-stats")
+    public ResponseEntity<Map<String, Object>> getPromptStats() {
+        return ResponseEntity.ok(assessmentPromptBuilder.stats());
+    }
+
+    /**
+     * 模型服务连接预热结果和同步调用连接池状态
+     */
+    @GetMapping("/llm-connection-stats")
+    public ResponseEntity<Map<String, Object>> getLlmConnectionStats() {
+        return ResponseEntity.ok(llmConnectionWarmup.stats());
+    }
+
+    /**
+     * 评估结果存储：内存LRU命中、读库命中、待写库和写库失败数
+     */
+    @GetMapping("/assessment-store-stats")
+    public ResponseEntity<Map<String, Object>> getAssessmentStoreStats() {
+        return ResponseEntity.ok(assessmentStore.stats());
+    }
+
+    /**
+     * 知识库检索索引：文档数、平均检索耗时、快照加载和增量更新情况
+     */
+    @GetMapping("/knowledge-index-stats")
+    public ResponseEntity<Map<String, Object>> getKnowledgeIndexStats() {
+        return ResponseEntity.ok(knowledgeSearchIndex.stats());
+    }
+
+    /**
+     * 忽略快照，从数据库重建知识库检索索引
+     */
+    @PostMapping("/knowledge-index/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildKnowledgeIndex() {
+        knowledgeSearchIndex.rebuild();
+        return ResponseEntity.ok(knowledgeSearchIndex.stats());
+    }
+
+    /**
+     * 评估指南检索：命中率、平均检索耗时、注入提示词的token数和超出时间预算的次数
+     */
+    @GetMapping("/guideline-retrieval-stats")
+    public ResponseEntity<Map<String, Object>> getGuidelineRetrievalStats() {
+        return ResponseEntity.ok(guidelineRetriever.stats());
+    }
+
+    /**
+     * 评估历史检索索引：已加载的用户数、记录数、平均检索耗时和候选数
+     */
+    @GetMapping("/history-search-stats")
+    public ResponseEntity<Map<String, Object>> getHistorySearchStats() {
+        return ResponseEntity.ok(historySearchIndex.stats());
+    }
+
+    /**
+     * 清空评估历史检索索引，之后的检索重新从数据库加载
+     */
+    @DeleteMapping("/history-search")
+    public ResponseEntity<Map<String, Object>> clearHistorySearch() {
+        historySearchIndex.clear();
+        return ResponseEntity.ok(historySearchIndex.stats());
+    }
+
+    /**
+     * 风险评分规则状态
+     */
+    @GetMapping("/scoring-rules")
+    public ResponseEntity<Map<String, Object>> getScoringRules() {
+        return ResponseEntity.ok(riskScoringEngine.stats());
+    }
+
+    /**
+     * 重新加载风险评分规则，失败时继续使用原规则
+     */
+    @PostMapping("/scoring-rules/reload")
+    public ResponseEntity<Map<String, Object>> reloadScoringRules() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            CompiledScoringRules rules = riskScoringEngine.reload();
+            response.put("success", true);
+            response.put("message", "评分规则已重新加载");
+            response.put("version", rules.getVersion());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "评分规则加载失败: " + e.getMessage());
+            response.put("version", riskScoringEngine.getVersion());
+            return ResponseEntity.badRequest().body(response);
+        }
     }
 
     /**
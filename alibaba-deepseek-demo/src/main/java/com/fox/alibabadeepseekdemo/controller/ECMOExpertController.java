@@ -3,12 +3,30 @@ package com.fox.alibabadeepseekdemo.controller;
 import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
 import com.fox.alibabadeepseekdemo.entity.PatientParameters;
 import com.fox.alibabadeepseekdemo.service.ECMOExpertService;
+import com.fox.alibabadeepseekdemo.service.AssessmentJob;
+import com.fox.alibabadeepseekdemo.service.AssessmentHistoryService;
+import com.fox.alibabadeepseekdemo.service.AssessmentJobService;
+import com.fox.alibabadeepseekdemo.service.AssessmentStore;
+import com.fox.alibabadeepseekdemo.service.AssessmentStreamEvent;
+import com.fox.alibabadeepseekdemo.service.BatchAssessmentService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/ecmo")
@@ -18,9 +36,25 @@ public class ECMOExpertController {
     @Autowired
     private ECMOExpertService ecmoExpertService;
     
-    // 存储评估历史记录
-    private final Map<String, List<ECMOAssessment>> userAssessments = new ConcurrentHashMap<>();
-    private final Map<String, ECMOAssessment> assessmentById = new ConcurrentHashMap<>();
+    @Autowired
+    private AssessmentJobService assessmentJobService;
+    
+    @Autowired
+    private BatchAssessmentService batchAssessmentService;
+    
+    @Autowired
+    private AssessmentStore assessmentStore;
+    
+    @Autowired
+    private AssessmentHistoryService assessmentHistoryService;
+    
+    /**
+     * 当前登录用户ID（前端登录后保存），有值时评估同时写入该用户的评估历史
+     */
+    static final String USER_ID_HEADER = "X-User-Id";
+    
+    @Value("${ecmo.stream.timeout-ms:180000}")
+    private long streamTimeout;
     
     /**
      * ECMO适应症评估 - 增强版
@@ -28,7 +62,8 @@ public class ECMOExpertController {
      * 以及动态风险评分和决策辅助卡
      */
     @PostMapping("/assess")
-    public ResponseEntity<Map<String, Object>> assessECMO(@RequestBody PatientParameters patient) {
+    public ResponseEntity<Map<String, Object>> assessECMO(@RequestBody PatientParameters patient,
+                                                          @RequestHeader(value = USER_ID_HEADER, required = false) Long userId) {
         Map<String, Object> response = new HashMap<>();
         
         try {
@@ -40,47 +75,9 @@ public class ECMOExpertController {
             // 进行ECMO评估
             ECMOAssessment assessment = ecmoExpertService.assessPatientForECMO(patient);
             
-            // 生成评估ID
-            String assessmentId = "ECMO_ASSESS_" + System.currentTimeMillis() + "_" + 
-                                 UUID.randomUUID().toString().substring(0, 8);
-            assessment.setAssessmentId(assessmentId);
-            
-            // 存储评估结果
-            assessmentById.put(assessmentId, assessment);
-            
             // 构建增强响应
             response.put("success", true);
-            response.put("assessmentId", assessmentId);
-            response.put("patientId", assessment.getPatientId());
-            
-            // 4个核心输出
-            response.put("ecmoResult", assessment.getCanUseECMO() ? "推荐" : "不推荐");
-            response.put("diagnosis", assessment.getDiagnosis());
-            response.put("evidence", assessment.getEvidence());
-            response.put("confidence", Math.round(assessment.getConfidence() * 100.0) / 100.0);
-            
-            // 动态风险评分
-            Map<String, Object> riskAssessment = new HashMap<>();
-            riskAssessment.put("riskScore", Math.round(assessment.getRiskScore().doubleValue() * 10.0) / 10.0);
-            riskAssessment.put("riskLevel", assessment.getRiskLevel());
-            riskAssessment.put("riskColor", assessment.getRiskColor());
-            riskAssessment.put("keyRiskFactors", assessment.getKeyRiskFactors());
-            response.put("riskAssessment", riskAssessment);
-            
-            // 决策辅助卡
-            Map<String, Object> decisionCard = new HashMap<>();
-            decisionCard.put("supportReasons", assessment.getSupportReasons());
-            decisionCard.put("opposeReasons", assessment.getOpposeReasons());
-            decisionCard.put("finalRecommendation", assessment.getFinalRecommendation());
-            decisionCard.put("guidelineReferences", assessment.getGuidelineReferences());
-            response.put("decisionCard", decisionCard);
-            
-            // 详细信息
-            response.put("recommendations", assessment.getRecommendations());
-            response.put("contraindications", assessment.getContraindications());
-            response.put("precautions", assessment.getPrecautions());
-            response.put("detailedScores", assessment.getDetailedScores());
-            response.put("assessmentTime", assessment.getAssessmentTime());
+            response.putAll(buildAssessmentResponse(registerAssessment(assessment, patient, userId)));
             
             return ResponseEntity.ok(response);
             
@@ -93,6 +90,199 @@ public class ECMOExpertController {
         }
     }
     
+    /**
+     * ECMO适应症评估 - 流式版 (Server-Sent Events)
+     * risk事件: 规则风险评分，立即返回
+     * delta事件: AI分析内容片段
+     * result事件: 与 /assess 相同的完整评估结果
+     */
+    @PostMapping(value = "/assess/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter assessECMOStream(@RequestBody PatientParameters patient,
+                                       @RequestHeader(value = USER_ID_HEADER, required = false) Long userId) {
+        SseEmitter emitter = new SseEmitter(streamTimeout);
+
+        if (patient.getPatientId() == null || patient.getPatientId().trim().isEmpty()) {
+            patient.setPatientId("PATIENT_" + System.currentTimeMillis());
+        }
+
+        Disposable subscription = ecmoExpertService.streamPatientAssessment(patient).subscribe(
+                event -> {
+                    try {
+                        switch (event.getType()) {
+                            case AssessmentStreamEvent.RISK -> {
+                                Map<String, Object> risk = buildRiskAssessment(event.getAssessment());
+                                risk.put("patientId", event.getAssessment().getPatientId());
+                                risk.put("detailedScores", event.getAssessment().getDetailedScores());
+                                emitter.send(SseEmitter.event().name(AssessmentStreamEvent.RISK).data(risk));
+                            }
+                            case AssessmentStreamEvent.DELTA ->
+                                    emitter.send(SseEmitter.event().name(AssessmentStreamEvent.DELTA).data(event.getContent()));
+                            default -> {
+                                Map<String, Object> result = new HashMap<>();
+                                result.put("success", true);
+                                result.putAll(buildAssessmentResponse(registerAssessment(event.getAssessment(), patient, userId)));
+                                emitter.send(SseEmitter.event().name(AssessmentStreamEvent.RESULT).data(result));
+                            }
+                        }
+                    } catch (IOException e) {
+                        // 客户端已断开
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                emitter::completeWithError,
+                emitter::complete
+        );
+
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+        return emitter;
+    }
+    
+    /**
+     * 提交异步ECMO评估任务，立即返回任务ID
+     */
+    @PostMapping("/assess/jobs")
+    public ResponseEntity<Map<String, Object>> submitAssessmentJob(@RequestBody PatientParameters patient,
+                                                                   @RequestHeader(value = USER_ID_HEADER, required = false) Long userId) {
+        Map<String, Object> response = new HashMap<>();
+        
+        if (patient.getPatientId() == null || patient.getPatientId().trim().isEmpty()) {
+            patient.setPatientId("PATIENT_" + System.currentTimeMillis());
+        }
+        
+        try {
+            AssessmentJob job = assessmentJobService.submit(patient, userId);
+            response.put("success", true);
+            response.put("jobId", job.getJobId());
+            response.put("patientId", job.getPatientId());
+            response.put("status", job.getStatus());
+            response.put("statusUrl", "/api/ecmo/assess/jobs/" + job.getJobId());
+            return ResponseEntity.accepted().body(response);
+            
+        } catch (RejectedExecutionException e) {
+            response.put("success", false);
+            response.put("message", "评估任务排队已满，请稍后重试");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+    
+    /**
+     * 查询异步评估任务状态，完成后返回与 /assess 相同的评估结果
+     */
+    @GetMapping("/assess/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getAssessmentJob(@PathVariable String jobId) {
+        Map<String, Object> response = new HashMap<>();
+        
+        AssessmentJob job = assessmentJobService.getJob(jobId);
+        if (job == null) {
+            response.put("success", false);
+            response.put("message", "评估任务不存在或已过期");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        
+        response.put("success", true);
+        response.put("jobId", job.getJobId());
+        response.put("patientId", job.getPatientId());
+        response.put("status", job.getStatus());
+        response.put("stage", job.getStage().getDescription());
+        response.put("progress", job.getStage().getProgress());
+        
+        long end = job.isDone() ? job.getFinishedAt() : System.currentTimeMillis();
+        response.put("elapsedMs", end - job.getSubmittedAt());
+        
+        if (job.getStatus() == AssessmentJob.Status.COMPLETED) {
+            response.put("result", buildAssessmentResponse(job.getResult()));
+        } else if (job.getStatus() == AssessmentJob.Status.FAILED) {
+            response.put("message", "ECMO评估失败，请检查输入参数或稍后重试");
+            response.put("error", job.getError());
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 批量ECMO评估
+     * 各患者并发评估，返回与输入顺序一致的逐例结果，单例失败不影响其他患者
+     */
+    @PostMapping("/assess/batch")
+    public ResponseEntity<Map<String, Object>> assessECMOBatch(@RequestBody List<PatientParameters> patients,
+                                                               @RequestHeader(value = USER_ID_HEADER, required = false) Long userId) {
+        Map<String, Object> response = new HashMap<>();
+        long start = System.currentTimeMillis();
+        
+        try {
+            List<CompletableFuture<ECMOAssessment>> futures = submitBatch(patients);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            
+            List<Map<String, Object>> results = new ArrayList<>();
+            int failed = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                Map<String, Object> item = buildBatchItem(i, patients.get(i), futures.get(i).join(), userId);
+                if (!Boolean.TRUE.equals(item.get("success"))) {
+                    failed++;
+                }
+                results.add(item);
+            }
+            
+            response.put("success", true);
+            response.put("total", results.size());
+            response.put("succeeded", results.size() - failed);
+            response.put("failed", failed);
+            response.put("elapsedMs", System.currentTimeMillis() - start);
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 批量ECMO评估 - 流式版 (NDJSON)
+     * 每例评估完成即输出一行结果，输出顺序为完成顺序，按index对应输入；全部结果写出后结束响应
+     */
+    @PostMapping(value = "/assess/batch/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter assessECMOBatchStream(@RequestBody List<PatientParameters> patients,
+                                                     @RequestHeader(value = USER_ID_HEADER, required = false) Long userId) {
+        List<CompletableFuture<ECMOAssessment>> futures;
+        try {
+            futures = submitBatch(patients);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeout);
+        
+        // 等待各例结果写出（而非仅评估完成）后再结束响应
+        List<CompletableFuture<Void>> sent = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            int index = i;
+            sent.add(futures.get(i).thenAccept(assessment -> {
+                Map<String, Object> item = buildBatchItem(index, patients.get(index), assessment, userId);
+                synchronized (emitter) {
+                    try {
+                        emitter.send(item, MediaType.APPLICATION_JSON);
+                        emitter.send("\n", MediaType.TEXT_PLAIN);
+                    } catch (IOException | IllegalStateException e) {
+                        // 客户端已断开或响应已超时结束，剩余结果仍会写入评估存储
+                    }
+                }
+            }));
+        }
+        CompletableFuture.allOf(sent.toArray(new CompletableFuture[0]))
+                .whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        emitter.completeWithError(e);
+                    } else {
+                        emitter.complete();
+                    }
+                });
+        return emitter;
+    }
+    
     /**
      * 获取风险评分详情
      */
@@ -101,7 +291,7 @@ public class ECMOExpertController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            ECMOAssessment assessment = assessmentById.get(assessmentId);
+            ECMOAssessment assessment = assessmentStore.find(assessmentId);
             if (assessment == null) {
                 response.put("success", false);
                 response.put("message", "评估记录不存在");
@@ -132,7 +322,7 @@ public class ECMOExpertController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            ECMOAssessment assessment = assessmentById.get(assessmentId);
+            ECMOAssessment assessment = assessmentStore.find(assessmentId);
             if (assessment == null) {
                 response.put("success", false);
                 response.put("message", "评估记录不存在");
@@ -158,33 +348,35 @@ public class ECMOExpertController {
     }
     
     /**
-     * 获取评估历史
+     * 获取评估历史（键集分页）
+     * 按评估时间倒序返回一页，响应中的nextCursor作为下一页的cursor参数传入，为null表示没有更多记录。
+     * 可按风险等级、是否收藏和日期范围（from/to，yyyy-MM-dd，含两端）筛选。
      */
     @GetMapping("/assessments/{username}")
-    public ResponseEntity<Map<String, Object>> getAssessmentHistory(@PathVariable String username) {
+    public ResponseEntity<Map<String, Object>> getAssessmentHistory(
+            @PathVariable String username,
+            @RequestParam(required = false) String riskLevel,
+            @RequestParam(required = false) Boolean favorite,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            List<ECMOAssessment> assessments = userAssessments.getOrDefault(username, new ArrayList<>());
-            List<Map<String, Object>> assessmentList = new ArrayList<>();
-            
-            for (ECMOAssessment assessment : assessments) {
-                Map<String, Object> assessmentInfo = new HashMap<>();
-                assessmentInfo.put("assessmentId", assessment.getAssessmentId());
-                assessmentInfo.put("patientId", assessment.getPatientId());
-                assessmentInfo.put("canUseECMO", assessment.getCanUseECMO());
-                assessmentInfo.put("confidence", assessment.getConfidence());
-                assessmentInfo.put("riskScore", assessment.getRiskScore());
-                assessmentInfo.put("riskLevel", assessment.getRiskLevel());
-                assessmentInfo.put("finalRecommendation", assessment.getFinalRecommendation());
-                assessmentInfo.put("assessmentTime", assessment.getAssessmentTime());
-                assessmentList.add(assessmentInfo);
-            }
+            AssessmentHistoryService.HistoryPage page =
+                    assessmentHistoryService.findPage(username, riskLevel, favorite, from, to, cursor, size);
             
             response.put("success", true);
-            response.put("assessments", assessmentList);
+            response.put("assessments", page.items());
+            response.put("nextCursor", page.nextCursor());
+            response.put("hasMore", page.hasMore());
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "获取评估历史失败");
@@ -192,6 +384,38 @@ public class ECMOExpertController {
         }
     }
     
+    /**
+     * 按关键字检索评估历史（键集分页）
+     * 匹配患者ID、患者姓名或诊断摘要包含q的记录，按评估时间倒序返回一页，nextCursor用法同历史列表。
+     */
+    @GetMapping("/assessments/{username}/search")
+    public ResponseEntity<Map<String, Object>> searchAssessmentHistory(
+            @PathVariable String username,
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            AssessmentHistoryService.HistoryPage page = assessmentHistoryService.search(username, q, cursor, size);
+            
+            response.put("success", true);
+            response.put("assessments", page.items());
+            response.put("nextCursor", page.nextCursor());
+            response.put("hasMore", page.hasMore());
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "检索评估历史失败");
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
     /**
      * 获取完整评估报告
      */
@@ -200,7 +424,7 @@ public class ECMOExpertController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            ECMOAssessment assessment = assessmentById.get(assessmentId);
+            ECMOAssessment assessment = assessmentStore.find(assessmentId);
             if (assessment == null) {
                 response.put("success", false);
                 response.put("message", "评估记录不存在");
@@ -234,4 +458,86 @@ public class ECMOExpertController {
         response.put("timestamp", new Date());
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * 补全缺失的患者ID并提交批量评估
+     */
+    private List<CompletableFuture<ECMOAssessment>> submitBatch(List<PatientParameters> patients) {
+        if (patients != null) {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < patients.size(); i++) {
+                PatientParameters patient = patients.get(i);
+                if (patient.getPatientId() == null || patient.getPatientId().trim().isEmpty()) {
+                    patient.setPatientId("PATIENT_" + now + "_" + i);
+                }
+            }
+        }
+        return batchAssessmentService.submitBatch(patients);
+    }
+    
+    /**
+     * 构建批量评估中的单例结果
+     */
+    private Map<String, Object> buildBatchItem(int index, PatientParameters patient, ECMOAssessment assessment, Long userId) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("index", index);
+        item.put("success", !ECMOExpertService.ERROR_RISK_LEVEL.equals(assessment.getRiskLevel()));
+        item.putAll(buildAssessmentResponse(registerAssessment(assessment, patient, userId)));
+        return item;
+    }
+    
+    /**
+     * 生成评估ID并存储评估结果（内存LRU + 异步写库）
+     */
+    private ECMOAssessment registerAssessment(ECMOAssessment assessment, PatientParameters patient, Long userId) {
+        return assessmentStore.register(assessment, patient, userId);
+    }
+    
+    /**
+     * 构建评估响应：4个核心输出、动态风险评分、决策辅助卡和详细信息
+     */
+    private Map<String, Object> buildAssessmentResponse(ECMOAssessment assessment) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("assessmentId", assessment.getAssessmentId());
+        response.put("patientId", assessment.getPatientId());
+        response.put("assessmentType", assessment.getAssessmentType());
+        response.put("degraded", ECMOExpertService.TYPE_DEGRADED.equals(assessment.getAssessmentType()));
+        
+        // 4个核心输出
+        response.put("ecmoResult", assessment.getCanUseECMO() ? "推荐" : "不推荐");
+        response.put("diagnosis", assessment.getDiagnosis());
+        response.put("evidence", assessment.getEvidence());
+        response.put("confidence", Math.round(assessment.getConfidence() * 100.0) / 100.0);
+        
+        // 动态风险评分
+        response.put("riskAssessment", buildRiskAssessment(assessment));
+        
+        // 决策辅助卡
+        Map<String, Object> decisionCard = new HashMap<>();
+        decisionCard.put("supportReasons", assessment.getSupportReasons());
+        decisionCard.put("opposeReasons", assessment.getOpposeReasons());
+        decisionCard.put("finalRecommendation", assessment.getFinalRecommendation());
+        decisionCard.put("guidelineReferences", assessment.getGuidelineReferences());
+        response.put("decisionCard", decisionCard);
+        
+        // 详细信息
+        response.put("recommendations", assessment.getRecommendations());
+        response.put("contraindications", assessment.getContraindications());
+        response.put("precautions", assessment.getPrecautions());
+        response.put("detailedScores", assessment.getDetailedScores());
+        response.put("assessmentTime", assessment.getAssessmentTime());
+        return response;
+    }
+    
+    /**
+     * 构建动态风险评分信息
+     */
+    private Map<String, Object> buildRiskAssessment(ECMOAssessment assessment) {
+        Map<String, Object> riskAssessment = new HashMap<>();
+        riskAssessment.put("riskScore", Math.round(assessment.getRiskScore().doubleValue() * 10.0) / 10.0);
+        riskAssessment.put("riskLevel", assessment.getRiskLevel());
+        riskAssessment.put("riskColor", assessment.getRiskColor());
+        riskAssessment.put("keyRiskFactors", assessment.getKeyRiskFactors());
+        return riskAssessment;
+    }
 }
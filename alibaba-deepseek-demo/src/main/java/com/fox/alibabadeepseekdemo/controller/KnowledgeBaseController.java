@@ -0,0 +1,55 @@
+package com.fox.alibabadeepseekdemo.controller;
+
+import com.fox.alibabadeepseekdemo.service.KnowledgeSearchIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 知识库检索
+ * 基于进程内BM25索引，返回按相关度排序的知识ID、标题和命中片段，完整内容按ID另行查询
+ */
+@RestController
+@RequestMapping("/api/knowledge")
+@CrossOrigin(origins = "*")
+public class KnowledgeBaseController {
+
+    private static final int MAX_LIMIT = 50;
+
+    @Autowired
+    private KnowledgeSearchIndex knowledgeSearchIndex;
+
+    /**
+     * 全文检索，可按分类过滤
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> search(@RequestParam("q") String query,
+                                                      @RequestParam(required = false) String category,
+                                                      @RequestParam(defaultValue = "10") int limit) {
+        long start = System.nanoTime();
+        List<KnowledgeSearchIndex.Hit> hits = knowledgeSearchIndex.search(query, category, Math.min(limit, MAX_LIMIT));
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("query", query);
+        response.put("hits", hits);
+        response.put("tookMicros", (System.nanoTime() - start) / 1000);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 按标签查找
+     */
+    @GetMapping("/tags/{tag}")
+    public ResponseEntity<Map<String, Object>> findByTag(@PathVariable String tag,
+                                                         @RequestParam(defaultValue = "20") int limit) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("tag", tag);
+        response.put("hits", knowledgeSearchIndex.findByTag(tag, Math.min(limit, MAX_LIMIT)));
+        return ResponseEntity.ok(response);
+    }
+}
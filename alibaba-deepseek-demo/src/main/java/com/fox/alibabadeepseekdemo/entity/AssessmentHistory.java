@@ -8,14 +8,21 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "assessment_history")
+@Table(name = "assessment_history", indexes = {
+        // 按用户的历史记录键集分页
+        @Index(name = "idx_history_user_date", columnList = "user_id, assessment_date, id"),
+        // 管理端统计对账按日期范围分组计数
+        @Index(name = "idx_history_date", columnList = "assessment_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class AssessmentHistory {
 
+    // 序列主键（MySQL上为表模拟序列），每次预分配50个ID，批量写入时可合并为JDBC批量插入
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "assessment_history_seq")
+    @SequenceGenerator(name = "assessment_history_seq", sequenceName = "assessment_history_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "user_id", nullable = false)
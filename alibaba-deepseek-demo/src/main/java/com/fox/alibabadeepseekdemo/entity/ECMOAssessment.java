@@ -1,5 +1,6 @@
 package com.fox.alibabadeepseekdemo.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -21,11 +22,13 @@ import java.util.Map;
 @AllArgsConstructor
 public class ECMOAssessment {
 
+    // 序列主键（MySQL上为表模拟序列），每次预分配50个ID，批量写入时可合并为JDBC批量插入
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ecmo_assessments_seq")
+    @SequenceGenerator(name = "ecmo_assessments_seq", sequenceName = "ecmo_assessments_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "user_id", nullable = false)
+    @Column(name = "user_id")
     private Long userId;
 
     @Column(name = "patient_id", length = 50)
@@ -35,51 +38,51 @@ public class ECMOAssessment {
     private String assessmentTitle;
 
     // 基本信息
-    @Column(nullable = false)
+    @Column
     private Integer age;
 
-    @Column(nullable = false, length = 10)
+    @Column(length = 10)
     private String gender;
 
-    @Column(nullable = false, precision = 5, scale = 2)
+    @Column(precision = 5, scale = 2)
     private BigDecimal weight;
 
     @Column(precision = 5, scale = 2)
     private BigDecimal height;
 
     // 生命体征
-    @Column(name = "heart_rate", nullable = false)
+    @Column(name = "heart_rate")
     private Integer heartRate;
 
-    @Column(name = "systolic_bp", nullable = false)
+    @Column(name = "systolic_bp")
     private Integer systolicBp;
 
-    @Column(name = "diastolic_bp", nullable = false)
+    @Column(name = "diastolic_bp")
     private Integer diastolicBp;
 
     @Column(precision = 4, scale = 2)
     private BigDecimal temperature;
 
-    @Column(name = "respiratory_rate", nullable = false)
+    @Column(name = "respiratory_rate")
     private Integer respiratoryRate;
 
-    @Column(name = "oxygen_saturation", nullable = false, precision = 5, scale = 2)
+    @Column(name = "oxygen_saturation", precision = 5, scale = 2)
     private BigDecimal oxygenSaturation;
 
     // 血气分析
-    @Column(nullable = false, precision = 4, scale = 3)
+    @Column(precision = 4, scale = 3)
     private BigDecimal ph;
 
-    @Column(nullable = false, precision = 5, scale = 2)
+    @Column(precision = 5, scale = 2)
     private BigDecimal pco2;
 
-    @Column(nullable = false, precision = 5, scale = 2)
+    @Column(precision = 5, scale = 2)
     private BigDecimal po2;
 
     @Column(precision = 5, scale = 2)
     private BigDecimal hco3;
 
-    @Column(nullable = false, precision = 5, scale = 2)
+    @Column(precision = 5, scale = 2)
     private BigDecimal lactate;
 
     // 心脏功能
@@ -140,11 +143,20 @@ public class ECMOAssessment {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // 评估ID (用于前端)，按评估ID查询报告
+    @Column(name = "assessment_key", length = 64, nullable = false, unique = true)
+    private String assessmentId;
+
+    // 完整评估结果(JSON)：下列非持久化字段的快照，由AssessmentStore写入和还原
+    @JsonIgnore
+    @Column(name = "result_json", columnDefinition = "TEXT")
+    private String resultJson;
+
     // ===== 非持久化字段 - 用于业务逻辑 =====
 
-    // 评估ID (用于前端)
+    // 患者姓名，写入评估历史
     @Transient
-    private String assessmentId;
+    private String patientName;
 
     // ECMO可用性
     @Transient
@@ -1,5 +1,6 @@
 package com.fox.alibabadeepseekdemo.entity;
 
+import com.fox.alibabadeepseekdemo.service.KnowledgeBaseIndexListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,6 +10,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "knowledge_base")
+@EntityListeners(KnowledgeBaseIndexListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
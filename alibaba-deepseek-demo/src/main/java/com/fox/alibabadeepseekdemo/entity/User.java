@@ -7,7 +7,11 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        // 管理端按医院/科室筛选的用户列表，InnoDB二级索引隐含主键，可直接按ID键集分页
+        @Index(name = "idx_users_hospital", columnList = "hospital"),
+        @Index(name = "idx_users_department", columnList = "department")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,23 +1,34 @@
 package com.fox.alibabadeepseekdemo.repository;
 
 import com.fox.alibabadeepseekdemo.entity.AssessmentHistory;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface AssessmentHistoryRepository extends JpaRepository<AssessmentHistory, Long> {
 
+    /**
+     * 历史列表投影的查询列和关联
+     */
+    String SUMMARY_SELECT = "SELECT h.id AS id, a.assessmentId AS assessmentKey, h.patientId AS patientId, h.patientName AS patientName, " +
+            "h.assessmentTitle AS assessmentTitle, h.riskLevel AS riskLevel, h.riskScore AS riskScore, " +
+            "a.ecmoIndication AS canUseECMO, a.recommendation AS finalRecommendation, " +
+            "h.diagnosisSummary AS diagnosisSummary, h.assessmentDate AS assessmentDate, h.isFavorite AS isFavorite " +
+            "FROM AssessmentHistory h LEFT JOIN h.assessment a ";
+
     // 根据用户ID查找历史记录（仅已保存的）
     List<AssessmentHistory> findByUserIdAndIsSavedOrderByAssessmentDateDesc(Long userId, Integer isSaved);
 
     // 根据用户ID和风险等级查找历史记录
     List<AssessmentHistory> findByUserIdAndRiskLevelAndIsSavedOrderByAssessmentDateDesc(Long userId, String riskLevel, Integer isSaved);
 
-    // 根据患者ID搜索历史记录
+    // 根据患者ID搜索历史记录（LIKE扫描用户全部历史，关键字检索请使用HistorySearchIndex）
     @Query("SELECT h FROM AssessmentHistory h WHERE h.userId = :userId AND h.isSaved = 1 AND (h.patientId LIKE %:keyword% OR h.patientName LIKE %:keyword% OR h.diagnosisSummary LIKE %:keyword%) ORDER BY h.assessmentDate DESC")
     List<AssessmentHistory> searchByKeyword(@Param("userId") Long userId, @Param("keyword") String keyword);
 
@@ -30,12 +41,52 @@ public interface AssessmentHistoryRepository extends JpaRepository<AssessmentHis
     // 查找收藏的记录
     List<AssessmentHistory> findByUserIdAndIsFavoriteAndIsSavedOrderByAssessmentDateDesc(Long userId, Integer isFavorite, Integer isSaved);
 
+    /**
+     * 按(assessment_date, id)倒序的键集分页：传入上一页最后一条的日期和ID，从其之后继续查询，
+     * 借助(user_id, assessment_date, id)索引直接定位，翻到多深都只扫描一页的行。
+     * 筛选条件为null时不生效，首页afterDate/afterId传null。
+     * keyword按LIKE匹配患者ID、姓名和诊断摘要，仅在检索索引停用时使用。
+     */
+    @Query(SUMMARY_SELECT +
+            "WHERE h.userId = :userId AND h.isSaved = 1 AND h.assessmentDate IS NOT NULL " +
+            "AND (:riskLevel IS NULL OR h.riskLevel = :riskLevel) " +
+            "AND (:favorite IS NULL OR h.isFavorite = :favorite) " +
+            "AND (:startTime IS NULL OR h.assessmentDate >= :startTime) " +
+            "AND (:endTime IS NULL OR h.assessmentDate < :endTime) " +
+            "AND (:keyword IS NULL OR h.patientId LIKE CONCAT('%', :keyword, '%') " +
+            "OR h.patientName LIKE CONCAT('%', :keyword, '%') OR h.diagnosisSummary LIKE CONCAT('%', :keyword, '%')) " +
+            "AND (:afterDate IS NULL OR h.assessmentDate < :afterDate OR (h.assessmentDate = :afterDate AND h.id < :afterId)) " +
+            "ORDER BY h.assessmentDate DESC, h.id DESC")
+    List<AssessmentHistorySummary> findPage(@Param("userId") Long userId,
+                                            @Param("riskLevel") String riskLevel,
+                                            @Param("favorite") Integer favorite,
+                                            @Param("startTime") LocalDateTime startTime,
+                                            @Param("endTime") LocalDateTime endTime,
+                                            @Param("keyword") String keyword,
+                                            @Param("afterDate") LocalDateTime afterDate,
+                                            @Param("afterId") Long afterId,
+                                            Limit limit);
+
+    // 按ID批量查询已保存记录的列表投影，顺序由调用方按检索结果重排
+    @Query(SUMMARY_SELECT + "WHERE h.id IN :ids AND h.isSaved = 1")
+    List<AssessmentHistorySummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // 用户已保存历史的检索字段(ID, 患者ID, 患者姓名, 诊断摘要, 评估时间)，按评估时间和ID升序，用于建立检索索引，limit用于判断是否超出索引上限
+    @Query("SELECT h.id, h.patientId, h.patientName, h.diagnosisSummary, h.assessmentDate FROM AssessmentHistory h " +
+            "WHERE h.userId = :userId AND h.isSaved = 1 AND h.assessmentDate IS NOT NULL ORDER BY h.assessmentDate, h.id")
+    List<Object[]> findSearchFields(@Param("userId") Long userId, Limit limit);
+
     // 添加统计方法
     long countByAssessmentDateAfter(LocalDateTime dateTime);
 
     @Query("SELECT COUNT(h) FROM AssessmentHistory h WHERE h.assessmentDate >= :startTime")
     long countAssessmentsAfter(@Param("startTime") LocalDateTime startTime);
 
+    // 按评估日期和小时分组统计，返回(日期, 小时, 数量)
+    @Query("SELECT extract(date from h.assessmentDate), extract(hour from h.assessmentDate), count(h) FROM AssessmentHistory h " +
+            "WHERE h.assessmentDate >= :since GROUP BY extract(date from h.assessmentDate), extract(hour from h.assessmentDate)")
+    List<Object[]> countByHourSince(@Param("since") LocalDateTime since);
+
     // 统计用户的评估记录数量
     long countByUserIdAndIsSaved(Long userId, Integer isSaved);
 }
@@ -0,0 +1,34 @@
+package com.fox.alibabadeepseekdemo.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 评估历史列表投影：只查询列表展示需要的列，不加载完整实体和关联
+ */
+public interface AssessmentHistorySummary {
+
+    Long getId();
+
+    String getAssessmentKey();
+
+    String getPatientId();
+
+    String getPatientName();
+
+    String getAssessmentTitle();
+
+    String getRiskLevel();
+
+    BigDecimal getRiskScore();
+
+    Boolean getCanUseECMO();
+
+    String getFinalRecommendation();
+
+    String getDiagnosisSummary();
+
+    LocalDateTime getAssessmentDate();
+
+    Integer getIsFavorite();
+}
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ECMOAssessmentRepository extends JpaRepository<ECMOAssessment, Long> {
@@ -28,4 +29,7 @@ public interface ECMOAssessmentRepository extends JpaRepository<ECMOAssessment,
 
     // 根据用户ID和患者ID查找最新评估记录
     ECMOAssessment findFirstByUserIdAndPatientIdOrderByCreatedAtDesc(Long userId, String patientId);
+
+    // 根据评估ID(assessment_key)查找评估记录
+    Optional<ECMOAssessment> findByAssessmentId(String assessmentId);
 }
@@ -16,7 +16,11 @@ public interface KnowledgeBaseRepository extends JpaRepository<KnowledgeBase, Lo
     // 根据难度等级查找知识
     List<KnowledgeBase> findByDifficultyLevelAndStatusOrderBySortOrderAscCreatedAtDesc(String difficultyLevel, Integer status);
 
-    // 全文搜索
+    // 已发布知识的ID和更新时间，检索索引启动时据此判断快照中哪些知识需要重新索引，不读取内容列
+    @Query("SELECT k.id, k.updatedAt FROM KnowledgeBase k WHERE k.status = 1")
+    List<Object[]> findPublishedVersions();
+
+    // 全文搜索（LIKE全表扫描，检索请使用KnowledgeSearchIndex）
     @Query("SELECT k FROM KnowledgeBase k WHERE k.status = 1 AND (k.title LIKE %:keyword% OR k.content LIKE %:keyword% OR k.summary LIKE %:keyword% OR k.tags LIKE %:keyword%) ORDER BY k.sortOrder ASC, k.createdAt DESC")
     List<KnowledgeBase> searchByKeyword(@Param("keyword") String keyword);
 
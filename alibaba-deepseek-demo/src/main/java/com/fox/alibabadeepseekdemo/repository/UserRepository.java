@@ -1,14 +1,92 @@
 package com.fox.alibabadeepseekdemo.repository;
 
 import com.fox.alibabadeepseekdemo.entity.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    // 用户列表投影及医院/科室/状态筛选，筛选条件为null时不生效
+    String SUMMARY_QUERY = "SELECT new com.fox.alibabadeepseekdemo.repository.UserSummary(" +
+            "u.id, u.username, u.realName, u.email, u.department, u.title, u.hospital, u.status, u.createdAt, u.lastLoginAt) " +
+            "FROM User u " +
+            "WHERE (:hospital IS NULL OR u.hospital = :hospital) " +
+            "AND (:department IS NULL OR u.department = :department) " +
+            "AND (:status IS NULL OR u.status = :status) ";
+
     Optional<User> findByUsername(String username);
 
     Optional<User> findByEmail(String email);
+
+    // 按注册日期和小时分组统计，返回(日期, 小时, 数量)
+    @Query("SELECT extract(date from u.createdAt), extract(hour from u.createdAt), count(u) FROM User u " +
+            "WHERE u.createdAt >= :since GROUP BY extract(date from u.createdAt), extract(hour from u.createdAt)")
+    List<Object[]> countByHourSince(@Param("since") LocalDateTime since);
+
+    // 只查询用户ID，不加载整个用户实体
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    // 返回其中存在的用户ID
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /*
+     * 键集分页：按主键或用户名（均唯一）排序，传入上一页最后一条的排序值，首页传null
+     */
+
+    @Query(SUMMARY_QUERY + "AND (:afterId IS NULL OR u.id > :afterId) ORDER BY u.id ASC")
+    List<UserSummary> findSummariesByIdAsc(@Param("hospital") String hospital,
+                                           @Param("department") String department,
+                                           @Param("status") Integer status,
+                                           @Param("afterId") Long afterId,
+                                           Limit limit);
+
+    @Query(SUMMARY_QUERY + "AND (:afterId IS NULL OR u.id < :afterId) ORDER BY u.id DESC")
+    List<UserSummary> findSummariesByIdDesc(@Param("hospital") String hospital,
+                                            @Param("department") String department,
+                                            @Param("status") Integer status,
+                                            @Param("afterId") Long afterId,
+                                            Limit limit);
+
+    @Query(SUMMARY_QUERY + "AND (:afterUsername IS NULL OR u.username > :afterUsername) ORDER BY u.username ASC")
+    List<UserSummary> findSummariesByUsernameAsc(@Param("hospital") String hospital,
+                                                 @Param("department") String department,
+                                                 @Param("status") Integer status,
+                                                 @Param("afterUsername") String afterUsername,
+                                                 Limit limit);
+
+    @Query(SUMMARY_QUERY + "AND (:afterUsername IS NULL OR u.username < :afterUsername) ORDER BY u.username DESC")
+    List<UserSummary> findSummariesByUsernameDesc(@Param("hospital") String hospital,
+                                                  @Param("department") String department,
+                                                  @Param("status") Integer status,
+                                                  @Param("afterUsername") String afterUsername,
+                                                  Limit limit);
+
+    /**
+     * 全量导出：按主键顺序以JDBC游标逐批读取（MySQL需开启useCursorFetch），调用方须在只读事务中消费并关闭Stream
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query(SUMMARY_QUERY + "ORDER BY u.id ASC")
+    Stream<UserSummary> streamSummaries(@Param("hospital") String hospital,
+                                        @Param("department") String department,
+                                        @Param("status") Integer status);
 }
@@ -0,0 +1,18 @@
+package com.fox.alibabadeepseekdemo.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户列表投影：管理端列表和导出只查询这些列，不加载密码、头像等字段
+ */
+public record UserSummary(Long id,
+                          String username,
+                          String realName,
+                          String email,
+                          String department,
+                          String title,
+                          String hospital,
+                          Integer status,
+                          LocalDateTime createdAt,
+                          LocalDateTime lastLoginAt) {
+}
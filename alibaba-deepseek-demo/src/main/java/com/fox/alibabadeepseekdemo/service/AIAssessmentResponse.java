@@ -0,0 +1,46 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * AI评估响应的结构化结果，字段与提示词中要求的JSON格式一一对应
+ * 别名为紧凑输出格式的短键，见 {@link CompactOutputCodec}
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AIAssessmentResponse {
+
+    @JsonAlias("u")
+    private Boolean canUseECMO;
+
+    @JsonAlias("d")
+    private String diagnosis;
+
+    @JsonAlias("e")
+    private String evidence;
+
+    @JsonAlias("c")
+    private Double confidence;
+
+    @JsonAlias("s")
+    private List<String> supportReasons;
+
+    @JsonAlias("o")
+    private List<String> opposeReasons;
+
+    @JsonAlias("f")
+    private String finalRecommendation;
+
+    @JsonAlias("a")
+    private List<String> recommendations;
+
+    @JsonAlias("x")
+    private String contraindications;
+
+    @JsonAlias("p")
+    private String precautions;
+}
@@ -0,0 +1,236 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 管理端统计计数
+ * 用户注册和评估历史写库时递增内存计数（LongAdder分段计数，高并发下无竞争），并按小时、按天汇总到趋势桶；
+ * /api/admin/stats 直接读取计数，耗时与表大小无关。
+ * 计数定期与数据库对账：总数取count()，趋势桶按日期和小时分组重新统计，
+ * 覆盖绕过事件写入的数据（初始化数据、手工导入等），两次对账之间的统计为最终一致。
+ * 对账串行执行；查询期间的递增在对账后保留，读取统计不触发对账，数据库不可用时返回上次对账后的计数。
+ */
+@Component
+public class AdminStatsCounters {
+
+    private final UserRepository userRepository;
+    private final AssessmentHistoryRepository historyRepository;
+    private final int hourlyRetentionHours;
+    private final int dailyRetentionDays;
+
+    private final Series users = new Series();
+    private final Series assessments = new Series();
+
+    private volatile LocalDateTime lastReconciledAt;
+    private volatile long lastReconcileMs;
+    private volatile String lastError;
+
+    public AdminStatsCounters(UserRepository userRepository,
+                              AssessmentHistoryRepository historyRepository,
+                              @Value("${ecmo.admin-stats.hourly-retention-hours:48}") int hourlyRetentionHours,
+                              @Value("${ecmo.admin-stats.daily-retention-days:30}") int dailyRetentionDays) {
+        this.userRepository = userRepository;
+        this.historyRepository = historyRepository;
+        this.hourlyRetentionHours = hourlyRetentionHours;
+        this.dailyRetentionDays = dailyRetentionDays;
+    }
+
+    public void recordUserRegistered(LocalDateTime createdAt) {
+        users.record(createdAt);
+    }
+
+    public void recordAssessment(LocalDateTime assessmentDate) {
+        assessments.record(assessmentDate);
+    }
+
+    /**
+     * 应用就绪（初始化数据写入之后）时首次对账
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+
+    /**
+     * 与数据库对账
+     * 定时任务、启动事件和手动对账可能同时触发，串行执行以免同一差值被重复叠加
+     */
+    @Scheduled(fixedDelayString = "${ecmo.admin-stats.reconcile-interval-ms:300000}",
+            initialDelayString = "${ecmo.admin-stats.reconcile-interval-ms:300000}")
+    public synchronized void reconcile() {
+        long start = System.nanoTime();
+        try {
+            LocalDateTime since = LocalDate.now().minusDays(dailyRetentionDays - 1L).atStartOfDay();
+            Series.Baseline userBaseline = users.baseline();
+            users.reset(userBaseline, userRepository.count(), userRepository.countByHourSince(since));
+            Series.Baseline assessmentBaseline = assessments.baseline();
+            assessments.reset(assessmentBaseline, historyRepository.count(), historyRepository.countByHourSince(since));
+            lastReconciledAt = LocalDateTime.now();
+            lastError = null;
+        } catch (RuntimeException e) {
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } finally {
+            lastReconcileMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        prune();
+    }
+
+    /**
+     * 总数和最近24小时新增数（按小时桶累加，含当前小时）
+     */
+    public Map<String, Object> snapshot() {
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalUsers", users.total.sum());
+        stats.put("todayUsers", users.sumHours(hour, 24));
+        stats.put("totalAssessments", assessments.total.sum());
+        stats.put("todayAssessments", assessments.sumHours(hour, 24));
+        stats.put("lastReconciledAt", lastReconciledAt);
+        return stats;
+    }
+
+    /**
+     * 趋势数据：按小时（最近hourly-retention-hours小时）或按天（最近daily-retention-days天），时间升序
+     */
+    public Map<String, Object> trend(boolean daily) {
+        List<Map<String, Object>> points = new ArrayList<>();
+        if (daily) {
+            LocalDate today = LocalDate.now();
+            for (int i = dailyRetentionDays - 1; i >= 0; i--) {
+                LocalDate day = today.minusDays(i);
+                points.add(point(day, users.days.get(day), assessments.days.get(day)));
+            }
+        } else {
+            LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+            for (int i = hourlyRetentionHours - 1; i >= 0; i--) {
+                LocalDateTime bucket = hour.minusHours(i);
+                points.add(point(bucket, users.hours.get(bucket), assessments.hours.get(bucket)));
+            }
+        }
+        Map<String, Object> trend = new LinkedHashMap<>();
+        trend.put("granularity", daily ? "day" : "hour");
+        trend.put("points", points);
+        trend.put("lastReconciledAt", lastReconciledAt);
+        return trend;
+    }
+
+    private static Map<String, Object> point(Object time, LongAdder users, LongAdder assessments) {
+        Map<String, Object> point = new LinkedHashMap<>();
+        point.put("time", time);
+        point.put("users", users == null ? 0 : users.sum());
+        point.put("assessments", assessments == null ? 0 : assessments.sum());
+        return point;
+    }
+
+    /**
+     * 移除超出保留期的桶
+     */
+    private void prune() {
+        LocalDateTime oldestHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(Math.max(hourlyRetentionHours, 24));
+        LocalDate oldestDay = LocalDate.now().minusDays(dailyRetentionDays);
+        for (Series series : List.of(users, assessments)) {
+            series.hours.keySet().removeIf(hour -> hour.isBefore(oldestHour));
+            series.days.keySet().removeIf(day -> day.isBefore(oldestDay));
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lastReconciledAt", lastReconciledAt);
+        stats.put("lastReconcileMs", lastReconcileMs);
+        stats.put("lastError", lastError);
+        stats.put("hourBuckets", users.hours.size() + assessments.hours.size());
+        stats.put("dayBuckets", users.days.size() + assessments.days.size());
+        return stats;
+    }
+
+    /**
+     * 一类事件的总数和按小时/按天的计数桶
+     */
+    private static class Series {
+
+        final LongAdder total = new LongAdder();
+        final Map<LocalDateTime, LongAdder> hours = new ConcurrentHashMap<>();
+        final Map<LocalDate, LongAdder> days = new ConcurrentHashMap<>();
+
+        void record(LocalDateTime time) {
+            total.increment();
+            if (time == null) {
+                time = LocalDateTime.now();
+            }
+            hours.computeIfAbsent(time.truncatedTo(ChronoUnit.HOURS), key -> new LongAdder()).increment();
+            days.computeIfAbsent(time.toLocalDate(), key -> new LongAdder()).increment();
+        }
+
+        long sumHours(LocalDateTime lastHour, int count) {
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                LongAdder bucket = hours.get(lastHour.minusHours(i));
+                if (bucket != null) {
+                    sum += bucket.sum();
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * 查询数据库前记录当前计数，作为对账的基线
+         */
+        Baseline baseline() {
+            Map<LocalDateTime, Long> hourSums = new HashMap<>();
+            hours.forEach((hour, adder) -> hourSums.put(hour, adder.sum()));
+            Map<LocalDate, Long> daySums = new HashMap<>();
+            days.forEach((day, adder) -> daySums.put(day, adder.sum()));
+            return new Baseline(total.sum(), hourSums, daySums);
+        }
+
+        /**
+         * 以数据库统计结果替换基线计数，rows为(日期, 小时, 数量)；
+         * 按相对基线的差值调整，查询期间并发的递增保留在计数中
+         */
+        void reset(Baseline baseline, long count, List<Object[]> rows) {
+            Map<LocalDateTime, Long> hourCounts = new HashMap<>();
+            Map<LocalDate, Long> dayCounts = new HashMap<>();
+            for (Object[] row : rows) {
+                LocalDate day = (LocalDate) row[0];
+                long rowCount = ((Number) row[2]).longValue();
+                hourCounts.merge(day.atTime(((Number) row[1]).intValue(), 0), rowCount, Long::sum);
+                dayCounts.merge(day, rowCount, Long::sum);
+            }
+            total.add(count - baseline.total());
+            adjust(hours, baseline.hours(), hourCounts);
+            adjust(days, baseline.days(), dayCounts);
+        }
+
+        private static <K> void adjust(Map<K, LongAdder> buckets, Map<K, Long> baseline, Map<K, Long> counts) {
+            counts.forEach((key, value) ->
+                    buckets.computeIfAbsent(key, k -> new LongAdder()).add(value - baseline.getOrDefault(key, 0L)));
+            baseline.forEach((key, value) -> {
+                if (!counts.containsKey(key)) {
+                    buckets.get(key).add(-value);
+                }
+            });
+        }
+
+        record Baseline(long total, Map<LocalDateTime, Long> hours, Map<LocalDate, Long> days) {
+        }
+    }
+}
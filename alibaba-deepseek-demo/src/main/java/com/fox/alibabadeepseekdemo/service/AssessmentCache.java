@@ -0,0 +1,122 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ECMO评估结果缓存
+ * 有界LRU + TTL过期，键为患者参数指纹、提示词模板版本和模型名称的组合。
+ * 存取时均复制评估对象，调用方对结果的修改不会影响缓存内容。
+ */
+@Component
+public class AssessmentCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<String, CacheEntry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public AssessmentCache(@Value("${ecmo.cache.enabled:true}") boolean enabled,
+                           @Value("${ecmo.cache.max-size:1000}") int maxSize,
+                           @Value("${ecmo.cache.ttl:10m}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > AssessmentCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查询缓存，未命中或已过期返回null
+     */
+    public synchronized ECMOAssessment get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        CacheEntry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copyOf(entry.assessment);
+    }
+
+    public synchronized void put(String key, ECMOAssessment assessment) {
+        if (!enabled) {
+            return;
+        }
+        entries.put(key, new CacheEntry(copyOf(assessment), System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 清空缓存，返回清除的条目数
+     */
+    public synchronized int clear() {
+        int size = entries.size();
+        entries.clear();
+        return size;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : Math.round(hitCount * 10000.0 / total) / 10000.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+
+    /**
+     * 复制评估结果，清除评估ID
+     */
+    static ECMOAssessment copyOf(ECMOAssessment source) {
+        ECMOAssessment copy = new ECMOAssessment();
+        BeanUtils.copyProperties(source, copy);
+        copy.setAssessmentId(null);
+        return copy;
+    }
+
+    private record CacheEntry(ECMOAssessment assessment, long expiresAt) {
+    }
+}
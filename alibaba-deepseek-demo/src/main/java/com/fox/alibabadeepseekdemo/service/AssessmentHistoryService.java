@@ -0,0 +1,181 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistorySummary;
+import com.fox.alibabadeepseekdemo.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 用户评估历史查询
+ * 按评估时间倒序键集分页：游标记录上一页最后一条的(assessment_date, id)，下一页从该位置之后继续，
+ * 不使用OFFSET，翻到第几页查询代价都与首页相同。
+ * 关键字检索由 {@link HistorySearchIndex} 在内存中匹配出一页记录ID，再按ID查询列表投影，排序和游标与列表一致。
+ * 回表时发现已删除或内容已修改的记录，逐条更新检索索引后重新检索。
+ */
+@Service
+@RequiredArgsConstructor
+public class AssessmentHistoryService {
+
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
+    private final AssessmentHistoryRepository historyRepository;
+    private final UserRepository userRepository;
+    private final HistorySearchIndex searchIndex;
+
+    /**
+     * 查询一页评估历史，用户不存在时返回空页
+     *
+     * @param cursor 上一页返回的nextCursor，首页传null
+     * @param from   起始日期（含）
+     * @param to     截止日期（含）
+     */
+    public HistoryPage findPage(String username, String riskLevel, Boolean favorite,
+                                LocalDate from, LocalDate to, String cursor, Integer size) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        Cursor after = Cursor.decode(cursor);
+        Optional<Long> userId = userRepository.findIdByUsername(username);
+        if (userId.isEmpty()) {
+            return new HistoryPage(List.of(), null);
+        }
+
+        // 多取一条判断是否还有下一页
+        List<AssessmentHistorySummary> rows = historyRepository.findPage(
+                userId.get(),
+                riskLevel == null || riskLevel.isBlank() ? null : riskLevel,
+                favorite == null ? null : (favorite ? 1 : 0),
+                from == null ? null : from.atStartOfDay(),
+                to == null ? null : to.plusDays(1).atStartOfDay(),
+                null,
+                after == null ? null : after.assessmentDate(),
+                after == null ? null : after.id(),
+                Limit.of(pageSize + 1));
+        return page(rows, pageSize);
+    }
+
+    /**
+     * 按关键字检索一页评估历史：患者ID、患者姓名或诊断摘要包含关键字（不区分大小写），用户不存在时返回空页
+     *
+     * @param cursor 上一页返回的nextCursor，首页传null
+     */
+    public HistoryPage search(String username, String keyword, String cursor, Integer size) {
+        if (keyword == null || keyword.isBlank()) {
+            throw new IllegalArgumentException("搜索关键字不能为空");
+        }
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        Cursor after = Cursor.decode(cursor);
+        Optional<Long> userId = userRepository.findIdByUsername(username);
+        if (userId.isEmpty()) {
+            return new HistoryPage(List.of(), null);
+        }
+
+        // 索引中有已删除或已修改的记录时，更新索引后再检索一次
+        if (searchIndex.isEnabled()) {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                List<Long> ids = searchIndex.search(userId.get(), keyword,
+                        after == null ? null : after.assessmentDate(),
+                        after == null ? null : after.id(),
+                        pageSize + 1);
+                if (ids == null) {
+                    break;
+                }
+                List<AssessmentHistorySummary> rows = fetchIndexed(userId.get(), ids);
+                if (rows != null) {
+                    return page(rows, pageSize);
+                }
+            }
+        }
+
+        // 检索索引停用、用户记录数超出索引上限或索引仍未同步时使用数据库LIKE查询
+        return page(historyRepository.findPage(userId.get(), null, null, null, null, keyword.trim(),
+                after == null ? null : after.assessmentDate(),
+                after == null ? null : after.id(),
+                Limit.of(pageSize + 1)), pageSize);
+    }
+
+    /**
+     * 按检索结果ID回表；有记录已删除或检索字段、评估时间与索引不一致时，逐条更新索引并返回null
+     */
+    private List<AssessmentHistorySummary> fetchIndexed(Long userId, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, AssessmentHistorySummary> byId = new HashMap<>();
+        for (AssessmentHistorySummary row : historyRepository.findSummariesByIdIn(ids)) {
+            byId.put(row.getId(), row);
+        }
+        boolean stale = false;
+        List<AssessmentHistorySummary> rows = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            AssessmentHistorySummary row = byId.get(id);
+            if (row == null) {
+                searchIndex.remove(userId, id);
+                stale = true;
+            } else if (searchIndex.update(userId, row)) {
+                stale = true;
+            } else {
+                rows.add(row);
+            }
+        }
+        return stale ? null : rows;
+    }
+
+    /**
+     * rows为多取一条的查询结果，超出pageSize时截断并以最后一条生成下一页游标
+     */
+    private static HistoryPage page(List<AssessmentHistorySummary> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new HistoryPage(rows, null);
+        }
+        List<AssessmentHistorySummary> items = rows.subList(0, pageSize);
+        AssessmentHistorySummary last = items.get(pageSize - 1);
+        return new HistoryPage(items, new Cursor(last.getAssessmentDate(), last.getId()).encode());
+    }
+
+    /**
+     * 一页评估历史，nextCursor为null表示已到最后一页
+     */
+    public record HistoryPage(List<AssessmentHistorySummary> items, String nextCursor) {
+
+        public boolean hasMore() {
+            return nextCursor != null;
+        }
+    }
+
+    /**
+     * 分页游标：上一页最后一条的评估时间和ID，对外以URL安全的Base64字符串传递
+     */
+    record Cursor(LocalDateTime assessmentDate, Long id) {
+
+        String encode() {
+            String raw = assessmentDate + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.valueOf(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+            }
+        }
+    }
+}
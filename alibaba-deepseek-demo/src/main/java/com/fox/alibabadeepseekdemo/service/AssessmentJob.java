@@ -0,0 +1,57 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import lombok.Getter;
+
+/**
+ * 异步ECMO评估任务
+ */
+@Getter
+public class AssessmentJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String jobId;
+    private final String patientId;
+    private final long submittedAt;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile AssessmentStage stage = AssessmentStage.QUEUED;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile ECMOAssessment result;
+    private volatile String error;
+
+    public AssessmentJob(String jobId, String patientId) {
+        this.jobId = jobId;
+        this.patientId = patientId;
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+    void start() {
+        this.startedAt = System.currentTimeMillis();
+        this.status = Status.RUNNING;
+    }
+
+    void advance(AssessmentStage stage) {
+        this.stage = stage;
+    }
+
+    void complete(ECMOAssessment result) {
+        this.result = result;
+        this.stage = AssessmentStage.COMPLETED;
+        this.finishedAt = System.currentTimeMillis();
+        this.status = Status.COMPLETED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.stage = AssessmentStage.FAILED;
+        this.finishedAt = System.currentTimeMillis();
+        this.status = Status.FAILED;
+    }
+
+    public boolean isDone() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
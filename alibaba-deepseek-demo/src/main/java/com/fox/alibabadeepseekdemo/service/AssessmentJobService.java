@@ -0,0 +1,95 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 异步ECMO评估任务服务
+ * 提交后立即返回任务ID，评估在有界执行器中运行，结果保留一段时间供轮询获取。
+ * 评估完成即写入评估存储（提交时带有用户ID的同时写入其评估历史），不依赖客户端轮询。
+ */
+@Service
+public class AssessmentJobService {
+
+    private final ECMOExpertService ecmoExpertService;
+    private final AssessmentStore assessmentStore;
+    private final ThreadPoolExecutor executor;
+    private final long retentionMillis;
+
+    private final Map<String, AssessmentJob> jobs = new ConcurrentHashMap<>();
+
+    public AssessmentJobService(ECMOExpertService ecmoExpertService,
+                                AssessmentStore assessmentStore,
+                                @Qualifier("assessmentJobExecutor") ThreadPoolExecutor executor,
+                                @Value("${ecmo.jobs.retention:30m}") Duration retention) {
+        this.ecmoExpertService = ecmoExpertService;
+        this.assessmentStore = assessmentStore;
+        this.executor = executor;
+        this.retentionMillis = retention.toMillis();
+    }
+
+    /**
+     * 提交评估任务
+     *
+     * @param userId 提交者的用户ID，可为null
+     * @throws RejectedExecutionException 排队任务已达上限
+     */
+    public AssessmentJob submit(PatientParameters patient, Long userId) {
+        String jobId = "ECMO_JOB_" + UUID.randomUUID().toString().replace("-", "");
+        AssessmentJob job = new AssessmentJob(jobId, patient.getPatientId());
+        jobs.put(jobId, job);
+        try {
+            executor.execute(() -> run(job, patient, userId));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            throw e;
+        }
+        return job;
+    }
+
+    public AssessmentJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void run(AssessmentJob job, PatientParameters patient, Long userId) {
+        job.start();
+        try {
+            ECMOAssessment assessment = ecmoExpertService.assessPatientForECMO(patient, job::advance);
+            job.complete(assessmentStore.register(assessment, patient, userId));
+        } catch (Exception e) {
+            job.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * 定期清理超过保留时间的已完成任务
+     */
+    @Scheduled(fixedDelayString = "${ecmo.jobs.cleanup-interval-ms:60000}")
+    public void evictFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> job.isDone() && job.getFinishedAt() < cutoff);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedJobs", jobs.size());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("maxConcurrency", executor.getMaximumPoolSize());
+        stats.put("queuedJobs", executor.getQueue().size());
+        stats.put("queueRemainingCapacity", executor.getQueue().remainingCapacity());
+        stats.put("completedJobs", executor.getCompletedTaskCount());
+        return stats;
+    }
+}
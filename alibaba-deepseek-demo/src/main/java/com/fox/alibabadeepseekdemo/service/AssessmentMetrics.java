@@ -0,0 +1,141 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 评估链路指标
+ * <ul>
+ *     <li>ecmo.assessment.stage — 各阶段耗时（评分、指南检索、提示词构建、模型调用、解析、风险信息增强）</li>
+ *     <li>ecmo.llm.call — 模型调用耗时，按模型和结果区分</li>
+ *     <li>ecmo.assessment.fallback — 回退为默认评估、降级评估和错误评估的次数</li>
+ *     <li>ecmo.llm.inflight — 正在进行的模型调用数</li>
+ *     <li>ecmo.llm.tokens — 模型返回的prompt/completion token用量</li>
+ * </ul>
+ */
+@Component
+public class AssessmentMetrics {
+
+    public enum Stage {
+        SCORE("score"),
+        RETRIEVE("retrieve"),
+        PROMPT_BUILD("prompt_build"),
+        LLM_CALL("llm_call"),
+        PARSE("parse"),
+        ENHANCE("enhance");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public static final String FALLBACK_DEFAULT = "default";
+    public static final String FALLBACK_DEGRADED = "degraded";
+    public static final String FALLBACK_ERROR = "error";
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<String, Counter> fallbackCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> llmTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> tokenSummaries = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public AssessmentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("ecmo.assessment.stage")
+                    .description("ECMO评估各阶段耗时")
+                    .tag("stage", stage.tag)
+                    .register(registry));
+        }
+        registry.gauge("ecmo.llm.inflight", inFlight);
+    }
+
+    /**
+     * 记录一个阶段的耗时，阶段抛出异常时同样记录
+     */
+    public <T> T time(Stage stage, Supplier<T> action) {
+        return stageTimers.get(stage).record(action);
+    }
+
+    public void time(Stage stage, Runnable action) {
+        stageTimers.get(stage).record(action);
+    }
+
+    /**
+     * 开始一次模型调用，返回调用开始时间
+     */
+    public long llmCallStarted() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束一次模型调用，outcome为SUCCESS或ModelUnavailableException.Reason的名称
+     */
+    public void llmCallFinished(long startNanos, String model, String outcome) {
+        inFlight.decrementAndGet();
+        long elapsed = System.nanoTime() - startNanos;
+        llmTimers.computeIfAbsent(model + "|" + outcome, key -> Timer.builder("ecmo.llm.call")
+                        .description("大模型调用耗时")
+                        .tag("model", model)
+                        .tag("outcome", outcome)
+                        .register(registry))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        stageTimers.get(Stage.LLM_CALL).record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录模型响应元数据中的token用量，响应未返回用量时忽略
+     */
+    public void recordTokens(String model, ChatResponse response) {
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        recordTokens(model, "prompt", usage.getPromptTokens());
+        recordTokens(model, "completion", usage.getCompletionTokens());
+    }
+
+    private void recordTokens(String model, String type, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        tokenSummaries.computeIfAbsent(model + "|" + type, key -> DistributionSummary.builder("ecmo.llm.tokens")
+                        .description("每次模型调用的token用量")
+                        .baseUnit("tokens")
+                        .tag("model", model)
+                        .tag("type", type)
+                        .register(registry))
+                .record(tokens);
+    }
+
+    /**
+     * 记录一次回退，type为default（响应无法解析）、degraded（AI服务不可用）或error（评估异常）
+     */
+    public void recordFallback(String type) {
+        fallbackCounters.computeIfAbsent(type, key -> Counter.builder("ecmo.assessment.fallback")
+                        .description("评估回退次数")
+                        .tag("type", type)
+                        .register(registry))
+                .increment();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
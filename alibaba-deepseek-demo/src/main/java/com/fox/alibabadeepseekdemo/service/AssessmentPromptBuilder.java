@@ -0,0 +1,325 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ECMO评估提示词构建
+ * <ul>
+ *     <li>full — 原有的完整提示词，所有章节标题和详细的JSON字段说明</li>
+ *     <li>compact — 精简提示词：固定的指令和字段说明作为逐字节不变的前缀放在最前，便于模型服务端的前缀缓存命中；
+ *     患者资料只输出有值的章节，同一章节的指标合并为一行</li>
+ * </ul>
+ * compact模式下可同时估算完整提示词的token数，统计每次请求节省的输入token。
+ * 启用紧凑输出格式时，两种模式的输出格式说明均替换为 {@link CompactOutputCodec#instruction()}。
+ * 检索到的指南段落（{@link GuidelineRetriever}）作为独立章节放在患者资料和系统评分之后，compact模式下不影响固定前缀。
+ */
+@Component
+public class AssessmentPromptBuilder {
+
+    public enum Mode { FULL, COMPACT }
+
+    /**
+     * 精简模式的固定前缀，不得包含任何与请求相关的内容
+     */
+    static final String COMPACT_HEADER = "你是ECMO专家，请依据ELSO指南和中国ECMO专家共识评估下列患者的ECMO适应症。\n";
+
+    static final String COMPACT_PREAMBLE = COMPACT_HEADER
+            + "只输出一个JSON对象，不要输出其他文字。字段：\n"
+            + "canUseECMO:布尔；diagnosis:病情严重程度、心肺功能与预后分析；evidence:符合的适应症、关键指标与指南依据；"
+            + "confidence:0-1；supportReasons:支持理由数组；opposeReasons:风险因素数组；"
+            + "finalRecommendation:推荐使用|谨慎评估|不推荐使用；recommendations:具体临床建议数组；"
+            + "contraindications:绝对及相对禁忌症分析；precautions:注意事项与风险防控\n"
+            + "理由和建议须基于下列临床资料，具体可操作。\n"
+            + "---\n";
+
+    private final Mode mode;
+    private final boolean reportSavings;
+    private final CompactOutputCodec outputCodec;
+    private final String compactPreamble;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder baselineTokens = new LongAdder();
+    private final LongAdder comparedRequests = new LongAdder();
+
+    public AssessmentPromptBuilder(@Value("${ecmo.prompt.mode:full}") String mode,
+                                   @Value("${ecmo.prompt.report-savings:true}") boolean reportSavings,
+                                   CompactOutputCodec outputCodec) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.reportSavings = reportSavings;
+        this.outputCodec = outputCodec;
+        this.compactPreamble = outputCodec.isEnabled()
+                ? COMPACT_HEADER + outputCodec.instruction() + "---\n"
+                : COMPACT_PREAMBLE;
+    }
+
+    /**
+     * 按配置的模式构建提示词
+     */
+    public String build(PatientParameters patient, RiskEvaluation evaluation) {
+        return build(patient, evaluation, List.of());
+    }
+
+    /**
+     * 按配置的模式构建提示词，附带检索到的指南段落
+     */
+    public String build(PatientParameters patient, RiskEvaluation evaluation, List<GuidelineRetriever.Reference> references) {
+        String prompt;
+        if (mode == Mode.COMPACT) {
+            prompt = buildCompact(patient, evaluation, references);
+            if (reportSavings) {
+                baselineTokens.add(TokenEstimator.estimate(buildFull(patient, evaluation, references)));
+                comparedRequests.increment();
+            }
+        } else {
+            prompt = buildFull(patient, evaluation, references);
+        }
+        requests.increment();
+        promptTokens.add(TokenEstimator.estimate(prompt));
+        return prompt;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 提示词变体标识（提示词模式和输出格式），参与评估缓存键
+     */
+    public String getVariant() {
+        return outputCodec.isEnabled() ? mode + "+" + outputCodec.getMode() + "-" + outputCodec.getVersion() : mode.name();
+    }
+
+    /**
+     * 完整提示词
+     */
+    String buildFull(PatientParameters patient, RiskEvaluation evaluation, List<GuidelineRetriever.Reference> references) {
+        StringBuilder prompt = new StringBuilder();
+        
+        prompt.append("作为ECMO领域的国际顶级专家，请基于ELSO指南、中国ECMO专家共识等权威标准，对以下患者进行全面的ECMO适应症评估。\n\n");
+        
+        prompt.append("【患者临床资料】\n");
+        prompt.append("患者ID: ").append(patient.getPatientId()).append("\n");
+        prompt.append("年龄: ").append(patient.getAge() != null ? patient.getAge() + "岁" : "未提供").append("\n");
+        prompt.append("性别: ").append(patient.getGender() != null ? patient.getGender() : "未提供").append("\n");
+        
+        prompt.append("\n【生命体征监测】\n");
+        if (patient.getHeartRate() != null) prompt.append("心率: ").append(patient.getHeartRate()).append("次/分\n");
+        if (patient.getSystolicBP() != null && patient.getDiastolicBP() != null) {
+            prompt.append("血压: ").append(patient.getSystolicBP()).append("/").append(patient.getDiastolicBP()).append("mmHg\n");
+        }
+        if (patient.getOxygenSaturation() != null) prompt.append("血氧饱和度: ").append(patient.getOxygenSaturation()).append("%\n");
+        if (patient.getRespiratoryRate() != null) prompt.append("呼吸频率: ").append(patient.getRespiratoryRate()).append("次/分\n");
+        
+        prompt.append("\n【动脉血气分析】\n");
+        if (patient.getpH() != null) prompt.append("pH值: ").append(patient.getpH()).append("\n");
+        if (patient.getPaO2() != null) prompt.append("PaO2: ").append(patient.getPaO2()).append("mmHg\n");
+        if (patient.getPaCO2() != null) prompt.append("PaCO2: ").append(patient.getPaCO2()).append("mmHg\n");
+        if (patient.getpO2FiO2Ratio() != null) prompt.append("P/F比值(氧合指数): ").append(patient.getpO2FiO2Ratio()).append("\n");
+        if (patient.getLactate() != null) prompt.append("血乳酸: ").append(patient.getLactate()).append("mmol/L\n");
+        if (patient.getBicarbonate() != null) prompt.append("碳酸氢根: ").append(patient.getBicarbonate()).append("mmol/L\n");
+        
+        prompt.append("\n【心肺功能评估】\n");
+        if (patient.getEjectionFraction() != null) prompt.append("左室射血分数(LVEF): ").append(patient.getEjectionFraction()).append("%\n");
+        if (patient.getCardiacIndex() != null) prompt.append("心脏指数: ").append(patient.getCardiacIndex()).append("\n");
+        
+        prompt.append("\n【疾病诊断及病程】\n");
+        if (patient.getPrimaryDiagnosis() != null) prompt.append("主要诊断: ").append(patient.getPrimaryDiagnosis()).append("\n");
+        if (patient.getSecondaryDiagnosis() != null) prompt.append("次要诊断: ").append(patient.getSecondaryDiagnosis()).append("\n");
+        if (patient.getIllnessDuration() != null) prompt.append("病程时间: ").append(patient.getIllnessDuration()).append("天\n");
+        if (patient.getComorbidities() != null) prompt.append("合并疾病: ").append(patient.getComorbidities()).append("\n");
+        if (patient.getCurrentTreatment() != null) prompt.append("当前治疗: ").append(patient.getCurrentTreatment()).append("\n");
+        
+        prompt.append("\n【实验室检查】\n");
+        if (patient.getHemoglobin() != null) prompt.append("血红蛋白: ").append(patient.getHemoglobin()).append("g/L\n");
+        if (patient.getPlateletCount() != null) prompt.append("血小板: ").append(patient.getPlateletCount()).append("×10⁹/L\n");
+        if (patient.getCreatinine() != null) prompt.append("肌酐: ").append(patient.getCreatinine()).append("μmol/L\n");
+        if (patient.getBilirubin() != null) prompt.append("胆红素: ").append(patient.getBilirubin()).append("μmol/L\n");
+        
+        prompt.append("\n【系统风险评分】\n");
+        prompt.append("ECMO实施推荐指数: ").append(String.format("%.1f", evaluation.getScore())).append("/100分\n");
+        prompt.append("风险等级: ").append(evaluation.getPromptLabel()).append("\n");
+
+        if (!references.isEmpty()) {
+            prompt.append("\n【相关指南摘录】\n");
+            prompt.append("以下摘自ECMO知识库，评估时请参考，并在诊断依据中注明引用的编号：\n");
+            appendReferences(prompt, references, ": ");
+        }
+
+        if (outputCodec.isEnabled()) {
+            prompt.append("\n【输出要求】\n").append(outputCodec.instruction());
+            return prompt.toString();
+        }
+        
+        prompt.append("\n【评估任务要求】\n");
+        prompt.append("请作为ECMO专家，结合患者的临床资料和系统评分，提供专业的ECMO适应症评估。\n");
+        prompt.append("必须严格按照以下JSON格式返回详细的评估结果，不得省略任何字段：\n\n");
+        
+        prompt.append("```json\n");
+        prompt.append("{\n");
+        prompt.append("  \"canUseECMO\": true,\n");
+        prompt.append("  \"diagnosis\": \"详细的诊断分析，包括患者当前病情严重程度、心肺功能状态、预后评估等，至少100字\",\n");
+        prompt.append("  \"evidence\": \"具体的诊断依据，包括符合的适应症条件、关键临床指标分析、相关指南标准等，至少80字\",\n");
+        prompt.append("  \"confidence\": 0.85,\n");
+        prompt.append("  \"supportReasons\": [\n");
+        prompt.append("    \"支持使用ECMO的具体理由1 - 详细说明\",\n");
+        prompt.append("    \"支持使用ECMO的具体理由2 - 详细说明\",\n");
+        prompt.append("    \"支持使用ECMO的具体理由3 - 详细说明\"\n");
+        prompt.append("  ],\n");
+        prompt.append("  \"opposeReasons\": [\n");
+        prompt.append("    \"需要注意的风险因素1 - 详细说明\",\n");
+        prompt.append("    \"需要注意的风险因素2 - 详细说明\"\n");
+        prompt.append("  ],\n");
+        prompt.append("  \"finalRecommendation\": \"推荐使用/谨慎评估/不推荐使用\",\n");
+        prompt.append("  \"recommendations\": [\n");
+        prompt.append("    \"具体临床建议1 - 详细的操作指导\",\n");
+        prompt.append("    \"具体临床建议2 - 详细的监测要求\",\n");
+        prompt.append("    \"具体临床建议3 - 详细的护理要点\"\n");
+        prompt.append("  ],\n");
+        prompt.append("  \"contraindications\": \"详细的禁忌症分析，包括绝对禁忌症和相对禁忌症\",\n");
+        prompt.append("  \"precautions\": \"详细的注意事项和风险防控措施\"\n");
+        prompt.append("}\n");
+        prompt.append("```\n");
+        
+        prompt.append("\n【重要提醒】\n");
+        prompt.append("1. 所有文字描述必须详细、专业、具有临床指导价值\n");
+        prompt.append("2. 支持理由和反对理由都必须基于具体的临床证据\n");
+        prompt.append("3. 建议措施要具体可操作，符合临床实际\n");
+        prompt.append("4. 必须严格按照JSON格式输出，不要添加其他解释文字\n");
+        
+        return prompt.toString();
+    }
+
+    /**
+     * 精简提示词：固定前缀 + 有值的患者资料
+     */
+    String buildCompact(PatientParameters patient, RiskEvaluation evaluation, List<GuidelineRetriever.Reference> references) {
+        StringBuilder prompt = new StringBuilder(compactPreamble.length() + 512);
+        prompt.append(compactPreamble);
+
+        new Section(prompt, "【患者】")
+                .field("ID:", patient.getPatientId(), "")
+                .field("年龄:", patient.getAge(), "岁")
+                .field("性别:", patient.getGender(), "")
+                .end();
+
+        Section vitals = new Section(prompt, "【生命体征】")
+                .field("心率", patient.getHeartRate(), "次/分");
+        if (patient.getSystolicBP() != null && patient.getDiastolicBP() != null) {
+            vitals.field("血压", patient.getSystolicBP() + "/" + patient.getDiastolicBP(), "mmHg");
+        }
+        vitals.field("SpO2 ", patient.getOxygenSaturation(), "%")
+                .field("呼吸", patient.getRespiratoryRate(), "次/分")
+                .end();
+
+        new Section(prompt, "【血气】")
+                .field("pH ", patient.getpH(), "")
+                .field("PaO2 ", patient.getPaO2(), "mmHg")
+                .field("PaCO2 ", patient.getPaCO2(), "mmHg")
+                .field("P/F ", patient.getpO2FiO2Ratio(), "")
+                .field("乳酸", patient.getLactate(), "mmol/L")
+                .field("HCO3 ", patient.getBicarbonate(), "mmol/L")
+                .end();
+
+        new Section(prompt, "【心功能】")
+                .field("LVEF ", patient.getEjectionFraction(), "%")
+                .field("心脏指数", patient.getCardiacIndex(), "")
+                .end();
+
+        new Section(prompt, "【诊断与病程】")
+                .field("主要诊断:", patient.getPrimaryDiagnosis(), "")
+                .field("次要诊断:", patient.getSecondaryDiagnosis(), "")
+                .field("病程", patient.getIllnessDuration(), "天")
+                .field("合并症:", patient.getComorbidities(), "")
+                .field("当前治疗:", patient.getCurrentTreatment(), "")
+                .end();
+
+        new Section(prompt, "【检验】")
+                .field("Hb ", patient.getHemoglobin(), "g/L")
+                .field("PLT ", patient.getPlateletCount(), "×10⁹/L")
+                .field("Cr ", patient.getCreatinine(), "μmol/L")
+                .field("TBil ", patient.getBilirubin(), "μmol/L")
+                .end();
+
+        prompt.append("【系统评分】推荐指数").append(String.format("%.1f", evaluation.getScore()))
+                .append("/100；风险等级:").append(evaluation.getPromptLabel()).append('\n');
+        if (!references.isEmpty()) {
+            prompt.append("【指南摘录】参考下列知识，依据中注明编号\n");
+            appendReferences(prompt, references, ":");
+        }
+        return prompt.toString();
+    }
+
+    private static void appendReferences(StringBuilder prompt, List<GuidelineRetriever.Reference> references, String separator) {
+        for (int i = 0; i < references.size(); i++) {
+            GuidelineRetriever.Reference reference = references.get(i);
+            prompt.append('[').append(i + 1).append("] ").append(reference.title()).append(separator)
+                    .append(reference.text()).append('\n');
+        }
+    }
+
+    /**
+     * 提示词token统计，compact模式下包含相对完整提示词的节省量；
+     * 统计项在首次请求前即存在（无对比数据时为0），保证注册为指标的gauge完整
+     */
+    public Map<String, Object> stats() {
+        long count = requests.sum();
+        long tokens = promptTokens.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode.name().toLowerCase(Locale.ROOT));
+        stats.put("requests", count);
+        stats.put("avgPromptTokens", count == 0 ? 0.0 : (double) tokens / count);
+        stats.put("outputMode", outputCodec.getMode().name().toLowerCase(Locale.ROOT));
+        stats.put("prefixTokens", mode == Mode.COMPACT ? TokenEstimator.estimate(compactPreamble) : 0);
+        long compared = comparedRequests.sum();
+        double avgBaseline = compared == 0 ? 0.0 : (double) baselineTokens.sum() / compared;
+        double avgPrompt = count == 0 ? 0.0 : (double) tokens / count;
+        stats.put("avgFullPromptTokens", avgBaseline);
+        stats.put("avgTokensSaved", compared == 0 ? 0.0 : avgBaseline - avgPrompt);
+        stats.put("reductionRate", avgBaseline == 0 ? 0.0 : 1 - avgPrompt / avgBaseline);
+        return stats;
+    }
+
+    /**
+     * 章节在写入第一个有值字段时才输出标题，全部为空时整个章节省略
+     */
+    private static final class Section {
+
+        private final StringBuilder out;
+        private final String header;
+        private boolean opened;
+
+        Section(StringBuilder out, String header) {
+            this.out = out;
+            this.header = header;
+        }
+
+        Section field(String label, Object value, String unit) {
+            if (value == null) {
+                return this;
+            }
+            if (opened) {
+                out.append('；');
+            } else {
+                out.append(header);
+                opened = true;
+            }
+            out.append(label).append(value).append(unit);
+            return this;
+        }
+
+        void end() {
+            if (opened) {
+                out.append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * AI评估响应解析器
+ * 一次Jackson解析得到结构化结果，能容忍Markdown代码块、前后说明文字、字符串内的换行、尾随逗号等常见输出问题；
+ * 输出被截断时补全未闭合的字符串和括号后再解析一次。
+ */
+@Component
+public class AssessmentResponseParser {
+
+    private final ObjectReader reader;
+
+    public AssessmentResponseParser() {
+        JsonMapper mapper = JsonMapper.builder()
+                .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+                .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+                .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES)
+                .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+                .enable(JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS)
+                .enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        this.reader = mapper.readerFor(AIAssessmentResponse.class);
+    }
+
+    /**
+     * 解析AI响应
+     *
+     * @return 结构化结果；响应中不含可解析的JSON对象时返回null
+     */
+    public AIAssessmentResponse parse(String aiResponse) {
+        if (aiResponse == null) {
+            return null;
+        }
+        int start = aiResponse.indexOf('{');
+        if (start < 0) {
+            return null;
+        }
+        int end = aiResponse.lastIndexOf('}');
+
+        // 正常情况：截取第一个'{'到最后一个'}'，跳过代码块标记和说明文字
+        if (end > start) {
+            try {
+                return reader.readValue(aiResponse.substring(start, end + 1));
+            } catch (JsonProcessingException e) {
+                // 继续尝试修复
+            }
+        }
+
+        // 输出被截断或结构不完整：补全后重试
+        try {
+            return reader.readValue(repair(aiResponse, start));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从start处扫描JSON，在第一个完整对象处截断，或为未闭合的字符串、数组、对象补全结尾
+     */
+    static String repair(String text, int start) {
+        StringBuilder json = new StringBuilder(text.length() + 8);
+        Deque<Character> open = new ArrayDeque<>();
+        boolean inString = false;
+        boolean escaped = false;
+        char quote = '"';
+
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            json.append(c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == quote) {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"', '\'' -> {
+                    inString = true;
+                    quote = c;
+                }
+                case '{' -> open.push('}');
+                case '[' -> open.push(']');
+                case '}', ']' -> {
+                    if (!open.isEmpty()) {
+                        open.pop();
+                    }
+                    if (open.isEmpty()) {
+                        return json.toString();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        if (escaped) {
+            json.setLength(json.length() - 1);
+        }
+        if (inString) {
+            json.append(quote);
+        }
+        // 去掉结尾悬空的逗号或冒号
+        int last = json.length() - 1;
+        while (last >= 0 && (Character.isWhitespace(json.charAt(last)) || json.charAt(last) == ',' || json.charAt(last) == ':')) {
+            last--;
+        }
+        json.setLength(last + 1);
+        // 对象中只剩一个键名时补空值
+        if (!open.isEmpty() && open.peek() == '}' && json.charAt(json.length() - 1) == '"'
+                && endsWithDanglingKey(json)) {
+            json.append(":null");
+        }
+        while (!open.isEmpty()) {
+            json.append(open.pop());
+        }
+        return json.toString();
+    }
+
+    /**
+     * 判断结尾的字符串是否为缺少值的键名（前一个非空字符为'{'或','）
+     */
+    private static boolean endsWithDanglingKey(StringBuilder json) {
+        int i = json.length() - 2;
+        while (i >= 0 && json.charAt(i) != '"') {
+            i--;
+        }
+        i--;
+        while (i >= 0 && Character.isWhitespace(json.charAt(i))) {
+            i--;
+        }
+        return i >= 0 && (json.charAt(i) == '{' || json.charAt(i) == ',');
+    }
+}
@@ -0,0 +1,141 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 相同评估请求合并（single-flight）
+ * 同一评估键同时只执行一次评估，并发到达的相同请求等待并共享该结果。
+ * 只登记进行中的评估，完成即移除，与结果缓存相互独立，关闭缓存时同样生效。
+ */
+@Component
+public class AssessmentSingleFlight {
+
+    private final boolean enabled;
+
+    private final ConcurrentHashMap<String, CompletableFuture<ECMOAssessment>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+
+    public AssessmentSingleFlight(@Value("${ecmo.single-flight.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 加入评估：无相同评估进行中时成为执行者并登记，否则成为等待者
+     */
+    public Flight join(String key) {
+        CompletableFuture<ECMOAssessment> mine = new CompletableFuture<>();
+        if (!enabled) {
+            return new Flight(null, mine, true);
+        }
+        CompletableFuture<ECMOAssessment> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return new Flight(key, existing, false);
+        }
+        leaders.increment();
+        return new Flight(key, mine, true);
+    }
+
+    /**
+     * 同步执行评估，相同评估进行中时等待其结果
+     * 执行者中途放弃时等待者自行评估
+     */
+    public ECMOAssessment execute(String key, Supplier<ECMOAssessment> assessment) {
+        Flight flight = join(key);
+        if (!flight.isLeader()) {
+            try {
+                return flight.result().join();
+            } catch (CompletionException | CancellationException e) {
+                return assessment.get();
+            }
+        }
+        try {
+            ECMOAssessment result = assessment.get();
+            flight.complete(result);
+            return result;
+        } finally {
+            flight.abandon();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("inFlight", inFlight.size());
+        stats.put("leaders", leaders.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("abandoned", abandoned.sum());
+        return stats;
+    }
+
+    /**
+     * 一次加入的评估：执行者负责complete或abandon，等待者通过result获取结果副本
+     */
+    public final class Flight {
+
+        private final String key;
+        private final CompletableFuture<ECMOAssessment> future;
+        private final boolean leader;
+
+        private Flight(String key, CompletableFuture<ECMOAssessment> future, boolean leader) {
+            this.key = key;
+            this.future = future;
+            this.leader = leader;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * 等待者获取结果，每个等待者得到独立副本
+         */
+        public CompletableFuture<ECMOAssessment> result() {
+            return future.thenApply(AssessmentCache::copyOf);
+        }
+
+        /**
+         * 执行者发布结果；保存副本，执行者后续修改返回对象不影响等待者
+         */
+        public void complete(ECMOAssessment assessment) {
+            if (!leader) {
+                return;
+            }
+            release();
+            future.complete(AssessmentCache.copyOf(assessment));
+        }
+
+        /**
+         * 执行者未发布结果即结束（异常或取消）时通知等待者，已完成时无操作
+         */
+        public void abandon() {
+            if (!leader || future.isDone()) {
+                return;
+            }
+            release();
+            if (future.completeExceptionally(new CancellationException("评估已取消"))) {
+                abandoned.increment();
+            }
+        }
+
+        private void release() {
+            if (key != null) {
+                inFlight.remove(key, future);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * ECMO评估阶段及对应进度
+ */
+@Getter
+@AllArgsConstructor
+public enum AssessmentStage {
+
+    QUEUED(0, "排队中"),
+    SCORING(10, "计算风险评分"),
+    PROMPTING(20, "构建评估提示词"),
+    LLM_CALL(30, "AI专家评估中"),
+    PARSING(90, "解析评估结果"),
+    COMPLETED(100, "评估完成"),
+    FAILED(100, "评估失败");
+
+    private final int progress;
+    private final String description;
+}
@@ -0,0 +1,235 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import com.fox.alibabadeepseekdemo.repository.ECMOAssessmentRepository;
+import lombok.Data;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 评估结果存储
+ * 最近的评估保存在有界LRU中，同时经 {@link AssessmentWriteBehind} 批量写入ecmo_assessments表，
+ * 按评估ID读取时依次查询LRU、尚未写库的结果和数据库，任一节点都能读取其他节点产生的评估。
+ * 评估结果中的非持久化字段以JSON快照保存在result_json列，读库时还原。
+ */
+@Component
+public class AssessmentStore {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ECMOAssessmentRepository repository;
+    private final AssessmentWriteBehind writeBehind;
+    private final int maxSize;
+
+    private final LinkedHashMap<String, ECMOAssessment> recent;
+    private final Map<String, ECMOAssessment> pendingWrites = new ConcurrentHashMap<>();
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public AssessmentStore(ECMOAssessmentRepository repository,
+                           AssessmentWriteBehind writeBehind,
+                           @Value("${ecmo.store.max-size:2000}") int maxSize) {
+        this.repository = repository;
+        this.writeBehind = writeBehind;
+        this.maxSize = maxSize;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ECMOAssessment> eldest) {
+                if (size() > AssessmentStore.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 为评估结果生成评估ID并保存，userId非空时同时写入该用户的评估历史
+     */
+    public ECMOAssessment register(ECMOAssessment assessment, PatientParameters patient, Long userId) {
+        assessment.setUserId(userId);
+        assessment.setPatientName(patient != null ? patient.getPatientName() : null);
+        assessment.setAssessmentId("ECMO_ASSESS_" + System.currentTimeMillis() + "_"
+                + UUID.randomUUID().toString().substring(0, 8));
+        save(assessment, patient);
+        return assessment;
+    }
+
+    /**
+     * 保存已分配评估ID的评估结果，立即可读，数据库写入在后台完成
+     */
+    public void save(ECMOAssessment assessment) {
+        save(assessment, null);
+    }
+
+    /**
+     * 保存评估结果，patient非空时同时写入评估所依据的患者临床参数
+     */
+    public void save(ECMOAssessment assessment, PatientParameters patient) {
+        String assessmentId = assessment.getAssessmentId();
+        synchronized (this) {
+            recent.put(assessmentId, assessment);
+        }
+        ECMOAssessment row = toRow(assessment, patient);
+        pendingWrites.put(assessmentId, assessment);
+        writeBehind.submit(row).whenComplete((ignored, e) -> pendingWrites.remove(assessmentId));
+    }
+
+    /**
+     * 按评估ID查询，不存在返回null
+     */
+    public ECMOAssessment find(String assessmentId) {
+        synchronized (this) {
+            ECMOAssessment assessment = recent.get(assessmentId);
+            if (assessment != null) {
+                memoryHits.increment();
+                return assessment;
+            }
+        }
+        ECMOAssessment assessment = pendingWrites.get(assessmentId);
+        if (assessment == null) {
+            assessment = repository.findByAssessmentId(assessmentId).map(AssessmentStore::fromRow).orElse(null);
+        }
+        if (assessment == null) {
+            misses.increment();
+            return null;
+        }
+        storeHits.increment();
+        synchronized (this) {
+            recent.put(assessmentId, assessment);
+        }
+        return assessment;
+    }
+
+    /**
+     * 复制为待写库的实体，评估对象本身仍供读取，不受写库时回填的主键和时间戳影响；
+     * patient非空时写入基本信息、生命体征、血气分析等临床参数，接口未提供的参数保持为空
+     */
+    static ECMOAssessment toRow(ECMOAssessment assessment, PatientParameters patient) {
+        ECMOAssessment row = new ECMOAssessment();
+        BeanUtils.copyProperties(assessment, row, "id", "user");
+        if (patient != null) {
+            copyClinicalFields(patient, row);
+        }
+        row.setEcmoIndication(assessment.getCanUseECMO());
+        row.setDiagnosisConclusion(assessment.getDiagnosis());
+        row.setRecommendation(assessment.getFinalRecommendation());
+        try {
+            row.setResultJson(MAPPER.writeValueAsString(StoredResult.of(assessment)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("评估结果序列化失败: " + assessment.getAssessmentId(), e);
+        }
+        return row;
+    }
+
+    /**
+     * 患者参数与评估记录列的字段名和类型不同（如systolicBP对应systolic_bp、paCO2对应pco2），逐项转换
+     */
+    private static void copyClinicalFields(PatientParameters patient, ECMOAssessment row) {
+        row.setAge(patient.getAge());
+        row.setGender(truncate(patient.getGender(), 10));
+        row.setWeight(decimal(patient.getWeight(), 2));
+        row.setHeight(decimal(patient.getHeight(), 2));
+        row.setHeartRate(patient.getHeartRate());
+        row.setSystolicBp(patient.getSystolicBP());
+        row.setDiastolicBp(patient.getDiastolicBP());
+        row.setTemperature(decimal(patient.getTemperature(), 2));
+        row.setRespiratoryRate(patient.getRespiratoryRate());
+        row.setOxygenSaturation(decimal(patient.getOxygenSaturation(), 2));
+        row.setPh(decimal(patient.getpH(), 3));
+        row.setPco2(decimal(patient.getPaCO2(), 2));
+        row.setPo2(decimal(patient.getPaO2(), 2));
+        row.setHco3(decimal(patient.getBicarbonate(), 2));
+        row.setLactate(decimal(patient.getLactate(), 2));
+        row.setEjectionFraction(decimal(patient.getEjectionFraction(), 2));
+        row.setPrimaryDiagnosis(truncate(patient.getPrimaryDiagnosis(), 500));
+    }
+
+    private static String truncate(String value, int length) {
+        return value != null && value.length() > length ? value.substring(0, length) : value;
+    }
+
+    private static BigDecimal decimal(Double value, int scale) {
+        return value == null ? null : BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 从数据库记录还原完整评估结果
+     */
+    static ECMOAssessment fromRow(ECMOAssessment row) {
+        ECMOAssessment assessment = new ECMOAssessment();
+        BeanUtils.copyProperties(row, assessment, "user", "resultJson");
+        if (row.getResultJson() != null) {
+            try {
+                MAPPER.readValue(row.getResultJson(), StoredResult.class).applyTo(assessment);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("评估结果解析失败: " + row.getAssessmentId(), e);
+            }
+        }
+        return assessment;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", recent.size());
+        stats.put("maxSize", maxSize);
+        stats.put("memoryHits", memoryHits.sum());
+        stats.put("storeHits", storeHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("pendingWrites", pendingWrites.size());
+        stats.put("writeBehind", writeBehind.stats());
+        return stats;
+    }
+
+    /**
+     * ECMOAssessment中非持久化字段的快照
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class StoredResult {
+        private String patientName;
+        private Boolean canUseECMO;
+        private String diagnosis;
+        private String evidence;
+        private Double confidence;
+        private String finalRecommendation;
+        private String contraindications;
+        private String precautions;
+        private String riskColor;
+        private List<String> supportReasons;
+        private List<String> opposeReasons;
+        private List<String> recommendations;
+        private List<String> keyRiskFactors;
+        private Map<String, String> guidelineReferences;
+        private Map<String, Object> detailedScores;
+
+        static StoredResult of(ECMOAssessment assessment) {
+            StoredResult result = new StoredResult();
+            BeanUtils.copyProperties(assessment, result);
+            return result;
+        }
+
+        void applyTo(ECMOAssessment assessment) {
+            BeanUtils.copyProperties(this, assessment);
+        }
+    }
+}
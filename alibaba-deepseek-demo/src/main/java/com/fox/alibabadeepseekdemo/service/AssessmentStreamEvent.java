@@ -0,0 +1,40 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 流式评估事件
+ * risk: 规则评分结果（立即推送）
+ * delta: AI分析内容片段
+ * result: 完整解析后的评估结果
+ */
+@Getter
+@AllArgsConstructor
+public class AssessmentStreamEvent {
+
+    public static final String RISK = "risk";
+    public static final String DELTA = "delta";
+    public static final String RESULT = "result";
+
+    private final String type;
+
+    // 文本片段，仅delta事件有值
+    private final String content;
+
+    // 评估结果，risk事件为初步评分结果，result事件为最终结果
+    private final ECMOAssessment assessment;
+
+    public static AssessmentStreamEvent risk(ECMOAssessment preliminary) {
+        return new AssessmentStreamEvent(RISK, null, preliminary);
+    }
+
+    public static AssessmentStreamEvent delta(String content) {
+        return new AssessmentStreamEvent(DELTA, content, null);
+    }
+
+    public static AssessmentStreamEvent result(ECMOAssessment assessment) {
+        return new AssessmentStreamEvent(RESULT, null, assessment);
+    }
+}
@@ -0,0 +1,347 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.AssessmentHistory;
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.repository.ECMOAssessmentRepository;
+import com.fox.alibabadeepseekdemo.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 评估结果批量写库
+ * 待写入的评估进入有界队列，由单个写库线程攒批：达到batch-size或距批次首条超过flush-interval即写入。
+ * 一批评估及其历史记录（已知用户时）在同一事务中saveAll，配合序列主键和hibernate.jdbc.batch_size合并为JDBC批量插入。
+ * 写入前校验用户ID，不存在的用户ID置空并计入unknownUsers，评估照常保存、仅不写历史记录。
+ * 整批失败时逐条重试，单条无效数据不影响同批其他记录。
+ * 事务提交后将历史记录计入管理端统计并追加到评估历史检索索引。
+ * 队列满时由提交线程直接写入；应用关闭时在Web服务停止之后、数据源关闭之前写完队列中的全部记录。
+ * 入队与停止互斥：停止后提交的记录由提交线程直接写入，不会滞留在已无人处理的队列中。
+ */
+@Component
+public class AssessmentWriteBehind implements SmartLifecycle {
+
+    /**
+     * 在Web服务停止（DEFAULT_PHASE - 2048）之后停止，此时不再有新请求提交评估
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final ECMOAssessmentRepository assessmentRepository;
+    private final AssessmentHistoryRepository historyRepository;
+    private final UserRepository userRepository;
+    private final TransactionOperations transactions;
+    private final AdminStatsCounters statsCounters;
+    private final HistorySearchIndex historySearchIndex;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<PendingWrite> queue;
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder historyWritten = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder callerWrites = new LongAdder();
+    private final LongAdder batchRetries = new LongAdder();
+    private final LongAdder unknownUsers = new LongAdder();
+    private volatile String lastError;
+
+    private volatile boolean running;
+    private Thread flusher;
+    /**
+     * 提交线程入队时持读锁，停止时持写锁切换running，保证停止后最后一次清空队列之后不再有记录入队
+     */
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+    public AssessmentWriteBehind(ECMOAssessmentRepository assessmentRepository,
+                                 AssessmentHistoryRepository historyRepository,
+                                 UserRepository userRepository,
+                                 TransactionOperations transactions,
+                                 AdminStatsCounters statsCounters,
+                                 HistorySearchIndex historySearchIndex,
+                                 MeterRegistry registry,
+                                 @Value("${ecmo.store.write-behind.batch-size:100}") int batchSize,
+                                 @Value("${ecmo.store.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                 @Value("${ecmo.store.write-behind.queue-capacity:10000}") int queueCapacity) {
+        this.assessmentRepository = assessmentRepository;
+        this.historyRepository = historyRepository;
+        this.userRepository = userRepository;
+        this.transactions = transactions;
+        this.statsCounters = statsCounters;
+        this.historySearchIndex = historySearchIndex;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushTimer = Timer.builder("ecmo.assessment.store.flush")
+                .description("评估结果批量写库耗时")
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("ecmo.assessment.store.batch.size")
+                .description("每批写库的评估数")
+                .register(registry);
+        Gauge.builder("ecmo.assessment.store.queue.depth", queue, BlockingQueue::size)
+                .description("等待写库的评估数")
+                .register(registry);
+    }
+
+    /**
+     * 提交一条待写入的评估记录，写库完成（或最终失败）后返回的future完成
+     */
+    public CompletableFuture<Void> submit(ECMOAssessment row) {
+        PendingWrite write = new PendingWrite(row, new CompletableFuture<>());
+        boolean queued;
+        runningLock.readLock().lock();
+        try {
+            queued = running && queue.offer(write);
+        } finally {
+            runningLock.readLock().unlock();
+        }
+        if (!queued) {
+            callerWrites.increment();
+            flush(List.of(write));
+        }
+        return write.done;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "ecmo-store-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 停止写库线程（当前批次写完后退出）并同步写完队列中剩余的记录
+     */
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainAndFlush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void runFlusher() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingWrite first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        flush(batch);
+        drainAndFlush();
+    }
+
+    private void drainAndFlush() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            // 整批回滚，逐条重试以隔离无效记录
+            batchRetries.increment();
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            for (PendingWrite write : batch) {
+                resetIds(write.row);
+                try {
+                    write(List.of(write));
+                } catch (RuntimeException single) {
+                    failed.increment();
+                    lastError = single.getClass().getSimpleName() + ": " + single.getMessage();
+                    write.done.completeExceptionally(single);
+                }
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizes.record(batch.size());
+            for (PendingWrite write : batch) {
+                write.done.complete(null);
+            }
+        }
+    }
+
+    private void write(List<PendingWrite> batch) {
+        List<AssessmentHistory> histories = transactions.execute(status -> {
+            List<ECMOAssessment> rows = new ArrayList<>(batch.size());
+            for (PendingWrite write : batch) {
+                rows.add(write.row);
+            }
+            clearUnknownUsers(rows);
+            assessmentRepository.saveAll(rows);
+
+            List<AssessmentHistory> historyRows = new ArrayList<>();
+            for (ECMOAssessment row : rows) {
+                if (row.getUserId() != null) {
+                    historyRows.add(historyOf(row));
+                }
+            }
+            if (!historyRows.isEmpty()) {
+                historyRepository.saveAll(historyRows);
+            }
+            return historyRows;
+        });
+        // 事务提交后计数，回滚的批次不计入
+        written.add(batch.size());
+        if (histories != null) {
+            historyWritten.add(histories.size());
+            for (AssessmentHistory history : histories) {
+                statsCounters.recordAssessment(history.getAssessmentDate());
+                historySearchIndex.add(history);
+            }
+        }
+    }
+
+    /**
+     * 不存在的用户ID（如请求头中伪造或已删除的用户）会使外键约束失败，置空后评估仍可保存
+     */
+    private void clearUnknownUsers(List<ECMOAssessment> rows) {
+        Set<Long> userIds = new HashSet<>();
+        for (ECMOAssessment row : rows) {
+            if (row.getUserId() != null) {
+                userIds.add(row.getUserId());
+            }
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Set<Long> unknown = new HashSet<>(userIds);
+        unknown.removeAll(userRepository.findExistingIds(userIds));
+        if (unknown.isEmpty()) {
+            return;
+        }
+        for (ECMOAssessment row : rows) {
+            if (unknown.contains(row.getUserId())) {
+                row.setUserId(null);
+                unknownUsers.increment();
+            }
+        }
+        lastError = "未知用户ID: " + unknown + "，评估已保存，未写入评估历史";
+    }
+
+    /**
+     * 事务回滚后实体上已分配的主键不再有效，重试前清除
+     */
+    private static void resetIds(ECMOAssessment row) {
+        row.setId(null);
+    }
+
+    /**
+     * 评估对应的用户历史记录
+     */
+    static AssessmentHistory historyOf(ECMOAssessment row) {
+        AssessmentHistory history = new AssessmentHistory();
+        history.setUserId(row.getUserId());
+        history.setAssessmentId(row.getId());
+        history.setPatientId(row.getPatientId());
+        history.setPatientName(row.getPatientName());
+        history.setAssessmentTitle(row.getAssessmentTitle());
+        history.setRiskLevel(row.getRiskLevel());
+        history.setRiskScore(row.getRiskScore());
+        String diagnosis = row.getDiagnosis();
+        history.setDiagnosisSummary(diagnosis != null && diagnosis.length() > 500 ? diagnosis.substring(0, 500) : diagnosis);
+        history.setAssessmentDate(row.getCreatedAt());
+        return history;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running);
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queue.size() + queue.remainingCapacity());
+        stats.put("batchSize", batchSize);
+        stats.put("flushIntervalMs", TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+        stats.put("flushes", flushTimer.count());
+        stats.put("avgFlushMs", Math.round(flushTimer.mean(TimeUnit.MILLISECONDS) * 100.0) / 100.0);
+        stats.put("maxFlushMs", Math.round(flushTimer.max(TimeUnit.MILLISECONDS) * 100.0) / 100.0);
+        stats.put("avgBatchSize", Math.round(batchSizes.mean() * 100.0) / 100.0);
+        stats.put("written", written.sum());
+        stats.put("historyWritten", historyWritten.sum());
+        stats.put("callerWrites", callerWrites.sum());
+        stats.put("batchRetries", batchRetries.sum());
+        stats.put("unknownUsers", unknownUsers.sum());
+        stats.put("failed", failed.sum());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    private record PendingWrite(ECMOAssessment row, CompletableFuture<Void> done) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 批量ECMO评估服务
+ * 各患者的评估并发执行，并发数受批量执行器限制；单例失败或超时返回错误评估结果，不影响其他患者。
+ * 超时的评估从执行器队列中取消或中断执行，不继续占用批量并发名额。
+ */
+@Service
+public class BatchAssessmentService {
+
+    private final ECMOExpertService ecmoExpertService;
+    private final ThreadPoolExecutor executor;
+    private final int maxBatchSize;
+    private final long timeoutMillis;
+
+    public BatchAssessmentService(ECMOExpertService ecmoExpertService,
+                                  @Qualifier("batchAssessmentExecutor") ThreadPoolExecutor executor,
+                                  @Value("${ecmo.batch.max-size:100}") int maxBatchSize,
+                                  @Value("${ecmo.batch.timeout:5m}") Duration timeout) {
+        this.ecmoExpertService = ecmoExpertService;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * 提交批量评估，返回与输入顺序一致的评估结果Future列表
+     */
+    public List<CompletableFuture<ECMOAssessment>> submitBatch(List<PatientParameters> patients) {
+        if (patients == null || patients.isEmpty()) {
+            throw new IllegalArgumentException("患者列表不能为空");
+        }
+        if (patients.size() > maxBatchSize) {
+            throw new IllegalArgumentException("单次批量评估最多支持" + maxBatchSize + "例患者");
+        }
+
+        List<CompletableFuture<ECMOAssessment>> futures = new ArrayList<>(patients.size());
+        for (PatientParameters patient : patients) {
+            futures.add(submit(patient));
+        }
+        return futures;
+    }
+
+    private CompletableFuture<ECMOAssessment> submit(PatientParameters patient) {
+        String patientId = patient.getPatientId();
+        try {
+            CompletableFuture<ECMOAssessment> result = new CompletableFuture<>();
+            Future<?> task = executor.submit(() -> {
+                try {
+                    result.complete(ecmoExpertService.assessPatientForECMO(patient));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            // 超时后取消仍在排队或执行中的评估，释放批量执行器名额
+            // 错误评估仅在失败或超时时生成，避免每例都计入一次错误降级
+            return result
+                    .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                    .whenComplete((assessment, e) -> {
+                        if (e != null) {
+                            task.cancel(true);
+                        }
+                    })
+                    .exceptionally(e -> ecmoExpertService.createErrorAssessment(patientId,
+                            isTimeout(e) ? "批量评估超时" : e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(
+                    ecmoExpertService.createErrorAssessment(patientId, "批量评估队列已满"));
+        }
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        return e instanceof TimeoutException || e.getCause() instanceof TimeoutException;
+    }
+}
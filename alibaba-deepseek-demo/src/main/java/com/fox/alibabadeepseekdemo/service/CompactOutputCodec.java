@@ -0,0 +1,161 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 紧凑输出格式
+ * 模型返回短键JSON，结论、支持理由、风险因素和临床建议只返回短语表中的代码，文字字段限制长度；
+ * 服务端按短语表展开为完整的评估字段，以减少模型输出的token数和生成时间。
+ * 短键由 {@link AIAssessmentResponse} 的别名直接解析，解析和截断修复逻辑与完整格式共用。
+ */
+@Component
+public class CompactOutputCodec {
+
+    public enum Mode { FULL, COMPACT }
+
+    private final Mode mode;
+    private final int maxTokens;
+    private final PhraseTable phrases;
+    private final String instruction;
+
+    public CompactOutputCodec(ResourceLoader resourceLoader,
+                              @Value("${ecmo.output.mode:full}") String mode,
+                              @Value("${ecmo.output.phrases-location:classpath:prompt/ecmo-output-phrases.json}") String phrasesLocation,
+                              @Value("${ecmo.output.compact-max-tokens:600}") int maxTokens) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.maxTokens = maxTokens;
+        this.phrases = load(resourceLoader, phrasesLocation);
+        this.instruction = buildInstruction(phrases);
+    }
+
+    public boolean isEnabled() {
+        return mode == Mode.COMPACT;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 紧凑格式下单次调用的最大输出token数
+     */
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public String getVersion() {
+        return phrases.getVersion();
+    }
+
+    public PhraseTable getPhrases() {
+        return phrases;
+    }
+
+    /**
+     * 提示词中的输出格式说明，内容只取决于短语表，每次调用逐字节相同
+     */
+    public String instruction() {
+        return instruction;
+    }
+
+    /**
+     * 将代码展开为短语表中的完整描述，不在表中的条目（模型自行填写的短语）原样保留
+     */
+    public AIAssessmentResponse expand(AIAssessmentResponse response) {
+        if (response == null) {
+            return null;
+        }
+        response.setFinalRecommendation(expand(response.getFinalRecommendation(), phrases.getFinalRecommendation()));
+        response.setSupportReasons(expand(response.getSupportReasons(), phrases.getSupportReasons()));
+        response.setOpposeReasons(expand(response.getOpposeReasons(), phrases.getOpposeReasons()));
+        response.setRecommendations(expand(response.getRecommendations(), phrases.getRecommendations()));
+        return response;
+    }
+
+    private static List<String> expand(List<String> codes, Map<String, String> table) {
+        if (codes == null) {
+            return null;
+        }
+        List<String> expanded = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            expanded.add(expand(code, table));
+        }
+        return expanded;
+    }
+
+    private static String expand(String code, Map<String, String> table) {
+        if (code == null) {
+            return null;
+        }
+        String phrase = table.get(code.trim().toUpperCase(Locale.ROOT));
+        return phrase != null ? phrase : code;
+    }
+
+    private static String buildInstruction(PhraseTable phrases) {
+        StringBuilder text = new StringBuilder(1024);
+        text.append("只输出一个紧凑JSON对象，不要输出其他文字，不要换行缩进：\n")
+                .append("{\"u\":是否适合ECMO(true/false),\"c\":置信度0-1,\"f\":结论代码,")
+                .append("\"d\":\"病情与预后分析，不超过80字\",\"e\":\"适应症依据与关键指标，不超过60字\",")
+                .append("\"s\":[支持理由代码],\"o\":[风险因素代码],\"a\":[临床建议代码],")
+                .append("\"x\":\"禁忌症，不超过30字\",\"p\":\"注意事项，不超过30字\"}\n");
+        appendTable(text, "结论", phrases.getFinalRecommendation());
+        appendTable(text, "支持理由", phrases.getSupportReasons());
+        appendTable(text, "风险因素", phrases.getOpposeReasons());
+        appendTable(text, "临床建议", phrases.getRecommendations());
+        text.append("代码表中没有合适项时可填写不超过20字的短语。\n");
+        return text.toString();
+    }
+
+    private static void appendTable(StringBuilder text, String name, Map<String, String> table) {
+        text.append(name).append("代码：");
+        boolean first = true;
+        for (Map.Entry<String, String> entry : table.entrySet()) {
+            if (!first) {
+                text.append('；');
+            }
+            text.append(entry.getKey()).append('=').append(entry.getValue());
+            first = false;
+        }
+        text.append('\n');
+    }
+
+    private static PhraseTable load(ResourceLoader resourceLoader, String location) {
+        Resource resource = resourceLoader.getResource(location);
+        try (InputStream in = resource.getInputStream()) {
+            PhraseTable table = new ObjectMapper().readValue(in, PhraseTable.class);
+            if (table.getFinalRecommendation().isEmpty()) {
+                throw new IllegalStateException("短语表缺少结论代码: " + location);
+            }
+            return table;
+        } catch (IOException e) {
+            throw new IllegalStateException("输出短语表加载失败: " + location + " - " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 短语表，对应 prompt/ecmo-output-phrases.json，代码按文件中的顺序列入提示词
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class PhraseTable {
+        private String version;
+        private Map<String, String> finalRecommendation = new LinkedHashMap<>();
+        private Map<String, String> supportReasons = new LinkedHashMap<>();
+        private Map<String, String> opposeReasons = new LinkedHashMap<>();
+        private Map<String, String> recommendations = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,299 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 编译后的风险评分规则
+ * 规则定义展开为按字段分组的基本类型数组，一次遍历即可得到总分、命中的扣分档位和各分项评分。
+ * 实例创建后不可变，可在多个线程间共享，规则重载时整体替换。
+ */
+public final class CompiledScoringRules {
+
+    /**
+     * 命中档位使用long位图记录，扣分档位总数上限为64
+     */
+    static final int MAX_TIERS = Long.SIZE;
+
+    private static final byte OP_GT = 0;
+    private static final byte OP_GE = 1;
+    private static final byte OP_LT = 2;
+    private static final byte OP_LE = 3;
+    private static final byte OP_EQ = 4;
+
+    private final String version;
+    private final Instant loadedAt;
+
+    private final double baseScore;
+    private final double minScore;
+    private final double maxScore;
+
+    // 风险等级，按minScore降序
+    private final double[] levelMin;
+    private final String[] levelName;
+    private final String[] levelColor;
+    private final String[] levelPrompt;
+    private final Boolean[] levelRecommend;
+
+    // 扣分项：第g组的档位为 [deductionStart[g], deductionStart[g + 1])
+    private final ScoringField[] deductionField;
+    private final int[] deductionStart;
+    private final byte[] tierOp;
+    private final double[] tierThreshold;
+    private final double[] tierPoints;
+    private final String[] tierLabel;
+    private final String[] tierFactor;
+    private final long keyFactorMask;
+
+    // 分项评分：第s项的区间为 [subScoreStart[s], subScoreStart[s + 1])
+    private final String[] subScoreName;
+    private final ScoringField[] subScoreField;
+    private final int[] subScoreMissing;
+    private final int[] subScoreDefault;
+    private final int[] subScoreStart;
+    private final byte[] bandOp;
+    private final double[] bandThreshold;
+    private final int[] bandScore;
+
+    private CompiledScoringRules(ScoringRuleDefinition definition) {
+        if (!StringUtils.hasText(definition.getVersion())) {
+            throw new IllegalArgumentException("评分规则缺少version");
+        }
+        if (definition.getLevels().isEmpty()) {
+            throw new IllegalArgumentException("评分规则缺少风险等级定义");
+        }
+        this.version = definition.getVersion();
+        this.loadedAt = Instant.now();
+        this.baseScore = definition.getBaseScore();
+        this.minScore = definition.getMinScore();
+        this.maxScore = definition.getMaxScore();
+
+        List<ScoringRuleDefinition.Level> levels = new ArrayList<>(definition.getLevels());
+        levels.sort(Comparator.comparingDouble(ScoringRuleDefinition.Level::getMinScore).reversed());
+        int levelCount = levels.size();
+        this.levelMin = new double[levelCount];
+        this.levelName = new String[levelCount];
+        this.levelColor = new String[levelCount];
+        this.levelPrompt = new String[levelCount];
+        this.levelRecommend = new Boolean[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            ScoringRuleDefinition.Level level = levels.get(i);
+            levelMin[i] = level.getMinScore();
+            levelName[i] = level.getLevel();
+            levelColor[i] = level.getColor();
+            levelPrompt[i] = StringUtils.hasText(level.getPromptLabel()) ? level.getPromptLabel() : level.getLevel();
+            levelRecommend[i] = level.getRecommend();
+        }
+
+        List<ScoringRuleDefinition.Deduction> deductions = definition.getDeductions();
+        int tierCount = 0;
+        for (ScoringRuleDefinition.Deduction deduction : deductions) {
+            tierCount += deduction.getTiers().size();
+        }
+        if (tierCount > MAX_TIERS) {
+            throw new IllegalArgumentException("扣分档位总数不能超过" + MAX_TIERS + "个，当前" + tierCount + "个");
+        }
+        this.deductionField = new ScoringField[deductions.size()];
+        this.deductionStart = new int[deductions.size() + 1];
+        this.tierOp = new byte[tierCount];
+        this.tierThreshold = new double[tierCount];
+        this.tierPoints = new double[tierCount];
+        this.tierLabel = new String[tierCount];
+        this.tierFactor = new String[tierCount];
+        long keyMask = 0L;
+        int t = 0;
+        for (int g = 0; g < deductions.size(); g++) {
+            ScoringRuleDefinition.Deduction deduction = deductions.get(g);
+            deductionField[g] = ScoringField.ofProperty(deduction.getField());
+            deductionStart[g] = t;
+            for (ScoringRuleDefinition.Tier tier : deduction.getTiers()) {
+                tierOp[t] = parseOp(tier.getOp());
+                tierThreshold[t] = tier.getThreshold();
+                tierPoints[t] = tier.getPoints();
+                tierLabel[t] = tier.getLabel();
+                tierFactor[t] = tier.getLabel() + "(-" + formatPoints(tier.getPoints()) + "分)";
+                if (tier.isKeyRiskFactor()) {
+                    keyMask |= 1L << t;
+                }
+                t++;
+            }
+        }
+        deductionStart[deductions.size()] = t;
+        this.keyFactorMask = keyMask;
+
+        List<ScoringRuleDefinition.SubScore> subScores = definition.getSubScores();
+        int bandCount = 0;
+        for (ScoringRuleDefinition.SubScore subScore : subScores) {
+            bandCount += subScore.getBands().size();
+        }
+        this.subScoreName = new String[subScores.size()];
+        this.subScoreField = new ScoringField[subScores.size()];
+        this.subScoreMissing = new int[subScores.size()];
+        this.subScoreDefault = new int[subScores.size()];
+        this.subScoreStart = new int[subScores.size() + 1];
+        this.bandOp = new byte[bandCount];
+        this.bandThreshold = new double[bandCount];
+        this.bandScore = new int[bandCount];
+        int b = 0;
+        for (int s = 0; s < subScores.size(); s++) {
+            ScoringRuleDefinition.SubScore subScore = subScores.get(s);
+            subScoreName[s] = subScore.getName();
+            subScoreField[s] = ScoringField.ofProperty(subScore.getField());
+            subScoreMissing[s] = subScore.getMissingScore();
+            subScoreDefault[s] = subScore.getDefaultScore();
+            subScoreStart[s] = b;
+            for (ScoringRuleDefinition.Band band : subScore.getBands()) {
+                bandOp[b] = parseOp(band.getOp());
+                bandThreshold[b] = band.getThreshold();
+                bandScore[b] = band.getScore();
+                b++;
+            }
+        }
+        subScoreStart[subScores.size()] = b;
+    }
+
+    /**
+     * 校验并编译规则定义，定义不合法时抛出IllegalArgumentException
+     */
+    public static CompiledScoringRules compile(ScoringRuleDefinition definition) {
+        return new CompiledScoringRules(definition);
+    }
+
+    /**
+     * 单次遍历计算总分、命中档位和各分项评分
+     */
+    public RiskEvaluation evaluate(PatientParameters patient) {
+        double score = baseScore;
+        long fired = 0L;
+        for (int g = 0; g < deductionField.length; g++) {
+            double value = deductionField[g].read(patient);
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            for (int t = deductionStart[g], end = deductionStart[g + 1]; t < end; t++) {
+                if (matches(tierOp[t], value, tierThreshold[t])) {
+                    score -= tierPoints[t];
+                    fired |= 1L << t;
+                    break;
+                }
+            }
+        }
+        score = Math.max(minScore, Math.min(maxScore, score));
+
+        int[] subScores = new int[subScoreField.length];
+        for (int s = 0; s < subScoreField.length; s++) {
+            double value = subScoreField[s].read(patient);
+            int result;
+            if (Double.isNaN(value)) {
+                result = subScoreMissing[s];
+            } else {
+                result = subScoreDefault[s];
+                for (int i = subScoreStart[s], end = subScoreStart[s + 1]; i < end; i++) {
+                    if (matches(bandOp[i], value, bandThreshold[i])) {
+                        result = bandScore[i];
+                        break;
+                    }
+                }
+            }
+            subScores[s] = result;
+        }
+        return new RiskEvaluation(this, score, fired, subScores);
+    }
+
+    private static boolean matches(byte op, double value, double threshold) {
+        switch (op) {
+            case OP_GT: return value > threshold;
+            case OP_GE: return value >= threshold;
+            case OP_LT: return value < threshold;
+            case OP_LE: return value <= threshold;
+            default: return value == threshold;
+        }
+    }
+
+    private static byte parseOp(String op) {
+        if (op == null) {
+            throw new IllegalArgumentException("评分规则缺少比较运算符");
+        }
+        switch (op.trim()) {
+            case ">": return OP_GT;
+            case ">=": return OP_GE;
+            case "<": return OP_LT;
+            case "<=": return OP_LE;
+            case "==": return OP_EQ;
+            default: throw new IllegalArgumentException("不支持的比较运算符: " + op);
+        }
+    }
+
+    private static String formatPoints(double points) {
+        return BigDecimal.valueOf(points).stripTrailingZeros().toPlainString();
+    }
+
+    int levelIndex(double score) {
+        for (int i = 0; i < levelMin.length; i++) {
+            if (score >= levelMin[i]) {
+                return i;
+            }
+        }
+        return levelMin.length - 1;
+    }
+
+    String levelName(int index) {
+        return levelName[index];
+    }
+
+    String levelColor(int index) {
+        return levelColor[index];
+    }
+
+    String levelPrompt(int index) {
+        return levelPrompt[index];
+    }
+
+    Boolean levelRecommend(int index) {
+        return levelRecommend[index];
+    }
+
+    /**
+     * 按定义顺序列出命中的档位，keyOnly为true时仅列出关键风险因素
+     */
+    List<String> firedLabels(long fired, boolean keyOnly) {
+        long mask = keyOnly ? fired & keyFactorMask : fired;
+        List<String> labels = new ArrayList<>(Long.bitCount(mask));
+        while (mask != 0) {
+            int t = Long.numberOfTrailingZeros(mask);
+            labels.add(keyOnly ? tierFactor[t] : tierLabel[t]);
+            mask &= mask - 1;
+        }
+        return labels;
+    }
+
+    String subScoreName(int index) {
+        return subScoreName[index];
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    public int getDeductionCount() {
+        return deductionField.length;
+    }
+
+    public int getTierCount() {
+        return tierOp.length;
+    }
+
+    public int getSubScoreCount() {
+        return subScoreField.length;
+    }
+}
@@ -3,10 +3,21 @@ package com.fox.alibabadeepseekdemo.service;
 import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
 import com.fox.alibabadeepseekdemo.entity.PatientParameters;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
 
 /**
  * ECMO诊疗专家服务
@@ -16,35 +27,143 @@ import java.util.*;
 @Service
 public class ECMOExpertService {
 
+    /**
+     * 提示词模板版本，修改提示词或解析逻辑时需同步递增，使旧的缓存结果失效
+     */
+    public static final String PROMPT_TEMPLATE_VERSION = "v2";
+
+    /**
+     * 系统异常评估结果的风险等级
+     */
+    public static final String ERROR_RISK_LEVEL = "系统异常";
+
+    /**
+     * 规则评估（分层快速通道）的评估类型，大模型评估为默认的STANDARD
+     */
+    public static final String TYPE_RULE_BASED = "RULE_BASED";
+
+    /**
+     * 降级评估的评估类型：AI服务熔断、超时或失败时返回的规则评估
+     */
+    public static final String TYPE_DEGRADED = "DEGRADED";
+
+    /**
+     * 默认评估的评估类型：AI响应无法解析或关键字段为空时基于风险评分生成的结果
+     */
+    public static final String TYPE_DEFAULT = "DEFAULT";
+
+    /**
+     * 大模型评估的评估类型，仅此类结果写入缓存
+     */
+    private static final String TYPE_STANDARD = "STANDARD";
+
+    private static final String CALL_SUCCESS = "SUCCESS";
+
+    /**
+     * 补充评估在单飞表中的键后缀，与同参数的前台评估互不等待
+     */
+    private static final String BACKFILL_KEY_SUFFIX = "|backfill";
+    private static final String CALL_CANCELLED = "CANCELLED";
+
     private final ChatClient chatClient;
+    private final AssessmentCache assessmentCache;
+    private final AssessmentResponseParser responseParser;
+    private final AssessmentPromptBuilder promptBuilder;
+    private final GuidelineRetriever guidelineRetriever;
+    private final CompactOutputCodec outputCodec;
+    private final TieredAssessmentPolicy tieredPolicy;
+    private final RiskScoringEngine scoringEngine;
+    private final ModelCallGuard modelCallGuard;
+    private final ModelRateLimiter rateLimiter;
+    private final AssessmentSingleFlight singleFlight;
+    private final ModelCascadePolicy cascadePolicy;
+    private final AssessmentMetrics metrics;
+    private final ThreadPoolExecutor backfillExecutor;
+    private final String model;
 
-    public ECMOExpertService(ChatClient.Builder chatClientBuilder) {
+    public ECMOExpertService(ChatClient.Builder chatClientBuilder,
+                             AssessmentCache assessmentCache,
+                             AssessmentResponseParser responseParser,
+                             AssessmentPromptBuilder promptBuilder,
+                             GuidelineRetriever guidelineRetriever,
+                             CompactOutputCodec outputCodec,
+                             TieredAssessmentPolicy tieredPolicy,
+                             RiskScoringEngine scoringEngine,
+                             ModelCallGuard modelCallGuard,
+                             ModelRateLimiter rateLimiter,
+                             AssessmentSingleFlight singleFlight,
+                             ModelCascadePolicy cascadePolicy,
+                             AssessmentMetrics metrics,
+                             @Qualifier("tieredBackfillExecutor") ThreadPoolExecutor backfillExecutor,
+                             @Value("${spring.ai.openai.chat.options.model:deepseek-chat}") String model) {
         this.chatClient = chatClientBuilder.build();
+        this.assessmentCache = assessmentCache;
+        this.responseParser = responseParser;
+        this.promptBuilder = promptBuilder;
+        this.guidelineRetriever = guidelineRetriever;
+        this.outputCodec = outputCodec;
+        this.tieredPolicy = tieredPolicy;
+        this.scoringEngine = scoringEngine;
+        this.modelCallGuard = modelCallGuard;
+        this.rateLimiter = rateLimiter;
+        this.singleFlight = singleFlight;
+        this.cascadePolicy = cascadePolicy;
+        this.metrics = metrics;
+        this.backfillExecutor = backfillExecutor;
+        this.model = model;
     }
 
     /**
      * 评估患者是否适合使用ECMO
      */
     public ECMOAssessment assessPatientForECMO(PatientParameters patient) {
-        try {
-            // 1. 计算风险评分
-            Double riskScore = calculateRiskScore(patient);
+        return assessPatientForECMO(patient, stage -> { });
+    }
 
-            // 2. 构建专业的ECMO评估提示词
-            String prompt = buildECMOAssessmentPrompt(patient, riskScore);
+    /**
+     * 评估患者是否适合使用ECMO，并在各阶段开始时回调进度
+     */
+    public ECMOAssessment assessPatientForECMO(PatientParameters patient, Consumer<AssessmentStage> progress) {
+        // 相同临床参数直接返回缓存结果
+        String cacheKey = assessmentCacheKey(patient);
+        ECMOAssessment cached = assessmentCache.get(cacheKey);
+        if (cached != null) {
+            cached.setPatientId(patient.getPatientId());
+            return cached;
+        }
 
-            // 3. 调用AI进行专业评估
-            String aiResponse = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    .content();
+        // 相同临床参数的评估正在进行时等待并共享其结果
+        ECMOAssessment assessment = singleFlight.execute(cacheKey, () -> assessUncached(patient, cacheKey, progress));
+        assessment.setPatientId(patient.getPatientId());
+        return assessment;
+    }
 
-            // 4. 解析AI响应并构建评估结果
-            ECMOAssessment assessment = parseAIResponse(aiResponse, patient.getPatientId(), riskScore);
+    /**
+     * 执行一次完整评估：风险评分、指南检索、分层路由、调用大模型并写入缓存
+     */
+    private ECMOAssessment assessUncached(PatientParameters patient, String cacheKey, Consumer<AssessmentStage> progress) {
+        try {
+            // 1. 计算风险评分
+            progress.accept(AssessmentStage.SCORING);
+            RiskEvaluation evaluation = metrics.time(AssessmentMetrics.Stage.SCORE, () -> scoringEngine.evaluate(patient));
+            List<GuidelineRetriever.Reference> references = retrieveGuidelines(patient, evaluation);
 
-            // 5. 添加动态风险评分和决策辅助信息
-            enhanceWithRiskAssessment(assessment, patient, riskScore);
+            // 明确病例走规则快速通道，不调用大模型
+            if (tieredPolicy.route(patient, evaluation.getScore()) != TieredAssessmentPolicy.Tier.LLM) {
+                if (tieredPolicy.isBackfill()) {
+                    backfillModelAssessment(patient, evaluation, references, cacheKey);
+                }
+                return createRuleBasedAssessment(patient, evaluation, references);
+            }
 
+            ECMOAssessment assessment;
+            try {
+                assessment = assessWithModel(patient, evaluation, references, progress);
+            } catch (ModelUnavailableException e) {
+                // AI服务不可用时立即返回降级的规则评估，不写入缓存
+                return createDegradedAssessment(patient, evaluation, references, e);
+            }
+            cacheModelAssessment(cacheKey, assessment);
             return assessment;
 
         } catch (Exception e) {
@@ -54,223 +173,409 @@ public class ECMOExpertService {
     }
 
     /**
-     * 计算ECMO实施推荐指数 (0-100)
+     * 从知识库索引检索与患者诊断和风险因素相关的指南段落，耗时受检索时间预算约束
      */
-    private Double calculateRiskScore(PatientParameters patient) {
-        double score = 100.0; // 基础分数
-        List<String> riskFactors = new ArrayList<>();
+    private List<GuidelineRetriever.Reference> retrieveGuidelines(PatientParameters patient, RiskEvaluation evaluation) {
+        return metrics.time(AssessmentMetrics.Stage.RETRIEVE, () -> guidelineRetriever.retrieve(patient, evaluation));
+    }
 
-        // 年龄评估 (最大扣分20分)
-        if (patient.getAge() != null) {
-            if (patient.getAge() > 70) {
-                score -= 20;
-                riskFactors.add("年龄>70岁");
-            } else if (patient.getAge() > 65) {
-                score -= 10;
-                riskFactors.add("年龄>65岁");
-            }
+    /**
+     * 调用大模型完成评估：构建提示词、调用AI、解析响应、补充风险评估信息
+     */
+    private ECMOAssessment assessWithModel(PatientParameters patient, RiskEvaluation evaluation,
+                                           List<GuidelineRetriever.Reference> references, Consumer<AssessmentStage> progress) {
+        // 2. 构建专业的ECMO评估提示词
+        progress.accept(AssessmentStage.PROMPTING);
+        String prompt = metrics.time(AssessmentMetrics.Stage.PROMPT_BUILD, () -> buildECMOAssessmentPrompt(patient, evaluation, references));
+
+        // 3. 调用AI进行专业评估，启用模型级联时先由小模型评估
+        progress.accept(AssessmentStage.LLM_CALL);
+        AIAssessmentResponse parsed = cascadePolicy.isEnabled() ? firstPass(prompt, evaluation) : null;
+        if (parsed == null) {
+            long start = System.nanoTime();
+            String aiResponse = callModel(prompt, null);
+            cascadePolicy.recordLargeModel(System.nanoTime() - start);
+            parsed = metrics.time(AssessmentMetrics.Stage.PARSE, () -> responseParser.parse(aiResponse));
         }
 
-        // 疾病持续时间评估 (最大扣分15分)
-        if (patient.getIllnessDuration() != null) {
-            if (patient.getIllnessDuration() > 7) {
-                score -= 15;
-                riskFactors.add("心肺衰竭超7天");
-            } else if (patient.getIllnessDuration() > 5) {
-                score -= 8;
-                riskFactors.add("心肺衰竭超5天");
-            }
+        // 4. 解析AI响应并构建评估结果
+        progress.accept(AssessmentStage.PARSING);
+        ECMOAssessment assessment = parseAIResponse(parsed, patient.getPatientId(), evaluation.getScore());
+
+        // 5. 添加动态风险评分和决策辅助信息
+        metrics.time(AssessmentMetrics.Stage.ENHANCE, () -> enhanceWithRiskAssessment(assessment, evaluation, references));
+        return assessment;
+    }
+
+    /**
+     * 模型级联第一级：小模型评估，需要升级到大模型时返回null
+     */
+    private AIAssessmentResponse firstPass(String prompt, RiskEvaluation evaluation) {
+        long start = System.nanoTime();
+        AIAssessmentResponse parsed = null;
+        ModelCascadePolicy.Escalation escalation;
+        try {
+            String aiResponse = callModel(prompt, cascadePolicy.getSmallModel());
+            parsed = metrics.time(AssessmentMetrics.Stage.PARSE, () -> responseParser.parse(aiResponse));
+            escalation = cascadePolicy.check(parsed, evaluation);
+        } catch (ModelUnavailableException e) {
+            escalation = ModelCascadePolicy.Escalation.FIRST_PASS_FAILED;
         }
+        cascadePolicy.recordFirstPass(System.nanoTime() - start, escalation);
+        return escalation == null ? parsed : null;
+    }
 
-        // 血气分析评估 (最大扣分25分)
-        if (patient.getpO2FiO2Ratio() != null) {
-            if (patient.getpO2FiO2Ratio() < 80) {
-                score -= 25;
-                riskFactors.add("P/F比值<80");
-            } else if (patient.getpO2FiO2Ratio() < 100) {
-                score -= 15;
-                riskFactors.add("P/F比值<100");
-            }
+    /**
+     * 在限流和调用保护下同步调用大模型，按实际token用量结算配额
+     * modelName为空时使用默认模型
+     */
+    private String callModel(String prompt, String modelName) {
+        ModelRateLimiter.Permit permit = acquirePermit(prompt);
+        String calledModel = modelName != null ? modelName : model;
+        long start = metrics.llmCallStarted();
+        ChatResponse response;
+        try {
+            response = modelCallGuard.call(() -> {
+                ChatClient.ChatClientRequestSpec request = chatClient.prompt().user(prompt);
+                OpenAiChatOptions options = callOptions(modelName);
+                if (options != null) {
+                    request = request.options(options);
+                }
+                return request.call().chatResponse();
+            });
+        } catch (ModelUnavailableException e) {
+            metrics.llmCallFinished(start, calledModel, callOutcome(e));
+            releasePermit(permit, e);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.llmCallFinished(start, calledModel, callOutcome(e));
+            throw e;
+        }
+        metrics.llmCallFinished(start, calledModel, CALL_SUCCESS);
+        metrics.recordTokens(calledModel, response);
+        permit.settle(totalTokens(response));
+        if (response == null || response.getResult() == null) {
+            return null;
         }
+        return response.getResult().getOutput().getText();
+    }
 
-        // 心脏功能评估 (最大扣分20分)
-        if (patient.getEjectionFraction() != null) {
-            if (patient.getEjectionFraction() < 20) {
-                score -= 20;
-                riskFactors.add("射血分数<20%");
-            } else if (patient.getEjectionFraction() < 30) {
-                score -= 10;
-                riskFactors.add("射血分数<30%");
-            }
+    /**
+     * 在限流和调用保护下流式调用大模型，排队等待在弹性线程池中进行，不阻塞订阅线程
+     */
+    private Flux<String> streamModel(String prompt) {
+        return Mono.fromCallable(() -> acquirePermit(prompt))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(permit -> {
+                    long start = metrics.llmCallStarted();
+                    return modelCallGuard.stream(() -> {
+                                ChatClient.ChatClientRequestSpec request = chatClient.prompt().user(prompt);
+                                OpenAiChatOptions options = callOptions(null);
+                                if (options != null) {
+                                    request = request.options(options);
+                                }
+                                return request.stream().content();
+                            })
+                            .doOnComplete(() -> permit.settle(null))
+                            .doOnCancel(() -> permit.settle(null))
+                            .doOnError(ModelUnavailableException.class, e -> releasePermit(permit, e))
+                            .doOnComplete(() -> metrics.llmCallFinished(start, model, CALL_SUCCESS))
+                            .doOnCancel(() -> metrics.llmCallFinished(start, model, CALL_CANCELLED))
+                            .doOnError(e -> metrics.llmCallFinished(start, model, callOutcome(e)));
+                });
+    }
+
+    /**
+     * 按本次调用实际发送的最大输出token数预占限流配额，与callOptions一致
+     */
+    private ModelRateLimiter.Permit acquirePermit(String prompt) {
+        return outputCodec.isEnabled()
+                ? rateLimiter.acquire(prompt, outputCodec.getMaxTokens())
+                : rateLimiter.acquire(prompt);
+    }
+
+    /**
+     * 单次调用的模型参数：指定模型名，紧凑输出格式下限制最大输出token数；均不需要时返回null使用默认参数
+     */
+    private OpenAiChatOptions callOptions(String modelName) {
+        if (modelName == null && !outputCodec.isEnabled()) {
+            return null;
         }
+        OpenAiChatOptions.Builder options = OpenAiChatOptions.builder();
+        if (modelName != null) {
+            options.model(modelName);
+        }
+        if (outputCodec.isEnabled()) {
+            options.maxTokens(outputCodec.getMaxTokens());
+        }
+        return options.build();
+    }
 
-        // 乳酸水平评估 (最大扣分15分)
-        if (patient.getLactate() != null) {
-            if (patient.getLactate() > 10) {
-                score -= 15;
-                riskFactors.add("乳酸>10mmol/L");
-            } else if (patient.getLactate() > 5) {
-                score -= 8;
-                riskFactors.add("乳酸>5mmol/L");
-            }
+    /**
+     * 调用未发出（熔断或并发已满）时归还全部配额，否则按预估用量结算
+     */
+    private void releasePermit(ModelRateLimiter.Permit permit, ModelUnavailableException e) {
+        if (e.getReason() == ModelUnavailableException.Reason.CIRCUIT_OPEN
+                || e.getReason() == ModelUnavailableException.Reason.BULKHEAD_FULL) {
+            permit.refund();
+        } else {
+            permit.settle(null);
         }
+    }
 
-        // 肾功能评估 (最大扣分10分)
-        if (patient.getCreatinine() != null) {
-            if (patient.getCreatinine() > 300) {
-                score -= 10;
-                riskFactors.add("肌酐>300μmol/L");
-            } else if (patient.getCreatinine() > 200) {
-                score -= 5;
-                riskFactors.add("肌酐>200μmol/L");
-            }
+    /**
+     * 模型调用结果，用于调用耗时指标的outcome标签
+     */
+    private static String callOutcome(Throwable e) {
+        return e instanceof ModelUnavailableException unavailable
+                ? unavailable.getReason().name()
+                : ModelUnavailableException.Reason.ERROR.name();
+    }
+
+    private static Integer totalTokens(ChatResponse response) {
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+            return null;
         }
+        Integer total = response.getMetadata().getUsage().getTotalTokens();
+        return total == null || total <= 0 ? null : total;
+    }
 
-        return Math.max(0, Math.min(100, score));
+    /**
+     * 大模型评估结果写入缓存，默认评估不缓存，相同参数的后续请求将重新调用大模型
+     */
+    private boolean cacheModelAssessment(String cacheKey, ECMOAssessment assessment) {
+        if (!TYPE_STANDARD.equals(assessment.getAssessmentType())) {
+            return false;
+        }
+        assessmentCache.put(cacheKey, assessment);
+        return true;
     }
 
     /**
-     * 构建ECMO评估提示词
+     * 后台补充大模型评估，完成后写入缓存，相同参数的后续请求将获得完整AI分析
+     * 使用独立的有界执行器，相同参数的补充评估进行中时不重复提交
      */
-    private String buildECMOAssessmentPrompt(PatientParameters patient, Double riskScore) {
-        StringBuilder prompt = new StringBuilder();
-        
-        prompt.append("作为ECMO领域的国际顶级专家，请基于ELSO指南、中国ECMO专家共识等权威标准，对以下患者进行全面的ECMO适应症评估。\n\n");
-        
-        prompt.append("【患者临床资料】\n");
-        prompt.append("患者ID: ").append(patient.getPatientId()).append("\n");
-        prompt.append("年龄: ").append(patient.getAge() != null ? patient.getAge() + "岁" : "未提供").append("\n");
-        prompt.append("性别: ").append(patient.getGender() != null ? patient.getGender() : "未提供").append("\n");
-        
-        prompt.append("\n【生命体征监测】\n");
-        if (patient.getHeartRate() != null) prompt.append("心率: ").append(patient.getHeartRate()).append("次/分\n");
-        if (patient.getSystolicBP() != null && patient.getDiastolicBP() != null) {
-            prompt.append("血压: ").append(patient.getSystolicBP()).append("/").append(patient.getDiastolicBP()).append("mmHg\n");
+    private void backfillModelAssessment(PatientParameters patient, RiskEvaluation evaluation,
+                                         List<GuidelineRetriever.Reference> references, String cacheKey) {
+        AssessmentSingleFlight.Flight flight = singleFlight.join(cacheKey + BACKFILL_KEY_SUFFIX);
+        if (!flight.isLeader()) {
+            tieredPolicy.recordBackfill(TieredAssessmentPolicy.BackfillOutcome.COALESCED);
+            return;
         }
-        if (patient.getOxygenSaturation() != null) prompt.append("血氧饱和度: ").append(patient.getOxygenSaturation()).append("%\n");
-        if (patient.getRespiratoryRate() != null) prompt.append("呼吸频率: ").append(patient.getRespiratoryRate()).append("次/分\n");
-        
-        prompt.append("\n【动脉血气分析】\n");
-        if (patient.getpH() != null) prompt.append("pH值: ").append(patient.getpH()).append("\n");
-        if (patient.getPaO2() != null) prompt.append("PaO2: ").append(patient.getPaO2()).append("mmHg\n");
-        if (patient.getPaCO2() != null) prompt.append("PaCO2: ").append(patient.getPaCO2()).append("mmHg\n");
-        if (patient.getpO2FiO2Ratio() != null) prompt.append("P/F比值(氧合指数): ").append(patient.getpO2FiO2Ratio()).append("\n");
-        if (patient.getLactate() != null) prompt.append("血乳酸: ").append(patient.getLactate()).append("mmol/L\n");
-        if (patient.getBicarbonate() != null) prompt.append("碳酸氢根: ").append(patient.getBicarbonate()).append("mmol/L\n");
-        
-        prompt.append("\n【心肺功能评估】\n");
-        if (patient.getEjectionFraction() != null) prompt.append("左室射血分数(LVEF): ").append(patient.getEjectionFraction()).append("%\n");
-        if (patient.getCardiacIndex() != null) prompt.append("心脏指数: ").append(patient.getCardiacIndex()).append("\n");
-        
-        prompt.append("\n【疾病诊断及病程】\n");
-        if (patient.getPrimaryDiagnosis() != null) prompt.append("主要诊断: ").append(patient.getPrimaryDiagnosis()).append("\n");
-        if (patient.getSecondaryDiagnosis() != null) prompt.append("次要诊断: ").append(patient.getSecondaryDiagnosis()).append("\n");
-        if (patient.getIllnessDuration() != null) prompt.append("病程时间: ").append(patient.getIllnessDuration()).append("天\n");
-        if (patient.getComorbidities() != null) prompt.append("合并疾病: ").append(patient.getComorbidities()).append("\n");
-        if (patient.getCurrentTreatment() != null) prompt.append("当前治疗: ").append(patient.getCurrentTreatment()).append("\n");
-        
-        prompt.append("\n【实验室检查】\n");
-        if (patient.getHemoglobin() != null) prompt.append("血红蛋白: ").append(patient.getHemoglobin()).append("g/L\n");
-        if (patient.getPlateletCount() != null) prompt.append("血小板: ").append(patient.getPlateletCount()).append("×10⁹/L\n");
-        if (patient.getCreatinine() != null) prompt.append("肌酐: ").append(patient.getCreatinine()).append("μmol/L\n");
-        if (patient.getBilirubin() != null) prompt.append("胆红素: ").append(patient.getBilirubin()).append("μmol/L\n");
-        
-        prompt.append("\n【系统风险评分】\n");
-        prompt.append("ECMO实施推荐指数: ").append(String.format("%.1f", riskScore)).append("/100分\n");
-        if (riskScore >= 80) {
-            prompt.append("风险等级: 高推荐 (绿色区间)\n");
-        } else if (riskScore >= 60) {
-            prompt.append("风险等级: 谨慎推荐 (黄色区间)\n");
-        } else {
-            prompt.append("风险等级: 低推荐 (红色区间)\n");
+        try {
+            backfillExecutor.execute(() -> {
+                try {
+                    ECMOAssessment assessment = assessWithModel(patient, evaluation, references, stage -> { });
+                    tieredPolicy.recordBackfill(cacheModelAssessment(cacheKey, assessment)
+                            ? TieredAssessmentPolicy.BackfillOutcome.CACHED
+                            : TieredAssessmentPolicy.BackfillOutcome.SKIPPED);
+                    flight.complete(assessment);
+                } catch (Exception e) {
+                    // 补充评估失败不影响已返回的规则评估结果
+                    tieredPolicy.recordBackfill(TieredAssessmentPolicy.BackfillOutcome.FAILED);
+                } finally {
+                    flight.abandon();
+                }
+            });
+            tieredPolicy.recordBackfill(TieredAssessmentPolicy.BackfillOutcome.SUBMITTED);
+        } catch (RejectedExecutionException e) {
+            // 执行器繁忙时放弃补充评估
+            tieredPolicy.recordBackfill(TieredAssessmentPolicy.BackfillOutcome.REJECTED);
+            flight.abandon();
         }
-        
-        prompt.append("\n【评估任务要求】\n");
-        prompt.append("请作为ECMO专家，结合患者的临床资料和系统评分，提供专业的ECMO适应症评估。\n");
-        prompt.append("必须严格按照以下JSON格式返回详细的评估结果，不得省略任何字段：\n\n");
-        
-        prompt.append("```json\n");
-        prompt.append("{\n");
-        prompt.append("  \"canUseECMO\": true,\n");
-        prompt.append("  \"diagnosis\": \"详细的诊断分析，包括患者当前病情严重程度、心肺功能状态、预后评估等，至少100字\",\n");
-        prompt.append("  \"evidence\": \"具体的诊断依据，包括符合的适应症条件、关键临床指标分析、相关指南标准等，至少80字\",\n");
-        prompt.append("  \"confidence\": 0.85,\n");
-        prompt.append("  \"supportReasons\": [\n");
-        prompt.append("    \"支持使用ECMO的具体理由1 - 详细说明\",\n");
-        prompt.append("    \"支持使用ECMO的具体理由2 - 详细说明\",\n");
-        prompt.append("    \"支持使用ECMO的具体理由3 - 详细说明\"\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"opposeReasons\": [\n");
-        prompt.append("    \"需要注意的风险因素1 - 详细说明\",\n");
-        prompt.append("    \"需要注意的风险因素2 - 详细说明\"\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"finalRecommendation\": \"推荐使用/谨慎评估/不推荐使用\",\n");
-        prompt.append("  \"recommendations\": [\n");
-        prompt.append("    \"具体临床建议1 - 详细的操作指导\",\n");
-        prompt.append("    \"具体临床建议2 - 详细的监测要求\",\n");
-        prompt.append("    \"具体临床建议3 - 详细的护理要点\"\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"contraindications\": \"详细的禁忌症分析，包括绝对禁忌症和相对禁忌症\",\n");
-        prompt.append("  \"precautions\": \"详细的注意事项和风险防控措施\"\n");
-        prompt.append("}\n");
-        prompt.append("```\n");
-        
-        prompt.append("\n【重要提醒】\n");
-        prompt.append("1. 所有文字描述必须详细、专业、具有临床指导价值\n");
-        prompt.append("2. 支持理由和反对理由都必须基于具体的临床证据\n");
-        prompt.append("3. 建议措施要具体可操作，符合临床实际\n");
-        prompt.append("4. 必须严格按照JSON格式输出，不要添加其他解释文字\n");
-        
-        return prompt.toString();
+    }
+
+    /**
+     * 创建规则评估结果（分层快速通道），内容同默认评估并标记为规则评估
+     */
+    private ECMOAssessment createRuleBasedAssessment(PatientParameters patient, RiskEvaluation evaluation,
+                                                     List<GuidelineRetriever.Reference> references) {
+        ECMOAssessment assessment = createDefaultAssessment(patient.getPatientId(), evaluation.getScore());
+        assessment.setAssessmentType(TYPE_RULE_BASED);
+        assessment.setEvidence("【系统规则评估】风险评分" + String.format("%.1f", evaluation.getScore())
+                + "分，远离决策边界，未调用AI模型。" + assessment.getEvidence());
+        enhanceWithRiskAssessment(assessment, evaluation, references);
+        return assessment;
+    }
+
+    /**
+     * 创建降级评估结果：AI服务不可用时返回规则评估，并标记为降级
+     */
+    private ECMOAssessment createDegradedAssessment(PatientParameters patient, RiskEvaluation evaluation,
+                                                    List<GuidelineRetriever.Reference> references,
+                                                    ModelUnavailableException cause) {
+        metrics.recordFallback(AssessmentMetrics.FALLBACK_DEGRADED);
+        ECMOAssessment assessment = createDefaultAssessment(patient.getPatientId(), evaluation.getScore());
+        assessment.setAssessmentType(TYPE_DEGRADED);
+        assessment.setEvidence("【降级评估】" + cause.getReason().getDescription()
+                + "，以下为系统规则评估结果，请结合临床判断或稍后重新评估。" + assessment.getEvidence());
+        enhanceWithRiskAssessment(assessment, evaluation, references);
+        return assessment;
+    }
+
+    /**
+     * 流式评估患者是否适合使用ECMO
+     * 先推送规则风险评分，再逐段推送AI分析内容，最后推送完整解析的评估结果
+     */
+    public Flux<AssessmentStreamEvent> streamPatientAssessment(PatientParameters patient) {
+        return Flux.defer(() -> {
+            // 命中缓存时直接推送评分和最终结果
+            String cacheKey = assessmentCacheKey(patient);
+            ECMOAssessment cached = assessmentCache.get(cacheKey);
+            if (cached != null) {
+                cached.setPatientId(patient.getPatientId());
+                return Flux.just(AssessmentStreamEvent.risk(cached), AssessmentStreamEvent.result(cached));
+            }
+
+            // 相同临床参数的评估正在进行时等待其结果，执行者中途放弃则重新评估
+            AssessmentSingleFlight.Flight flight = singleFlight.join(cacheKey);
+            if (!flight.isLeader()) {
+                return Mono.fromFuture(flight.result())
+                        .flatMapMany(shared -> {
+                            shared.setPatientId(patient.getPatientId());
+                            return Flux.just(AssessmentStreamEvent.risk(shared), AssessmentStreamEvent.result(shared));
+                        })
+                        .onErrorResume(e -> streamPatientAssessment(patient));
+            }
+            return streamAsLeader(patient, cacheKey, flight).doFinally(signal -> flight.abandon());
+        }).onErrorResume(e -> Mono.just(
+                AssessmentStreamEvent.result(createErrorAssessment(patient.getPatientId(), e.getMessage()))));
+    }
+
+    /**
+     * 作为执行者流式评估，最终结果同时发布给等待中的相同请求
+     */
+    private Flux<AssessmentStreamEvent> streamAsLeader(PatientParameters patient, String cacheKey,
+                                                       AssessmentSingleFlight.Flight flight) {
+        return Flux.defer(() -> {
+            // 1. 计算风险评分并立即推送
+            RiskEvaluation evaluation = scoringEngine.evaluate(patient);
+            List<GuidelineRetriever.Reference> references = retrieveGuidelines(patient, evaluation);
+            if (tieredPolicy.route(patient, evaluation.getScore()) != TieredAssessmentPolicy.Tier.LLM) {
+                if (tieredPolicy.isBackfill()) {
+                    backfillModelAssessment(patient, evaluation, references, cacheKey);
+                }
+                ECMOAssessment ruleBased = createRuleBasedAssessment(patient, evaluation, references);
+                flight.complete(ruleBased);
+                return Flux.just(AssessmentStreamEvent.risk(ruleBased), AssessmentStreamEvent.result(ruleBased));
+            }
+            ECMOAssessment preliminary = new ECMOAssessment();
+            preliminary.setPatientId(patient.getPatientId());
+            preliminary.setRiskScore(BigDecimal.valueOf(evaluation.getScore()));
+            enhanceWithRiskAssessment(preliminary, evaluation, references);
+
+            // 2. 构建提示词并流式调用AI
+            String prompt = buildECMOAssessmentPrompt(patient, evaluation, references);
+            StringBuilder aiResponse = new StringBuilder();
+            Flux<AssessmentStreamEvent> narrative = streamModel(prompt)
+                    .filter(StringUtils::hasLength)
+                    .doOnNext(aiResponse::append)
+                    .map(AssessmentStreamEvent::delta);
+
+            // 3. 生成结束后解析完整响应
+            Mono<AssessmentStreamEvent> result = Mono.fromCallable(() -> {
+                ECMOAssessment assessment = parseAIResponse(aiResponse.toString(), patient.getPatientId(), evaluation.getScore());
+                enhanceWithRiskAssessment(assessment, evaluation, references);
+                cacheModelAssessment(cacheKey, assessment);
+                flight.complete(assessment);
+                return AssessmentStreamEvent.result(assessment);
+            });
+
+            // AI服务不可用时以降级的规则评估作为最终结果
+            Flux<AssessmentStreamEvent> modelEvents = Flux.concat(narrative, result)
+                    .onErrorResume(ModelUnavailableException.class, e -> {
+                        ECMOAssessment degraded = createDegradedAssessment(patient, evaluation, references, e);
+                        flight.complete(degraded);
+                        return Mono.just(AssessmentStreamEvent.result(degraded));
+                    });
+
+            return Flux.concat(Mono.just(AssessmentStreamEvent.risk(preliminary)), modelEvents);
+        });
+    }
+
+    /**
+     * 评估缓存键：模型及级联配置 + 提示词模板版本、模式和指南检索配置 + 评分规则版本 + 患者参数指纹
+     */
+    private String assessmentCacheKey(PatientParameters patient) {
+        return model + cascadePolicy.getVariant() + "|" + PROMPT_TEMPLATE_VERSION + "-" + promptBuilder.getVariant() + guidelineRetriever.getVariant()
+                + "|" + scoringEngine.getVersion()
+                + "|" + PatientFingerprint.of(patient);
+    }
+
+    /**
+     * 构建ECMO评估提示词
+     */
+    private String buildECMOAssessmentPrompt(PatientParameters patient, RiskEvaluation evaluation,
+                                             List<GuidelineRetriever.Reference> references) {
+        return promptBuilder.build(patient, evaluation, references);
     }
 
     /**
      * 解析AI响应
      */
     private ECMOAssessment parseAIResponse(String aiResponse, String patientId, Double riskScore) {
+        return parseAIResponse(responseParser.parse(aiResponse), patientId, riskScore);
+    }
+
+    /**
+     * 由已解析的AI响应构建评估结果
+     */
+    private ECMOAssessment parseAIResponse(AIAssessmentResponse parsed, String patientId, Double riskScore) {
+        if (outputCodec.isEnabled()) {
+            parsed = outputCodec.expand(parsed);
+        }
+        // 无法解析或关键字段为空，使用基于风险评分的默认值
+        if (parsed == null || !StringUtils.hasText(parsed.getDiagnosis())) {
+            metrics.recordFallback(AssessmentMetrics.FALLBACK_DEFAULT);
+            ECMOAssessment assessment = createDefaultAssessment(patientId, riskScore);
+            assessment.setAssessmentType(TYPE_DEFAULT);
+            return assessment;
+        }
+
         ECMOAssessment assessment = new ECMOAssessment();
         assessment.setPatientId(patientId);
         assessment.setRiskScore(BigDecimal.valueOf(riskScore));
 
-        try {
-            // 尝试解析JSON响应
-            String cleanResponse = aiResponse.trim();
-            if (cleanResponse.startsWith("```json")) {
-                cleanResponse = cleanResponse.substring(7);
-            }
-            if (cleanResponse.endsWith("```")) {
-                cleanResponse = cleanResponse.substring(0, cleanResponse.length() - 3);
+        // 解析核心字段
+        assessment.setCanUseECMO(Boolean.TRUE.equals(parsed.getCanUseECMO()));
+        assessment.setDiagnosis(parsed.getDiagnosis().trim());
+        assessment.setEvidence(textOrDefault(parsed.getEvidence()));
+        assessment.setConfidence(parsed.getConfidence() != null ? parsed.getConfidence() : 0.8);
+        assessment.setFinalRecommendation(textOrDefault(parsed.getFinalRecommendation()));
+        assessment.setContraindications(textOrDefault(parsed.getContraindications()));
+        assessment.setPrecautions(textOrDefault(parsed.getPrecautions()));
+
+        // 解析支持和反对理由
+        assessment.setSupportReasons(listOrDefault(parsed.getSupportReasons(), "需要进一步评估临床指标", "建议多学科团队讨论"));
+        assessment.setOpposeReasons(listOrDefault(parsed.getOpposeReasons(), "需要权衡获益风险比", "评估患者整体状况"));
+        assessment.setRecommendations(listOrDefault(parsed.getRecommendations(), "完善相关检查", "密切监测病情变化"));
+
+        return assessment;
+    }
+    
+    /**
+     * 文本字段为空时返回默认提示
+     */
+    private String textOrDefault(String value) {
+        return StringUtils.hasText(value) ? value.trim() : "未提供相关信息";
+    }
+    
+    /**
+     * 去除空白条目，结果为空时返回默认值
+     */
+    private List<String> listOrDefault(List<String> values, String... defaults) {
+        List<String> result = new ArrayList<>();
+        if (values != null) {
+            for (String value : values) {
+                if (StringUtils.hasText(value)) {
+                    result.add(value.trim());
+                }
             }
-            
-            // 解析核心字段
-            assessment.setCanUseECMO(cleanResponse.contains("\"canUseECMO\": true"));
-            assessment.setDiagnosis(extractValue(cleanResponse, "diagnosis"));
-            assessment.setEvidence(extractValue(cleanResponse, "evidence"));
-            assessment.setConfidence(extractDoubleValue(cleanResponse, "confidence", 0.8));
-            assessment.setFinalRecommendation(extractValue(cleanResponse, "finalRecommendation"));
-            assessment.setContraindications(extractValue(cleanResponse, "contraindications"));
-            assessment.setPrecautions(extractValue(cleanResponse, "precautions"));
-            
-            // 解析支持和反对理由
-            List<String> supportReasons = extractArrayValue(cleanResponse, "supportReasons");
-            List<String> opposeReasons = extractArrayValue(cleanResponse, "opposeReasons");
-            List<String> recommendations = extractArrayValue(cleanResponse, "recommendations");
-            
-            assessment.setSupportReasons(supportReasons);
-            assessment.setOpposeReasons(opposeReasons);
-            assessment.setRecommendations(recommendations);
-            
-        } catch (Exception e) {
-            // 如果解析失败，使用基于风险评分的默认值
-            assessment = createDefaultAssessment(patientId, riskScore);
         }
-        
-        // 如果关键字段为空，使用默认值
-        if (assessment.getDiagnosis() == null || assessment.getDiagnosis().equals("未提供") || assessment.getDiagnosis().equals("解析错误")) {
-            assessment = createDefaultAssessment(patientId, riskScore);
+        if (result.isEmpty()) {
+            result.addAll(Arrays.asList(defaults));
         }
-        
-        return assessment;
+        return result;
     }
     
     /**
@@ -370,93 +675,50 @@ public class ECMOExpertService {
     /**
      * 增强风险评估信息
      */
-    private void enhanceWithRiskAssessment(ECMOAssessment assessment, PatientParameters patient, Double riskScore) {
+    private void enhanceWithRiskAssessment(ECMOAssessment assessment, RiskEvaluation evaluation,
+                                           List<GuidelineRetriever.Reference> references) {
         // 设置风险等级和颜色
-        if (riskScore >= 80) {
-            assessment.setRiskLevel("高推荐");
-            assessment.setRiskColor("green");
-        } else if (riskScore >= 60) {
-            assessment.setRiskLevel("谨慎推荐");
-            assessment.setRiskColor("yellow");
-        } else {
-            assessment.setRiskLevel("不推荐");
-            assessment.setRiskColor("red");
-        }
-        
-        // 计算关键风险因素
-        List<String> keyRiskFactors = new ArrayList<>();
-        if (patient.getAge() != null && patient.getAge() > 70) {
-            keyRiskFactors.add("年龄>70岁(-20分)");
-        }
-        if (patient.getIllnessDuration() != null && patient.getIllnessDuration() > 7) {
-            keyRiskFactors.add("心肺衰竭超7天(-15分)");
-        }
-        if (patient.getpO2FiO2Ratio() != null && patient.getpO2FiO2Ratio() < 80) {
-            keyRiskFactors.add("P/F比值<80(-25分)");
-        }
-        if (patient.getEjectionFraction() != null && patient.getEjectionFraction() < 20) {
-            keyRiskFactors.add("射血分数<20%(-20分)");
-        }
-        if (patient.getLactate() != null && patient.getLactate() > 10) {
-            keyRiskFactors.add("乳酸>10mmol/L(-15分)");
-        }
-        if (patient.getCreatinine() != null && patient.getCreatinine() > 300) {
-            keyRiskFactors.add("肌酐>300μmol/L(-10分)");
-        }
+        assessment.setRiskLevel(evaluation.getRiskLevel());
+        assessment.setRiskColor(evaluation.getRiskColor());
         
+        // 关键风险因素
+        List<String> keyRiskFactors = evaluation.getKeyRiskFactors();
         if (keyRiskFactors.isEmpty()) {
             keyRiskFactors.add("暂无显著风险因素");
         }
         assessment.setKeyRiskFactors(keyRiskFactors);
         
         // 设置指南参考
-        Map<String, String> guidelines = new HashMap<>();
+        assessment.setGuidelineReferences(guidelineReferences(references));
+        
+        // 设置详细评分
+        assessment.setDetailedScores(evaluation.getDetailedScores());
+    }
+    
+    /**
+     * 指南参考：检索到的知识库段落按相关度编号（与提示词中的编号一致），未检索到时使用通用指南
+     */
+    private Map<String, String> guidelineReferences(List<GuidelineRetriever.Reference> references) {
+        Map<String, String> guidelines = new LinkedHashMap<>();
+        if (!references.isEmpty()) {
+            for (int i = 0; i < references.size(); i++) {
+                GuidelineRetriever.Reference reference = references.get(i);
+                guidelines.put("[" + (i + 1) + "] " + reference.title(), reference.text());
+            }
+            return guidelines;
+        }
         guidelines.put("ELSO指南", "体外生命支持组织(ELSO)指南2017版 - 成人心肺ECMO适应症标准");
         guidelines.put("中国指南", "中国体外膜肺氧合临床应用专家共识(2018版) - 适应症与禁忌症");
         guidelines.put("欧洲指南", "欧洲重症医学会ECMO指南 - 重症心肺衰竭患者管理");
         guidelines.put("美国指南", "美国重症医学会ECMO临床实践指南 - 患者选择标准");
-        assessment.setGuidelineReferences(guidelines);
-        
-        // 设置详细评分
-        Map<String, Object> detailedScores = new HashMap<>();
-        detailedScores.put("总体推荐指数", String.format("%.1f/100", riskScore));
-        
-        // 年龄评分
-        int ageScore = 100;
-        if (patient.getAge() != null) {
-            if (patient.getAge() > 70) ageScore = 60;
-            else if (patient.getAge() > 65) ageScore = 80;
-            else if (patient.getAge() < 18) ageScore = 70;
-        }
-        detailedScores.put("年龄适宜度", ageScore + "/100");
-        
-        // 心肺功能评分
-        int cardiopulmonaryScore = 50;
-        if (patient.getpO2FiO2Ratio() != null) {
-            if (patient.getpO2FiO2Ratio() >= 200) cardiopulmonaryScore = 90;
-            else if (patient.getpO2FiO2Ratio() >= 150) cardiopulmonaryScore = 80;
-            else if (patient.getpO2FiO2Ratio() >= 100) cardiopulmonaryScore = 70;
-            else if (patient.getpO2FiO2Ratio() >= 80) cardiopulmonaryScore = 60;
-            else cardiopulmonaryScore = 30;
-        }
-        detailedScores.put("心肺功能", cardiopulmonaryScore + "/100");
-        
-        // 病程评分
-        int durationScore = 90;
-        if (patient.getIllnessDuration() != null) {
-            if (patient.getIllnessDuration() > 10) durationScore = 40;
-            else if (patient.getIllnessDuration() > 7) durationScore = 60;
-            else if (patient.getIllnessDuration() > 5) durationScore = 80;
-        }
-        detailedScores.put("病程时效性", durationScore + "/100");
-        
-        assessment.setDetailedScores(detailedScores);
+        return guidelines;
     }
-    
+
     /**
      * 创建错误评估结果
      */
-    private ECMOAssessment createErrorAssessment(String patientId, String errorMessage) {
+    public ECMOAssessment createErrorAssessment(String patientId, String errorMessage) {
+        metrics.recordFallback(AssessmentMetrics.FALLBACK_ERROR);
         ECMOAssessment errorAssessment = new ECMOAssessment();
         errorAssessment.setPatientId(patientId);
         errorAssessment.setCanUseECMO(false);
@@ -464,7 +726,7 @@ public class ECMOExpertService {
         errorAssessment.setEvidence("系统技术故障: " + errorMessage + "。建议人工评估或重新提交患者数据");
         errorAssessment.setConfidence(0.0);
         errorAssessment.setRiskScore(BigDecimal.valueOf(0.0));
-        errorAssessment.setRiskLevel("系统异常");
+        errorAssessment.setRiskLevel(ERROR_RISK_LEVEL);
         errorAssessment.setRiskColor("gray");
         errorAssessment.setFinalRecommendation("请重新评估或咨询ECMO专科医生");
         
@@ -483,83 +745,4 @@ public class ECMOExpertService {
         
         return errorAssessment;
     }
-    
-    /**
-     * 从文本中提取值
-     */
-    private String extractValue(String text, String key) {
-        try {
-            String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]*?)\"";
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern, java.util.regex.Pattern.DOTALL);
-            java.util.regex.Matcher m = p.matcher(text);
-            if (m.find()) {
-                String value = m.group(1).trim();
-                return value.isEmpty() ? "数据解析异常" : value;
-            }
-            return "未提供相关信息";
-        } catch (Exception e) {
-            return "解析错误，请检查数据格式";
-        }
-    }
-    
-    /**
-     * 从文本中提取数值
-     */
-    private Double extractDoubleValue(String text, String key, Double defaultValue) {
-        try {
-            String pattern = "\"" + key + "\"\\s*:\\s*([0-9.]+)";
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-            java.util.regex.Matcher m = p.matcher(text);
-            if (m.find()) {
-                return Double.parseDouble(m.group(1));
-            }
-            return defaultValue;
-        } catch (Exception e) {
-            return defaultValue;
-        }
-    }
-    
-    /**
-     * 从文本中提取数组值
-     */
-    private List<String> extractArrayValue(String text, String key) {
-        List<String> result = new ArrayList<>();
-        try {
-            String pattern = "\"" + key + "\"\\s*:\\s*\\[([^\\]]*?)\\]";
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern, java.util.regex.Pattern.DOTALL);
-            java.util.regex.Matcher m = p.matcher(text);
-            
-            if (m.find()) {
-                String arrayContent = m.group(1);
-                // 简单解析数组内容
-                String[] items = arrayContent.split("\",\\s*\"");
-                for (String item : items) {
-                    String cleanItem = item.replace("\"", "").trim();
-                    if (!cleanItem.isEmpty()) {
-                        result.add(cleanItem);
-                    }
-                }
-            }
-            
-            // 如果解析失败或结果为空，返回默认值
-            if (result.isEmpty()) {
-                if (key.equals("supportReasons")) {
-                    result.add("需要进一步评估临床指标");
-                    result.add("建议多学科团队讨论");
-                } else if (key.equals("opposeReasons")) {
-                    result.add("需要权衡获益风险比");
-                    result.add("评估患者整体状况");
-                } else if (key.equals("recommendations")) {
-                    result.add("完善相关检查");
-                    result.add("密切监测病情变化");
-                }
-            }
-            
-        } catch (Exception e) {
-            // 返回默认值
-            result.add("系统解析异常，请人工评估");
-        }
-        
-        return result;
-    }
 }
@@ -0,0 +1,180 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 评估用指南检索
+ * 以患者的主要/次要诊断、合并症和命中的风险因素为查询，从进程内知识库索引（{@link KnowledgeSearchIndex}）
+ * 取BM25得分最高的top-k条知识（得分低于首条一定比例的弱相关结果丢弃），按token预算截断后注入提示词，并作为评估结果的指南参考返回。
+ * 检索有严格的时间预算：查询文本长度有上限（检索耗时与查询词的倒排表长度成正比），
+ * 等待索引读锁不超过预算（索引重建期间直接跳过检索），超出预算的次数计入统计。
+ * 未检索到知识时评估结果使用通用指南参考。
+ */
+@Component
+public class GuidelineRetriever {
+
+    /**
+     * 剩余预算不足以容纳有意义的段落时停止拼装
+     */
+    static final int MIN_PASSAGE_TOKENS = 20;
+
+    private final KnowledgeSearchIndex index;
+    private final boolean enabled;
+    private final int topK;
+    private final int tokenBudget;
+    private final long timeBudgetNanos;
+    private final int maxQueryChars;
+    private final double minScoreRatio;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder passages = new LongAdder();
+    private final LongAdder injectedTokens = new LongAdder();
+    private final LongAdder retrieveNanos = new LongAdder();
+
+    public GuidelineRetriever(KnowledgeSearchIndex index,
+                              @Value("${ecmo.rag.enabled:true}") boolean enabled,
+                              @Value("${ecmo.rag.top-k:3}") int topK,
+                              @Value("${ecmo.rag.token-budget:400}") int tokenBudget,
+                              @Value("${ecmo.rag.time-budget-ms:5}") long timeBudgetMs,
+                              @Value("${ecmo.rag.max-query-chars:200}") int maxQueryChars,
+                              @Value("${ecmo.rag.min-score-ratio:0.3}") double minScoreRatio) {
+        this.index = index;
+        this.enabled = enabled;
+        this.topK = topK;
+        this.tokenBudget = tokenBudget;
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+        this.maxQueryChars = maxQueryChars;
+        this.minScoreRatio = minScoreRatio;
+    }
+
+    /**
+     * 检索与患者相关的指南段落，按相关度降序；未启用、索引未就绪、无命中或在时间预算内未获得索引读锁时返回空列表
+     */
+    public List<Reference> retrieve(PatientParameters patient, RiskEvaluation evaluation) {
+        if (!enabled || topK <= 0 || !index.isReady()) {
+            skipped.increment();
+            return List.of();
+        }
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            String query = query(patient, evaluation);
+            List<KnowledgeSearchIndex.Passage> found = query.isEmpty() ? List.of() : index.searchPassages(query, topK, timeBudgetNanos);
+            if (found == null) {
+                lockTimeouts.increment();
+                return List.of();
+            }
+
+            List<Reference> references = new ArrayList<>();
+            int remaining = tokenBudget;
+            double minScore = found.isEmpty() ? 0 : found.get(0).score() * minScoreRatio;
+            for (KnowledgeSearchIndex.Passage passage : found) {
+                if (passage.score() < minScore) {
+                    break;
+                }
+                String title = passage.title() == null ? "" : passage.title();
+                int available = remaining - TokenEstimator.estimate(title);
+                if (available < MIN_PASSAGE_TOKENS || passage.text() == null) {
+                    break;
+                }
+                String text = TokenEstimator.truncate(passage.text().replaceAll("\\s+", " ").trim(), available);
+                if (text.isEmpty()) {
+                    continue;
+                }
+                Reference reference = new Reference(passage.id(), title, passage.category(), text);
+                references.add(reference);
+                remaining -= reference.tokens();
+            }
+
+            if (references.isEmpty()) {
+                misses.increment();
+            } else {
+                hits.increment();
+                passages.add(references.size());
+                injectedTokens.add(tokenBudget - remaining);
+            }
+            return references;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            retrieveNanos.add(elapsed);
+            if (elapsed > timeBudgetNanos) {
+                overBudget.increment();
+            }
+        }
+    }
+
+    /**
+     * 检索查询：诊断、合并症和命中的风险因素，超出长度上限时截断
+     */
+    String query(PatientParameters patient, RiskEvaluation evaluation) {
+        StringBuilder query = new StringBuilder();
+        append(query, patient.getPrimaryDiagnosis());
+        append(query, patient.getSecondaryDiagnosis());
+        append(query, patient.getComorbidities());
+        for (String factor : evaluation.getKeyRiskFactors()) {
+            append(query, factor);
+        }
+        return query.length() > maxQueryChars ? query.substring(0, maxQueryChars) : query.toString();
+    }
+
+    private static void append(StringBuilder query, String text) {
+        if (text != null && !text.isBlank()) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(text.trim());
+        }
+    }
+
+    /**
+     * 检索配置标识，参与评估缓存键：检索参数不同时提示词不同
+     */
+    public String getVariant() {
+        return enabled ? "+rag" + topK + "x" + tokenBudget : "";
+    }
+
+    public Map<String, Object> stats() {
+        long count = requests.sum();
+        long hitCount = hits.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("topK", topK);
+        stats.put("tokenBudget", tokenBudget);
+        stats.put("timeBudgetMs", TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos));
+        stats.put("minScoreRatio", minScoreRatio);
+        stats.put("requests", count);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("lockTimeouts", lockTimeouts.sum());
+        stats.put("overBudget", overBudget.sum());
+        stats.put("avgRetrieveMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(retrieveNanos.sum() / count));
+        stats.put("avgPassages", hitCount == 0 ? 0.0 : (double) passages.sum() / hitCount);
+        stats.put("avgInjectedTokens", hitCount == 0 ? 0.0 : (double) injectedTokens.sum() / hitCount);
+        return stats;
+    }
+
+    /**
+     * 一条指南参考：知识ID、标题、分类和按预算截断后的正文
+     */
+    public record Reference(Long id, String title, String category, String text) {
+
+        int tokens() {
+            return TokenEstimator.estimate(title) + TokenEstimator.estimate(text);
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.AssessmentHistory;
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistorySummary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 评估历史关键字检索索引
+ * 按用户在内存中建立字符n-gram倒排索引（单字和相邻二字，不依赖分词，中文姓名和诊断同样适用），覆盖患者ID、患者姓名和诊断摘要。
+ * 检索时对查询的各二元组倒排表从短到长求交得到候选，再逐条校验子串包含（与LIKE %kw%语义一致、不区分大小写），
+ * 耗时与候选数成正比，与用户历史总量无关。
+ * 用户的索引在首次检索时从数据库加载，之后由 {@link AssessmentWriteBehind} 在写库事务提交后增量追加；
+ * 数据库中被修改、删除的记录由调用方在检索结果回表时发现，并通过update、remove逐条更新索引，不整体重新加载。
+ * 单个用户的记录超过max-rows-per-user时不为其建立索引，检索返回null，由调用方使用数据库LIKE查询。
+ * 最多保留max-users个用户的索引，超出时淘汰最久未使用的用户，再次检索时重新加载。
+ */
+@Component
+public class HistorySearchIndex {
+
+    /**
+     * 字段分隔符，n-gram和子串校验都不跨字段
+     */
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final AssessmentHistoryRepository historyRepository;
+    private final boolean enabled;
+    private final int maxUsers;
+    private final int maxRowsPerUser;
+
+    /**
+     * 按访问顺序排列，超出容量时淘汰最久未使用的用户，访问须持有该对象的锁
+     */
+    private final Map<Long, UserIndex> users;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder oversizedSearches = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile String lastError;
+
+    public HistorySearchIndex(AssessmentHistoryRepository historyRepository,
+                              @Value("${ecmo.history.search.enabled:true}") boolean enabled,
+                              @Value("${ecmo.history.search.max-users:200}") int maxUsers,
+                              @Value("${ecmo.history.search.max-rows-per-user:5000}") int maxRowsPerUser) {
+        this.historyRepository = historyRepository;
+        this.enabled = enabled;
+        this.maxUsers = maxUsers;
+        this.maxRowsPerUser = maxRowsPerUser;
+        this.users = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserIndex> eldest) {
+                if (size() > HistorySearchIndex.this.maxUsers) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 检索用户评估历史中患者ID、姓名或诊断摘要包含keyword的记录，
+     * 按(评估时间, ID)倒序返回位于(afterDate, afterId)之后的最多limit条记录ID，首页afterDate传null；
+     * 用户的记录数超过max-rows-per-user时返回null
+     */
+    public List<Long> search(Long userId, String keyword, LocalDateTime afterDate, Long afterId, int limit) {
+        String query = normalize(keyword);
+        if (query.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        UserIndex index = index(userId);
+        index.lock.readLock().lock();
+        try {
+            if (!index.loaded) {
+                throw new IllegalStateException("评估历史检索索引加载失败: " + lastError);
+            }
+            if (index.oversized) {
+                oversizedSearches.increment();
+                return null;
+            }
+            return index.search(query, afterDate, afterId, limit, candidates);
+        } finally {
+            index.lock.readLock().unlock();
+            searches.increment();
+            searchNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 追加一条已提交的历史记录；该用户的索引尚未加载时忽略，加载时会从数据库读到这条记录。
+     * 用户索引正在加载时等待加载完成后追加，重复追加同一记录无影响。
+     */
+    public void add(AssessmentHistory history) {
+        if (!enabled || history.getId() == null || history.getUserId() == null || history.getAssessmentDate() == null
+                || !Integer.valueOf(1).equals(history.getIsSaved())) {
+            return;
+        }
+        UserIndex index = loadedIndex(history.getUserId());
+        if (index == null) {
+            return;
+        }
+        index.lock.writeLock().lock();
+        try {
+            if (!index.oversized && index.add(history.getId(), history.getAssessmentDate(),
+                    history.getPatientId(), history.getPatientName(), history.getDiagnosisSummary())) {
+                appended.increment();
+                checkSize(index);
+            }
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 以数据库中的当前内容更新一条记录：检索字段或评估时间与索引不一致时替换，索引中没有该记录时追加。
+     * 返回索引是否发生变化，用户的索引尚未加载时忽略并返回false
+     */
+    public boolean update(Long userId, AssessmentHistorySummary row) {
+        UserIndex index = enabled && row.getAssessmentDate() != null ? loadedIndex(userId) : null;
+        if (index == null) {
+            return false;
+        }
+        index.lock.writeLock().lock();
+        try {
+            if (index.oversized || !index.replace(row.getId(), row.getAssessmentDate(),
+                    row.getPatientId(), row.getPatientName(), row.getDiagnosisSummary())) {
+                return false;
+            }
+            updated.increment();
+            checkSize(index);
+            return true;
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除一条已删除或取消保存的记录，返回索引中是否存在该记录
+     */
+    public boolean remove(Long userId, Long historyId) {
+        UserIndex index = enabled ? loadedIndex(userId) : null;
+        if (index == null) {
+            return false;
+        }
+        index.lock.writeLock().lock();
+        try {
+            if (!index.remove(historyId)) {
+                return false;
+            }
+            removed.increment();
+            return true;
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private UserIndex loadedIndex(Long userId) {
+        synchronized (users) {
+            return users.get(userId);
+        }
+    }
+
+    /**
+     * 调用方持有写锁，记录数超过上限时释放该用户的索引数据，之后的检索使用数据库查询
+     */
+    private void checkSize(UserIndex index) {
+        if (index.live > maxRowsPerUser) {
+            index.markOversized();
+        }
+    }
+
+    /**
+     * 清空全部用户的索引，之后的检索重新从数据库加载
+     */
+    public void clear() {
+        synchronized (users) {
+            users.clear();
+        }
+    }
+
+    /**
+     * 取用户的索引，不存在时由当前线程从数据库加载；加载期间其他线程的检索在读锁上等待。
+     * 最多读取max-rows-per-user + 1条，超出上限时只记录该用户不建立索引
+     */
+    private UserIndex index(Long userId) {
+        UserIndex index;
+        synchronized (users) {
+            index = users.get(userId);
+            if (index != null) {
+                return index;
+            }
+            index = new UserIndex();
+            index.lock.writeLock().lock();
+            users.put(userId, index);
+        }
+        long start = System.nanoTime();
+        try {
+            List<Object[]> rows = historyRepository.findSearchFields(userId, Limit.of(maxRowsPerUser + 1));
+            if (rows.size() > maxRowsPerUser) {
+                index.markOversized();
+            } else {
+                for (Object[] row : rows) {
+                    index.add((Long) row[0], (LocalDateTime) row[4], (String) row[1], (String) row[2], (String) row[3]);
+                }
+            }
+            index.loaded = true;
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            synchronized (users) {
+                users.remove(userId, index);
+            }
+            throw e;
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+        return index;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Map<String, Object> stats() {
+        List<UserIndex> snapshot;
+        synchronized (users) {
+            snapshot = new ArrayList<>(users.values());
+        }
+        long documents = 0;
+        long postings = 0;
+        int oversizedUsers = 0;
+        for (UserIndex index : snapshot) {
+            index.lock.readLock().lock();
+            try {
+                documents += index.live;
+                postings += index.postingEntries;
+                if (index.oversized) {
+                    oversizedUsers++;
+                }
+            } finally {
+                index.lock.readLock().unlock();
+            }
+        }
+        long count = searches.sum();
+        long loadCount = loads.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("users", snapshot.size());
+        stats.put("maxUsers", maxUsers);
+        stats.put("maxRowsPerUser", maxRowsPerUser);
+        stats.put("oversizedUsers", oversizedUsers);
+        stats.put("oversizedSearches", oversizedSearches.sum());
+        stats.put("documents", documents);
+        stats.put("postingEntries", postings);
+        stats.put("searches", count);
+        stats.put("avgSearchMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(searchNanos.sum() / count));
+        stats.put("avgCandidates", count == 0 ? 0.0 : (double) candidates.sum() / count);
+        stats.put("loads", loadCount);
+        stats.put("avgLoadMs", loadCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(loadNanos.sum() / loadCount));
+        stats.put("appended", appended.sum());
+        stats.put("updated", updated.sum());
+        stats.put("removed", removed.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * 单个用户的索引：记录按加入顺序编号，倒排表为递增的编号数组。
+     * 记录按(评估时间, ID)升序加入时（加载按此排序，新记录通常更晚）编号顺序即时间顺序，
+     * 检索从最大编号倒序校验，取满一页即停止；出现乱序后改为校验全部候选再排序。
+     * 移除的记录只清空文本，其编号保留在倒排表中、检索时跳过；修改的记录移除后以新编号重新加入。
+     */
+    private static final class UserIndex {
+
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile boolean loaded;
+        boolean oversized;
+
+        final Map<Long, Integer> ordinals = new HashMap<>();
+        final Map<String, Postings> postings = new HashMap<>();
+        long[] ids = new long[64];
+        LocalDateTime[] dates = new LocalDateTime[64];
+        String[] texts = new String[64];
+        int size;
+        int live;
+        long postingEntries;
+        boolean ordered = true;
+
+        /**
+         * 调用方持有写锁，记录已存在时返回false
+         */
+        boolean add(Long id, LocalDateTime date, String patientId, String patientName, String diagnosis) {
+            if (date == null || ordinals.containsKey(id)) {
+                return false;
+            }
+            int ordinal = size;
+            if (ordinal == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                dates = Arrays.copyOf(dates, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+            }
+            if (ordinal > 0 && compare(date, id, dates[ordinal - 1], ids[ordinal - 1]) < 0) {
+                ordered = false;
+            }
+            String text = normalize(patientId) + FIELD_SEPARATOR + normalize(patientName) + FIELD_SEPARATOR + normalize(diagnosis);
+            ids[ordinal] = id;
+            dates[ordinal] = date;
+            texts[ordinal] = text;
+            ordinals.put(id, ordinal);
+            size++;
+            live++;
+            for (String gram : grams(text)) {
+                postings.computeIfAbsent(gram, key -> new Postings()).add(ordinal);
+                postingEntries++;
+            }
+            return true;
+        }
+
+        /**
+         * 调用方持有写锁，内容与索引一致时返回false
+         */
+        boolean replace(Long id, LocalDateTime date, String patientId, String patientName, String diagnosis) {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal != null) {
+                String text = normalize(patientId) + FIELD_SEPARATOR + normalize(patientName) + FIELD_SEPARATOR + normalize(diagnosis);
+                if (date.equals(dates[ordinal]) && text.equals(texts[ordinal])) {
+                    return false;
+                }
+                remove(id);
+            }
+            return add(id, date, patientId, patientName, diagnosis);
+        }
+
+        /**
+         * 调用方持有写锁，记录不存在时返回false
+         */
+        boolean remove(Long id) {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal == null) {
+                return false;
+            }
+            texts[ordinal] = null;
+            live--;
+            return true;
+        }
+
+        /**
+         * 调用方持有写锁，释放全部索引数据
+         */
+        void markOversized() {
+            oversized = true;
+            ordinals.clear();
+            postings.clear();
+            ids = new long[0];
+            dates = new LocalDateTime[0];
+            texts = new String[0];
+            size = 0;
+            live = 0;
+            postingEntries = 0;
+        }
+
+        /**
+         * 调用方持有读锁
+         */
+        List<Long> search(String query, LocalDateTime afterDate, Long afterId, int limit, LongAdder candidateCounter) {
+            List<Long> result = new ArrayList<>();
+            int[] candidates = candidates(query);
+            candidateCounter.add(candidates.length);
+
+            List<Integer> matched = new ArrayList<>();
+            for (int i = candidates.length - 1; i >= 0; i--) {
+                int ordinal = candidates[i];
+                if (afterDate != null && compare(dates[ordinal], ids[ordinal], afterDate, afterId) >= 0) {
+                    continue;
+                }
+                if (texts[ordinal] == null || !texts[ordinal].contains(query)) {
+                    continue;
+                }
+                matched.add(ordinal);
+                if (ordered && matched.size() >= limit) {
+                    break;
+                }
+            }
+            if (!ordered) {
+                matched.sort(Comparator.comparing((Integer ordinal) -> dates[ordinal])
+                        .thenComparingLong(ordinal -> ids[ordinal])
+                        .reversed());
+            }
+            for (int i = 0; i < matched.size() && i < limit; i++) {
+                result.add(ids[matched.get(i)]);
+            }
+            return result;
+        }
+
+        /**
+         * 包含查询全部n-gram的记录编号（升序）：从最短的倒排表出发，逐个在其余倒排表中二分查找
+         */
+        private int[] candidates(String query) {
+            List<Postings> lists = new ArrayList<>();
+            for (String gram : queryGrams(query)) {
+                Postings list = postings.get(gram);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            if (lists.isEmpty()) {
+                return new int[0];
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            Postings shortest = lists.get(0);
+            int[] result = Arrays.copyOf(shortest.ordinals, shortest.size);
+            int count = result.length;
+            for (int l = 1; l < lists.size() && count > 0; l++) {
+                Postings list = lists.get(l);
+                int kept = 0;
+                for (int i = 0; i < count; i++) {
+                    if (Arrays.binarySearch(list.ordinals, 0, list.size, result[i]) >= 0) {
+                        result[kept++] = result[i];
+                    }
+                }
+                count = kept;
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+
+        private static int compare(LocalDateTime date, long id, LocalDateTime otherDate, long otherId) {
+            int byDate = date.compareTo(otherDate);
+            return byDate != 0 ? byDate : Long.compare(id, otherId);
+        }
+    }
+
+    /**
+     * 记录文本的全部单字和相邻二字（不跨字段）
+     */
+    static Set<String> grams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        int[] codePoints = text.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            if (codePoints[i] == FIELD_SEPARATOR) {
+                continue;
+            }
+            grams.add(new String(codePoints, i, 1));
+            if (i + 1 < codePoints.length && codePoints[i + 1] != FIELD_SEPARATOR) {
+                grams.add(new String(codePoints, i, 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 查询的n-gram：单个字符的查询用单字，其余用全部相邻二字
+     */
+    static Set<String> queryGrams(String query) {
+        int[] codePoints = query.codePoints().toArray();
+        Set<String> grams = new LinkedHashSet<>();
+        if (codePoints.length == 1) {
+            grams.add(query);
+            return grams;
+        }
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 2));
+        }
+        return grams;
+    }
+
+    /**
+     * 递增的记录编号数组
+     */
+    private static final class Postings {
+
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.KnowledgeBase;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 知识库实体监听器：知识新增、修改、删除后同步更新 {@link KnowledgeSearchIndex}
+ * 由Hibernate通过Spring容器创建；在事务中的变更等提交后才更新索引，回滚的修改不会进入索引。
+ */
+public class KnowledgeBaseIndexListener {
+
+    private final ObjectProvider<KnowledgeSearchIndex> index;
+
+    public KnowledgeBaseIndexListener(ObjectProvider<KnowledgeSearchIndex> index) {
+        this.index = index;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(KnowledgeBase knowledge) {
+        afterCommit(() -> index.ifAvailable(searchIndex -> searchIndex.update(knowledge)));
+    }
+
+    @PostRemove
+    public void onRemoved(KnowledgeBase knowledge) {
+        Long id = knowledge.getId();
+        afterCommit(() -> index.ifAvailable(searchIndex -> searchIndex.remove(id)));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,583 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fox.alibabadeepseekdemo.entity.KnowledgeBase;
+import com.fox.alibabadeepseekdemo.repository.KnowledgeBaseRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 知识库全文检索索引
+ * 已发布（status=1）的知识在进程内建立倒排索引，标题、标签、摘要、正文按权重合并词频，按BM25打分排序，
+ * 检索只访问内存，不再对TEXT列执行LIKE全表扫描。分词规则见 {@link TextTokenizer}。
+ * 知识增删改由 {@link KnowledgeBaseIndexListener} 在事务提交后增量更新索引；
+ * 索引定期及关闭时写入快照文件，启动时加载快照后只按更新时间重新索引变更过的知识。
+ * 快照路径为相对路径时相对于数据目录（ecmo.data-dir）解析，与启动时的工作目录无关。
+ */
+@Component
+public class KnowledgeSearchIndex implements ApplicationRunner {
+
+    /**
+     * 快照格式版本，分词或打分字段变化时递增，旧快照将被忽略并重建
+     */
+    static final int SNAPSHOT_VERSION = 2;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float TAGS_WEIGHT = 2f;
+    private static final float SUMMARY_WEIGHT = 1.5f;
+    private static final float CONTENT_WEIGHT = 1f;
+    private static final int RELOAD_CHUNK = 500;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final KnowledgeBaseRepository repository;
+    private final boolean enabled;
+    private final Path snapshotPath;
+    private final int snippetLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IndexedDoc> docs = new HashMap<>();
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+    private final Map<String, Set<Long>> tagIndex = new HashMap<>();
+    private double totalLength;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile boolean ready;
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private volatile int loadedFromSnapshot;
+    private volatile int reindexedOnLoad;
+    private volatile int removedOnLoad;
+    private volatile long lastLoadMs;
+    private volatile LocalDateTime lastSnapshotAt;
+    private volatile String lastError;
+
+    public KnowledgeSearchIndex(KnowledgeBaseRepository repository,
+                                @Value("${ecmo.knowledge.index.enabled:true}") boolean enabled,
+                                @Value("${ecmo.data-dir:${user.home}/.ecmo}") String dataDir,
+                                @Value("${ecmo.knowledge.index.snapshot-path:knowledge-index.json.gz}") String snapshotPath,
+                                @Value("${ecmo.knowledge.index.snippet-length:80}") int snippetLength) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.snapshotPath = snapshotPath == null || snapshotPath.isBlank() ? null : Path.of(dataDir).resolve(snapshotPath);
+        this.snippetLength = snippetLength;
+    }
+
+    /**
+     * 启动时加载快照并与数据库对齐
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            load();
+        }
+    }
+
+    /**
+     * 加载快照（不存在或版本不符时为空），再按数据库中已发布知识的更新时间补齐新增和变更、移除已删除或下线的知识
+     */
+    public synchronized void load() {
+        long start = System.nanoTime();
+        try {
+            Snapshot snapshot = readSnapshot();
+            Map<Long, LocalDateTime> versions = new HashMap<>();
+            for (Object[] row : repository.findPublishedVersions()) {
+                versions.put((Long) row[0], (LocalDateTime) row[1]);
+            }
+
+            List<Long> stale = new ArrayList<>();
+            int fromSnapshot = 0;
+            int removed = 0;
+            lock.writeLock().lock();
+            try {
+                clear();
+                if (snapshot != null) {
+                    for (IndexedDoc doc : snapshot.docs()) {
+                        if (versions.containsKey(doc.id())) {
+                            add(doc);
+                            fromSnapshot++;
+                        } else {
+                            removed++;
+                        }
+                    }
+                }
+                for (Map.Entry<Long, LocalDateTime> version : versions.entrySet()) {
+                    IndexedDoc doc = docs.get(version.getKey());
+                    if (doc == null || !sameVersion(doc.updatedAt(), version.getValue())) {
+                        stale.add(version.getKey());
+                        if (doc != null) {
+                            fromSnapshot--;
+                        }
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            for (int i = 0; i < stale.size(); i += RELOAD_CHUNK) {
+                for (KnowledgeBase knowledge : repository.findAllById(stale.subList(i, Math.min(stale.size(), i + RELOAD_CHUNK)))) {
+                    update(knowledge);
+                }
+            }
+            loadedFromSnapshot = fromSnapshot;
+            reindexedOnLoad = stale.size();
+            removedOnLoad = removed;
+            if (snapshot == null || !stale.isEmpty() || removed > 0) {
+                dirty.set(true);
+                persistIfDirty();
+            }
+            ready = true;
+        } catch (RuntimeException e) {
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } finally {
+            lastLoadMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 忽略快照，从数据库重建全部索引
+     */
+    public synchronized void rebuild() {
+        if (snapshotPath != null) {
+            try {
+                Files.deleteIfExists(snapshotPath);
+            } catch (IOException e) {
+                lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            }
+        }
+        load();
+    }
+
+    /**
+     * 新增或更新一条知识，未发布的知识从索引中移除
+     */
+    public void update(KnowledgeBase knowledge) {
+        if (knowledge.getId() == null) {
+            return;
+        }
+        if (!Integer.valueOf(1).equals(knowledge.getStatus())) {
+            remove(knowledge.getId());
+            return;
+        }
+        IndexedDoc doc = toDoc(knowledge);
+        lock.writeLock().lock();
+        try {
+            removeInternal(doc.id());
+            add(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        updates.increment();
+        dirty.set(true);
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            if (removeInternal(id) == null) {
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        updates.increment();
+        dirty.set(true);
+    }
+
+    /**
+     * BM25检索，返回得分最高的limit条，category为null时不限分类
+     */
+    public List<Hit> search(String query, String category, int limit) {
+        long start = System.nanoTime();
+        Set<String> terms = new LinkedHashSet<>(TextTokenizer.tokenizeQuery(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<IndexedDoc, Double> entry : rank(terms, category, limit)) {
+                IndexedDoc doc = entry.getKey();
+                hits.add(new Hit(doc.id(), doc.title(), doc.category(), entry.getValue(), snippet(doc, terms)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        searches.increment();
+        searchNanos.add(System.nanoTime() - start);
+        return hits;
+    }
+
+    /**
+     * 限时检索完整段落，供评估链路使用：最多等待读锁timeoutNanos纳秒（索引重建或批量更新期间），
+     * 未能获得读锁时返回null，由调用方跳过检索
+     */
+    public List<Passage> searchPassages(String query, int limit, long timeoutNanos) {
+        long start = System.nanoTime();
+        Set<String> terms = new LinkedHashSet<>(TextTokenizer.tokenizeQuery(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        try {
+            if (!lock.readLock().tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        List<Passage> passages = new ArrayList<>();
+        try {
+            for (Map.Entry<IndexedDoc, Double> entry : rank(terms, null, limit)) {
+                IndexedDoc doc = entry.getKey();
+                passages.add(new Passage(doc.id(), doc.title(), doc.category(), entry.getValue(),
+                        doc.content() != null && !doc.content().isBlank() ? doc.content() : doc.summary()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        searches.increment();
+        searchNanos.add(System.nanoTime() - start);
+        return passages;
+    }
+
+    /**
+     * 按BM25累加各查询词得分，取得分最高的limit条按得分降序返回，调用方持有读锁
+     */
+    private List<Map.Entry<IndexedDoc, Double>> rank(Set<String> terms, String category, int limit) {
+        int n = docs.size();
+        double avgLength = n == 0 ? 1 : totalLength / n;
+        Map<Long, Double> scores = new HashMap<>();
+        for (String term : terms) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (n - posting.size() + 0.5) / (posting.size() + 0.5));
+            for (Map.Entry<Long, Float> entry : posting.entrySet()) {
+                IndexedDoc doc = docs.get(entry.getKey());
+                if (category != null && !category.equals(doc.category())) {
+                    continue;
+                }
+                double tf = entry.getValue();
+                double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * doc.length() / avgLength));
+                scores.merge(entry.getKey(), score, Double::sum);
+            }
+        }
+
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<IndexedDoc, Double>> ranked = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Map.Entry<Long, Double> entry = top.poll();
+            ranked.add(Map.entry(docs.get(entry.getKey()), entry.getValue()));
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    /**
+     * 按标签精确匹配（不区分大小写），按排序顺序返回
+     */
+    public List<Hit> findByTag(String tag, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Set<Long> ids = tagIndex.get(normalizeTag(tag));
+            if (ids == null) {
+                return hits;
+            }
+            ids.stream()
+                    .map(docs::get)
+                    .sorted(Comparator.comparing((IndexedDoc doc) -> doc.sortOrder() == null ? 0 : doc.sortOrder())
+                            .thenComparing(IndexedDoc::id, Comparator.reverseOrder()))
+                    .limit(limit)
+                    .forEach(doc -> hits.add(new Hit(doc.id(), doc.title(), doc.category(), 0, headSnippet(doc))));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return hits;
+    }
+
+    /**
+     * 知识正文，检索结果需要完整段落时使用
+     */
+    public String content(Long id) {
+        lock.readLock().lock();
+        try {
+            IndexedDoc doc = docs.get(id);
+            return doc == null ? null : doc.content();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Scheduled(fixedDelayString = "${ecmo.knowledge.index.snapshot-interval-ms:60000}")
+    public void persistIfDirty() {
+        if (snapshotPath == null || !dirty.compareAndSet(true, false)) {
+            return;
+        }
+        List<IndexedDoc> copy;
+        lock.readLock().lock();
+        try {
+            copy = new ArrayList<>(docs.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "knowledge-index", ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                MAPPER.writeValue(out, new Snapshot(SNAPSHOT_VERSION, copy));
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshotAt = LocalDateTime.now();
+        } catch (IOException e) {
+            dirty.set(true);
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistIfDirty();
+    }
+
+    private Snapshot readSnapshot() {
+        if (snapshotPath == null || !Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshotPath))) {
+            Snapshot snapshot = MAPPER.readValue(in, Snapshot.class);
+            return snapshot.version() == SNAPSHOT_VERSION && snapshot.docs() != null ? snapshot : null;
+        } catch (IOException e) {
+            lastError = "快照读取失败，将重建索引: " + e.getMessage();
+            return null;
+        }
+    }
+
+    /**
+     * 数据库的时间精度可能低于内存中的实体（MySQL DATETIME精确到秒），相差不足1秒视为同一版本
+     */
+    private static boolean sameVersion(String indexed, LocalDateTime current) {
+        if (indexed == null || current == null) {
+            return indexed == null && current == null;
+        }
+        return Duration.between(LocalDateTime.parse(indexed), current).abs().compareTo(Duration.ofSeconds(1)) < 0;
+    }
+
+    static IndexedDoc toDoc(KnowledgeBase knowledge) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, knowledge.getTitle(), TITLE_WEIGHT);
+        addTerms(terms, knowledge.getTags(), TAGS_WEIGHT);
+        addTerms(terms, knowledge.getSummary(), SUMMARY_WEIGHT);
+        addTerms(terms, knowledge.getContent(), CONTENT_WEIGHT);
+        float length = 0;
+        for (float weight : terms.values()) {
+            length += weight;
+        }
+        return new IndexedDoc(knowledge.getId(), knowledge.getTitle(), knowledge.getCategory(), knowledge.getSummary(),
+                knowledge.getTags(), knowledge.getContent(), knowledge.getSortOrder(),
+                knowledge.getUpdatedAt() == null ? null : knowledge.getUpdatedAt().toString(), terms, length);
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String token : TextTokenizer.tokenize(text)) {
+            terms.merge(token, weight, Float::sum);
+        }
+    }
+
+    /**
+     * 调用方持有写锁
+     */
+    private void add(IndexedDoc doc) {
+        docs.put(doc.id(), doc);
+        totalLength += doc.length();
+        doc.terms().forEach((term, tf) -> postings.computeIfAbsent(term, key -> new HashMap<>()).put(doc.id(), tf));
+        for (String tag : splitTags(doc.tags())) {
+            tagIndex.computeIfAbsent(tag, key -> new HashSet<>()).add(doc.id());
+        }
+    }
+
+    /**
+     * 调用方持有写锁
+     */
+    private IndexedDoc removeInternal(Long id) {
+        IndexedDoc doc = docs.remove(id);
+        if (doc == null) {
+            return null;
+        }
+        totalLength -= doc.length();
+        for (String term : doc.terms().keySet()) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        for (String tag : splitTags(doc.tags())) {
+            Set<Long> ids = tagIndex.get(tag);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    tagIndex.remove(tag);
+                }
+            }
+        }
+        return doc;
+    }
+
+    private void clear() {
+        docs.clear();
+        postings.clear();
+        tagIndex.clear();
+        totalLength = 0;
+    }
+
+    private static List<String> splitTags(String tags) {
+        List<String> result = new ArrayList<>();
+        if (tags != null) {
+            for (String tag : tags.split("[,，]")) {
+                String normalized = normalizeTag(tag);
+                if (!normalized.isEmpty()) {
+                    result.add(normalized);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String normalizeTag(String tag) {
+        return tag == null ? "" : tag.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 正文中第一个命中查询词的位置前后截取摘要，正文无命中时取摘要字段或正文开头
+     */
+    private String snippet(IndexedDoc doc, Set<String> terms) {
+        String content = doc.content();
+        if (content == null || content.isEmpty()) {
+            return headSnippet(doc);
+        }
+        String lower = content.toLowerCase(Locale.ROOT);
+        int first = -1;
+        for (String term : terms) {
+            int index = lower.indexOf(term);
+            if (index >= 0 && (first < 0 || index < first)) {
+                first = index;
+            }
+        }
+        if (first < 0) {
+            return headSnippet(doc);
+        }
+        int start = Math.max(0, first - snippetLength / 4);
+        int end = Math.min(content.length(), start + snippetLength);
+        return (start > 0 ? "…" : "") + content.substring(start, end).replaceAll("\\s+", " ") + (end < content.length() ? "…" : "");
+    }
+
+    private String headSnippet(IndexedDoc doc) {
+        String text = doc.summary() != null && !doc.summary().isBlank() ? doc.summary() : doc.content();
+        if (text == null) {
+            return null;
+        }
+        text = text.replaceAll("\\s+", " ");
+        return text.length() > snippetLength ? text.substring(0, snippetLength) + "…" : text;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("documents", docs.size());
+            stats.put("terms", postings.size());
+            stats.put("tags", tagIndex.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long count = searches.sum();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("searches", count);
+        stats.put("avgSearchMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(searchNanos.sum() / count));
+        stats.put("updates", updates.sum());
+        stats.put("loadedFromSnapshot", loadedFromSnapshot);
+        stats.put("reindexedOnLoad", reindexedOnLoad);
+        stats.put("removedOnLoad", removedOnLoad);
+        stats.put("lastLoadMs", lastLoadMs);
+        stats.put("snapshotPath", snapshotPath == null ? null : snapshotPath.toAbsolutePath().toString());
+        stats.put("lastSnapshotAt", lastSnapshotAt);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * 检索结果：知识ID、标题、分类、BM25得分和命中位置附近的摘要
+     */
+    public record Hit(Long id, String title, String category, double score, String snippet) {
+    }
+
+    /**
+     * 限时检索结果：知识ID、标题、分类、BM25得分和正文（正文为空时为摘要）
+     */
+    public record Passage(Long id, String title, String category, double score, String text) {
+    }
+
+    /**
+     * 已索引的知识：检索展示所需字段和按字段权重合并的词频，同时作为快照的存储格式
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record IndexedDoc(Long id, String title, String category, String summary, String tags, String content,
+                      Integer sortOrder, String updatedAt, Map<String, Float> terms, float length) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Snapshot(int version, List<IndexedDoc> docs) {
+    }
+}
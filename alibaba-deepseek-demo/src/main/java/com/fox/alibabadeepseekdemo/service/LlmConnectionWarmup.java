@@ -0,0 +1,218 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模型服务连接预热
+ * 启动时（应用报告就绪之前）并发请求模型服务的轻量接口，提前完成DNS解析和TCP/TLS握手，
+ * 使连接进入连接池，首个评估请求不再承担建连耗时。任何HTTP响应（包括401/404）都说明连接已建立。
+ * 开启keep-warm时定期检查连接池，池内连接数低于预热数时补足，避免空闲一段时间后连接全部被回收。
+ * 预热失败不影响启动，结果见 /api/admin/llm-connection-stats。
+ * 预热请求的地址与 {@link com.fox.alibabadeepseekdemo.config.ChatConfig} 使用同一base-url；
+ * base-url已以/v1结尾时path不再重复/v1前缀。
+ */
+@Component
+public class LlmConnectionWarmup implements ApplicationRunner {
+
+    private final CloseableHttpClient httpClient;
+    private final CloseableHttpAsyncClient streamHttpClient;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final String warmupUrl;
+    private final String apiKey;
+    private final boolean enabled;
+    private final int connections;
+    private final Duration timeout;
+    private final boolean keepWarm;
+    /**
+     * 各次预热共用的线程池，空闲后线程自动回收
+     */
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger runs = new AtomicInteger();
+    private volatile int lastOpened;
+    private volatile int lastFailed;
+    private volatile long lastElapsedMs;
+    private volatile String lastError;
+
+    public LlmConnectionWarmup(CloseableHttpClient llmHttpClient,
+                               CloseableHttpAsyncClient llmStreamHttpClient,
+                               PoolingHttpClientConnectionManager llmConnectionManager,
+                               @Value("${spring.ai.openai.base-url:https://api.siliconflow.cn/v1}") String baseUrl,
+                               @Value("${spring.ai.openai.api-key}") String apiKey,
+                               @Value("${ecmo.llm.http.warmup.enabled:true}") boolean enabled,
+                               @Value("${ecmo.llm.http.warmup.path:/v1/models}") String path,
+                               @Value("${ecmo.llm.http.warmup.connections:4}") int connections,
+                               @Value("${ecmo.llm.http.warmup.timeout:5s}") Duration timeout,
+                               @Value("${ecmo.llm.http.warmup.keep-warm:false}") boolean keepWarm) {
+        this.httpClient = llmHttpClient;
+        this.streamHttpClient = llmStreamHttpClient;
+        this.connectionManager = llmConnectionManager;
+        this.warmupUrl = warmupUrl(baseUrl, path);
+        this.apiKey = apiKey;
+        this.enabled = enabled;
+        this.connections = connections;
+        this.timeout = timeout;
+        this.keepWarm = keepWarm;
+        this.executor = new ThreadPoolExecutor(Math.max(1, connections), Math.max(1, connections), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "llm-warmup");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 拼接预热地址，去掉base-url末尾的斜杠，base-url以/v1结尾且path以/v1开头时只保留一个/v1
+     */
+    static String warmupUrl(String baseUrl, String path) {
+        String base = baseUrl.replaceAll("/+$", "");
+        if (base.endsWith("/v1") && (path.equals("/v1") || path.startsWith("/v1/"))) {
+            path = path.substring("/v1".length());
+        }
+        return base + path;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * ApplicationRunner在就绪事件之前执行，预热完成（或超时）后应用才开始接收流量
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            warm(connections, true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ecmo.llm.http.warmup.keep-warm-interval-ms:30000}")
+    public void keepWarm() {
+        if (!enabled || !keepWarm) {
+            return;
+        }
+        PoolStats pool = connectionManager.getTotalStats();
+        int missing = connections - pool.getAvailable() - pool.getLeased();
+        if (missing > 0) {
+            warm(missing, false);
+        }
+    }
+
+    /**
+     * 同步连接池并发打开count个连接，流式连接池打开一个连接，在timeout内等待全部完成；count不大于0时不预热
+     */
+    void warm(int count, boolean includeStream) {
+        if (count <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Future<Boolean>> pending = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pending.add(executor.submit(this::openSyncConnection));
+        }
+        Future<SimpleHttpResponse> stream = includeStream
+                ? streamHttpClient.execute(SimpleRequestBuilder.get(warmupUrl).addHeader("Authorization", "Bearer " + apiKey).build(), null)
+                : null;
+
+        int opened = 0;
+        int failed = 0;
+        long deadline = start + timeout.toNanos();
+        for (Future<Boolean> future : pending) {
+            if (Boolean.TRUE.equals(await(future, deadline))) {
+                opened++;
+            } else {
+                failed++;
+            }
+        }
+        if (stream != null) {
+            if (await(stream, deadline) != null) {
+                opened++;
+            } else {
+                failed++;
+            }
+        }
+
+        runs.incrementAndGet();
+        lastOpened = opened;
+        lastFailed = failed;
+        lastElapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private boolean openSyncConnection() {
+        HttpGet request = new HttpGet(warmupUrl);
+        request.addHeader("Authorization", "Bearer " + apiKey);
+        try {
+            httpClient.execute(request, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode();
+            });
+            return true;
+        } catch (Exception e) {
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            return false;
+        }
+    }
+
+    /**
+     * 等待到截止时间，超时或失败时取消并返回null
+     */
+    private <T> T await(Future<T> future, long deadlineNanos) {
+        try {
+            return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            future.cancel(true);
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            return null;
+        }
+    }
+
+    /**
+     * 预热结果和连接池状态
+     */
+    public Map<String, Object> stats() {
+        PoolStats pool = connectionManager.getTotalStats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("keepWarm", keepWarm);
+        stats.put("targetConnections", connections);
+        stats.put("runs", runs.get());
+        stats.put("lastOpened", lastOpened);
+        stats.put("lastFailed", lastFailed);
+        stats.put("lastElapsedMs", lastElapsedMs);
+        stats.put("lastError", lastError);
+        stats.put("poolAvailable", pool.getAvailable());
+        stats.put("poolLeased", pool.getLeased());
+        stats.put("poolPending", pool.getPending());
+        stats.put("poolMax", pool.getMax());
+        return stats;
+    }
+}
@@ -0,0 +1,303 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 大模型调用保护：调用时限、熔断器和并发隔离
+ * <p>
+ * 同步调用在独立执行器中运行，超过时限立即返回；卡住的调用在真正结束前持续占用并发名额，
+ * 因此模型服务挂起时新请求会被快速拒绝，而不会耗尽Tomcat工作线程。
+ * 熔断器按最近window-size次调用的失败率或慢调用率打开，打开期间直接拒绝，
+ * 到期后放行少量试探调用，全部成功则关闭。
+ */
+@Component
+public class ModelCallGuard {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutNanos;
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final int slowCallRateThreshold;
+    private final long openDurationMillis;
+    private final int halfOpenCalls;
+
+    // 滑动窗口，仅在持有this锁时访问
+    private final boolean[] windowFailed;
+    private final boolean[] windowSlow;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private int windowSlowCalls;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private int halfOpenPermitted;
+    private int halfOpenSucceeded;
+    private LocalDateTime stateChangedAt = LocalDateTime.now();
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder rejectedOpen = new LongAdder();
+    private final LongAdder rejectedBulkhead = new LongAdder();
+
+    public ModelCallGuard(@Qualifier("modelCallExecutor") ThreadPoolExecutor executor,
+                          @Value("${ecmo.llm.timeout:120s}") Duration timeout,
+                          @Value("${ecmo.llm.bulkhead.max-concurrent:16}") int maxConcurrent,
+                          @Value("${ecmo.llm.bulkhead.max-wait:2s}") Duration maxWait,
+                          @Value("${ecmo.llm.circuit.window-size:20}") int windowSize,
+                          @Value("${ecmo.llm.circuit.minimum-calls:10}") int minimumCalls,
+                          @Value("${ecmo.llm.circuit.failure-rate-threshold:50}") int failureRateThreshold,
+                          @Value("${ecmo.llm.circuit.slow-call-threshold:60s}") Duration slowCallThreshold,
+                          @Value("${ecmo.llm.circuit.slow-call-rate-threshold:80}") int slowCallRateThreshold,
+                          @Value("${ecmo.llm.circuit.open-duration:30s}") Duration openDuration,
+                          @Value("${ecmo.llm.circuit.half-open-calls:3}") int halfOpenCalls) {
+        this.executor = executor;
+        this.timeoutNanos = timeout.toNanos();
+        this.maxConcurrent = maxConcurrent;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.windowFailed = new boolean[windowSize];
+        this.windowSlow = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationMillis = openDuration.toMillis();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * 在保护下执行同步调用，不可用时抛出ModelUnavailableException
+     */
+    public <T> T call(Supplier<T> call) {
+        acquire();
+        long start = System.nanoTime();
+        // 任务开始执行或调用方放弃时二者之一取得名额的归还权，避免未执行即取消的任务泄漏名额
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return call.get();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            abandonPermission();
+            rejectedBulkhead.increment();
+            throw new ModelUnavailableException(ModelUnavailableException.Reason.BULKHEAD_FULL);
+        }
+
+        try {
+            T result = future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            onResult(false, System.nanoTime() - start);
+            return result;
+        } catch (TimeoutException e) {
+            cancel(future, claimed);
+            timeouts.increment();
+            onResult(true, System.nanoTime() - start);
+            throw new ModelUnavailableException(ModelUnavailableException.Reason.TIMEOUT);
+        } catch (ExecutionException e) {
+            onResult(true, System.nanoTime() - start);
+            throw new ModelUnavailableException(ModelUnavailableException.Reason.ERROR, e.getCause());
+        } catch (InterruptedException e) {
+            cancel(future, claimed);
+            abandonPermission();
+            Thread.currentThread().interrupt();
+            throw new ModelUnavailableException(ModelUnavailableException.Reason.ERROR, e);
+        }
+    }
+
+    /**
+     * 在保护下执行流式调用，相邻两段输出的间隔超过时限视为超时
+     * 订阅方取消（如客户端断开）不计入熔断统计
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> call) {
+        return Flux.defer(() -> {
+            acquire();
+            long start = System.nanoTime();
+            return Flux.defer(call)
+                    .timeout(Duration.ofNanos(timeoutNanos))
+                    .doOnComplete(() -> onResult(false, System.nanoTime() - start))
+                    .doOnError(e -> {
+                        if (e instanceof TimeoutException) {
+                            timeouts.increment();
+                        }
+                        onResult(true, System.nanoTime() - start);
+                    })
+                    .doOnCancel(this::abandonPermission)
+                    .doFinally(signal -> bulkhead.release())
+                    .onErrorMap(e -> !(e instanceof ModelUnavailableException), e -> e instanceof TimeoutException
+                            ? new ModelUnavailableException(ModelUnavailableException.Reason.TIMEOUT)
+                            : new ModelUnavailableException(ModelUnavailableException.Reason.ERROR, e));
+        });
+    }
+
+    private void cancel(Future<?> future, AtomicBoolean claimed) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+    }
+
+    private void acquire() {
+        boolean acquired;
+        try {
+            acquired = maxWaitNanos > 0
+                    ? bulkhead.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)
+                    : bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelUnavailableException(ModelUnavailableException.Reason.BULKHEAD_FULL);
+        }
+        if (!acquired) {
+            rejectedBulkhead.increment();
+            throw new ModelUnavailableException(ModelUnavailableException.Reason.BULKHEAD_FULL);
+        }
+        if (!tryPermission()) {
+            bulkhead.release();
+            rejectedOpen.increment();
+            throw new ModelUnavailableException(ModelUnavailableException.Reason.CIRCUIT_OPEN);
+        }
+    }
+
+    private synchronized boolean tryPermission() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() < openUntil) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermitted >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenPermitted++;
+        }
+        return true;
+    }
+
+    /**
+     * 已获得许可但调用未真正执行或结果不代表模型服务状态时归还试探名额
+     */
+    private synchronized void abandonPermission() {
+        if (state == State.HALF_OPEN && halfOpenPermitted > 0) {
+            halfOpenPermitted--;
+        }
+    }
+
+    private synchronized void onResult(boolean failed, long elapsedNanos) {
+        boolean slow = elapsedNanos >= slowCallNanos;
+        if (failed) {
+            failures.increment();
+        } else {
+            successes.increment();
+        }
+        if (slow) {
+            slowCalls.increment();
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // 打开前已发出的调用，结果不再影响状态
+            return;
+        }
+
+        if (windowCount == windowFailed.length) {
+            if (windowFailed[windowIndex]) windowFailures--;
+            if (windowSlow[windowIndex]) windowSlowCalls--;
+        } else {
+            windowCount++;
+        }
+        windowFailed[windowIndex] = failed;
+        windowSlow[windowIndex] = slow;
+        if (failed) windowFailures++;
+        if (slow) windowSlowCalls++;
+        windowIndex = (windowIndex + 1) % windowFailed.length;
+
+        if (windowCount >= minimumCalls
+                && (windowFailures * 100 >= failureRateThreshold * windowCount
+                || windowSlowCalls * 100 >= slowCallRateThreshold * windowCount)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State next) {
+        state = next;
+        stateChangedAt = LocalDateTime.now();
+        halfOpenPermitted = 0;
+        halfOpenSucceeded = 0;
+        if (next == State.OPEN) {
+            openUntil = System.currentTimeMillis() + openDurationMillis;
+        } else if (next == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+            windowSlowCalls = 0;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 熔断器和并发隔离统计
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("state", state);
+        stats.put("stateChangedAt", stateChangedAt);
+        stats.put("windowCalls", windowCount);
+        stats.put("failureRate", windowCount == 0 ? 0.0 : (double) windowFailures / windowCount);
+        stats.put("slowCallRate", windowCount == 0 ? 0.0 : (double) windowSlowCalls / windowCount);
+        stats.put("successes", successes.sum());
+        stats.put("failures", failures.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("slowCalls", slowCalls.sum());
+        stats.put("rejectedOpen", rejectedOpen.sum());
+        stats.put("rejectedBulkhead", rejectedBulkhead.sum());
+        stats.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+        stats.put("maxConcurrent", maxConcurrent);
+        return stats;
+    }
+}
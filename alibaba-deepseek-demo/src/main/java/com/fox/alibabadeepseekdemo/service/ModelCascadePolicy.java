@@ -0,0 +1,135 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模型级联策略
+ * 先由小模型评估，置信度低于阈值、结果无法解析或与规则评分区间的推荐结论矛盾时升级到大模型。
+ */
+@Component
+public class ModelCascadePolicy {
+
+    public enum Escalation {
+        /** 小模型调用失败（超时、限流等） */
+        FIRST_PASS_FAILED,
+        /** 小模型输出无法解析或缺少诊断 */
+        UNPARSEABLE,
+        /** 置信度低于阈值 */
+        LOW_CONFIDENCE,
+        /** canUseECMO与规则评分区间的推荐结论矛盾 */
+        DISAGREEMENT
+    }
+
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final String smallModel;
+    private final double confidenceThreshold;
+    private final boolean escalateOnDisagreement;
+
+    private final LongAdder firstPassCalls = new LongAdder();
+    private final LongAdder firstPassNanos = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final Map<Escalation, LongAdder> escalations = new LinkedHashMap<>();
+    private final LongAdder largeModelCalls = new LongAdder();
+    private final LongAdder largeModelNanos = new LongAdder();
+
+    public ModelCascadePolicy(@Value("${ecmo.cascade.enabled:false}") boolean enabled,
+                              @Value("${ecmo.cascade.small-model:Qwen/Qwen2.5-7B-Instruct}") String smallModel,
+                              @Value("${ecmo.cascade.confidence-threshold:0.75}") double confidenceThreshold,
+                              @Value("${ecmo.cascade.escalate-on-disagreement:true}") boolean escalateOnDisagreement) {
+        this.enabled = enabled;
+        this.smallModel = smallModel;
+        this.confidenceThreshold = confidenceThreshold;
+        this.escalateOnDisagreement = escalateOnDisagreement;
+        for (Escalation escalation : Escalation.values()) {
+            escalations.put(escalation, new LongAdder());
+        }
+    }
+
+    /**
+     * 级联配置标识，参与评估缓存键：启用级联时缓存中可能是小模型的结果，停用或调整阈值后不应继续命中
+     */
+    public String getVariant() {
+        return enabled ? "+cascade:" + smallModel + "@" + confidenceThreshold + (escalateOnDisagreement ? "d" : "") : "";
+    }
+
+    /**
+     * 判断小模型结果是否需要升级，返回null表示直接采用
+     */
+    public Escalation check(AIAssessmentResponse parsed, RiskEvaluation evaluation) {
+        if (parsed == null || !StringUtils.hasText(parsed.getDiagnosis())) {
+            return Escalation.UNPARSEABLE;
+        }
+        if (parsed.getConfidence() == null || parsed.getConfidence() < confidenceThreshold) {
+            return Escalation.LOW_CONFIDENCE;
+        }
+        Boolean expected = evaluation.getExpectedRecommendation();
+        if (escalateOnDisagreement && expected != null && !expected.equals(parsed.getCanUseECMO())) {
+            return Escalation.DISAGREEMENT;
+        }
+        return null;
+    }
+
+    /**
+     * 记录一次小模型评估，escalation为null表示结果已被采用
+     */
+    public void recordFirstPass(long elapsedNanos, Escalation escalation) {
+        firstPassCalls.increment();
+        firstPassNanos.add(elapsedNanos);
+        if (escalation == null) {
+            accepted.increment();
+        } else {
+            escalations.get(escalation).increment();
+        }
+    }
+
+    /**
+     * 记录一次大模型调用（升级或未启用级联时的直接调用）
+     */
+    public void recordLargeModel(long elapsedNanos) {
+        largeModelCalls.increment();
+        largeModelNanos.add(elapsedNanos);
+    }
+
+    /**
+     * 级联统计
+     * 节省时间估算 = 采用小模型结果的次数 × 大模型平均耗时 − 全部小模型调用耗时
+     */
+    public Map<String, Object> stats() {
+        long calls = firstPassCalls.sum();
+        long acceptedCount = accepted.sum();
+        long largeCalls = largeModelCalls.sum();
+        long escalatedCount = calls - acceptedCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("smallModel", smallModel);
+        stats.put("confidenceThreshold", confidenceThreshold);
+        stats.put("firstPassCalls", calls);
+        stats.put("accepted", acceptedCount);
+        stats.put("escalated", escalatedCount);
+        stats.put("escalationRate", calls == 0 ? 0.0 : (double) escalatedCount / calls);
+        Map<String, Long> reasons = new LinkedHashMap<>();
+        escalations.forEach((escalation, counter) -> reasons.put(escalation.name(), counter.sum()));
+        stats.put("escalationReasons", reasons);
+
+        double avgSmallMs = calls == 0 ? 0.0 : TimeUnit.NANOSECONDS.toMicros(firstPassNanos.sum()) / 1000.0 / calls;
+        double avgLargeMs = largeCalls == 0 ? 0.0 : TimeUnit.NANOSECONDS.toMicros(largeModelNanos.sum()) / 1000.0 / largeCalls;
+        stats.put("avgSmallModelMs", avgSmallMs);
+        stats.put("avgLargeModelMs", avgLargeMs);
+        stats.put("largeModelCalls", largeCalls);
+        // 尚无大模型调用耗时可对比时为0
+        stats.put("estimatedLatencySavedMs", largeCalls == 0 ? 0L
+                : Math.round(acceptedCount * avgLargeMs - calls * avgSmallMs));
+        return stats;
+    }
+}
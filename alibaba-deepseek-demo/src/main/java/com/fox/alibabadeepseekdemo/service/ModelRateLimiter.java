@@ -0,0 +1,261 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 大模型调用限流：按服务商的RPM和TPM配额使用两个令牌桶
+ * <p>
+ * 每次调用预占1个请求令牌和"提示词估算token + 本次调用的maxTokens"个token令牌，配额不足时按到达顺序排队，
+ * 等待超过max-wait或排队数超过max-queue时才拒绝。调用完成后按实际usage多退少补。
+ */
+@Component
+public class ModelRateLimiter {
+
+    private final boolean enabled;
+    private final int completionTokens;
+    private final long maxWaitNanos;
+    private final int maxQueue;
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<Object> waiters = new ArrayDeque<>();
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanosTotal = new LongAdder();
+    private volatile long maxWaitObservedNanos;
+    private final LongAdder estimatedTokens = new LongAdder();
+    private final LongAdder actualTokens = new LongAdder();
+
+    public ModelRateLimiter(@Value("${ecmo.rate-limit.enabled:true}") boolean enabled,
+                            @Value("${ecmo.rate-limit.requests-per-minute:1000}") int requestsPerMinute,
+                            @Value("${ecmo.rate-limit.tokens-per-minute:50000}") int tokensPerMinute,
+                            @Value("${spring.ai.openai.chat.options.max-tokens:2000}") int completionTokens,
+                            @Value("${ecmo.rate-limit.max-wait:60s}") Duration maxWait,
+                            @Value("${ecmo.rate-limit.max-queue:200}") int maxQueue) {
+        this.enabled = enabled;
+        this.completionTokens = completionTokens;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxQueue = maxQueue;
+        this.requestBucket = new TokenBucket(requestsPerMinute);
+        this.tokenBucket = new TokenBucket(tokensPerMinute);
+    }
+
+    /**
+     * 为一次使用默认maxTokens的调用预占配额，配额不足时排队等待
+     * 超过最长等待或排队已满时抛出ModelUnavailableException
+     */
+    public Permit acquire(String prompt) {
+        return acquire(prompt, completionTokens);
+    }
+
+    /**
+     * 为一次调用预占配额，maxTokens为本次请求实际发送的最大输出token数
+     */
+    public Permit acquire(String prompt, int maxTokens) {
+        long cost = Math.min(TokenEstimator.estimate(prompt) + (long) maxTokens, tokenBucket.capacity);
+        if (!enabled) {
+            return new Permit(0);
+        }
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        Object waiter = new Object();
+        lock.lock();
+        try {
+            if (waiters.size() >= maxQueue) {
+                rejected.increment();
+                throw new ModelUnavailableException(ModelUnavailableException.Reason.RATE_LIMITED);
+            }
+            waiters.addLast(waiter);
+            boolean waited = false;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    long remaining = deadline - now;
+                    if (waiters.peekFirst() == waiter) {
+                        requestBucket.refill(now);
+                        tokenBucket.refill(now);
+                        long wait = Math.max(requestBucket.nanosUntil(1), tokenBucket.nanosUntil(cost));
+                        if (wait == 0) {
+                            requestBucket.take(1);
+                            tokenBucket.take(cost);
+                            break;
+                        }
+                        if (wait > remaining) {
+                            // 按当前补充速度在时限内无法满足，直接拒绝而不是空等
+                            rejected.increment();
+                            throw new ModelUnavailableException(ModelUnavailableException.Reason.RATE_LIMITED);
+                        }
+                        waited = true;
+                        changed.awaitNanos(wait);
+                    } else {
+                        if (remaining <= 0) {
+                            rejected.increment();
+                            throw new ModelUnavailableException(ModelUnavailableException.Reason.RATE_LIMITED);
+                        }
+                        waited = true;
+                        changed.awaitNanos(remaining);
+                    }
+                }
+                if (waited) {
+                    queued.increment();
+                }
+            } finally {
+                waiters.remove(waiter);
+                changed.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelUnavailableException(ModelUnavailableException.Reason.RATE_LIMITED);
+        } finally {
+            lock.unlock();
+        }
+
+        long waitedNanos = System.nanoTime() - start;
+        waitNanosTotal.add(waitedNanos);
+        if (waitedNanos > maxWaitObservedNanos) {
+            maxWaitObservedNanos = waitedNanos;
+        }
+        acquired.increment();
+        estimatedTokens.add(cost);
+        return new Permit(cost);
+    }
+
+    /**
+     * 调整token令牌，delta为正表示归还
+     */
+    private void adjustTokens(long delta) {
+        if (!enabled || delta == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            tokenBucket.refill(System.nanoTime());
+            tokenBucket.take(-delta);
+            if (delta > 0) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 限流统计：排队等待时间和配额使用率
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        long count = acquired.sum();
+        stats.put("acquired", count);
+        stats.put("queued", queued.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("avgWaitMs", count == 0 ? 0.0 : waitNanosTotal.sum() / 1_000_000.0 / count);
+        stats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitObservedNanos));
+        stats.put("estimatedTokens", estimatedTokens.sum());
+        stats.put("actualTokens", actualTokens.sum());
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            requestBucket.refill(now);
+            tokenBucket.refill(now);
+            stats.put("waiting", waiters.size());
+            stats.put("requestBudgetUtilization", requestBucket.utilization());
+            stats.put("tokenBudgetUtilization", tokenBucket.utilization());
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    /**
+     * 一次调用预占的配额
+     */
+    public final class Permit {
+
+        private final long reservedTokens;
+        private boolean settled;
+
+        private Permit(long reservedTokens) {
+            this.reservedTokens = reservedTokens;
+        }
+
+        /**
+         * 按实际用量结算，totalTokens为null时保留预占额
+         */
+        public synchronized void settle(Integer totalTokens) {
+            if (settled) {
+                return;
+            }
+            settled = true;
+            if (totalTokens != null) {
+                actualTokens.add(totalTokens);
+                adjustTokens(reservedTokens - totalTokens);
+            } else {
+                actualTokens.add(reservedTokens);
+            }
+        }
+
+        /**
+         * 调用未发出时全额归还
+         */
+        public synchronized void refund() {
+            if (settled) {
+                return;
+            }
+            settled = true;
+            estimatedTokens.add(-reservedTokens);
+            adjustTokens(reservedTokens);
+        }
+    }
+
+    /**
+     * 每分钟补充capacity个令牌的令牌桶，仅在持有lock时访问
+     */
+    private static final class TokenBucket {
+
+        private final long capacity;
+        private final double tokensPerNano;
+        private double available;
+        private long lastRefill;
+
+        TokenBucket(long perMinute) {
+            this.capacity = Math.max(1, perMinute);
+            this.tokensPerNano = capacity / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        void refill(long now) {
+            available = Math.min(capacity, available + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+
+        long nanosUntil(long amount) {
+            double missing = amount - available;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerNano);
+        }
+
+        void take(long amount) {
+            available = Math.min(capacity, available - amount);
+        }
+
+        double utilization() {
+            return Math.max(0.0, 1.0 - available / capacity);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.fox.alibabadeepseekdemo.service;
+
+/**
+ * 模型服务不可用：熔断、并发已满、调用超时、配额不足或调用失败
+ * 调用方据此返回降级的规则评估结果
+ */
+public class ModelUnavailableException extends RuntimeException {
+
+    public enum Reason {
+        CIRCUIT_OPEN("AI服务熔断中"),
+        BULKHEAD_FULL("AI服务并发调用已满"),
+        TIMEOUT("AI服务响应超时"),
+        RATE_LIMITED("AI服务调用配额已满"),
+        ERROR("AI服务调用失败");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final Reason reason;
+
+    public ModelUnavailableException(Reason reason) {
+        super(reason.getDescription());
+        this.reason = reason;
+    }
+
+    public ModelUnavailableException(Reason reason, Throwable cause) {
+        super(reason.getDescription() + ": " + cause.getMessage(), cause);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,88 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 患者参数指纹
+ * 对规范化后的临床参数计算SHA-256，临床内容相同的请求得到相同的指纹。
+ * 患者ID、姓名和提交时间不参与计算。
+ */
+public final class PatientFingerprint {
+
+    private PatientFingerprint() {
+    }
+
+    public static String of(PatientParameters patient) {
+        StringBuilder canonical = new StringBuilder(512);
+        append(canonical, "age", patient.getAge());
+        append(canonical, "gender", patient.getGender());
+        append(canonical, "weight", patient.getWeight());
+        append(canonical, "height", patient.getHeight());
+        append(canonical, "heartRate", patient.getHeartRate());
+        append(canonical, "systolicBP", patient.getSystolicBP());
+        append(canonical, "diastolicBP", patient.getDiastolicBP());
+        append(canonical, "temperature", patient.getTemperature());
+        append(canonical, "respiratoryRate", patient.getRespiratoryRate());
+        append(canonical, "oxygenSaturation", patient.getOxygenSaturation());
+        append(canonical, "pH", patient.getpH());
+        append(canonical, "paCO2", patient.getPaCO2());
+        append(canonical, "paO2", patient.getPaO2());
+        append(canonical, "bicarbonate", patient.getBicarbonate());
+        append(canonical, "lactate", patient.getLactate());
+        append(canonical, "baseExcess", patient.getBaseExcess());
+        append(canonical, "ejectionFraction", patient.getEjectionFraction());
+        append(canonical, "cardiacIndex", patient.getCardiacIndex());
+        append(canonical, "centralVenousPressure", patient.getCentralVenousPressure());
+        append(canonical, "pulmonaryWedgePressure", patient.getPulmonaryWedgePressure());
+        append(canonical, "pO2FiO2Ratio", patient.getpO2FiO2Ratio());
+        append(canonical, "peep", patient.getPeep());
+        append(canonical, "plateauPressure", patient.getPlateauPressure());
+        append(canonical, "compliance", patient.getCompliance());
+        append(canonical, "hemoglobin", patient.getHemoglobin());
+        append(canonical, "plateletCount", patient.getPlateletCount());
+        append(canonical, "whiteBloodCell", patient.getWhiteBloodCell());
+        append(canonical, "creatinine", patient.getCreatinine());
+        append(canonical, "bilirubin", patient.getBilirubin());
+        append(canonical, "albumin", patient.getAlbumin());
+        append(canonical, "primaryDiagnosis", patient.getPrimaryDiagnosis());
+        append(canonical, "secondaryDiagnosis", patient.getSecondaryDiagnosis());
+        append(canonical, "illnessDuration", patient.getIllnessDuration());
+        append(canonical, "comorbidities", patient.getComorbidities());
+        append(canonical, "currentTreatment", patient.getCurrentTreatment());
+        append(canonical, "ecmoIndication", patient.getEcmoIndication());
+        append(canonical, "contraindications", patient.getContraindications());
+        append(canonical, "riskFactors", patient.getRiskFactors());
+        return sha256(canonical.toString());
+    }
+
+    private static void append(StringBuilder canonical, String name, Object value) {
+        canonical.append(name).append('=');
+        if (value instanceof Double d) {
+            // 7.30 与 7.3 视为相同
+            canonical.append(BigDecimal.valueOf(d).stripTrailingZeros().toPlainString());
+        } else if (value instanceof String s) {
+            String normalized = s.trim().replaceAll("\\s+", " ");
+            if (!normalized.isEmpty()) {
+                canonical.append(normalized);
+            }
+        } else if (value != null) {
+            canonical.append(value);
+        }
+        canonical.append('\n');
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次规则评分的结果：总分、命中的扣分档位和各分项评分
+ * 持有产生它的规则快照，规则重载不影响已完成的评估
+ */
+public final class RiskEvaluation {
+
+    private final CompiledScoringRules rules;
+    private final double score;
+    private final long firedTiers;
+    private final int[] subScores;
+    private final int levelIndex;
+
+    RiskEvaluation(CompiledScoringRules rules, double score, long firedTiers, int[] subScores) {
+        this.rules = rules;
+        this.score = score;
+        this.firedTiers = firedTiers;
+        this.subScores = subScores;
+        this.levelIndex = rules.levelIndex(score);
+    }
+
+    /**
+     * ECMO实施推荐指数 (0-100)
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public String getRulesVersion() {
+        return rules.getVersion();
+    }
+
+    public String getRiskLevel() {
+        return rules.levelName(levelIndex);
+    }
+
+    public String getRiskColor() {
+        return rules.levelColor(levelIndex);
+    }
+
+    /**
+     * 提示词中使用的风险等级描述
+     */
+    public String getPromptLabel() {
+        return rules.levelPrompt(levelIndex);
+    }
+
+    /**
+     * 评分区间的预期推荐结论，为空表示该区间不作判断
+     */
+    public Boolean getExpectedRecommendation() {
+        return rules.levelRecommend(levelIndex);
+    }
+
+    /**
+     * 命中的全部扣分项
+     */
+    public List<String> getRiskFactors() {
+        return rules.firedLabels(firedTiers, false);
+    }
+
+    /**
+     * 命中的关键风险因素，带扣分值
+     */
+    public List<String> getKeyRiskFactors() {
+        return rules.firedLabels(firedTiers, true);
+    }
+
+    /**
+     * 详细评分：总体推荐指数及各分项评分
+     */
+    public Map<String, Object> getDetailedScores() {
+        Map<String, Object> detailedScores = new HashMap<>();
+        detailedScores.put("总体推荐指数", String.format("%.1f/100", score));
+        for (int i = 0; i < subScores.length; i++) {
+            detailedScores.put(rules.subScoreName(i), subScores[i] + "/100");
+        }
+        return detailedScores;
+    }
+}
@@ -0,0 +1,124 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 风险评分规则引擎
+ * 启动时从 ecmo.scoring.rules-location 加载规则并编译，评估时读取当前规则快照。
+ * 重载时先完整编译新规则再原子替换，编译失败保留原规则，进行中的评估不受影响。
+ */
+@Component
+public class RiskScoringEngine {
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String rulesLocation;
+    private final boolean watch;
+
+    private final AtomicReference<CompiledScoringRules> rules = new AtomicReference<>();
+
+    private volatile long lastModified;
+    private volatile String lastReloadError;
+    private volatile LocalDateTime lastReloadAt;
+
+    public RiskScoringEngine(ResourceLoader resourceLoader,
+                             @Value("${ecmo.scoring.rules-location:classpath:scoring/ecmo-risk-rules.json}") String rulesLocation,
+                             @Value("${ecmo.scoring.watch:false}") boolean watch) {
+        this.resourceLoader = resourceLoader;
+        this.rulesLocation = rulesLocation;
+        this.watch = watch;
+        // 启动时规则不合法直接失败，避免使用不完整的规则评分
+        rules.set(load());
+    }
+
+    /**
+     * 使用当前规则评估患者
+     */
+    public RiskEvaluation evaluate(PatientParameters patient) {
+        return rules.get().evaluate(patient);
+    }
+
+    /**
+     * 当前规则版本
+     */
+    public String getVersion() {
+        return rules.get().getVersion();
+    }
+
+    /**
+     * 重新加载规则，失败时保留原规则并抛出异常
+     */
+    public synchronized CompiledScoringRules reload() {
+        lastReloadAt = LocalDateTime.now();
+        try {
+            CompiledScoringRules compiled = load();
+            rules.set(compiled);
+            lastReloadError = null;
+            return compiled;
+        } catch (RuntimeException e) {
+            lastReloadError = e.getMessage();
+            throw e;
+        }
+    }
+
+    /**
+     * 规则文件位于文件系统时定期检查修改时间，变化后自动重载
+     */
+    @Scheduled(fixedDelayString = "${ecmo.scoring.watch-interval-ms:30000}")
+    public void reloadIfModified() {
+        if (!watch) {
+            return;
+        }
+        try {
+            Resource resource = resourceLoader.getResource(rulesLocation);
+            if (resource.isFile() && resource.lastModified() != lastModified) {
+                reload();
+            }
+        } catch (IOException | RuntimeException e) {
+            // 错误已记录在lastReloadError中，继续使用原规则
+        }
+    }
+
+    private CompiledScoringRules load() {
+        Resource resource = resourceLoader.getResource(rulesLocation);
+        try (InputStream in = resource.getInputStream()) {
+            ScoringRuleDefinition definition = objectMapper.readValue(in, ScoringRuleDefinition.class);
+            CompiledScoringRules compiled = CompiledScoringRules.compile(definition);
+            lastModified = resource.isFile() ? resource.lastModified() : 0L;
+            return compiled;
+        } catch (IOException e) {
+            throw new IllegalStateException("评分规则加载失败: " + rulesLocation + " - " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 规则加载状态
+     */
+    public Map<String, Object> stats() {
+        CompiledScoringRules current = rules.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("location", rulesLocation);
+        stats.put("version", current.getVersion());
+        stats.put("loadedAt", current.getLoadedAt());
+        stats.put("deductions", current.getDeductionCount());
+        stats.put("tiers", current.getTierCount());
+        stats.put("subScores", current.getSubScoreCount());
+        stats.put("watch", watch);
+        stats.put("lastReloadAt", lastReloadAt);
+        stats.put("lastReloadError", lastReloadError);
+        return stats;
+    }
+}
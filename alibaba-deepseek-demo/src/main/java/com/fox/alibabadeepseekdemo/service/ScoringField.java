@@ -0,0 +1,199 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+
+/**
+ * 评分规则可引用的患者数值参数
+ * 读取结果为double，参数缺失时返回NaN，评估过程不产生装箱对象
+ */
+public enum ScoringField {
+
+    AGE("age") {
+        @Override
+        double read(PatientParameters p) {
+            Integer v = p.getAge();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    WEIGHT("weight") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getWeight();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    HEART_RATE("heartRate") {
+        @Override
+        double read(PatientParameters p) {
+            Integer v = p.getHeartRate();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    SYSTOLIC_BP("systolicBP") {
+        @Override
+        double read(PatientParameters p) {
+            Integer v = p.getSystolicBP();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    DIASTOLIC_BP("diastolicBP") {
+        @Override
+        double read(PatientParameters p) {
+            Integer v = p.getDiastolicBP();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    TEMPERATURE("temperature") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getTemperature();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    RESPIRATORY_RATE("respiratoryRate") {
+        @Override
+        double read(PatientParameters p) {
+            Integer v = p.getRespiratoryRate();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    OXYGEN_SATURATION("oxygenSaturation") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getOxygenSaturation();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    PH("pH") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getpH();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    PA_CO2("paCO2") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getPaCO2();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    PA_O2("paO2") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getPaO2();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    BICARBONATE("bicarbonate") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getBicarbonate();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    LACTATE("lactate") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getLactate();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    BASE_EXCESS("baseExcess") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getBaseExcess();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    EJECTION_FRACTION("ejectionFraction") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getEjectionFraction();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    PO2_FIO2_RATIO("pO2FiO2Ratio") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getpO2FiO2Ratio();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    HEMOGLOBIN("hemoglobin") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getHemoglobin();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    PLATELET_COUNT("plateletCount") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getPlateletCount();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    WHITE_BLOOD_CELL("whiteBloodCell") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getWhiteBloodCell();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    CREATININE("creatinine") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getCreatinine();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    BILIRUBIN("bilirubin") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getBilirubin();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    ALBUMIN("albumin") {
+        @Override
+        double read(PatientParameters p) {
+            Double v = p.getAlbumin();
+            return v == null ? Double.NaN : v;
+        }
+    },
+    ILLNESS_DURATION("illnessDuration") {
+        @Override
+        double read(PatientParameters p) {
+            Integer v = p.getIllnessDuration();
+            return v == null ? Double.NaN : v;
+        }
+    };
+
+    private final String property;
+
+    ScoringField(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * 读取参数值，缺失时返回NaN
+     */
+    abstract double read(PatientParameters patient);
+
+    /**
+     * 按规则定义中的属性名查找字段
+     */
+    public static ScoringField ofProperty(String property) {
+        for (ScoringField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("不支持的评分字段: " + property);
+    }
+}
@@ -0,0 +1,102 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 风险评分规则定义，对应 scoring/ecmo-risk-rules.json
+ * 仅作为加载格式使用，评估时使用编译后的 {@link CompiledScoringRules}
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScoringRuleDefinition {
+
+    /**
+     * 规则版本，参与评估缓存键，修改规则时需同步递增
+     */
+    private String version;
+
+    private String description;
+
+    private double baseScore = 100;
+
+    private double minScore = 0;
+
+    private double maxScore = 100;
+
+    /**
+     * 风险等级区间，按minScore从高到低匹配
+     */
+    private List<Level> levels = new ArrayList<>();
+
+    /**
+     * 扣分项，每项内的档位按顺序匹配，命中第一个档位即停止
+     */
+    private List<Deduction> deductions = new ArrayList<>();
+
+    /**
+     * 详细分项评分
+     */
+    private List<SubScore> subScores = new ArrayList<>();
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Level {
+        private double minScore;
+        private String level;
+        private String color;
+        private String promptLabel;
+        /**
+         * 该区间的预期推荐结论，模型级联时用于判断小模型结论是否矛盾；为空表示不作判断
+         */
+        private Boolean recommend;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Deduction {
+        private String name;
+        private String field;
+        private List<Tier> tiers = new ArrayList<>();
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Tier {
+        private String op;
+        private double threshold;
+        private double points;
+        private String label;
+        /**
+         * 命中时是否列入关键风险因素
+         */
+        private boolean keyRiskFactor;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SubScore {
+        private String name;
+        private String field;
+        /**
+         * 参数缺失时的得分
+         */
+        private int missingScore;
+        /**
+         * 所有区间均未命中时的得分
+         */
+        private int defaultScore;
+        private List<Band> bands = new ArrayList<>();
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Band {
+        private String op;
+        private double threshold;
+        private int score;
+    }
+}
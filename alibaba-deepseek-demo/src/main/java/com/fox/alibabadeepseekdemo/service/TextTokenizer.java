@@ -0,0 +1,83 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 中英文混合文本分词
+ * 连续的英文字母和数字作为一个词并转小写；连续的汉字切分为单字和相邻二字；其余字符均为分隔符。
+ * 切分不依赖词典，"心肌梗死"索引为"心、心肌、肌、肌梗、梗、梗死、死"。查询词按 {@link #tokenizeQuery} 切分：
+ * 两字以上只取二元词，单个汉字（如"肺"、"血"）取一元词，均可匹配文档中任意位置的子串。
+ */
+public final class TextTokenizer {
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * 索引分词：汉字同时输出一元词和二元词
+     */
+    public static List<String> tokenize(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 查询分词：连续两个以上汉字只输出二元词，避免常见单字扩大匹配范围；单个汉字输出一元词
+     */
+    public static List<String> tokenizeQuery(String text) {
+        return tokenize(text, false);
+    }
+
+    private static List<String> tokenize(String text, boolean unigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (isHan(codePoint)) {
+                int start = i;
+                while (i < length && isHan(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                addBigrams(text.substring(start, i), unigrams, tokens);
+            } else if (isWordChar(codePoint)) {
+                int start = i;
+                while (i < length && isWordChar(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    private static void addBigrams(String run, boolean unigrams, List<String> tokens) {
+        int[] codePoints = run.codePoints().toArray();
+        if (codePoints.length == 1) {
+            tokens.add(run);
+            return;
+        }
+        for (int i = 0; i < codePoints.length; i++) {
+            if (unigrams) {
+                tokens.add(new String(codePoints, i, 1));
+            }
+            if (i + 1 < codePoints.length) {
+                tokens.add(new String(codePoints, i, 2));
+            }
+        }
+    }
+
+    static boolean isHan(int codePoint) {
+        return Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN;
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) && !isHan(codePoint);
+    }
+}
@@ -0,0 +1,122 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分层评估策略
+ * 风险评分远离决策边界的明确病例直接使用规则评估，仅边界病例调用大模型。
+ */
+@Component
+public class TieredAssessmentPolicy {
+
+    public enum Tier {
+        /** 评分很高且无禁忌症，规则判定推荐 */
+        RULES_RECOMMEND,
+        /** 评分很低，规则判定不推荐 */
+        RULES_NOT_RECOMMEND,
+        /** 边界病例，调用大模型 */
+        LLM
+    }
+
+    /**
+     * 后台补充评估的结果
+     */
+    public enum BackfillOutcome {
+        /** 已提交到补充评估执行器 */
+        SUBMITTED,
+        /** 相同参数的补充评估进行中，未重复提交 */
+        COALESCED,
+        /** 执行器已满，放弃补充评估 */
+        REJECTED,
+        /** 大模型调用失败 */
+        FAILED,
+        /** 大模型评估已写入缓存 */
+        CACHED,
+        /** 得到默认评估，未写入缓存 */
+        SKIPPED
+    }
+
+    @Getter
+    private final boolean enabled;
+    private final double highThreshold;
+    private final double lowThreshold;
+    @Getter
+    private final boolean backfill;
+
+    private final Map<Tier, LongAdder> counters = new LinkedHashMap<>();
+    private final Map<BackfillOutcome, LongAdder> backfillCounters = new LinkedHashMap<>();
+
+    public TieredAssessmentPolicy(@Value("${ecmo.tiered.enabled:false}") boolean enabled,
+                                  @Value("${ecmo.tiered.high-threshold:90}") double highThreshold,
+                                  @Value("${ecmo.tiered.low-threshold:20}") double lowThreshold,
+                                  @Value("${ecmo.tiered.backfill:false}") boolean backfill) {
+        this.enabled = enabled;
+        this.highThreshold = highThreshold;
+        this.lowThreshold = lowThreshold;
+        this.backfill = backfill;
+        for (Tier tier : Tier.values()) {
+            counters.put(tier, new LongAdder());
+        }
+        for (BackfillOutcome outcome : BackfillOutcome.values()) {
+            backfillCounters.put(outcome, new LongAdder());
+        }
+    }
+
+    /**
+     * 根据风险评分选择评估层级并计数
+     */
+    public Tier route(PatientParameters patient, double riskScore) {
+        Tier tier = Tier.LLM;
+        if (enabled) {
+            if (riskScore >= highThreshold && !StringUtils.hasText(patient.getContraindications())) {
+                tier = Tier.RULES_RECOMMEND;
+            } else if (riskScore <= lowThreshold) {
+                tier = Tier.RULES_NOT_RECOMMEND;
+            }
+        }
+        counters.get(tier).increment();
+        return tier;
+    }
+
+    /**
+     * 记录一次后台补充评估的结果
+     */
+    public void recordBackfill(BackfillOutcome outcome) {
+        backfillCounters.get(outcome).increment();
+    }
+
+    public Map<String, Object> stats() {
+        long total = 0;
+        for (LongAdder counter : counters.values()) {
+            total += counter.sum();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("highThreshold", highThreshold);
+        stats.put("lowThreshold", lowThreshold);
+        stats.put("backfill", backfill);
+        stats.put("total", total);
+        for (Map.Entry<Tier, LongAdder> entry : counters.entrySet()) {
+            long count = entry.getValue().sum();
+            Map<String, Object> tierStats = new LinkedHashMap<>();
+            tierStats.put("count", count);
+            tierStats.put("fraction", total == 0 ? 0.0 : Math.round(count * 10000.0 / total) / 10000.0);
+            stats.put(entry.getKey().name(), tierStats);
+        }
+        Map<String, Object> backfillStats = new LinkedHashMap<>();
+        for (Map.Entry<BackfillOutcome, LongAdder> entry : backfillCounters.entrySet()) {
+            backfillStats.put(entry.getKey().name().toLowerCase(), entry.getValue().sum());
+        }
+        stats.put("backfillOutcomes", backfillStats);
+        return stats;
+    }
+}
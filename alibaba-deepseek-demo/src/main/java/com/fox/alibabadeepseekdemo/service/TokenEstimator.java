@@ -0,0 +1,65 @@
+package com.fox.alibabadeepseekdemo.service;
+
+/**
+ * 提示词token数估算
+ * 不加载分词器，按DeepSeek分词器的经验比例估算：中日韩字符约0.6个token，其余字符约4个合为1个token。
+ * 仅用于限流预算和提示词长度控制，实际用量以模型返回的usage为准。
+ */
+public final class TokenEstimator {
+
+    private static final double CJK_TOKENS_PER_CHAR = 0.6;
+    private static final double OTHER_CHARS_PER_TOKEN = 4.0;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isCjk(text.charAt(i))) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return tokens(cjk, other);
+    }
+
+    /**
+     * 截取估算token数不超过maxTokens的最长前缀
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isCjk(text.charAt(i))) {
+                cjk++;
+            } else {
+                other++;
+            }
+            if (tokens(cjk, other) > maxTokens) {
+                // 不在代理对中间截断
+                return text.substring(0, i > 0 && Character.isHighSurrogate(text.charAt(i - 1)) ? i - 1 : i);
+            }
+        }
+        return text;
+    }
+
+    private static int tokens(int cjk, int other) {
+        return (int) Math.ceil(cjk * CJK_TOKENS_PER_CHAR + other / OTHER_CHARS_PER_TOKEN);
+    }
+
+    /**
+     * CJK部首至统一汉字、兼容汉字、全角字符
+     */
+    private static boolean isCjk(char c) {
+        return c >= '\u2E80' && c <= '\u9FFF' || c >= '\uF900' && c <= '\uFAFF' || c >= '\uFF00' && c <= '\uFFEF';
+    }
+}
@@ -0,0 +1,174 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.repository.UserRepository;
+import com.fox.alibabadeepseekdemo.repository.UserSummary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 管理端用户列表
+ * 列表按主键或用户名键集分页，只查询投影列；全量导出通过JDBC游标逐批读取并直接写出CSV，不在内存中构造完整列表。
+ */
+@Service
+@RequiredArgsConstructor
+public class UserDirectoryService {
+
+    static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final String CSV_HEADER = "id,username,realName,email,department,title,hospital,status,createdAt,lastLoginAt";
+
+    private final UserRepository userRepository;
+
+    /**
+     * 查询一页用户
+     *
+     * @param sort      id（默认，按注册顺序）或username
+     * @param direction asc或desc，默认id倒序（最新注册在前）、username正序
+     * @param cursor    上一页返回的nextCursor，首页传null；排序方式须与生成游标时一致
+     */
+    public UserPage findPage(String hospital, String department, Integer status,
+                             String sort, String direction, String cursor, Integer size) {
+        boolean byUsername = "username".equalsIgnoreCase(sort);
+        if (sort != null && !byUsername && !"id".equalsIgnoreCase(sort)) {
+            throw new IllegalArgumentException("不支持的排序字段: " + sort);
+        }
+        if (direction != null && !"asc".equalsIgnoreCase(direction) && !"desc".equalsIgnoreCase(direction)) {
+            throw new IllegalArgumentException("不支持的排序方向: " + direction);
+        }
+        boolean ascending = direction == null ? byUsername : "asc".equalsIgnoreCase(direction);
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        String after = decodeCursor(cursor, byUsername ? "username" : "id");
+        hospital = blankToNull(hospital);
+        department = blankToNull(department);
+
+        // 多取一条判断是否还有下一页
+        Limit limit = Limit.of(pageSize + 1);
+        List<UserSummary> rows;
+        if (byUsername) {
+            rows = ascending
+                    ? userRepository.findSummariesByUsernameAsc(hospital, department, status, after, limit)
+                    : userRepository.findSummariesByUsernameDesc(hospital, department, status, after, limit);
+        } else {
+            Long afterId = parseId(after, cursor);
+            rows = ascending
+                    ? userRepository.findSummariesByIdAsc(hospital, department, status, afterId, limit)
+                    : userRepository.findSummariesByIdDesc(hospital, department, status, afterId, limit);
+        }
+        if (rows.size() <= pageSize) {
+            return new UserPage(rows, null);
+        }
+        List<UserSummary> items = rows.subList(0, pageSize);
+        UserSummary last = items.get(pageSize - 1);
+        return new UserPage(items, byUsername
+                ? encodeCursor("username", last.username())
+                : encodeCursor("id", String.valueOf(last.id())));
+    }
+
+    /**
+     * 按主键顺序导出全部匹配用户为CSV（UTF-8带BOM，便于Excel打开中文），逐行写出；
+     * 以= + - @等开头的单元格前加单引号，避免在Excel中被当作公式执行
+     */
+    @Transactional(readOnly = true)
+    public long exportCsv(String hospital, String department, Integer status, OutputStream out) {
+        long rows = 0;
+        try (Stream<UserSummary> users = userRepository.streamSummaries(blankToNull(hospital), blankToNull(department), status)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write('﻿');
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            for (Iterator<UserSummary> it = users.iterator(); it.hasNext(); rows++) {
+                UserSummary user = it.next();
+                writer.write(csvLine(user.id(), user.username(), user.realName(), user.email(), user.department(),
+                        user.title(), user.hospital(), user.status(), user.createdAt(), user.lastLoginAt()));
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    static String csvLine(Object... values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (values[i] != null) {
+                String value = values[i].toString();
+                if (values[i] instanceof String && !value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+                    value = "'" + value;
+                }
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                    value = '"' + value.replace("\"", "\"\"") + '"';
+                }
+                line.append(value);
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static String encodeCursor(String sort, String value) {
+        String raw = sort + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标中的排序值，游标与当前排序字段不一致时拒绝
+     */
+    private static String decodeCursor(String cursor, String sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+        if (!raw.startsWith(sort + "|")) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+        return raw.substring(sort.length() + 1);
+    }
+
+    private static Long parseId(String value, String cursor) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+    }
+
+    /**
+     * 一页用户，nextCursor为null表示已到最后一页
+     */
+    public record UserPage(List<UserSummary> items, String nextCursor) {
+
+        public boolean hasMore() {
+            return nextCursor != null;
+        }
+    }
+}
@@ -921,6 +921,15 @@ class ECMOExpertSystem {
     }
 
     // 处理ECMO评估
+    // 评估请求头：已登录时携带用户ID，后端同时写入该用户的评估历史
+    assessHeaders() {
+        const headers = { 'Content-Type': 'application/json' };
+        if (this.userId) {
+            headers['X-User-Id'] = String(this.userId);
+        }
+        return headers;
+    }
+
     async handleECMOAssessment() {
         const formData = this.getFormData('ecmo-form');
         this.showLoading('正在进行ECMO专业评估...');
@@ -928,7 +937,7 @@ class ECMOExpertSystem {
         try {
             const response = await fetch('/api/ecmo/assess', {
                 method: 'POST',
-                headers: { 'Content-Type': 'application/json' },
+                headers: this.assessHeaders(),
                 body: JSON.stringify(formData)
             });
 
@@ -987,7 +996,7 @@ class ECMOExpertSystem {
         try {
             const response = await fetch('/api/ecmo/assess', {
                 method: 'POST',
-                headers: { 'Content-Type': 'application/json' },
+                headers: this.assessHeaders(),
                 body: JSON.stringify(formData)
             });
 
@@ -0,0 +1,223 @@
+package com.fox.alibabadeepseekdemo.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import com.fox.alibabadeepseekdemo.service.AssessmentStore;
+import com.fox.alibabadeepseekdemo.service.AssessmentStreamEvent;
+import com.fox.alibabadeepseekdemo.service.BatchAssessmentService;
+import com.fox.alibabadeepseekdemo.service.ECMOExpertService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * 流式接口：单例评估按risk/delta/result事件推送SSE，结果写入提交者的评估存储；
+ * 批量评估每例结果输出一行NDJSON，全部结果写出后才结束响应，结果同样写入提交者的评估历史
+ */
+class ECMOExpertControllerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ECMOExpertService expertService = mock(ECMOExpertService.class);
+    private final AssessmentStore store = mock(AssessmentStore.class);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(8, 8, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(400));
+    private MockMvc mockMvc;
+    private volatile String slowPatientId;
+
+    @BeforeEach
+    void setUp() {
+        when(expertService.createErrorAssessment(anyString(), anyString())).thenAnswer(invocation ->
+                assessment(invocation.getArgument(0), ECMOExpertService.ERROR_RISK_LEVEL));
+        when(store.register(any(), any(), any())).thenAnswer(invocation -> {
+            ECMOAssessment assessment = invocation.getArgument(0);
+            if (assessment.getPatientId().equals(slowPatientId)) {
+                Thread.sleep(200);
+            }
+            assessment.setAssessmentId("ECMO_ASSESS_" + assessment.getPatientId());
+            return assessment;
+        });
+        ECMOExpertController controller = new ECMOExpertController();
+        ReflectionTestUtils.setField(controller, "ecmoExpertService", expertService);
+        ReflectionTestUtils.setField(controller, "batchAssessmentService",
+                new BatchAssessmentService(expertService, executor, 100, Duration.ofSeconds(5)));
+        ReflectionTestUtils.setField(controller, "assessmentStore", store);
+        ReflectionTestUtils.setField(controller, "streamTimeout", 10_000L);
+        // 与Spring Boot默认配置一致，字符串按UTF-8写出
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(new StringHttpMessageConverter(StandardCharsets.UTF_8),
+                        new MappingJackson2HttpMessageConverter())
+                .build();
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void assessmentStreamSendsNamedEventsInOrderAndRegistersResult() throws Exception {
+        when(expertService.streamPatientAssessment(any())).thenReturn(Flux.just(
+                AssessmentStreamEvent.risk(assessment("P001", "高风险")),
+                AssessmentStreamEvent.delta("{\"diagnosis\":"),
+                AssessmentStreamEvent.delta("\"急性呼吸窘迫综合征\"}"),
+                AssessmentStreamEvent.result(assessment("P001", "高风险"))));
+
+        MvcResult result = mockMvc.perform(post("/api/ecmo/assess/stream")
+                        .header(ECMOExpertController.USER_ID_HEADER, "7")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"patientId\":\"P001\",\"patientName\":\"张三\",\"age\":50}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(TimeUnit.SECONDS.toMillis(10));
+
+        List<String[]> events = new ArrayList<>();
+        for (String block : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n\n")) {
+            String name = null;
+            StringBuilder data = new StringBuilder();
+            for (String line : block.split("\n")) {
+                if (line.startsWith("event:")) {
+                    name = line.substring("event:".length());
+                } else if (line.startsWith("data:")) {
+                    data.append(line.substring("data:".length()));
+                }
+            }
+            if (name != null) {
+                events.add(new String[]{name, data.toString()});
+            }
+        }
+
+        assertEquals(List.of("risk", "delta", "delta", "result"), events.stream().map(event -> event[0]).toList());
+        assertEquals("P001", MAPPER.readTree(events.get(0)[1]).get("patientId").asText());
+        assertEquals("{\"diagnosis\":\"急性呼吸窘迫综合征\"}", events.get(1)[1] + events.get(2)[1]);
+        JsonNode finalResult = MAPPER.readTree(events.get(3)[1]);
+        assertTrue(finalResult.get("success").asBoolean());
+        assertEquals("ECMO_ASSESS_P001", finalResult.get("assessmentId").asText());
+        verify(store, times(1)).register(any(), argThat(patient -> "张三".equals(patient.getPatientName())), eq(7L));
+    }
+
+    @Test
+    void batchStreamWritesOneLinePerPatientBeforeCompleting() throws Exception {
+        // 首例评估在响应开始后完成且结果写出较慢：其余评估均已完成时该行仍在处理中，响应须等它写出后才结束
+        slowPatientId = "P0";
+        when(expertService.assessPatientForECMO(any())).thenAnswer(invocation -> {
+            String patientId = invocation.<PatientParameters>getArgument(0).getPatientId();
+            Thread.sleep(patientId.equals(slowPatientId) ? 50 : ThreadLocalRandom.current().nextInt(5));
+            return assessment(patientId, "高风险");
+        });
+        int patients = 40;
+
+        for (int round = 0; round < 3; round++) {
+            List<JsonNode> lines = streamBatch(patients);
+
+            assertEquals(patients, lines.size(), "每例患者输出一行结果");
+            TreeSet<Integer> indexes = new TreeSet<>();
+            for (JsonNode line : lines) {
+                indexes.add(line.get("index").asInt());
+                assertTrue(line.get("success").asBoolean());
+                assertEquals("ECMO_ASSESS_P" + line.get("index").asInt(), line.get("assessmentId").asText());
+            }
+            assertEquals(patients, indexes.size());
+            assertEquals(patients - 1, indexes.last());
+        }
+    }
+
+    @Test
+    void failedPatientIsStreamedAsErrorLine() throws Exception {
+        when(expertService.assessPatientForECMO(any())).thenAnswer(invocation -> {
+            String patientId = invocation.<PatientParameters>getArgument(0).getPatientId();
+            if ("P1".equals(patientId)) {
+                throw new IllegalStateException("评分失败");
+            }
+            return assessment(patientId, "高风险");
+        });
+
+        List<JsonNode> lines = streamBatch(3);
+
+        assertEquals(3, lines.size());
+        for (JsonNode line : lines) {
+            assertEquals(line.get("index").asInt() != 1, line.get("success").asBoolean());
+        }
+        verify(store, times(3)).register(any(), any(), eq(7L));
+    }
+
+    @Test
+    void batchRegistersResultsForSubmittingUser() throws Exception {
+        when(expertService.assessPatientForECMO(any())).thenAnswer(invocation ->
+                assessment(invocation.<PatientParameters>getArgument(0).getPatientId(), "高风险"));
+
+        MvcResult result = mockMvc.perform(post("/api/ecmo/assess/batch")
+                        .header(ECMOExpertController.USER_ID_HEADER, "7")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"patientId\":\"P0\",\"age\":50},{\"patientId\":\"P1\",\"age\":60}]"))
+                .andReturn();
+
+        JsonNode response = MAPPER.readTree(result.getResponse().getContentAsString(StandardCharsets.UTF_8));
+        assertEquals(2, response.get("succeeded").asInt());
+        verify(store, times(2)).register(any(), any(), eq(7L));
+    }
+
+    private List<JsonNode> streamBatch(int patients) throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < patients; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"patientId\":\"P").append(i).append("\",\"age\":50}");
+        }
+        body.append(']');
+
+        MvcResult result = mockMvc.perform(post("/api/ecmo/assess/batch/stream")
+                        .header(ECMOExpertController.USER_ID_HEADER, "7")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(TimeUnit.SECONDS.toMillis(10));
+
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(MAPPER.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    private static ECMOAssessment assessment(String patientId, String riskLevel) {
+        ECMOAssessment assessment = new ECMOAssessment();
+        assessment.setPatientId(patientId);
+        assessment.setCanUseECMO(true);
+        assessment.setDiagnosis("急性呼吸窘迫综合征");
+        assessment.setConfidence(0.8);
+        assessment.setRiskScore(BigDecimal.valueOf(72.5));
+        assessment.setRiskLevel(riskLevel);
+        return assessment;
+    }
+}
@@ -0,0 +1,128 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 管理端统计计数：对账以数据库为准，并发对账不重复叠加差值，对账期间的递增不丢失，读取统计不查询数据库
+ */
+class AdminStatsCountersTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final AssessmentHistoryRepository historyRepository = mock(AssessmentHistoryRepository.class);
+    private final AdminStatsCounters counters = new AdminStatsCounters(userRepository, historyRepository, 48, 30);
+    private final LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+
+    @Test
+    void reconcileReplacesEventCountsWithDatabaseCounts() {
+        stubAssessments(100);
+        counters.recordAssessment(hour);
+        counters.recordAssessment(hour.minusDays(40));
+
+        counters.reconcile();
+
+        Map<String, Object> snapshot = counters.snapshot();
+        assertEquals(100L, snapshot.get("totalAssessments"));
+        assertEquals(100L, snapshot.get("todayAssessments"));
+        assertNotNull(snapshot.get("lastReconciledAt"));
+        assertNull(counters.stats().get("lastError"));
+    }
+
+    @Test
+    void concurrentReconcilesApplyTheCorrectionOnce() throws Exception {
+        stubAssessments(100);
+        // 查询较慢时多次对账的时间窗口重叠
+        when(historyRepository.count()).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return 100L;
+        });
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.runAsync(counters::reconcile));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(100L, counters.snapshot().get("totalAssessments"));
+        assertEquals(100L, counters.snapshot().get("todayAssessments"));
+    }
+
+    @Test
+    void assessmentsRecordedDuringReconcileAreKept() throws Exception {
+        CountDownLatch querying = new CountDownLatch(1);
+        CountDownLatch recorded = new CountDownLatch(1);
+        when(userRepository.count()).thenReturn(0L);
+        when(userRepository.countByHourSince(any())).thenReturn(List.of());
+        when(historyRepository.count()).thenAnswer(invocation -> {
+            querying.countDown();
+            assertTrue(recorded.await(5, TimeUnit.SECONDS));
+            return 100L;
+        });
+        when(historyRepository.countByHourSince(any())).thenReturn(rows(100));
+
+        CompletableFuture<Void> reconcile = CompletableFuture.runAsync(counters::reconcile);
+        assertTrue(querying.await(5, TimeUnit.SECONDS));
+        // 查询开始后提交的评估不在数据库统计结果中
+        for (int i = 0; i < 5; i++) {
+            counters.recordAssessment(hour);
+        }
+        recorded.countDown();
+        reconcile.get(5, TimeUnit.SECONDS);
+
+        assertEquals(105L, counters.snapshot().get("totalAssessments"));
+        assertEquals(105L, counters.snapshot().get("todayAssessments"));
+    }
+
+    @Test
+    void readingStatsDoesNotQueryTheDatabase() {
+        counters.recordAssessment(hour);
+        counters.recordUserRegistered(hour);
+
+        Map<String, Object> snapshot = counters.snapshot();
+        counters.trend(true);
+        counters.trend(false);
+
+        assertEquals(1L, snapshot.get("totalAssessments"));
+        assertEquals(1L, snapshot.get("totalUsers"));
+        assertNull(snapshot.get("lastReconciledAt"));
+        verifyNoInteractions(userRepository, historyRepository);
+    }
+
+    @Test
+    void failedReconcileKeepsCountsAndRecordsError() {
+        counters.recordAssessment(hour);
+        when(userRepository.count()).thenThrow(new IllegalStateException("数据库不可用"));
+
+        counters.reconcile();
+
+        assertEquals(1L, counters.snapshot().get("totalAssessments"));
+        assertEquals("IllegalStateException: 数据库不可用", counters.stats().get("lastError"));
+    }
+
+    private void stubAssessments(long count) {
+        when(userRepository.count()).thenReturn(0L);
+        when(userRepository.countByHourSince(any())).thenReturn(List.of());
+        when(historyRepository.count()).thenReturn(count);
+        when(historyRepository.countByHourSince(any())).thenReturn(rows(count));
+    }
+
+    private List<Object[]> rows(long count) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{hour.toLocalDate(), hour.getHour(), count});
+        return rows;
+    }
+}
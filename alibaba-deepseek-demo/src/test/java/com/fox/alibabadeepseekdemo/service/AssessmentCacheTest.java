@@ -0,0 +1,77 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 评估结果缓存：存取时复制、TTL过期、LRU淘汰和停用
+ */
+class AssessmentCacheTest {
+
+    @Test
+    void storedAndReturnedAssessmentsAreCopies() {
+        AssessmentCache cache = new AssessmentCache(true, 10, Duration.ofMinutes(1));
+        ECMOAssessment assessment = assessment("急性呼吸窘迫综合征");
+        assessment.setAssessmentId("ECMO_ASSESS_1");
+        cache.put("k", assessment);
+        assessment.setDiagnosis("调用方修改");
+
+        ECMOAssessment first = cache.get("k");
+        first.setPatientId("P002");
+        ECMOAssessment second = cache.get("k");
+
+        assertNotSame(first, second);
+        assertEquals("急性呼吸窘迫综合征", second.getDiagnosis(), "存入后调用方的修改不影响缓存");
+        assertEquals("P001", second.getPatientId(), "读取后调用方的修改不影响缓存");
+        assertNull(second.getAssessmentId(), "评估ID由每次请求重新分配");
+        assertEquals(2L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void expiredEntriesAreMisses() throws InterruptedException {
+        AssessmentCache cache = new AssessmentCache(true, 10, Duration.ofMillis(50));
+        cache.put("k", assessment("急性呼吸窘迫综合征"));
+        assertNotNull(cache.get("k"));
+
+        Thread.sleep(80);
+
+        assertNull(cache.get("k"));
+        assertEquals(1L, cache.stats().get("expirations"));
+        assertEquals(0, cache.stats().get("size"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        AssessmentCache cache = new AssessmentCache(true, 2, Duration.ofMinutes(1));
+        cache.put("a", assessment("A"));
+        cache.put("b", assessment("B"));
+        cache.get("a");
+        cache.put("c", assessment("C"));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void disabledCacheStoresNothing() {
+        AssessmentCache cache = new AssessmentCache(false, 10, Duration.ofMinutes(1));
+        cache.put("k", assessment("急性呼吸窘迫综合征"));
+
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.stats().get("size"));
+        assertEquals(0L, cache.stats().get("misses"));
+    }
+
+    private static ECMOAssessment assessment(String diagnosis) {
+        ECMOAssessment assessment = new ECMOAssessment();
+        assessment.setPatientId("P001");
+        assessment.setDiagnosis(diagnosis);
+        return assessment;
+    }
+}
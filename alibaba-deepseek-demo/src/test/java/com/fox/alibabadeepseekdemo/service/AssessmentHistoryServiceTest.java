@@ -0,0 +1,155 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistorySummary;
+import com.fox.alibabadeepseekdemo.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * 评估历史键集分页：评估时间相同的记录按ID继续翻页、不重复不遗漏，筛选条件按查询语义传入，用户不存在时不查询
+ */
+class AssessmentHistoryServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 3, 1, 8, 0);
+
+    private final AssessmentHistoryRepository historyRepository = mock(AssessmentHistoryRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final HistorySearchIndex searchIndex = mock(HistorySearchIndex.class);
+    private final AssessmentHistoryService service =
+            new AssessmentHistoryService(historyRepository, userRepository, searchIndex);
+    private final List<AssessmentHistorySummary> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findIdByUsername(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findIdByUsername("doctor")).thenReturn(Optional.of(1L));
+        // 与findPage查询的筛选和排序条件一致：(assessment_date, id)倒序，游标之后的记录
+        when(historyRepository.findPage(eq(1L), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    String riskLevel = invocation.getArgument(1);
+                    Integer favorite = invocation.getArgument(2);
+                    LocalDateTime startTime = invocation.getArgument(3);
+                    LocalDateTime endTime = invocation.getArgument(4);
+                    LocalDateTime afterDate = invocation.getArgument(6);
+                    Long afterId = invocation.getArgument(7);
+                    Limit limit = invocation.getArgument(8);
+                    return rows.stream()
+                            .filter(row -> riskLevel == null || riskLevel.equals(row.getRiskLevel()))
+                            .filter(row -> favorite == null || favorite.equals(row.getIsFavorite()))
+                            .filter(row -> startTime == null || !row.getAssessmentDate().isBefore(startTime))
+                            .filter(row -> endTime == null || row.getAssessmentDate().isBefore(endTime))
+                            .filter(row -> afterDate == null || row.getAssessmentDate().isBefore(afterDate)
+                                    || (row.getAssessmentDate().equals(afterDate) && row.getId() < afterId))
+                            .sorted(Comparator.comparing(AssessmentHistorySummary::getAssessmentDate)
+                                    .thenComparing(AssessmentHistorySummary::getId).reversed())
+                            .limit(limit.max())
+                            .toList();
+                });
+    }
+
+    @Test
+    void pagesThroughRowsSharingTheSameAssessmentDate() {
+        // 批量评估写入的记录评估时间相同，页边界落在同一时间的记录之间
+        row(1L, BASE, "高风险", 0);
+        row(2L, BASE.plusHours(1), "高风险", 0);
+        row(3L, BASE.plusHours(1), "中风险", 1);
+        row(4L, BASE.plusHours(1), "高风险", 0);
+        row(5L, BASE.plusHours(1), "低风险", 0);
+        row(6L, BASE.plusHours(2), "高风险", 1);
+        row(7L, BASE, "高风险", 1);
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            AssessmentHistoryService.HistoryPage page = service.findPage("doctor", null, null, null, null, cursor, 2);
+            page.items().forEach(row -> ids.add(row.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        assertEquals(List.of(6L, 5L, 4L, 3L, 2L, 7L, 1L), ids);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    void lastFullPageHasNoNextCursor() {
+        row(1L, BASE, "高风险", 0);
+        row(2L, BASE, "高风险", 0);
+
+        AssessmentHistoryService.HistoryPage page = service.findPage("doctor", null, null, null, null, null, 2);
+
+        assertEquals(2, page.items().size());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void filtersApplyAcrossPages() {
+        row(1L, BASE.minusDays(1), "高风险", 1);
+        row(2L, BASE, "高风险", 1);
+        row(3L, BASE, "高风险", 0);
+        row(4L, BASE, "低风险", 1);
+        row(5L, BASE.plusHours(3), "高风险", 1);
+        row(6L, BASE.plusDays(1), "高风险", 1);
+        LocalDate day = BASE.toLocalDate();
+
+        AssessmentHistoryService.HistoryPage first = service.findPage("doctor", "高风险", true, day, day, null, 1);
+        AssessmentHistoryService.HistoryPage second = service.findPage("doctor", "高风险", true, day, day, first.nextCursor(), 1);
+
+        assertEquals(List.of(5L), first.items().stream().map(AssessmentHistorySummary::getId).toList());
+        assertEquals(List.of(2L), second.items().stream().map(AssessmentHistorySummary::getId).toList());
+        assertFalse(second.hasMore());
+        // 截止日期含当天，按次日零点之前查询
+        verify(historyRepository).findPage(eq(1L), eq("高风险"), eq(1), eq(day.atStartOfDay()),
+                eq(day.plusDays(1).atStartOfDay()), isNull(), eq(BASE.plusHours(3)), eq(5L), eq(Limit.of(2)));
+    }
+
+    @Test
+    void blankFiltersAndOversizedPagesAreNormalised() {
+        service.findPage("doctor", " ", false, null, null, null, 1000);
+
+        verify(historyRepository).findPage(eq(1L), isNull(), eq(0), isNull(), isNull(), isNull(), isNull(), isNull(),
+                eq(Limit.of(AssessmentHistoryService.MAX_PAGE_SIZE + 1)));
+    }
+
+    @Test
+    void unknownUserGetsEmptyPageWithoutQuerying() {
+        AssessmentHistoryService.HistoryPage page = service.findPage("nobody", null, null, null, null, null, null);
+
+        assertTrue(page.items().isEmpty());
+        assertFalse(page.hasMore());
+        verifyNoInteractions(historyRepository);
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage("doctor", null, null, null, null, "不是游标", 20));
+        verifyNoInteractions(historyRepository);
+    }
+
+    private void row(Long id, LocalDateTime date, String riskLevel, int favorite) {
+        AssessmentHistorySummary summary = mock(AssessmentHistorySummary.class);
+        when(summary.getId()).thenReturn(id);
+        when(summary.getAssessmentDate()).thenReturn(date);
+        when(summary.getRiskLevel()).thenReturn(riskLevel);
+        when(summary.getIsFavorite()).thenReturn(favorite);
+        rows.add(summary);
+    }
+}
@@ -0,0 +1,145 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 异步评估任务：状态与阶段流转、完成即写入评估存储、失败、排队已满和过期清理
+ */
+class AssessmentJobServiceTest {
+
+    private final ECMOExpertService expertService = mock(ECMOExpertService.class);
+    private final AssessmentStore store = mock(AssessmentStore.class);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void completedJobIsRegisteredForSubmitterWithoutPolling() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ECMOAssessment result = new ECMOAssessment();
+        when(expertService.assessPatientForECMO(any(), any())).thenAnswer(invocation -> {
+            Consumer<AssessmentStage> progress = invocation.getArgument(1);
+            progress.accept(AssessmentStage.SCORING);
+            progress.accept(AssessmentStage.LLM_CALL);
+            release.await(5, TimeUnit.SECONDS);
+            return result;
+        });
+        when(store.register(any(), any(), any())).thenAnswer(invocation -> {
+            ECMOAssessment assessment = invocation.getArgument(0);
+            assessment.setAssessmentId("ECMO_ASSESS_1");
+            assessment.setUserId(invocation.getArgument(2));
+            return assessment;
+        });
+        AssessmentJobService service = new AssessmentJobService(expertService, store, executor, Duration.ofMinutes(30));
+
+        PatientParameters patient = patient("P001");
+        AssessmentJob job = service.submit(patient, 7L);
+        assertSame(job, service.getJob(job.getJobId()));
+        awaitStage(job, AssessmentStage.LLM_CALL);
+        assertEquals(AssessmentJob.Status.RUNNING, job.getStatus());
+        assertFalse(job.isDone());
+        verify(store, never()).register(any(), any(), any());
+
+        release.countDown();
+        awaitDone(job);
+
+        assertEquals(AssessmentJob.Status.COMPLETED, job.getStatus());
+        assertEquals(AssessmentStage.COMPLETED, job.getStage());
+        assertEquals("ECMO_ASSESS_1", job.getResult().getAssessmentId(), "结果在任务完成前已分配评估ID");
+        assertEquals(7L, job.getResult().getUserId());
+        verify(store, times(1)).register(same(result), same(patient), eq(7L));
+        assertTrue(job.getFinishedAt() >= job.getStartedAt());
+    }
+
+    @Test
+    void failedAssessmentIsReportedAndNotStored() throws Exception {
+        when(expertService.assessPatientForECMO(any(), any())).thenThrow(new IllegalStateException("评分规则加载失败"));
+        AssessmentJobService service = new AssessmentJobService(expertService, store, executor, Duration.ofMinutes(30));
+
+        AssessmentJob job = service.submit(patient("P001"), null);
+        awaitDone(job);
+
+        assertEquals(AssessmentJob.Status.FAILED, job.getStatus());
+        assertEquals(AssessmentStage.FAILED, job.getStage());
+        assertEquals("评分规则加载失败", job.getError());
+        assertNull(job.getResult());
+        verify(store, never()).register(any(), any(), any());
+    }
+
+    @Test
+    void rejectedJobIsNotTracked() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(expertService.assessPatientForECMO(any(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new ECMOAssessment();
+        });
+        when(store.register(any(), any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+        AssessmentJobService service = new AssessmentJobService(expertService, store, executor, Duration.ofMinutes(30));
+
+        AssessmentJob running = service.submit(patient("P001"), null);
+        AssessmentJob queued = service.submit(patient("P002"), null);
+        assertThrows(RejectedExecutionException.class, () -> service.submit(patient("P003"), null));
+
+        assertEquals(2, service.stats().get("trackedJobs"));
+        release.countDown();
+        awaitDone(running);
+        awaitDone(queued);
+    }
+
+    @Test
+    void finishedJobsAreEvictedAfterRetention() throws Exception {
+        when(expertService.assessPatientForECMO(any(), any())).thenReturn(new ECMOAssessment());
+        when(store.register(any(), any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+        AssessmentJobService service = new AssessmentJobService(expertService, store, executor, Duration.ZERO);
+
+        AssessmentJob job = service.submit(patient("P001"), null);
+        awaitDone(job);
+        Thread.sleep(5);
+        service.evictFinishedJobs();
+
+        assertNull(service.getJob(job.getJobId()));
+        assertEquals(0, service.stats().get("trackedJobs"));
+    }
+
+    private static void awaitStage(AssessmentJob job, AssessmentStage stage) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.getStage() != stage && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(stage, job.getStage());
+    }
+
+    private static void awaitDone(AssessmentJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!job.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(job.isDone(), "任务应在5秒内完成");
+    }
+
+    private static PatientParameters patient(String patientId) {
+        PatientParameters patient = new PatientParameters();
+        patient.setPatientId(patientId);
+        patient.setAge(55);
+        return patient;
+    }
+}
@@ -0,0 +1,89 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AI评估响应解析：代码块与说明文字、转义、嵌套结构、截断补全和紧凑短键
+ */
+class AssessmentResponseParserTest {
+
+    private final AssessmentResponseParser parser = new AssessmentResponseParser();
+
+    @Test
+    void skipsMarkdownFenceAndSurroundingProse() {
+        AIAssessmentResponse response = parser.parse("评估如下：\n```json\n{\"canUseECMO\":true,\"diagnosis\":\"重症ARDS\","
+                + "\"confidence\":0.85,\"supportReasons\":[\"P/F<80\",\"病因可逆\",]}\n```\n以上仅供参考。");
+
+        assertTrue(response.getCanUseECMO());
+        assertEquals("重症ARDS", response.getDiagnosis());
+        assertEquals(0.85, response.getConfidence());
+        assertEquals(List.of("P/F<80", "病因可逆"), response.getSupportReasons(), "容忍尾随逗号");
+    }
+
+    @Test
+    void decodesEscapesAndRawNewlinesInStrings() {
+        AIAssessmentResponse response = parser.parse("{\"diagnosis\":\"\\\"重症\\\"ARDS\\\\VV-ECMO\\u6307\\u5f81\","
+                + "\"evidence\":\"第一行\n第二行\",'finalRecommendation':'推荐使用'}");
+
+        assertEquals("\"重症\"ARDS\\VV-ECMO指征", response.getDiagnosis());
+        assertEquals("第一行\n第二行", response.getEvidence());
+        assertEquals("推荐使用", response.getFinalRecommendation(), "容忍单引号");
+    }
+
+    @Test
+    void ignoresNestedUnknownFieldsAndBracesInsideStrings() {
+        AIAssessmentResponse response = parser.parse("{\"diagnosis\":\"参数{P/F}异常}\",\"scores\":{\"murray\":{\"value\":3.5,"
+                + "\"items\":[1,[2,3]]}},\"supportReasons\":\"单条理由\",\"confidence\":0.7}");
+
+        assertEquals("参数{P/F}异常}", response.getDiagnosis());
+        assertEquals(List.of("单条理由"), response.getSupportReasons(), "单个值视为单元素列表");
+        assertEquals(0.7, response.getConfidence());
+    }
+
+    @Test
+    void trailingTextWithBracesStopsAtFirstCompleteObject() {
+        AIAssessmentResponse response = parser.parse("{\"diagnosis\":\"心源性休克\",\"confidence\":0.6}\n注：{详见指南}");
+
+        assertEquals("心源性休克", response.getDiagnosis());
+        assertEquals(0.6, response.getConfidence());
+    }
+
+    @Test
+    void repairsOutputTruncatedInsideStringArrayOrKey() {
+        AIAssessmentResponse inString = parser.parse("{\"canUseECMO\":true,\"diagnosis\":\"重症ARDS\","
+                + "\"supportReasons\":[\"P/F<80\",\"病因可");
+        assertTrue(inString.getCanUseECMO());
+        assertEquals(List.of("P/F<80", "病因可"), inString.getSupportReasons());
+
+        AIAssessmentResponse afterKey = parser.parse("{\"diagnosis\":\"重症ARDS\",\"evidence\"");
+        assertEquals("重症ARDS", afterKey.getDiagnosis());
+        assertNull(afterKey.getEvidence());
+
+        AIAssessmentResponse afterColon = parser.parse("{\"diagnosis\":\"重症ARDS\",\"confidence\": ");
+        assertEquals("重症ARDS", afterColon.getDiagnosis());
+
+        AIAssessmentResponse inEscape = parser.parse("{\"diagnosis\":\"重症\\");
+        assertEquals("重症", inEscape.getDiagnosis());
+    }
+
+    @Test
+    void readsCompactShortKeys() {
+        AIAssessmentResponse response = parser.parse("{\"u\":false,\"d\":\"脓毒性休克\",\"c\":0.55,\"o\":[\"多器官衰竭\"],\"f\":\"不推荐\"}");
+
+        assertFalse(response.getCanUseECMO());
+        assertEquals("脓毒性休克", response.getDiagnosis());
+        assertEquals(List.of("多器官衰竭"), response.getOpposeReasons());
+        assertEquals("不推荐", response.getFinalRecommendation());
+    }
+
+    @Test
+    void returnsNullWithoutJsonObject() {
+        assertNull(parser.parse(null));
+        assertNull(parser.parse("模型暂时无法给出评估"));
+        assertNull(parser.parse("{\"diagnosis\" 重症}"));
+    }
+}
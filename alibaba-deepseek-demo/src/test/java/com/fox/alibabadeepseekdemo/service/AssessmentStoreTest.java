@@ -0,0 +1,281 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.AssessmentHistory;
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.repository.ECMOAssessmentRepository;
+import com.fox.alibabadeepseekdemo.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 评估结果存储：LRU淘汰后读库还原、另一节点按评估ID读取、患者临床参数写库，以及批量写库和停止时的并发提交
+ */
+class AssessmentStoreTest {
+
+    private final Map<String, ECMOAssessment> table = new ConcurrentHashMap<>();
+    private final ECMOAssessmentRepository repository = mock(ECMOAssessmentRepository.class);
+    private final AssessmentHistoryRepository historyRepository = mock(AssessmentHistoryRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final AdminStatsCounters statsCounters = mock(AdminStatsCounters.class);
+    private final HistorySearchIndex historySearchIndex = mock(HistorySearchIndex.class);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final List<AssessmentHistory> histories = new ArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+    private AssessmentWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        writeBehind = new AssessmentWriteBehind(repository, historyRepository, userRepository, TransactionOperations.withoutTransaction(),
+                statsCounters, historySearchIndex, new SimpleMeterRegistry(), 50, Duration.ofSeconds(5), 100);
+        writeBehind.start();
+        when(repository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            Iterable<ECMOAssessment> rows = invocation.getArgument(0);
+            int count = 0;
+            for (ECMOAssessment row : rows) {
+                row.setId(ids.incrementAndGet());
+                table.put(row.getAssessmentId(), row);
+                count++;
+            }
+            batchSizes.add(count);
+            return rows;
+        });
+        when(historyRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            invocation.<Iterable<AssessmentHistory>>getArgument(0).forEach(histories::add);
+            return invocation.getArgument(0);
+        });
+        when(userRepository.findExistingIds(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().filter(id -> id == 7L).toList());
+        when(repository.findByAssessmentId(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.<String>getArgument(0))));
+    }
+
+    @AfterEach
+    void shutdown() {
+        writeBehind.stop();
+    }
+
+    @Test
+    void evictedAssessmentIsRestoredFromRepository() {
+        AssessmentStore store = new AssessmentStore(repository, writeBehind, 2);
+        store.save(assessment("A1"));
+        store.save(assessment("A2"));
+        store.save(assessment("A3"));
+        awaitWrites();
+
+        ECMOAssessment restored = store.find("A1");
+
+        assertNotNull(restored);
+        assertEquals("急性呼吸窘迫综合征", restored.getDiagnosis());
+        assertEquals(List.of("难治性低氧血症"), restored.getSupportReasons());
+        assertEquals(0.8, restored.getConfidence());
+        assertEquals(1L, store.stats().get("storeHits"));
+        assertEquals(2L, store.stats().get("evictions"), "读库还原的结果重新进入LRU并淘汰最旧条目");
+        verify(repository, times(1)).findByAssessmentId("A1");
+    }
+
+    @Test
+    void assessmentSavedOnOneNodeIsReadableOnAnother() {
+        new AssessmentStore(repository, writeBehind, 10).save(assessment("A1"));
+        awaitWrites();
+        AssessmentStore otherNode = new AssessmentStore(repository, writeBehind, 10);
+
+        ECMOAssessment assessment = otherNode.find("A1");
+
+        assertEquals("推荐使用", assessment.getFinalRecommendation());
+        assertEquals("推荐使用", table.get("A1").getRecommendation());
+        assertNull(otherNode.find("missing"));
+        assertEquals(1L, otherNode.stats().get("misses"));
+    }
+
+    @Test
+    void registeredAssessmentStoresPatientClinicalParameters() {
+        PatientParameters patient = new PatientParameters();
+        patient.setPatientName("张三");
+        patient.setAge(45);
+        patient.setGender("男");
+        patient.setWeight(70.5);
+        patient.setSystolicBP(85);
+        patient.setDiastolicBP(50);
+        patient.setpH(7.151);
+        patient.setPaCO2(68.0);
+        patient.setPaO2(52.3);
+        patient.setBicarbonate(18.0);
+        patient.setLactate(6.25);
+
+        ECMOAssessment assessment = new AssessmentStore(repository, writeBehind, 10)
+                .register(assessment("ignored"), patient, null);
+        awaitWrites();
+
+        ECMOAssessment row = table.get(assessment.getAssessmentId());
+        assertEquals(45, row.getAge());
+        assertEquals("男", row.getGender());
+        assertEquals(new BigDecimal("70.50"), row.getWeight());
+        assertEquals(85, row.getSystolicBp());
+        assertEquals(50, row.getDiastolicBp());
+        assertEquals(new BigDecimal("7.151"), row.getPh());
+        assertEquals(new BigDecimal("68.00"), row.getPco2());
+        assertEquals(new BigDecimal("52.30"), row.getPo2());
+        assertEquals(new BigDecimal("18.00"), row.getHco3());
+        assertEquals(new BigDecimal("6.25"), row.getLactate());
+        assertNull(row.getHeartRate(), "未提供的参数保持为空");
+        assertEquals("张三", row.getPatientName());
+        assertNull(assessment.getAge(), "临床参数只写入数据库记录，不修改返回的评估结果");
+    }
+
+    @Test
+    void pendingAssessmentsAreWrittenInOneBatchOnShutdown() {
+        AssessmentStore store = new AssessmentStore(repository, writeBehind, 10);
+        for (int i = 1; i <= 5; i++) {
+            ECMOAssessment assessment = assessment("A" + i);
+            assessment.setUserId(i % 2 == 0 ? 7L : null);
+            assessment.setPatientName("患者" + i);
+            store.save(assessment);
+        }
+        assertEquals(5, store.stats().get("pendingWrites"), "flush-interval未到，评估仍在队列中");
+        assertEquals("急性呼吸窘迫综合征", store.find("A3").getDiagnosis());
+
+        awaitWrites();
+
+        assertEquals(List.of(5), batchSizes);
+        assertEquals(0, store.stats().get("pendingWrites"));
+        assertEquals(2, histories.size());
+        assertEquals(table.get("A2").getId(), histories.get(0).getAssessmentId());
+        assertEquals(7L, histories.get(0).getUserId());
+        assertEquals("患者2", histories.get(0).getPatientName());
+        verify(userRepository, times(1)).findExistingIds(Set.of(7L));
+        verify(statsCounters, times(2)).recordAssessment(any());
+        verify(repository, never()).save(any(ECMOAssessment.class));
+    }
+
+    @Test
+    void unknownUserIdDoesNotLoseAssessment() {
+        AssessmentStore store = new AssessmentStore(repository, writeBehind, 10);
+        ECMOAssessment unknownUser = assessment("A1");
+        unknownUser.setUserId(-1L);
+        store.save(unknownUser);
+        ECMOAssessment known = assessment("A2");
+        known.setUserId(7L);
+        store.save(known);
+
+        awaitWrites();
+
+        Map<String, Object> stats = writeBehind.stats();
+        assertEquals(List.of(2), batchSizes, "未知用户ID不导致整批回滚");
+        assertEquals(0L, stats.get("batchRetries"));
+        assertEquals(0L, stats.get("failed"));
+        assertEquals(1L, stats.get("unknownUsers"));
+        assertNull(table.get("A1").getUserId());
+        assertEquals(1, histories.size());
+        assertEquals(7L, histories.get(0).getUserId());
+        assertEquals("急性呼吸窘迫综合征", new AssessmentStore(repository, writeBehind, 10).find("A1").getDiagnosis());
+    }
+
+    @Test
+    void failedBatchIsRetriedRowByRow() {
+        when(historyRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            for (AssessmentHistory history : invocation.<Iterable<AssessmentHistory>>getArgument(0)) {
+                if ("P-A1".equals(history.getPatientId())) {
+                    throw new IllegalArgumentException("诊断摘要过长");
+                }
+                histories.add(history);
+            }
+            return invocation.getArgument(0);
+        });
+        AssessmentStore store = new AssessmentStore(repository, writeBehind, 10);
+        ECMOAssessment invalid = assessment("A1");
+        invalid.setUserId(7L);
+        store.save(invalid);
+        ECMOAssessment valid = assessment("A2");
+        valid.setUserId(7L);
+        store.save(valid);
+
+        awaitWrites();
+
+        Map<String, Object> stats = writeBehind.stats();
+        assertEquals(1L, stats.get("batchRetries"));
+        assertEquals(1L, stats.get("failed"));
+        assertEquals(1, histories.size());
+        assertEquals(7L, histories.get(0).getUserId());
+    }
+
+    @Test
+    void submissionsRacingWithShutdownAreAllWritten() throws Exception {
+        int submitted = 0;
+        for (int round = 0; round < 5; round++) {
+            AssessmentWriteBehind racing = new AssessmentWriteBehind(repository, historyRepository, userRepository,
+                    TransactionOperations.withoutTransaction(), statsCounters, historySearchIndex, new SimpleMeterRegistry(),
+                    50, Duration.ofMillis(1), 10000);
+            racing.start();
+            List<CompletableFuture<Void>> writes = new CopyOnWriteArrayList<>();
+            List<CompletableFuture<Void>> submitters = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String prefix = "R" + round + "-T" + t + "-";
+                submitters.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        writes.add(racing.submit(assessment(prefix + i)));
+                    }
+                }));
+            }
+            while (writes.size() < 100) {
+                Thread.onSpinWait();
+            }
+            racing.stop();
+            CompletableFuture.allOf(submitters.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+            // 停止前入队的记录由stop()写完，停止后提交的记录由提交线程直接写入，不会滞留在队列中
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            assertEquals(0, racing.stats().get("queueDepth"));
+            submitted += writes.size();
+        }
+        assertEquals(submitted, table.size());
+    }
+
+    /**
+     * 停止写库线程，队列中剩余的评估在stop()中同步写完
+     */
+    private void awaitWrites() {
+        writeBehind.stop();
+        assertFalse(writeBehind.isRunning());
+    }
+
+    private static ECMOAssessment assessment(String assessmentId) {
+        ECMOAssessment assessment = new ECMOAssessment();
+        assessment.setAssessmentId(assessmentId);
+        assessment.setPatientId("P-" + assessmentId);
+        assessment.setCanUseECMO(true);
+        assessment.setDiagnosis("急性呼吸窘迫综合征");
+        assessment.setConfidence(0.8);
+        assessment.setFinalRecommendation("推荐使用");
+        assessment.setSupportReasons(List.of("难治性低氧血症"));
+        assessment.setRiskScore(BigDecimal.valueOf(72.5));
+        assessment.setRiskLevel("高风险");
+        return assessment;
+    }
+}
@@ -0,0 +1,164 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量评估：按输入顺序并发评估，单例失败、超时或排队已满返回错误评估结果，超时的评估被取消
+ */
+class BatchAssessmentServiceTest {
+
+    private final ECMOExpertService expertService = mock(ECMOExpertService.class);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(10));
+
+    @BeforeEach
+    void setUp() {
+        when(expertService.createErrorAssessment(anyString(), anyString())).thenAnswer(invocation ->
+                assessment(invocation.getArgument(0), ECMOExpertService.ERROR_RISK_LEVEL));
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void successfulBatchDoesNotCreateErrorAssessments() {
+        when(expertService.assessPatientForECMO(any())).thenAnswer(invocation ->
+                assessment(invocation.<PatientParameters>getArgument(0).getPatientId(), "高风险"));
+        BatchAssessmentService service = new BatchAssessmentService(expertService, executor, 100, Duration.ofSeconds(5));
+
+        List<ECMOAssessment> results = join(service.submitBatch(patients(8)));
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("P" + i, results.get(i).getPatientId(), "结果与输入顺序一致");
+            assertEquals("高风险", results.get(i).getRiskLevel());
+        }
+        verify(expertService, never()).createErrorAssessment(anyString(), anyString());
+    }
+
+    @Test
+    void failedAndTimedOutPatientsReturnErrorAssessments() {
+        when(expertService.assessPatientForECMO(any())).thenAnswer(invocation -> {
+            String patientId = invocation.<PatientParameters>getArgument(0).getPatientId();
+            if ("P1".equals(patientId)) {
+                throw new IllegalStateException("评分失败");
+            }
+            if ("P2".equals(patientId)) {
+                Thread.sleep(2000);
+            }
+            return assessment(patientId, "高风险");
+        });
+        BatchAssessmentService service = new BatchAssessmentService(expertService, executor, 100, Duration.ofMillis(200));
+
+        List<ECMOAssessment> results = join(service.submitBatch(patients(3)));
+
+        assertEquals("高风险", results.get(0).getRiskLevel());
+        assertEquals(ECMOExpertService.ERROR_RISK_LEVEL, results.get(1).getRiskLevel());
+        assertEquals(ECMOExpertService.ERROR_RISK_LEVEL, results.get(2).getRiskLevel());
+        verify(expertService).createErrorAssessment(eq("P1"), contains("评分失败"));
+        verify(expertService).createErrorAssessment("P2", "批量评估超时");
+        verify(expertService, times(2)).createErrorAssessment(anyString(), anyString());
+    }
+
+    @Test
+    void timedOutAssessmentIsCancelledAndFreesExecutor() throws Exception {
+        ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        CountDownLatch interrupted = new CountDownLatch(2);
+        try {
+            when(expertService.assessPatientForECMO(any())).thenAnswer(invocation -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return assessment(invocation.<PatientParameters>getArgument(0).getPatientId(), "高风险");
+            });
+            BatchAssessmentService service = new BatchAssessmentService(expertService, single, 100, Duration.ofMillis(200));
+
+            List<ECMOAssessment> results = join(service.submitBatch(patients(2)));
+
+            assertEquals(ECMOExpertService.ERROR_RISK_LEVEL, results.get(0).getRiskLevel());
+            assertEquals(ECMOExpertService.ERROR_RISK_LEVEL, results.get(1).getRiskLevel());
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS), "超时的评估被中断，不再占用执行器线程");
+            assertTrue(single.getQueue().isEmpty());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectedPatientsReturnErrorAssessments() {
+        ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        try {
+            when(expertService.assessPatientForECMO(any())).thenAnswer(invocation -> {
+                Thread.sleep(50);
+                return assessment(invocation.<PatientParameters>getArgument(0).getPatientId(), "高风险");
+            });
+            BatchAssessmentService service = new BatchAssessmentService(expertService, single, 100, Duration.ofSeconds(5));
+
+            List<ECMOAssessment> results = join(service.submitBatch(patients(3)));
+
+            assertEquals("高风险", results.get(0).getRiskLevel());
+            assertEquals("高风险", results.get(1).getRiskLevel());
+            assertEquals(ECMOExpertService.ERROR_RISK_LEVEL, results.get(2).getRiskLevel());
+            verify(expertService).createErrorAssessment("P2", "批量评估队列已满");
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void oversizedBatchIsRejected() {
+        BatchAssessmentService service = new BatchAssessmentService(expertService, executor, 2, Duration.ofSeconds(5));
+
+        assertThrows(IllegalArgumentException.class, () -> service.submitBatch(patients(3)));
+        assertThrows(IllegalArgumentException.class, () -> service.submitBatch(List.of()));
+        verifyNoInteractions(expertService);
+    }
+
+    private static List<ECMOAssessment> join(List<CompletableFuture<ECMOAssessment>> futures) {
+        List<ECMOAssessment> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<ECMOAssessment> future : futures) {
+            results.add(future.orTimeout(5, TimeUnit.SECONDS).join());
+        }
+        return results;
+    }
+
+    private static List<PatientParameters> patients(int count) {
+        List<PatientParameters> patients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PatientParameters patient = new PatientParameters();
+            patient.setPatientId("P" + i);
+            patient.setAge(50);
+            patients.add(patient);
+        }
+        return patients;
+    }
+
+    private static ECMOAssessment assessment(String patientId, String riskLevel) {
+        ECMOAssessment assessment = new ECMOAssessment();
+        assessment.setPatientId(patientId);
+        assessment.setRiskLevel(riskLevel);
+        return assessment;
+    }
+}
@@ -0,0 +1,521 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.KnowledgeBase;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import com.fox.alibabadeepseekdemo.repository.KnowledgeBaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.io.DefaultResourceLoader;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 使用可注入延迟和错误的本地桩模型验证评估服务：调用时限、熔断、并发隔离、相同请求合并、流式评估和指南检索
+ */
+class ECMOExpertServiceTest {
+
+    private static final String VALID_RESPONSE = "{\"canUseECMO\":true,\"diagnosis\":\"急性呼吸窘迫综合征\","
+            + "\"evidence\":\"氧合指数低\",\"confidence\":0.8}";
+
+    private final StubChatModel chatModel = new StubChatModel();
+    private ThreadPoolExecutor modelExecutor;
+    private ThreadPoolExecutor backfillExecutor;
+    private ModelCallGuard guard;
+    private ModelCascadePolicy cascadePolicy = new ModelCascadePolicy(false, "stub-small-model", 0.75, true);
+    private CompactOutputCodec outputCodec = outputCodec("full");
+    private AssessmentPromptBuilder promptBuilder = new AssessmentPromptBuilder("full", false, outputCodec);
+    private AssessmentCache assessmentCache = new AssessmentCache(false, 10, Duration.ofMinutes(1));
+    private TieredAssessmentPolicy tieredPolicy = new TieredAssessmentPolicy(false, 90, 20, false);
+    private ModelRateLimiter rateLimiter = new ModelRateLimiter(false, 1000, 50000, 2000, Duration.ofSeconds(1), 10);
+    private GuidelineRetriever guidelineRetriever = new GuidelineRetriever(knowledgeIndex(List.of()), true, 3, 400, 5, 200, 0.3);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void shutdown() {
+        if (modelExecutor != null) {
+            modelExecutor.shutdownNow();
+            backfillExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void slowModelReturnsDegradedAssessmentWithinDeadline() {
+        ECMOExpertService service = service(Duration.ofMillis(200), 4, Duration.ofSeconds(30));
+        chatModel.latencyMillis = 2000;
+
+        long start = System.nanoTime();
+        ECMOAssessment assessment = service.assessPatientForECMO(patient());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(ECMOExpertService.TYPE_DEGRADED, assessment.getAssessmentType());
+        assertTrue(assessment.getEvidence().startsWith("【降级评估】AI服务响应超时"));
+        assertTrue(elapsedMillis < 1500, "应在调用时限后立即返回，实际耗时" + elapsedMillis + "ms");
+        assertEquals(1.0, meterRegistry.counter("ecmo.assessment.fallback", "type", "degraded").count());
+        assertEquals(1L, meterRegistry.timer("ecmo.llm.call", "model", "stub-model", "outcome", "TIMEOUT").count());
+        assertEquals(0.0, meterRegistry.get("ecmo.llm.inflight").gauge().value());
+    }
+
+    @Test
+    void circuitOpensOnErrorsAndShortCircuitsModelCalls() {
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+        chatModel.failing = true;
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ECMOExpertService.TYPE_DEGRADED, service.assessPatientForECMO(patient()).getAssessmentType());
+        }
+        assertEquals(ModelCallGuard.State.OPEN, guard.getState());
+
+        ECMOAssessment assessment = service.assessPatientForECMO(patient());
+        assertEquals(ECMOExpertService.TYPE_DEGRADED, assessment.getAssessmentType());
+        assertTrue(assessment.getEvidence().startsWith("【降级评估】AI服务熔断中"));
+        assertEquals(4, chatModel.calls.get(), "熔断期间不应调用模型");
+    }
+
+    @Test
+    void successfulProbeClosesCircuitAfterOpenDuration() throws InterruptedException {
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofMillis(100));
+        chatModel.failing = true;
+        for (int i = 0; i < 4; i++) {
+            service.assessPatientForECMO(patient());
+        }
+        assertEquals(ModelCallGuard.State.OPEN, guard.getState());
+
+        Thread.sleep(150);
+        chatModel.failing = false;
+        ECMOAssessment assessment = service.assessPatientForECMO(patient());
+
+        assertEquals("STANDARD", assessment.getAssessmentType());
+        assertEquals(ModelCallGuard.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondConcurrencyLimit() throws Exception {
+        ECMOExpertService service = service(Duration.ofSeconds(2), 1, Duration.ofSeconds(30));
+        chatModel.latencyMillis = 500;
+
+        CompletableFuture<ECMOAssessment> first = CompletableFuture.supplyAsync(() -> service.assessPatientForECMO(patient()));
+        while (chatModel.calls.get() == 0) {
+            Thread.sleep(5);
+        }
+        ECMOAssessment rejected = service.assessPatientForECMO(patient());
+
+        assertEquals(ECMOExpertService.TYPE_DEGRADED, rejected.getAssessmentType());
+        assertTrue(rejected.getEvidence().startsWith("【降级评估】AI服务并发调用已满"));
+        assertEquals("STANDARD", first.get(5, TimeUnit.SECONDS).getAssessmentType());
+        assertEquals(1, chatModel.calls.get());
+    }
+
+    @Test
+    void concurrentIdenticalAssessmentsShareOneModelCall() throws Exception {
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30), true);
+        chatModel.latencyMillis = 300;
+
+        List<CompletableFuture<ECMOAssessment>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String patientId = "P00" + i;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                PatientParameters patient = patient();
+                patient.setPatientId(patientId);
+                return service.assessPatientForECMO(patient);
+            }));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            ECMOAssessment assessment = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals("STANDARD", assessment.getAssessmentType());
+            assertEquals("P00" + i, assessment.getPatientId());
+        }
+        assertEquals(1, chatModel.calls.get());
+    }
+
+    @Test
+    void lowConfidenceFirstPassEscalatesToLargeModel() {
+        cascadePolicy = new ModelCascadePolicy(true, "stub-small-model", 0.75, true);
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+        chatModel.smallModelResponse = "{\"canUseECMO\":true,\"diagnosis\":\"待定\",\"confidence\":0.5}";
+
+        ECMOAssessment assessment = service.assessPatientForECMO(patient());
+
+        assertEquals("急性呼吸窘迫综合征", assessment.getDiagnosis());
+        assertEquals(List.of("stub-small-model", "default"), chatModel.models);
+        assertEquals(1L, cascadePolicy.stats().get("escalated"));
+    }
+
+    @Test
+    void confidentFirstPassIsAcceptedWithoutLargeModel() {
+        cascadePolicy = new ModelCascadePolicy(true, "stub-small-model", 0.75, true);
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+        chatModel.smallModelResponse = "{\"canUseECMO\":false,\"diagnosis\":\"小模型诊断\",\"confidence\":0.9}";
+
+        ECMOAssessment assessment = service.assessPatientForECMO(patient());
+
+        assertEquals("小模型诊断", assessment.getDiagnosis());
+        assertEquals(List.of("stub-small-model"), chatModel.models);
+    }
+
+    @Test
+    void smallModelResultIsNotServedFromCacheAfterCascadeIsDisabled() {
+        assessmentCache = new AssessmentCache(true, 10, Duration.ofMinutes(1));
+        cascadePolicy = new ModelCascadePolicy(true, "stub-small-model", 0.75, true);
+        chatModel.smallModelResponse = "{\"canUseECMO\":false,\"diagnosis\":\"小模型诊断\",\"confidence\":0.9}";
+        ECMOExpertService cascading = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+        assertEquals("小模型诊断", cascading.assessPatientForECMO(patient()).getDiagnosis());
+        assertEquals("小模型诊断", cascading.assessPatientForECMO(patient()).getDiagnosis());
+        assertEquals(List.of("stub-small-model"), chatModel.models, "级联配置不变时命中缓存");
+
+        cascadePolicy = new ModelCascadePolicy(false, "stub-small-model", 0.75, true);
+        ECMOAssessment assessment = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30)).assessPatientForECMO(patient());
+
+        assertEquals("急性呼吸窘迫综合征", assessment.getDiagnosis());
+        assertEquals(List.of("stub-small-model", "default"), chatModel.models);
+    }
+
+    @Test
+    void concurrentRuleBasedAssessmentsBackfillOnceAndCacheModelResult() throws Exception {
+        assessmentCache = new AssessmentCache(true, 10, Duration.ofMinutes(1));
+        tieredPolicy = new TieredAssessmentPolicy(true, 0, -1, true);
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30), true);
+        chatModel.latencyMillis = 200;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ECMOExpertService.TYPE_RULE_BASED, service.assessPatientForECMO(patient()).getAssessmentType());
+        }
+        awaitBackfills(1);
+
+        assertEquals(1, chatModel.calls.get(), "相同参数的补充评估只调用一次模型");
+        assertEquals(1L, backfillOutcomes().get("submitted"));
+        assertEquals(2L, backfillOutcomes().get("coalesced"));
+        assertEquals(1L, backfillOutcomes().get("cached"));
+        assertEquals("STANDARD", service.assessPatientForECMO(patient()).getAssessmentType());
+    }
+
+    @Test
+    void defaultAssessmentFromBackfillIsNotCached() throws Exception {
+        assessmentCache = new AssessmentCache(true, 10, Duration.ofMinutes(1));
+        tieredPolicy = new TieredAssessmentPolicy(true, 0, -1, true);
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+        chatModel.response = "无法解析的响应";
+
+        service.assessPatientForECMO(patient());
+        awaitBackfills(1);
+
+        assertEquals(1L, backfillOutcomes().get("skipped"));
+        assertEquals(ECMOExpertService.TYPE_RULE_BASED, service.assessPatientForECMO(patient()).getAssessmentType());
+    }
+
+    @Test
+    void backfillBeyondExecutorCapacityIsRejectedAndCounted() throws Exception {
+        tieredPolicy = new TieredAssessmentPolicy(true, 0, -1, true);
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+        chatModel.latencyMillis = 200;
+
+        for (int i = 0; i < 3; i++) {
+            PatientParameters patient = patient();
+            patient.setAge(50 + i);
+            service.assessPatientForECMO(patient);
+        }
+        awaitBackfills(2);
+
+        assertEquals(2L, backfillOutcomes().get("submitted"));
+        assertEquals(1L, backfillOutcomes().get("rejected"));
+        assertEquals(2L, backfillOutcomes().get("cached"));
+    }
+
+    @Test
+    void streamEmitsRiskThenModelDeltasThenParsedResult() {
+        List<AssessmentStreamEvent> events = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30))
+                .streamPatientAssessment(patient()).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(AssessmentStreamEvent.RISK, events.get(0).getType());
+        assertEquals("P001", events.get(0).getAssessment().getPatientId());
+        StringBuilder streamed = new StringBuilder();
+        for (AssessmentStreamEvent event : events.subList(1, events.size() - 1)) {
+            assertEquals(AssessmentStreamEvent.DELTA, event.getType());
+            streamed.append(event.getContent());
+        }
+        assertEquals(VALID_RESPONSE, streamed.toString(), "分段内容按顺序拼接为完整响应");
+        assertTrue(events.size() > 3);
+        AssessmentStreamEvent result = events.get(events.size() - 1);
+        assertEquals(AssessmentStreamEvent.RESULT, result.getType());
+        assertEquals("急性呼吸窘迫综合征", result.getAssessment().getDiagnosis());
+        assertEquals(events.get(0).getAssessment().getRiskScore(), result.getAssessment().getRiskScore());
+    }
+
+    @Test
+    void cachedStreamSkipsModelAndEmitsRiskAndResultOnly() {
+        assessmentCache = new AssessmentCache(true, 10, Duration.ofMinutes(1));
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+        service.streamPatientAssessment(patient()).blockLast(Duration.ofSeconds(5));
+
+        PatientParameters samePatient = patient();
+        samePatient.setPatientId("P002");
+        List<AssessmentStreamEvent> events = service.streamPatientAssessment(samePatient).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(2, events.size());
+        assertEquals(AssessmentStreamEvent.RISK, events.get(0).getType());
+        assertEquals(AssessmentStreamEvent.RESULT, events.get(1).getType());
+        assertEquals("P002", events.get(1).getAssessment().getPatientId());
+        assertEquals(1, chatModel.streams.get());
+    }
+
+    @Test
+    void compactPromptKeepsFixedPrefixAndOmitsEmptySections() {
+        promptBuilder = new AssessmentPromptBuilder("compact", true, outputCodec);
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+
+        service.assessPatientForECMO(patient());
+
+        String prompt = chatModel.prompts.get(0);
+        assertTrue(prompt.startsWith(AssessmentPromptBuilder.COMPACT_PREAMBLE));
+        assertTrue(prompt.contains("【血气】P/F 90.0；乳酸6.0mmol/L"));
+        assertFalse(prompt.contains("【检验】"), "无检验结果时应省略该章节");
+        double reduction = (double) promptBuilder.stats().get("reductionRate");
+        assertTrue(reduction > 0.3, "精简提示词应明显减少输入token，实际减少" + reduction);
+    }
+
+    @Test
+    void savingsStatsArePresentBeforeFirstRequest() {
+        // 指标在启动时按统计中已有的数值项注册，无数据时这些项也须存在
+        Map<String, Object> promptStats = new AssessmentPromptBuilder("compact", true, outputCodec).stats();
+        for (String key : List.of("avgFullPromptTokens", "avgTokensSaved", "reductionRate")) {
+            assertEquals(0.0, promptStats.get(key), key);
+        }
+        assertEquals(0L, cascadePolicy.stats().get("estimatedLatencySavedMs"));
+    }
+
+    @Test
+    void compactOutputCodesAreExpandedToPhrases() {
+        outputCodec = outputCodec("compact");
+        promptBuilder = new AssessmentPromptBuilder("full", false, outputCodec);
+        chatModel.response = "{\"u\":true,\"c\":0.85,\"f\":\"Y\",\"d\":\"重度ARDS\",\"e\":\"P/F 90\","
+                + "\"s\":[\"S1\",\"S2\"],\"o\":[\"O3\",\"自定义风险\"],\"a\":[\"A1\"]}";
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+
+        ECMOAssessment assessment = service.assessPatientForECMO(patient());
+
+        assertTrue(chatModel.prompts.get(0).endsWith(outputCodec.instruction()));
+        assertEquals(600, chatModel.maxTokens.get(0));
+        assertEquals("重度ARDS", assessment.getDiagnosis());
+        assertEquals(0.85, assessment.getConfidence());
+        assertTrue(assessment.getSupportReasons().contains(outputCodec.getPhrases().getSupportReasons().get("S1")));
+        assertTrue(assessment.getOpposeReasons().contains("自定义风险"), "短语表外的条目应原样保留");
+        assertFalse(assessment.getRecommendations().contains("A1"));
+    }
+
+    @Test
+    void rateLimiterReservesTheMaxTokensSentWithTheCall() {
+        outputCodec = outputCodec("compact");
+        promptBuilder = new AssessmentPromptBuilder("full", false, outputCodec);
+        rateLimiter = new ModelRateLimiter(true, 1000, 50000, 2000, Duration.ofSeconds(1), 10);
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+
+        service.assessPatientForECMO(patient());
+
+        assertEquals(600, chatModel.maxTokens.get(0));
+        assertEquals(TokenEstimator.estimate(chatModel.prompts.get(0)) + 600L, rateLimiter.stats().get("estimatedTokens"),
+                "按实际发送的max_tokens预占，而非spring.ai默认的2000");
+    }
+
+    @Test
+    void retrievedGuidelinesAreInjectedWithinTokenBudgetAndReturnedAsReferences() {
+        guidelineRetriever = new GuidelineRetriever(knowledgeIndex(List.of(
+                knowledge(1L, "ECMO呼吸系统适应症", "严重ARDS: P/F比 < 80，持续6小时以上\n难治性呼吸衰竭: FiO2 > 90%，PEEP ≥ 15cmH2O"
+                        + "\n肺移植术后原发性移植物功能障碍\n支气管胸膜瘘伴严重呼吸衰竭\n严重哮喘持续状态\n肺出血伴呼吸衰竭"),
+                knowledge(2L, "ECMO循环系统适应症", "心源性休克: CI < 2.2L/min/m²\n急性心肌梗死并发心源性休克\n暴发性心肌炎"),
+                knowledge(3L, "ECMO抗凝管理", "肝素抗凝，ACT目标180-220秒"))), true, 3, 40, 5, 200, 0.3);
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+        PatientParameters patient = patient();
+        patient.setPrimaryDiagnosis("重症ARDS，难治性呼吸衰竭");
+
+        ECMOAssessment assessment = service.assessPatientForECMO(patient);
+
+        String prompt = chatModel.prompts.get(0);
+        assertTrue(prompt.contains("【相关指南摘录】\n"), prompt);
+        assertTrue(prompt.contains("[1] ECMO呼吸系统适应症: 严重ARDS: P/F比 < 80，持续6小时以上 难治性呼吸衰竭"), prompt);
+        assertFalse(prompt.contains("ECMO抗凝管理"), "与诊断和风险因素无关的知识不应注入");
+        Map<String, String> references = assessment.getGuidelineReferences();
+        assertEquals("[1] ECMO呼吸系统适应症", references.keySet().iterator().next());
+        int injected = references.entrySet().stream()
+                .mapToInt(e -> TokenEstimator.estimate(e.getKey().substring(4)) + TokenEstimator.estimate(e.getValue()))
+                .sum();
+        assertTrue(injected <= 40, "注入的段落应在token预算内，实际" + injected);
+        assertFalse(references.get("[1] ECMO呼吸系统适应症").contains("肺出血"), "超出预算的正文应截断");
+        assertEquals(1L, guidelineRetriever.stats().get("hits"));
+    }
+
+    @Test
+    void genericGuidelinesAreReturnedWhenNothingIsRetrieved() {
+        ECMOExpertService service = service(Duration.ofSeconds(2), 4, Duration.ofSeconds(30));
+
+        ECMOAssessment assessment = service.assessPatientForECMO(patient());
+
+        assertFalse(chatModel.prompts.get(0).contains("指南摘录"));
+        assertTrue(assessment.getGuidelineReferences().containsKey("ELSO指南"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> backfillOutcomes() {
+        return (Map<String, Long>) tieredPolicy.stats().get("backfillOutcomes");
+    }
+
+    private void awaitBackfills(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Long> outcomes = backfillOutcomes();
+            if (outcomes.get("cached") + outcomes.get("skipped") + outcomes.get("failed") >= expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static KnowledgeSearchIndex knowledgeIndex(List<KnowledgeBase> knowledge) {
+        KnowledgeBaseRepository repository = mock(KnowledgeBaseRepository.class);
+        when(repository.findPublishedVersions()).thenReturn(knowledge.stream()
+                .map(k -> new Object[]{k.getId(), k.getUpdatedAt()})
+                .toList());
+        when(repository.findAllById(anyIterable())).thenReturn(knowledge);
+        KnowledgeSearchIndex index = new KnowledgeSearchIndex(repository, true, "", "", 80);
+        index.load();
+        return index;
+    }
+
+    private static KnowledgeBase knowledge(Long id, String title, String content) {
+        KnowledgeBase knowledge = new KnowledgeBase();
+        knowledge.setId(id);
+        knowledge.setCategory("适应症");
+        knowledge.setTitle(title);
+        knowledge.setContent(content);
+        knowledge.setStatus(1);
+        knowledge.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 8, 0));
+        return knowledge;
+    }
+
+    private static CompactOutputCodec outputCodec(String mode) {
+        return new CompactOutputCodec(new DefaultResourceLoader(), mode, "classpath:prompt/ecmo-output-phrases.json", 600);
+    }
+
+    private ECMOExpertService service(Duration timeout, int maxConcurrent, Duration openDuration) {
+        return service(timeout, maxConcurrent, openDuration, false);
+    }
+
+    private ECMOExpertService service(Duration timeout, int maxConcurrent, Duration openDuration, boolean singleFlight) {
+        shutdown();
+        modelExecutor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxConcurrent));
+        backfillExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        guard = new ModelCallGuard(modelExecutor, timeout, maxConcurrent, Duration.ZERO,
+                4, 4, 50, Duration.ofSeconds(10), 80, openDuration, 1);
+        return new ECMOExpertService(
+                ChatClient.builder(chatModel),
+                assessmentCache,
+                new AssessmentResponseParser(),
+                promptBuilder,
+                guidelineRetriever,
+                outputCodec,
+                tieredPolicy,
+                new RiskScoringEngine(new DefaultResourceLoader(), "classpath:scoring/ecmo-risk-rules.json", false),
+                guard,
+                rateLimiter,
+                new AssessmentSingleFlight(singleFlight),
+                cascadePolicy,
+                new AssessmentMetrics(meterRegistry),
+                backfillExecutor,
+                "stub-model");
+    }
+
+    private static PatientParameters patient() {
+        PatientParameters patient = new PatientParameters();
+        patient.setPatientId("P001");
+        patient.setAge(55);
+        patient.setpO2FiO2Ratio(90.0);
+        patient.setLactate(6.0);
+        patient.setIllnessDuration(3);
+        return patient;
+    }
+
+    /**
+     * 可注入延迟和错误的桩模型
+     */
+    private static class StubChatModel implements ChatModel {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger streams = new AtomicInteger();
+        private final List<String> models = new CopyOnWriteArrayList<>();
+        private final List<String> prompts = new CopyOnWriteArrayList<>();
+        private final List<Integer> maxTokens = new CopyOnWriteArrayList<>();
+        private volatile String response = VALID_RESPONSE;
+        private volatile long latencyMillis;
+        private volatile boolean failing;
+        private volatile String smallModelResponse;
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            String model = prompt.getOptions() != null && prompt.getOptions().getModel() != null
+                    ? prompt.getOptions().getModel() : "default";
+            models.add(model);
+            prompts.add(prompt.getContents());
+            if (prompt.getOptions() != null && prompt.getOptions().getMaxTokens() != null) {
+                maxTokens.add(prompt.getOptions().getMaxTokens());
+            }
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted", e);
+                }
+            }
+            if (failing) {
+                throw new IllegalStateException("503 Service Unavailable");
+            }
+            String text = "stub-small-model".equals(model) ? smallModelResponse : response;
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+        }
+
+        /**
+         * 按固定长度分段推送响应
+         */
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            streams.incrementAndGet();
+            if (failing) {
+                return Flux.error(new IllegalStateException("503 Service Unavailable"));
+            }
+            String text = response;
+            List<ChatResponse> chunks = new ArrayList<>();
+            for (int i = 0; i < text.length(); i += 16) {
+                String chunk = text.substring(i, Math.min(text.length(), i + 16));
+                chunks.add(new ChatResponse(List.of(new Generation(new AssistantMessage(chunk)))));
+            }
+            return Flux.fromIterable(chunks);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.AssessmentHistory;
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistoryRepository;
+import com.fox.alibabadeepseekdemo.repository.AssessmentHistorySummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 评估历史检索索引：n-gram匹配与子串校验、倒序游标分页、按需加载、增量追加、修改和删除，以及超出记录数上限
+ */
+class HistorySearchIndexTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 3, 1, 8, 0);
+
+    private final AssessmentHistoryRepository repository = mock(AssessmentHistoryRepository.class);
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        row(1L, "P2025001", "张三", "重症ARDS，难治性低氧血症");
+        row(2L, "P2025002", "李四", "急性心肌梗死并发心源性休克");
+        row(3L, "P2025003", "王小三", "暴发性心肌炎");
+        row(4L, "Q-77", "赵六", "心衰 衰心");
+        when(repository.findSearchFields(eq(1L), any())).thenReturn(rows);
+        when(repository.findSearchFields(eq(2L), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void matchesSubstringsOfNamesDiagnosesAndPatientIds() {
+        HistorySearchIndex index = new HistorySearchIndex(repository, true, 10, 5000);
+
+        assertEquals(List.of(3L, 2L), search(index, "心肌"));
+        assertEquals(List.of(3L, 1L), search(index, "三"), "单字查询使用单字倒排表");
+        assertEquals(List.of(1L), search(index, "ards"), "不区分大小写");
+        assertEquals(List.of(2L), search(index, "p2025002"));
+        assertEquals(List.of(), search(index, "心衰心"), "二元组齐全但不连续的记录经子串校验排除");
+        assertEquals(List.of(), search(index, "三重症"), "不跨字段匹配");
+        assertEquals(List.of(), search(index, "肺栓塞"));
+    }
+
+    @Test
+    void pagesBackwardsFromCursor() {
+        HistorySearchIndex index = new HistorySearchIndex(repository, true, 10, 5000);
+
+        assertEquals(List.of(4L, 3L), index.search(1L, "心", null, null, 2));
+        assertEquals(List.of(2L), index.search(1L, "心", BASE.plusHours(3), 3L, 2));
+    }
+
+    @Test
+    void loadsOnFirstSearchAndAppendsCommittedRows() {
+        HistorySearchIndex index = new HistorySearchIndex(repository, true, 1, 5000);
+        index.add(history(5L, 1L, BASE.plusHours(5), "张三丰"));
+        verify(repository, never()).findSearchFields(anyLong(), any());
+
+        assertEquals(List.of(1L), search(index, "张三"), "未加载的用户忽略追加，加载时从数据库读取");
+        index.add(history(6L, 1L, BASE.plusHours(6), "张三丰"));
+        index.add(history(7L, 1L, BASE.minusHours(1), "张三"));
+        index.add(history(6L, 1L, BASE.plusHours(6), "张三丰"));
+        assertEquals(List.of(6L, 1L, 7L), search(index, "张三"), "乱序追加后仍按评估时间倒序");
+
+        assertEquals(List.of(), index.search(2L, "张三", null, null, 10));
+        assertEquals(1, index.stats().get("users"), "超出max-users时淘汰最久未使用的用户");
+        row(8L, "P8", "张三", null);
+        assertEquals(List.of(8L, 1L), search(index, "张三"), "淘汰后重新从数据库加载");
+        verify(repository, times(2)).findSearchFields(eq(1L), any());
+    }
+
+    @Test
+    void deletedAndEditedRowsAreAppliedWithoutReloading() {
+        HistorySearchIndex index = new HistorySearchIndex(repository, true, 10, 5000);
+        assertEquals(List.of(1L), search(index, "张三"));
+
+        assertTrue(index.remove(1L, 1L));
+        assertFalse(index.remove(1L, 1L));
+        assertEquals(List.of(), search(index, "张三"));
+        assertEquals(List.of(3L, 2L), search(index, "心肌"));
+
+        // 修改姓名和评估时间后，旧内容不再命中，新内容按新的评估时间排序
+        assertTrue(index.update(1L, summary(2L, "P2025002", "张四", "急性心肌梗死并发心源性休克", BASE.plusHours(9))));
+        assertFalse(index.update(1L, summary(2L, "P2025002", "张四", "急性心肌梗死并发心源性休克", BASE.plusHours(9))),
+                "内容一致时不更新");
+        assertEquals(List.of(), search(index, "李四"));
+        assertEquals(List.of(2L), search(index, "张四"));
+        assertEquals(List.of(2L, 3L), search(index, "心肌"));
+
+        Map<String, Object> stats = index.stats();
+        assertEquals(1L, stats.get("removed"));
+        assertEquals(1L, stats.get("updated"));
+        assertEquals(3L, stats.get("documents"));
+        verify(repository, times(1)).findSearchFields(eq(1L), any());
+    }
+
+    @Test
+    void usersBeyondRowLimitAreLeftToTheDatabase() {
+        HistorySearchIndex index = new HistorySearchIndex(repository, true, 10, 3);
+        assertNull(search(index, "张三"), "加载时超出上限");
+        assertNull(search(index, "张三"));
+        verify(repository, times(1)).findSearchFields(1L, Limit.of(4));
+
+        HistorySearchIndex growing = new HistorySearchIndex(repository, true, 10, 4);
+        assertEquals(List.of(1L), search(growing, "张三"));
+        growing.add(history(5L, 1L, BASE.plusHours(5), "张三丰"));
+        assertNull(search(growing, "张三"), "追加后超出上限");
+        assertEquals(1, growing.stats().get("oversizedUsers"));
+        assertEquals(0L, growing.stats().get("documents"));
+    }
+
+    private static List<Long> search(HistorySearchIndex index, String keyword) {
+        return index.search(1L, keyword, null, null, 10);
+    }
+
+    private void row(Long id, String patientId, String patientName, String diagnosis) {
+        rows.add(new Object[]{id, patientId, patientName, diagnosis, BASE.plusHours(id)});
+    }
+
+    private static AssessmentHistorySummary summary(Long id, String patientId, String patientName, String diagnosis,
+                                                    LocalDateTime date) {
+        AssessmentHistorySummary summary = mock(AssessmentHistorySummary.class);
+        when(summary.getId()).thenReturn(id);
+        when(summary.getPatientId()).thenReturn(patientId);
+        when(summary.getPatientName()).thenReturn(patientName);
+        when(summary.getDiagnosisSummary()).thenReturn(diagnosis);
+        when(summary.getAssessmentDate()).thenReturn(date);
+        return summary;
+    }
+
+    private static AssessmentHistory history(Long id, Long userId, LocalDateTime date, String patientName) {
+        AssessmentHistory history = new AssessmentHistory();
+        history.setId(id);
+        history.setUserId(userId);
+        history.setPatientId("P" + id);
+        history.setPatientName(patientName);
+        history.setAssessmentDate(date);
+        return history;
+    }
+}
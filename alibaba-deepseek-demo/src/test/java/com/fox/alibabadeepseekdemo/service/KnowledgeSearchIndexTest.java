@@ -0,0 +1,145 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.KnowledgeBase;
+import com.fox.alibabadeepseekdemo.repository.KnowledgeBaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+/**
+ * 知识库检索索引：中文一元和二元分词、单字查询、BM25排序、增量更新和快照加载
+ */
+class KnowledgeSearchIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<Long, KnowledgeBase> table = new LinkedHashMap<>();
+    private final KnowledgeBaseRepository repository = mock(KnowledgeBaseRepository.class);
+
+    @BeforeEach
+    void setUp() {
+        put(1L, "适应症", "ECMO呼吸系统适应症", "严重ARDS: P/F比 < 80，持续6小时以上\n难治性呼吸衰竭", "ECMO,适应症,呼吸衰竭,ARDS");
+        put(2L, "适应症", "ECMO循环系统适应症", "心源性休克: CI < 2.2L/min/m²\n急性心肌梗死并发心源性休克\n暴发性心肌炎", "ECMO,适应症,心源性休克");
+        put(3L, "并发症", "ECMO出血并发症管理", "颅内出血: 最严重，发生率3-8%\n预防措施: 合理抗凝，监测凝血功能", "ECMO,并发症,出血,抗凝");
+        when(repository.findPublishedVersions()).thenAnswer(invocation -> {
+            List<Object[]> rows = new ArrayList<>();
+            table.values().stream()
+                    .filter(k -> k.getStatus() == 1)
+                    .forEach(k -> rows.add(new Object[]{k.getId(), k.getUpdatedAt()}));
+            return rows;
+        });
+        when(repository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<KnowledgeBase> rows = new ArrayList<>();
+            invocation.<Iterable<Long>>getArgument(0).forEach(id -> rows.add(table.get(id)));
+            return rows;
+        });
+    }
+
+    @Test
+    void tokenizerSplitsChineseIntoBigramsAndKeepsEnglishWords() {
+        assertEquals(List.of("心", "心肌", "肌", "肌梗", "梗", "梗死", "死", "ecmo", "pao2", "休"),
+                TextTokenizer.tokenize("心肌梗死 ECMO, PaO2/休"));
+        assertEquals(List.of("急性", "性心", "心肌", "肌梗", "梗死", "ecmo", "pao2", "休"),
+                TextTokenizer.tokenizeQuery("急性心肌梗死 ECMO, PaO2/休"));
+    }
+
+    @Test
+    void singleCharacterQueryMatchesInsideLongerWords() {
+        put(4L, "适应症", "ECMO肺移植桥接", "终末期肺病等待肺移植", "ECMO,肺移植");
+        KnowledgeSearchIndex index = newIndex();
+        index.load();
+
+        assertEquals(List.of(4L), index.search("肺", null, 10).stream().map(KnowledgeSearchIndex.Hit::id).toList());
+        assertEquals(List.of(3L), index.search("血", null, 10).stream().map(KnowledgeSearchIndex.Hit::id).toList());
+        assertTrue(index.search("血", null, 10).get(0).snippet().contains("出血"));
+    }
+
+    @Test
+    void searchRanksByBm25AndReturnsSnippet() {
+        KnowledgeSearchIndex index = newIndex();
+        index.load();
+
+        List<KnowledgeSearchIndex.Hit> hits = index.search("心源性休克", null, 10);
+
+        assertEquals(1, hits.size());
+        assertEquals(2L, hits.get(0).id());
+        assertTrue(hits.get(0).snippet().contains("心源性休克"), hits.get(0).snippet());
+        assertEquals(List.of(1L), index.search("呼吸衰竭", null, 10).stream().map(KnowledgeSearchIndex.Hit::id).toList());
+        assertEquals(3L, index.search("ecmo 出血", null, 10).get(0).id(), "标题和正文都命中出血的知识排在前面");
+        assertTrue(index.search("ecmo", "并发症", 10).stream().allMatch(hit -> "并发症".equals(hit.category())));
+        assertEquals(List.of(1L, 2L), index.findByTag("适应症", 10).stream().map(KnowledgeSearchIndex.Hit::id).toList());
+    }
+
+    @Test
+    void updatesAndRemovalsAreAppliedIncrementally() {
+        KnowledgeSearchIndex index = newIndex();
+        index.load();
+
+        KnowledgeBase updated = table.get(3L);
+        updated.setContent("肝素抗凝目标ACT 180-220秒");
+        index.update(updated);
+        KnowledgeBase draft = table.get(1L);
+        draft.setStatus(0);
+        index.update(draft);
+        index.remove(2L);
+
+        assertTrue(index.search("颅内", null, 10).isEmpty());
+        assertEquals(3L, index.search("肝素", null, 10).get(0).id());
+        assertTrue(index.search("呼吸衰竭", null, 10).isEmpty(), "下线的知识不再检索到");
+        assertTrue(index.search("心肌炎", null, 10).isEmpty());
+        assertEquals(1, index.stats().get("documents"));
+    }
+
+    @Test
+    void snapshotIsReusedAndOnlyChangedRowsAreReloaded() {
+        KnowledgeSearchIndex first = newIndex();
+        first.load();
+        first.shutdown();
+        clearInvocations(repository);
+
+        table.get(2L).setContent("左心室减压");
+        table.get(2L).setUpdatedAt(table.get(2L).getUpdatedAt().plusMinutes(5));
+        table.remove(3L);
+        KnowledgeSearchIndex second = newIndex();
+        second.load();
+
+        Map<String, Object> stats = second.stats();
+        assertEquals(1, stats.get("loadedFromSnapshot"));
+        assertEquals(1, stats.get("reindexedOnLoad"));
+        assertEquals(1, stats.get("removedOnLoad"));
+        verify(repository).findAllById(argThat((Iterable<Long> ids) -> ids instanceof Collection<?> c && c.size() == 1 && c.contains(2L)));
+        assertEquals(2L, second.search("左心室减压", null, 10).get(0).id());
+        assertEquals(1L, second.search("呼吸衰竭", null, 10).get(0).id());
+        assertTrue(second.search("颅内", null, 10).isEmpty());
+    }
+
+    private KnowledgeSearchIndex newIndex() {
+        return new KnowledgeSearchIndex(repository, true, tempDir.toString(), "knowledge-index.json.gz", 40);
+    }
+
+    private void put(Long id, String category, String title, String content, String tags) {
+        KnowledgeBase knowledge = new KnowledgeBase();
+        knowledge.setId(id);
+        knowledge.setCategory(category);
+        knowledge.setTitle(title);
+        knowledge.setContent(content);
+        knowledge.setTags(tags);
+        knowledge.setSortOrder(id.intValue());
+        knowledge.setStatus(1);
+        knowledge.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 8, 0).plusHours(id));
+        table.put(id, knowledge);
+    }
+}
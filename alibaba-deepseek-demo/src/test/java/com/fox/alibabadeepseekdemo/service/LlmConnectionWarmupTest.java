@@ -0,0 +1,51 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 模型服务连接预热：预热地址与对话客户端的base-url一致，无需补足连接时不发起请求
+ */
+class LlmConnectionWarmupTest {
+
+    @Test
+    void warmupUrlDoesNotRepeatVersionPrefix() {
+        assertEquals("https://api.siliconflow.cn/v1/models",
+                LlmConnectionWarmup.warmupUrl("https://api.siliconflow.cn/v1", "/v1/models"));
+        assertEquals("https://api.siliconflow.cn/v1/models",
+                LlmConnectionWarmup.warmupUrl("https://api.siliconflow.cn/", "/v1/models"));
+        assertEquals("https://api.siliconflow.cn/v1/models",
+                LlmConnectionWarmup.warmupUrl("https://api.siliconflow.cn/v1/", "/models"));
+        assertEquals("http://localhost:8000/v1x/v1/models",
+                LlmConnectionWarmup.warmupUrl("http://localhost:8000/v1x", "/v1/models"));
+    }
+
+    @Test
+    void nothingIsOpenedWhenNoConnectionIsMissing() {
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        CloseableHttpAsyncClient streamClient = mock(CloseableHttpAsyncClient.class);
+        PoolingHttpClientConnectionManager connectionManager = mock(PoolingHttpClientConnectionManager.class);
+        when(connectionManager.getTotalStats()).thenReturn(new PoolStats(4, 0, 0, 64));
+        LlmConnectionWarmup warmup = new LlmConnectionWarmup(httpClient, streamClient, connectionManager,
+                "https://api.siliconflow.cn", "key", true, "/v1/models", 4, Duration.ofSeconds(1), true);
+        try {
+            warmup.keepWarm();
+            warmup.warm(0, true);
+
+            assertEquals(0, warmup.stats().get("runs"));
+            verifyNoInteractions(httpClient, streamClient);
+        } finally {
+            warmup.shutdown();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 大模型调用限流：令牌桶准入、按到达顺序排队、超过最长等待或排队上限时拒绝，以及按实际用量结算和全额归还
+ */
+class ModelRateLimiterTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void requestsWithinBudgetAreAdmittedImmediately() {
+        ModelRateLimiter limiter = limiter(2, 100_000, Duration.ofSeconds(1), 10);
+
+        limiter.acquire("", 100);
+        limiter.acquire("", 100);
+        // 每30秒补充一个请求令牌，1秒内无法满足
+        assertRateLimited(() -> limiter.acquire("", 100));
+
+        assertEquals(2L, limiter.stats().get("acquired"));
+        assertEquals(0L, limiter.stats().get("queued"));
+        assertEquals(1L, limiter.stats().get("rejected"));
+    }
+
+    @Test
+    void tokenCostIncludesTheMaxTokensOfTheCall() {
+        ModelRateLimiter limiter = limiter(1000, 1000, Duration.ofSeconds(1), 10);
+
+        limiter.acquire("", 600);
+        assertRateLimited(() -> limiter.acquire("", 600));
+        limiter.acquire("", 300);
+
+        assertEquals(900L, limiter.stats().get("estimatedTokens"));
+    }
+
+    @Test
+    void waitsForRefillWithinMaxWait() {
+        // 每秒补充1000个token
+        ModelRateLimiter limiter = limiter(1000, 60_000, Duration.ofSeconds(5), 10);
+        limiter.acquire("", 60_000);
+
+        long start = System.nanoTime();
+        limiter.acquire("", 300);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(1L, limiter.stats().get("queued"));
+    }
+
+    @Test
+    void waitersAreAdmittedInArrivalOrder() throws Exception {
+        ModelRateLimiter limiter = limiter(1000, 60_000, Duration.ofSeconds(5), 10);
+        limiter.acquire("", 60_000);
+        List<String> admitted = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> large = CompletableFuture.runAsync(() -> {
+            limiter.acquire("", 500);
+            admitted.add("large");
+        }, executor);
+        awaitWaiting(limiter, 1);
+        // 后到的小请求先有足够配额，也须排在先到的请求之后
+        CompletableFuture<Void> small = CompletableFuture.runAsync(() -> {
+            limiter.acquire("", 10);
+            admitted.add("small");
+        }, executor);
+        CompletableFuture.allOf(large, small).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("large", "small"), admitted);
+        assertEquals(2L, limiter.stats().get("queued"));
+    }
+
+    @Test
+    void queuedRequestIsRejectedAtMaxWait() throws Exception {
+        ModelRateLimiter limiter = limiter(1000, 60_000, Duration.ofMillis(300), 10);
+        limiter.acquire("", 60_000);
+
+        CompletableFuture<Void> head = CompletableFuture.runAsync(() -> limiter.acquire("", 280), executor);
+        awaitWaiting(limiter, 1);
+        long start = System.nanoTime();
+        // 排在后面的请求轮到时剩余等待时间已不足以补充所需配额，被拒绝
+        assertRateLimited(() -> limiter.acquire("", 100));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        head.get(5, TimeUnit.SECONDS);
+        assertEquals(1L, limiter.stats().get("rejected"));
+    }
+
+    @Test
+    void requestIsRejectedWhenQueueIsFull() throws Exception {
+        ModelRateLimiter limiter = limiter(1000, 60_000, Duration.ofSeconds(5), 1);
+        limiter.acquire("", 60_000);
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> limiter.acquire("", 300), executor);
+        awaitWaiting(limiter, 1);
+        long start = System.nanoTime();
+        assertRateLimited(() -> limiter.acquire("", 1));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200), "排队已满时立即拒绝");
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(1L, limiter.stats().get("rejected"));
+    }
+
+    @Test
+    void settleReturnsUnusedTokens() {
+        ModelRateLimiter limiter = limiter(1000, 1000, Duration.ZERO, 10);
+
+        ModelRateLimiter.Permit permit = limiter.acquire("", 1000);
+        permit.settle(200);
+        limiter.acquire("", 800);
+        permit.settle(0);
+
+        assertEquals(200L, limiter.stats().get("actualTokens"));
+        assertRateLimited(() -> limiter.acquire("", 100));
+    }
+
+    @Test
+    void settleWithoutUsageKeepsTheReservation() {
+        ModelRateLimiter limiter = limiter(1000, 1000, Duration.ZERO, 10);
+
+        limiter.acquire("", 1000).settle(null);
+
+        assertRateLimited(() -> limiter.acquire("", 100));
+        assertEquals(1000L, limiter.stats().get("actualTokens"));
+    }
+
+    @Test
+    void refundReturnsTheWholeReservation() {
+        ModelRateLimiter limiter = limiter(1000, 1000, Duration.ZERO, 10);
+
+        ModelRateLimiter.Permit permit = limiter.acquire("", 1000);
+        permit.refund();
+        permit.settle(10);
+        limiter.acquire("", 1000);
+
+        assertEquals(1000L, limiter.stats().get("estimatedTokens"));
+        assertEquals(0L, limiter.stats().get("actualTokens"));
+    }
+
+    @Test
+    void disabledLimiterAdmitsEverything() {
+        ModelRateLimiter limiter = new ModelRateLimiter(false, 1, 1, 2000, Duration.ZERO, 0);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("急性呼吸窘迫综合征").settle(5000);
+        }
+
+        assertEquals(0L, limiter.stats().get("acquired"));
+        assertEquals(0L, limiter.stats().get("rejected"));
+    }
+
+    private static ModelRateLimiter limiter(int requestsPerMinute, int tokensPerMinute, Duration maxWait, int maxQueue) {
+        return new ModelRateLimiter(true, requestsPerMinute, tokensPerMinute, 2000, maxWait, maxQueue);
+    }
+
+    private static void assertRateLimited(Runnable acquire) {
+        ModelUnavailableException e = assertThrows(ModelUnavailableException.class, acquire::run);
+        assertEquals(ModelUnavailableException.Reason.RATE_LIMITED, e.getReason());
+    }
+
+    private static void awaitWaiting(ModelRateLimiter limiter, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((int) limiter.stats().get("waiting") < waiting) {
+            assertTrue(System.nanoTime() < deadline, "等待请求进入队列超时");
+            Thread.sleep(5);
+        }
+    }
+}
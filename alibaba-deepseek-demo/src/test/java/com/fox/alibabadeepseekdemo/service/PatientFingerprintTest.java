@@ -0,0 +1,71 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 患者参数指纹：数值和文本规范化后临床内容相同即指纹相同，身份信息不参与计算
+ */
+class PatientFingerprintTest {
+
+    @Test
+    void identityFieldsDoNotAffectFingerprint() {
+        PatientParameters other = patient();
+        other.setPatientId("P-OTHER");
+        other.setPatientName("李四");
+
+        assertEquals(PatientFingerprint.of(patient()), PatientFingerprint.of(other));
+    }
+
+    @Test
+    void numbersAndTextAreCanonicalized() {
+        PatientParameters other = patient();
+        other.setpH(7.300);
+        other.setLactate(6.50);
+        other.setPrimaryDiagnosis("  重症   ARDS \n");
+        other.setComorbidities("   ");
+
+        assertEquals(PatientFingerprint.of(patient()), PatientFingerprint.of(other), "7.30与7.3、多余空白和空白文本视为相同");
+    }
+
+    @Test
+    void clinicalChangesProduceDifferentFingerprints() {
+        String fingerprint = PatientFingerprint.of(patient());
+
+        PatientParameters lactate = patient();
+        lactate.setLactate(6.6);
+        PatientParameters diagnosis = patient();
+        diagnosis.setPrimaryDiagnosis("重症ARDS");
+        PatientParameters missingAge = patient();
+        missingAge.setAge(null);
+
+        assertNotEquals(fingerprint, PatientFingerprint.of(lactate));
+        assertNotEquals(fingerprint, PatientFingerprint.of(diagnosis), "文本内部的空白保留");
+        assertNotEquals(fingerprint, PatientFingerprint.of(missingAge));
+        assertEquals(64, fingerprint.length(), "SHA-256十六进制");
+    }
+
+    @Test
+    void valuesDoNotShiftBetweenFields() {
+        PatientParameters first = new PatientParameters();
+        first.setPrimaryDiagnosis("ARDS");
+        PatientParameters second = new PatientParameters();
+        second.setSecondaryDiagnosis("ARDS");
+
+        assertNotEquals(PatientFingerprint.of(first), PatientFingerprint.of(second));
+    }
+
+    private static PatientParameters patient() {
+        PatientParameters patient = new PatientParameters();
+        patient.setPatientId("P001");
+        patient.setPatientName("张三");
+        patient.setAge(45);
+        patient.setGender("男");
+        patient.setpH(7.3);
+        patient.setLactate(6.5);
+        patient.setPrimaryDiagnosis("重症 ARDS");
+        return patient;
+    }
+}
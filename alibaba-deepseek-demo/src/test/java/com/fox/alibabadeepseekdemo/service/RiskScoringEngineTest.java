@@ -0,0 +1,142 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 风险评分规则引擎：档位边界、分项评分、分数截断，以及规则重载和重载失败时保留原规则
+ */
+class RiskScoringEngineTest {
+
+    private final DefaultResourceLoader resourceLoader = new DefaultResourceLoader();
+
+    @TempDir
+    Path tempDir;
+    private Path rulesFile;
+    private String rules;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream in = resourceLoader.getResource("classpath:scoring/ecmo-risk-rules.json").getInputStream()) {
+            rules = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        rulesFile = tempDir.resolve("ecmo-risk-rules.json");
+        Files.writeString(rulesFile, rules);
+    }
+
+    @Test
+    void firstMatchingTierPerFieldIsDeducted() {
+        RiskScoringEngine engine = engine(false);
+
+        // 年龄71(>70) -20，P/F 80(不<80，<100) -15，乳酸5(不>5) 0，射血分数25 -10，肌酐300(不>300，>200) -5
+        RiskEvaluation evaluation = engine.evaluate(patient(71, 80.0, 5.0, 25.0, 300.0, null));
+
+        assertEquals(50.0, evaluation.getScore());
+        assertEquals("不推荐", evaluation.getRiskLevel());
+        assertEquals(false, evaluation.getExpectedRecommendation());
+        assertEquals(List.of("年龄>70岁", "P/F比值<100", "射血分数<30%", "肌酐>200μmol/L"), evaluation.getRiskFactors());
+        assertEquals(List.of("年龄>70岁(-20分)"), evaluation.getKeyRiskFactors());
+        assertEquals("60/100", evaluation.getDetailedScores().get("年龄适宜度"));
+        assertEquals("60/100", evaluation.getDetailedScores().get("心肺功能"), ">=80为闭区间");
+        assertEquals("90/100", evaluation.getDetailedScores().get("病程时效性"), "缺失值使用missingScore");
+    }
+
+    @Test
+    void levelBoundariesAndScoreClamping() {
+        RiskScoringEngine engine = engine(false);
+
+        RiskEvaluation full = engine.evaluate(new PatientParameters());
+        assertEquals(100.0, full.getScore(), "参数缺失不扣分");
+        assertEquals("高推荐", full.getRiskLevel());
+
+        RiskEvaluation mild = engine.evaluate(patient(66, null, null, null, null, 6));
+        assertEquals(82.0, mild.getScore());
+        assertEquals("高推荐", mild.getRiskLevel());
+
+        RiskEvaluation boundary = engine.evaluate(patient(71, null, 6.0, null, null, 6));
+        assertEquals(64.0, boundary.getScore());
+        assertEquals("谨慎推荐", boundary.getRiskLevel());
+        assertNull(boundary.getExpectedRecommendation());
+
+        RiskEvaluation clamped = engine.evaluate(patient(80, 50.0, 12.0, 10.0, 400.0, 10));
+        assertEquals(0.0, clamped.getScore(), "扣分超过100分时截断为minScore");
+        assertEquals("不推荐", clamped.getRiskLevel());
+    }
+
+    @Test
+    void reloadReplacesRulesAtomically() throws IOException {
+        RiskScoringEngine engine = engine(false);
+        PatientParameters patient = patient(71, null, null, null, null, null);
+        RiskEvaluation before = engine.evaluate(patient);
+
+        Files.writeString(rulesFile, rules.replace("\"version\": \"2025.1\"", "\"version\": \"2025.2\"")
+                .replace("\"threshold\": 70, \"points\": 20", "\"threshold\": 70, \"points\": 30"));
+        engine.reload();
+
+        assertEquals("2025.2", engine.getVersion());
+        assertEquals(70.0, engine.evaluate(patient).getScore());
+        assertEquals(80.0, before.getScore(), "已完成的评估仍引用原规则");
+        assertEquals("2025.1", before.getRulesVersion());
+        assertNull(engine.stats().get("lastReloadError"));
+    }
+
+    @Test
+    void failedReloadKeepsPreviousRules() throws IOException {
+        RiskScoringEngine engine = engine(false);
+
+        Files.writeString(rulesFile, rules.replace("\"version\": \"2025.1\"", "\"version\": \"2025.2\"")
+                .replaceFirst("\"op\": \">\"", "\"op\": \"=>\""));
+        IllegalArgumentException invalidOp = assertThrows(IllegalArgumentException.class, engine::reload);
+        assertTrue(invalidOp.getMessage().contains("=>"));
+
+        Files.writeString(rulesFile, "{\"version\": \"2025.3\", \"levels\": [");
+        assertThrows(IllegalStateException.class, engine::reload);
+
+        assertEquals("2025.1", engine.getVersion());
+        assertEquals(80.0, engine.evaluate(patient(71, null, null, null, null, null)).getScore());
+        assertNotNull(engine.stats().get("lastReloadError"));
+    }
+
+    @Test
+    void watchedFileIsReloadedWhenModified() throws IOException {
+        RiskScoringEngine watched = engine(true);
+        RiskScoringEngine unwatched = engine(false);
+
+        Files.writeString(rulesFile, rules.replace("\"version\": \"2025.1\"", "\"version\": \"2025.2\""));
+        Files.setLastModifiedTime(rulesFile, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        watched.reloadIfModified();
+        unwatched.reloadIfModified();
+
+        assertEquals("2025.2", watched.getVersion());
+        assertEquals("2025.1", unwatched.getVersion());
+    }
+
+    private RiskScoringEngine engine(boolean watch) {
+        return new RiskScoringEngine(resourceLoader, rulesFile.toUri().toString(), watch);
+    }
+
+    private static PatientParameters patient(Integer age, Double pfRatio, Double lactate, Double ejectionFraction,
+                                             Double creatinine, Integer illnessDuration) {
+        PatientParameters patient = new PatientParameters();
+        patient.setAge(age);
+        patient.setpO2FiO2Ratio(pfRatio);
+        patient.setLactate(lactate);
+        patient.setEjectionFraction(ejectionFraction);
+        patient.setCreatinine(creatinine);
+        patient.setIllnessDuration(illnessDuration);
+        return patient;
+    }
+}
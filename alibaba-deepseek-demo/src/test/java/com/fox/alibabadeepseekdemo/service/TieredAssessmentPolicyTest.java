@@ -0,0 +1,70 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static com.fox.alibabadeepseekdemo.service.TieredAssessmentPolicy.Tier.LLM;
+import static com.fox.alibabadeepseekdemo.service.TieredAssessmentPolicy.Tier.RULES_NOT_RECOMMEND;
+import static com.fox.alibabadeepseekdemo.service.TieredAssessmentPolicy.Tier.RULES_RECOMMEND;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分层评估策略：阈值边界、禁忌症、停用和分层计数
+ */
+class TieredAssessmentPolicyTest {
+
+    @Test
+    void thresholdsAreInclusive() {
+        TieredAssessmentPolicy policy = new TieredAssessmentPolicy(true, 90, 20, false);
+
+        assertEquals(RULES_RECOMMEND, policy.route(patient(null), 90));
+        assertEquals(RULES_RECOMMEND, policy.route(patient(null), 100));
+        assertEquals(LLM, policy.route(patient(null), 89.99));
+        assertEquals(LLM, policy.route(patient(null), 20.01));
+        assertEquals(RULES_NOT_RECOMMEND, policy.route(patient(null), 20));
+        assertEquals(RULES_NOT_RECOMMEND, policy.route(patient(null), 0));
+    }
+
+    @Test
+    void contraindicationsSendHighScoresToModel() {
+        TieredAssessmentPolicy policy = new TieredAssessmentPolicy(true, 90, 20, false);
+
+        assertEquals(LLM, policy.route(patient("颅内出血"), 95));
+        assertEquals(RULES_RECOMMEND, policy.route(patient("   "), 95), "空白禁忌症视为无");
+        assertEquals(RULES_NOT_RECOMMEND, policy.route(patient("颅内出血"), 10), "低分不受禁忌症影响");
+    }
+
+    @Test
+    void disabledPolicyAlwaysUsesModel() {
+        TieredAssessmentPolicy policy = new TieredAssessmentPolicy(false, 90, 20, false);
+
+        assertEquals(LLM, policy.route(patient(null), 100));
+        assertEquals(LLM, policy.route(patient(null), 0));
+    }
+
+    @Test
+    void countsRoutedTiers() {
+        TieredAssessmentPolicy policy = new TieredAssessmentPolicy(true, 90, 20, true);
+        policy.route(patient(null), 95);
+        policy.route(patient(null), 50);
+        policy.route(patient(null), 60);
+        policy.route(patient(null), 5);
+
+        Map<String, Object> stats = policy.stats();
+
+        assertEquals(4L, stats.get("total"));
+        assertEquals(Map.of("count", 2L, "fraction", 0.5), stats.get("LLM"));
+        assertEquals(Map.of("count", 1L, "fraction", 0.25), stats.get("RULES_RECOMMEND"));
+        assertEquals(Map.of("count", 1L, "fraction", 0.25), stats.get("RULES_NOT_RECOMMEND"));
+        assertEquals(true, stats.get("backfill"));
+    }
+
+    private static PatientParameters patient(String contraindications) {
+        PatientParameters patient = new PatientParameters();
+        patient.setPatientId("P001");
+        patient.setContraindications(contraindications);
+        return patient;
+    }
+}
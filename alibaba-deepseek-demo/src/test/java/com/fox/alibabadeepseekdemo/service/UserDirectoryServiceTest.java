@@ -0,0 +1,121 @@
+package com.fox.alibabadeepseekdemo.service;
+
+import com.fox.alibabadeepseekdemo.repository.UserRepository;
+import com.fox.alibabadeepseekdemo.repository.UserSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * 管理端用户列表：游标可回传取下一页，无效游标被拒绝，CSV导出正确转义并避免公式注入
+ */
+class UserDirectoryServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDirectoryService service = new UserDirectoryService(userRepository);
+
+    @Test
+    void nextCursorContinuesAfterLastIdOfPage() {
+        when(userRepository.findSummariesByIdDesc(isNull(), isNull(), isNull(), isNull(), eq(Limit.of(3))))
+                .thenReturn(users(30, 29, 28));
+        when(userRepository.findSummariesByIdDesc(isNull(), isNull(), isNull(), eq(29L), eq(Limit.of(3))))
+                .thenReturn(users(28));
+
+        UserDirectoryService.UserPage first = service.findPage(null, null, null, null, null, null, 2);
+        UserDirectoryService.UserPage second = service.findPage(null, null, null, null, null, first.nextCursor(), 2);
+
+        assertEquals(List.of(30L, 29L), first.items().stream().map(UserSummary::id).toList());
+        assertTrue(first.hasMore());
+        assertEquals(List.of(28L), second.items().stream().map(UserSummary::id).toList());
+        assertFalse(second.hasMore());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void usernameCursorRoundTripsNonAsciiNames() {
+        when(userRepository.findSummariesByUsernameAsc(eq("协和医院"), isNull(), eq(1), isNull(), any()))
+                .thenReturn(List.of(user(1L, "李医生"), user(2L, "王医生")));
+
+        UserDirectoryService.UserPage first = service.findPage("协和医院", " ", 1, "username", null, null, 1);
+        service.findPage("协和医院", null, 1, "username", "asc", first.nextCursor(), 1);
+
+        verify(userRepository).findSummariesByUsernameAsc(eq("协和医院"), isNull(), eq(1), eq("李医生"), eq(Limit.of(2)));
+    }
+
+    @Test
+    void invalidCursorsAreRejected() {
+        String idCursor = cursor("id|5");
+        String usernameCursor = cursor("username|张三");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage(null, null, null, null, null, "不是游标", 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage(null, null, null, null, null, cursor("id|abc"), 20));
+        // 游标与当前排序字段不一致
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage(null, null, null, "username", null, idCursor, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage(null, null, null, "id", null, usernameCursor, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage(null, null, null, "email", null, null, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage(null, null, null, null, "up", null, 20));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void csvCellsAreQuotedAndEscaped() {
+        assertEquals("1,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",,2\n",
+                UserDirectoryService.csvLine(1L, "a,b", "say \"hi\"", "two\nlines", null, 2));
+    }
+
+    @Test
+    void csvCellsThatLookLikeFormulasAreNeutralised() {
+        assertEquals("'=SUM(A1),'+1,'-1,'@cmd,\"'=1,2\",-1\n",
+                UserDirectoryService.csvLine("=SUM(A1)", "+1", "-1", "@cmd", "=1,2", -1));
+    }
+
+    @Test
+    void exportWritesHeaderAndOneLinePerUser() {
+        when(userRepository.streamSummaries(null, null, null))
+                .thenReturn(Stream.of(user(1L, "张三"), user(2L, "=cmd")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = service.exportCsv(" ", null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, rows);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("﻿id,username,"));
+        assertTrue(lines[1].startsWith("1,张三,"));
+        assertTrue(lines[2].startsWith("2,'=cmd,"));
+    }
+
+    private static String cursor(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<UserSummary> users(long... ids) {
+        List<UserSummary> users = new ArrayList<>();
+        for (long id : ids) {
+            users.add(user(id, "user" + id));
+        }
+        return users;
+    }
+
+    private static UserSummary user(Long id, String username) {
+        return new UserSummary(id, username, null, null, null, null, null, 1, null, null);
+    }
+}
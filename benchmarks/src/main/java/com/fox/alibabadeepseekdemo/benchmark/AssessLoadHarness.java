@@ -0,0 +1,233 @@
+package com.fox.alibabadeepseekdemo.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fox.alibabadeepseekdemo.AlibabaDeepseekDemoApplication;
+import com.fox.alibabadeepseekdemo.service.ECMOExpertService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * /api/ecmo/assess 端到端延迟压测
+ * 进程内启动 {@link OpenAiStubServer} 和完整的Spring应用（H2内存库），按固定到达速率（开环）发送请求，
+ * 延迟从计划发送时刻开始计算，避免协调遗漏；对每组 模型延迟分布 × 请求速率 输出 p50/p95/p99/max、吞吐、错误和降级数。
+ * <p>
+ * 运行: mvn -pl benchmarks -am -DskipTests -Pload test -Dload.args="--rps=2,5,10 --duration=30s"
+ * <ul>
+ *     <li>--latency=fixed:800;lognormal:800,0.6;longtail:600,0.05,8000 模型延迟分布，分号分隔</li>
+ *     <li>--rps=2,5,10 请求速率，逗号分隔</li>
+ *     <li>--duration=30s / --warmup=5s 每组的测量时长和预热时长</li>
+ *     <li>--token-latency-ms=20 每个输出token追加的生成耗时，用于比较不同输出格式（--app.ecmo.output.mode=compact）</li>
+ *     <li>--error-rate / --throttle-rate / --malformed-rate 注入的500、429和格式错误响应比例</li>
+ *     <li>--app.xxx=yyy 覆盖应用配置，例如 --app.ecmo.llm.timeout=10s</li>
+ * </ul>
+ */
+public class AssessLoadHarness {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client;
+    private final URI assessUri;
+    private final Duration requestTimeout;
+    private final Random random = new Random(42);
+    private long sequence;
+
+    AssessLoadHarness(URI assessUri, Duration requestTimeout) {
+        this.assessUri = assessUri;
+        this.requestTimeout = requestTimeout;
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "load-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        HarnessArgs options = HarnessArgs.parse(args);
+        List<String> latencies = Arrays.asList(options.get("latency", "fixed:800;lognormal:800,0.6;longtail:600,0.05,8000").split(";"));
+        double[] rates = Arrays.stream(options.get("rps", "2,5,10").split(",")).mapToDouble(Double::parseDouble).toArray();
+        Duration duration = options.getDuration("duration", Duration.ofSeconds(30));
+        Duration warmup = options.getDuration("warmup", Duration.ofSeconds(5));
+        double errorRate = options.getDouble("error-rate", 0);
+        double throttleRate = options.getDouble("throttle-rate", 0);
+        double malformedRate = options.getDouble("malformed-rate", 0);
+        double tokenLatency = options.getDouble("token-latency-ms", 0);
+
+        try (OpenAiStubServer stub = new OpenAiStubServer().tokenLatency(tokenLatency).start(0)) {
+            ConfigurableApplicationContext context = startApplication(stub.getBaseUrl(), options.withPrefix("app."));
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                AssessLoadHarness harness = new AssessLoadHarness(
+                        URI.create("http://127.0.0.1:" + port + "/api/ecmo/assess"),
+                        options.getDuration("timeout", Duration.ofSeconds(120)));
+
+                System.out.println(LoadResult.HEADER);
+                List<String> rows = new ArrayList<>();
+                for (String latency : latencies) {
+                    stub.configure(LatencyDistribution.parse(latency), errorRate, throttleRate, malformedRate);
+                    for (double rps : rates) {
+                        harness.run(rps, warmup);
+                        LoadResult result = harness.run(rps, duration);
+                        String row = result.format(latency, rps);
+                        System.out.println(row);
+                        rows.add(row);
+                    }
+                }
+                System.out.println();
+                System.out.println(LoadResult.HEADER);
+                rows.forEach(System.out::println);
+                System.out.println("stub: " + stub.stats());
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * 使用H2内存库和模型服务桩启动应用，关闭评估缓存和客户端限流，使每个请求都真实经过模型调用路径
+     */
+    static ConfigurableApplicationContext startApplication(String stubBaseUrl, Map<String, String> overrides) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:ecmo-load;DB_CLOSE_DELAY=-1;MODE=MySQL");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.ai.openai.base-url", stubBaseUrl);
+        properties.put("spring.ai.openai.api-key", "stub");
+        properties.put("ecmo.cache.enabled", "false");
+        properties.put("ecmo.rate-limit.enabled", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.fox.alibabadeepseekdemo", "WARN");
+        properties.put("logging.level.web", "WARN");
+        properties.put("logging.level.org.springframework.web", "WARN");
+        properties.putAll(overrides);
+        // 以命令行参数传入，优先级高于 application.yml
+        String[] args = properties.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(AlibabaDeepseekDemoApplication.class).run(args);
+    }
+
+    /**
+     * 以固定速率发送请求，返回该时间窗内的延迟统计
+     */
+    LoadResult run(double rps, Duration duration) {
+        long interval = (long) (1_000_000_000L / rps);
+        int total = (int) Math.max(1, Math.round(rps * duration.toMillis() / 1000.0));
+        List<CompletableFuture<Sample>> futures = new ArrayList<>(total);
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long intended = start + i * interval;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            futures.add(send(intended));
+        }
+        List<Sample> samples = new ArrayList<>(total);
+        for (CompletableFuture<Sample> future : futures) {
+            samples.add(future.join());
+        }
+        return LoadResult.of(samples, start);
+    }
+
+    private CompletableFuture<Sample> send(long intended) {
+        String body;
+        try {
+            body = MAPPER.writeValueAsString(PatientFixtures.randomized(random, "LOAD-" + (++sequence)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(assessUri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    long end = System.nanoTime();
+                    if (error != null || response.statusCode() != 200) {
+                        return new Sample(end - intended, end, Outcome.ERROR);
+                    }
+                    return new Sample(end - intended, end, classify(response.body()));
+                });
+    }
+
+    private static Outcome classify(String body) {
+        try {
+            JsonNode json = MAPPER.readTree(body);
+            if (!json.path("success").asBoolean(false)
+                    || ECMOExpertService.ERROR_RISK_LEVEL.equals(json.path("riskLevel").asText())) {
+                return Outcome.ERROR;
+            }
+            return json.path("degraded").asBoolean(false) ? Outcome.DEGRADED : Outcome.OK;
+        } catch (Exception e) {
+            return Outcome.ERROR;
+        }
+    }
+
+    enum Outcome {
+        OK, DEGRADED, ERROR
+    }
+
+    record Sample(long latencyNanos, long completedAt, Outcome outcome) {
+    }
+
+    record LoadResult(int requests, int errors, int degraded, double throughput,
+                      double p50, double p95, double p99, double max) {
+
+        static final String HEADER = String.format("%-28s %6s %8s %9s %9s %9s %9s %9s %7s %8s",
+                "latency", "rps", "req", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)", "tput/s", "errors", "degraded");
+
+        static LoadResult of(List<Sample> samples, long start) {
+            long[] latencies = samples.stream().mapToLong(Sample::latencyNanos).sorted().toArray();
+            long lastCompletion = samples.stream().mapToLong(Sample::completedAt).max().orElse(start);
+            int errors = (int) samples.stream().filter(s -> s.outcome() == Outcome.ERROR).count();
+            int degraded = (int) samples.stream().filter(s -> s.outcome() == Outcome.DEGRADED).count();
+            double elapsedSeconds = Math.max(1, lastCompletion - start) / 1e9;
+            return new LoadResult(samples.size(), errors, degraded,
+                    (samples.size() - errors) / elapsedSeconds,
+                    percentile(latencies, 0.50), percentile(latencies, 0.95),
+                    percentile(latencies, 0.99), percentile(latencies, 1.0));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+        }
+
+        String format(String latency, double rps) {
+            return String.format("%-28s %6.1f %8d %9.0f %9.0f %9.0f %9.0f %9.2f %7d %8d",
+                    latency, rps, requests, p50, p95, p99, max, throughput, errors, degraded);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.fox.alibabadeepseekdemo.benchmark;
+
+import com.fox.alibabadeepseekdemo.controller.ECMOExpertController;
+import com.fox.alibabadeepseekdemo.entity.ECMOAssessment;
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+import com.fox.alibabadeepseekdemo.service.AssessmentCache;
+import com.fox.alibabadeepseekdemo.service.AssessmentMetrics;
+import com.fox.alibabadeepseekdemo.service.AssessmentPromptBuilder;
+import com.fox.alibabadeepseekdemo.service.AssessmentResponseParser;
+import com.fox.alibabadeepseekdemo.service.AssessmentSingleFlight;
+import com.fox.alibabadeepseekdemo.service.CompactOutputCodec;
+import com.fox.alibabadeepseekdemo.service.ECMOExpertService;
+import com.fox.alibabadeepseekdemo.service.GuidelineRetriever;
+import com.fox.alibabadeepseekdemo.service.KnowledgeSearchIndex;
+import com.fox.alibabadeepseekdemo.service.ModelCallGuard;
+import com.fox.alibabadeepseekdemo.service.ModelCascadePolicy;
+import com.fox.alibabadeepseekdemo.service.ModelRateLimiter;
+import com.fox.alibabadeepseekdemo.service.RiskEvaluation;
+import com.fox.alibabadeepseekdemo.service.RiskScoringEngine;
+import com.fox.alibabadeepseekdemo.service.TieredAssessmentPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 评估热路径各阶段的CPU开销（不含模型调用）：
+ * 规则评分、提示词构建、模型响应解析、风险信息增强和控制器响应组装，以及串联全部阶段的总开销。
+ * 私有方法通过MethodHandle调用，句柄为static final常量，可被JIT内联，不引入反射开销。
+ * <p>
+ * 运行: mvn -pl benchmarks -am -DskipTests -Pjmh test -Djmh.args="AssessmentPipeline -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssessmentPipelineBenchmark {
+
+    private static final MethodHandle BUILD_PROMPT;
+    private static final MethodHandle PARSE_RESPONSE;
+    private static final MethodHandle ENHANCE;
+    private static final MethodHandle BUILD_RESPONSE;
+
+    static {
+        try {
+            MethodHandles.Lookup service = MethodHandles.privateLookupIn(ECMOExpertService.class, MethodHandles.lookup());
+            BUILD_PROMPT = service.findVirtual(ECMOExpertService.class, "buildECMOAssessmentPrompt",
+                    MethodType.methodType(String.class, PatientParameters.class, RiskEvaluation.class, List.class));
+            PARSE_RESPONSE = service.findVirtual(ECMOExpertService.class, "parseAIResponse",
+                    MethodType.methodType(ECMOAssessment.class, String.class, String.class, Double.class));
+            ENHANCE = service.findVirtual(ECMOExpertService.class, "enhanceWithRiskAssessment",
+                    MethodType.methodType(void.class, ECMOAssessment.class, RiskEvaluation.class, List.class));
+            MethodHandles.Lookup controller = MethodHandles.privateLookupIn(ECMOExpertController.class, MethodHandles.lookup());
+            BUILD_RESPONSE = controller.findVirtual(ECMOExpertController.class, "buildAssessmentResponse",
+                    MethodType.methodType(Map.class, ECMOAssessment.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"severeArds", "cardiogenicShock", "elderlyMultiOrgan", "borderline"})
+    public String patientCase;
+
+    @Param({"plain.json", "compact.json"})
+    public String fixture;
+
+    @Param({"full", "compact"})
+    public String promptMode;
+
+    @Param({"full"})
+    public String outputMode;
+
+    private RiskScoringEngine scoringEngine;
+    private ECMOExpertService service;
+    private ECMOExpertController controller;
+
+    private PatientParameters patient;
+    private String response;
+    private RiskEvaluation evaluation;
+    private ECMOAssessment assessment;
+
+    @Setup
+    public void setup() throws Throwable {
+        scoringEngine = new RiskScoringEngine(new DefaultResourceLoader(), "classpath:scoring/ecmo-risk-rules.json", false);
+        CompactOutputCodec outputCodec = new CompactOutputCodec(new DefaultResourceLoader(), outputMode,
+                "classpath:prompt/ecmo-output-phrases.json", 600);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        service = new ECMOExpertService(
+                ChatClient.builder(new UnusedChatModel()),
+                new AssessmentCache(false, 10, Duration.ofMinutes(1)),
+                new AssessmentResponseParser(),
+                new AssessmentPromptBuilder(promptMode, false, outputCodec),
+                new GuidelineRetriever(new KnowledgeSearchIndex(null, false, "", "", 80), false, 3, 400, 5, 200, 0.3),
+                outputCodec,
+                new TieredAssessmentPolicy(false, 90, 20, false),
+                scoringEngine,
+                new ModelCallGuard(executor, Duration.ofSeconds(1), 1, Duration.ZERO,
+                        10, 5, 50, Duration.ofSeconds(1), 80, Duration.ofSeconds(1), 1),
+                new ModelRateLimiter(false, 1000, 50000, 2000, Duration.ZERO, 1),
+                new AssessmentSingleFlight(false),
+                new ModelCascadePolicy(false, "unused", 0.75, true),
+                new AssessmentMetrics(new SimpleMeterRegistry()),
+                executor,
+                "benchmark-model");
+        controller = new ECMOExpertController();
+
+        patient = patientCase(patientCase);
+        response = BenchmarkFixtures.recordedResponse(fixture);
+        evaluation = scoringEngine.evaluate(patient);
+        assessment = (ECMOAssessment) PARSE_RESPONSE.invoke(service, response, patient.getPatientId(), evaluation.getScore());
+        ENHANCE.invoke(service, assessment, evaluation, List.of());
+        assessment.setAssessmentId("ECMO_ASSESS_BENCHMARK");
+    }
+
+    @Benchmark
+    public RiskEvaluation calculateRiskScore() {
+        return scoringEngine.evaluate(patient);
+    }
+
+    @Benchmark
+    public String buildPrompt() throws Throwable {
+        return (String) BUILD_PROMPT.invoke(service, patient, evaluation, List.of());
+    }
+
+    @Benchmark
+    public ECMOAssessment parseResponse() throws Throwable {
+        return (ECMOAssessment) PARSE_RESPONSE.invoke(service, response, patient.getPatientId(), evaluation.getScore());
+    }
+
+    @Benchmark
+    public ECMOAssessment enhanceWithRiskAssessment() throws Throwable {
+        ENHANCE.invoke(service, assessment, evaluation, List.of());
+        return assessment;
+    }
+
+    @Benchmark
+    public Map<?, ?> assembleResponse() throws Throwable {
+        return (Map<?, ?>) BUILD_RESPONSE.invoke(controller, assessment);
+    }
+
+    /**
+     * 串联全部阶段，即单个请求中除模型调用外的CPU开销
+     */
+    @Benchmark
+    public Map<?, ?> fullPipeline() throws Throwable {
+        RiskEvaluation evaluation = scoringEngine.evaluate(patient);
+        String prompt = (String) BUILD_PROMPT.invoke(service, patient, evaluation, List.of());
+        ECMOAssessment assessment = (ECMOAssessment) PARSE_RESPONSE.invoke(service, response, patient.getPatientId(), evaluation.getScore());
+        ENHANCE.invoke(service, assessment, evaluation, List.of());
+        assessment.setAssessmentId(prompt.isEmpty() ? "" : "ECMO_ASSESS_BENCHMARK");
+        return (Map<?, ?>) BUILD_RESPONSE.invoke(controller, assessment);
+    }
+
+    private static PatientParameters patientCase(String name) {
+        switch (name) {
+            case "severeArds": return PatientFixtures.severeArds();
+            case "cardiogenicShock": return PatientFixtures.cardiogenicShock();
+            case "elderlyMultiOrgan": return PatientFixtures.elderlyMultiOrgan();
+            case "borderline": return PatientFixtures.borderline();
+            default: throw new IllegalArgumentException("unknown patient case: " + name);
+        }
+    }
+
+    /**
+     * 各阶段均不调用模型，仅用于满足服务的构造依赖
+     */
+    private static class UnusedChatModel implements ChatModel {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(""))));
+        }
+    }
+}
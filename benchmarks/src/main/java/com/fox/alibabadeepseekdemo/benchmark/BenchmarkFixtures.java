@@ -0,0 +1,29 @@
+package com.fox.alibabadeepseekdemo.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基准测试夹具：录制的模型响应
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 读取 responses/ 目录下录制的模型响应
+     */
+    public static String recordedResponse(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/responses/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("fixture not found: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
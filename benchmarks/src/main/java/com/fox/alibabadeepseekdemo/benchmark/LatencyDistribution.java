@@ -0,0 +1,72 @@
+package com.fox.alibabadeepseekdemo.benchmark;
+
+import java.util.Random;
+
+/**
+ * 模拟模型服务的响应延迟分布
+ * <ul>
+ *     <li>fixed:800 — 固定800ms</li>
+ *     <li>lognormal:800,0.6 — 对数正态，中位数800ms，sigma=0.6</li>
+ *     <li>longtail:600,0.05,8000 — 中位数600ms，5%的请求落入中位数8000ms的长尾</li>
+ * </ul>
+ */
+public abstract class LatencyDistribution {
+
+    private final String spec;
+
+    private LatencyDistribution(String spec) {
+        this.spec = spec;
+    }
+
+    public abstract long sampleMillis(Random random);
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":", 2);
+        String[] args = parts.length > 1 ? parts[1].split(",") : new String[0];
+        switch (parts[0]) {
+            case "fixed": {
+                long millis = Long.parseLong(args[0].trim());
+                return new LatencyDistribution(spec) {
+                    @Override
+                    public long sampleMillis(Random random) {
+                        return millis;
+                    }
+                };
+            }
+            case "lognormal": {
+                double median = Double.parseDouble(args[0].trim());
+                double sigma = args.length > 1 ? Double.parseDouble(args[1].trim()) : 0.5;
+                return new LatencyDistribution(spec) {
+                    @Override
+                    public long sampleMillis(Random random) {
+                        return logNormal(random, median, sigma);
+                    }
+                };
+            }
+            case "longtail": {
+                double median = Double.parseDouble(args[0].trim());
+                double tailRate = Double.parseDouble(args[1].trim());
+                double tailMedian = Double.parseDouble(args[2].trim());
+                return new LatencyDistribution(spec) {
+                    @Override
+                    public long sampleMillis(Random random) {
+                        return random.nextDouble() < tailRate
+                                ? logNormal(random, tailMedian, 0.25)
+                                : logNormal(random, median, 0.25);
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("unknown latency distribution: " + spec);
+        }
+    }
+
+    private static long logNormal(Random random, double median, double sigma) {
+        return Math.round(Math.exp(Math.log(median) + sigma * random.nextGaussian()));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
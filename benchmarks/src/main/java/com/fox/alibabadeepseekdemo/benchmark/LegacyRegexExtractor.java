@@ -0,0 +1,89 @@
+package com.fox.alibabadeepseekdemo.benchmark;
+
+import com.fox.alibabadeepseekdemo.service.AIAssessmentResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 旧版基于正则的响应解析，仅作为基准对照保留
+ * 每个字段单独编译一次Pattern并重新扫描整个响应
+ */
+public final class LegacyRegexExtractor {
+
+    private LegacyRegexExtractor() {
+    }
+
+    public static AIAssessmentResponse extract(String aiResponse) {
+        String cleanResponse = aiResponse.trim();
+        if (cleanResponse.startsWith("```json")) {
+            cleanResponse = cleanResponse.substring(7);
+        }
+        if (cleanResponse.endsWith("```")) {
+            cleanResponse = cleanResponse.substring(0, cleanResponse.length() - 3);
+        }
+
+        AIAssessmentResponse response = new AIAssessmentResponse();
+        response.setCanUseECMO(cleanResponse.contains("\"canUseECMO\": true"));
+        response.setDiagnosis(extractValue(cleanResponse, "diagnosis"));
+        response.setEvidence(extractValue(cleanResponse, "evidence"));
+        response.setConfidence(extractDoubleValue(cleanResponse, "confidence", 0.8));
+        response.setFinalRecommendation(extractValue(cleanResponse, "finalRecommendation"));
+        response.setContraindications(extractValue(cleanResponse, "contraindications"));
+        response.setPrecautions(extractValue(cleanResponse, "precautions"));
+        response.setSupportReasons(extractArrayValue(cleanResponse, "supportReasons"));
+        response.setOpposeReasons(extractArrayValue(cleanResponse, "opposeReasons"));
+        response.setRecommendations(extractArrayValue(cleanResponse, "recommendations"));
+        return response;
+    }
+
+    private static String extractValue(String text, String key) {
+        try {
+            String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]*?)\"";
+            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern, java.util.regex.Pattern.DOTALL);
+            java.util.regex.Matcher m = p.matcher(text);
+            if (m.find()) {
+                String value = m.group(1).trim();
+                return value.isEmpty() ? "数据解析异常" : value;
+            }
+            return "未提供相关信息";
+        } catch (Exception e) {
+            return "解析错误，请检查数据格式";
+        }
+    }
+
+    private static Double extractDoubleValue(String text, String key, Double defaultValue) {
+        try {
+            String pattern = "\"" + key + "\"\\s*:\\s*([0-9.]+)";
+            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
+            java.util.regex.Matcher m = p.matcher(text);
+            if (m.find()) {
+                return Double.parseDouble(m.group(1));
+            }
+            return defaultValue;
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    private static List<String> extractArrayValue(String text, String key) {
+        List<String> result = new ArrayList<>();
+        try {
+            String pattern = "\"" + key + "\"\\s*:\\s*\\[([^\\]]*?)\\]";
+            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern, java.util.regex.Pattern.DOTALL);
+            java.util.regex.Matcher m = p.matcher(text);
+            if (m.find()) {
+                String[] items = m.group(1).split("\",\\s*\"");
+                for (String item : items) {
+                    String cleanItem = item.replace("\"", "").trim();
+                    if (!cleanItem.isEmpty()) {
+                        result.add(cleanItem);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            result.add("系统解析异常，请人工评估");
+        }
+        return result;
+    }
+}
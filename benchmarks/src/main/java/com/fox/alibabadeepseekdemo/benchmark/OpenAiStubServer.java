@@ -0,0 +1,271 @@
+package com.fox.alibabadeepseekdemo.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fox.alibabadeepseekdemo.service.TokenEstimator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地OpenAI兼容的模型服务桩
+ * 实现 /v1/chat/completions（含 stream=true 的SSE），按配置注入延迟、错误、限流和格式错误的响应，
+ * 返回内容取自 responses/ 目录下录制的模型响应；提示词要求紧凑输出格式（短键JSON）时返回 compact.json。
+ * 可按输出token数追加生成耗时，模拟输出越长生成越慢。
+ * <p>
+ * 单独运行: java -cp ... OpenAiStubServer --port=8099 --latency=lognormal:800,0.6 --error-rate=0.05
+ * 然后将 spring.ai.openai.base-url 指向 http://localhost:8099
+ */
+public class OpenAiStubServer implements AutoCloseable {
+
+    private static final List<String> VALID_RESPONSES = List.of("plain.json", "escaped.json", "fenced.md");
+    private static final List<String> MALFORMED_RESPONSES = List.of("truncated.txt", "prose.txt");
+    private static final String COMPACT_RESPONSE = "compact.json";
+    private static final String COMPACT_FORMAT_MARKER = "{\\\"u\\\":";
+    private static final int STREAM_CHUNK_CHARS = 16;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> responses;
+    private final AtomicLong ids = new AtomicLong();
+
+    private volatile LatencyDistribution latency = LatencyDistribution.parse("fixed:500");
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile double malformedRate;
+    private volatile double tokenLatencyMillis;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder streamed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public OpenAiStubServer() {
+        this.responses = new java.util.HashMap<>();
+        for (String name : VALID_RESPONSES) {
+            responses.put(name, BenchmarkFixtures.recordedResponse(name));
+        }
+        for (String name : MALFORMED_RESPONSES) {
+            responses.put(name, BenchmarkFixtures.recordedResponse(name));
+        }
+        responses.put(COMPACT_RESPONSE, BenchmarkFixtures.recordedResponse(COMPACT_RESPONSE));
+    }
+
+    /**
+     * 调整注入的延迟和故障，运行中可随时修改
+     */
+    public OpenAiStubServer configure(LatencyDistribution latency, double errorRate, double throttleRate, double malformedRate) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.malformedRate = malformedRate;
+        return this;
+    }
+
+    /**
+     * 每个输出token追加的生成耗时（毫秒），0表示延迟与输出长度无关
+     */
+    public OpenAiStubServer tokenLatency(double millisPerToken) {
+        this.tokenLatencyMillis = millisPerToken;
+        return this;
+    }
+
+    /**
+     * 启动服务，port为0时使用随机端口
+     */
+    public OpenAiStubServer start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 512);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "openai-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + getPort();
+    }
+
+    public String stats() {
+        return String.format("requests=%d streamed=%d errors=%d throttled=%d malformed=%d",
+                requests.sum(), streamed.sum(), errors.sum(), throttled.sum(), malformed.sum());
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith("/chat/completions")) {
+                send(exchange, 404, "{\"error\":{\"message\":\"not found\"}}");
+                return;
+            }
+            requests.increment();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            boolean stream = request.path("stream").asBoolean(false);
+            String model = request.path("model").asText("stub-model");
+            String messages = request.path("messages").toString();
+            int promptTokens = TokenEstimator.estimate(messages);
+
+            Random random = ThreadLocalRandom.current();
+            double roll = random.nextDouble();
+            long delay = latency.sampleMillis(random);
+            if (roll < throttleRate) {
+                throttled.increment();
+                send(exchange, 429, "{\"error\":{\"message\":\"stub: rate limit exceeded\",\"type\":\"rate_limit_error\"}}");
+                return;
+            }
+            if (roll < throttleRate + errorRate) {
+                errors.increment();
+                sleep(Math.min(delay, 200));
+                send(exchange, 500, "{\"error\":{\"message\":\"stub: injected upstream error\",\"type\":\"server_error\"}}");
+                return;
+            }
+            String content;
+            if (random.nextDouble() < malformedRate) {
+                malformed.increment();
+                content = responses.get(MALFORMED_RESPONSES.get(random.nextInt(MALFORMED_RESPONSES.size())));
+            } else if (messages.contains(COMPACT_FORMAT_MARKER)) {
+                content = responses.get(COMPACT_RESPONSE);
+            } else {
+                content = responses.get(VALID_RESPONSES.get(random.nextInt(VALID_RESPONSES.size())));
+            }
+            delay += Math.round(tokenLatencyMillis * TokenEstimator.estimate(content));
+
+            if (stream) {
+                streamed.increment();
+                stream(exchange, model, content, promptTokens, delay);
+            } else {
+                sleep(delay);
+                ObjectNode body = completion("chat.completion", model);
+                ObjectNode choice = ((ArrayNode) body.get("choices")).addObject();
+                choice.put("index", 0);
+                choice.putObject("message").put("role", "assistant").put("content", content);
+                choice.put("finish_reason", "stop");
+                body.set("usage", usage(promptTokens, TokenEstimator.estimate(content)));
+                send(exchange, 200, objectMapper.writeValueAsString(body));
+            }
+        }
+    }
+
+    /**
+     * 按SSE逐段返回内容，总延迟平均分摊到各段
+     */
+    private void stream(HttpExchange exchange, String model, String content, int promptTokens, long delay) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int chunks = Math.max(1, (content.length() + STREAM_CHUNK_CHARS - 1) / STREAM_CHUNK_CHARS);
+        long perChunk = delay / chunks;
+        for (int i = 0; i < chunks; i++) {
+            sleep(perChunk);
+            String piece = content.substring(i * STREAM_CHUNK_CHARS, Math.min(content.length(), (i + 1) * STREAM_CHUNK_CHARS));
+            ObjectNode chunk = completion("chat.completion.chunk", model);
+            ObjectNode choice = ((ArrayNode) chunk.get("choices")).addObject();
+            choice.put("index", 0);
+            ObjectNode delta = choice.putObject("delta");
+            if (i == 0) {
+                delta.put("role", "assistant");
+            }
+            delta.put("content", piece);
+            choice.putNull("finish_reason");
+            writeEvent(out, objectMapper.writeValueAsString(chunk));
+        }
+        ObjectNode last = completion("chat.completion.chunk", model);
+        ObjectNode choice = ((ArrayNode) last.get("choices")).addObject();
+        choice.put("index", 0);
+        choice.putObject("delta");
+        choice.put("finish_reason", "stop");
+        last.set("usage", usage(promptTokens, TokenEstimator.estimate(content)));
+        writeEvent(out, objectMapper.writeValueAsString(last));
+        writeEvent(out, "[DONE]");
+    }
+
+    private ObjectNode completion(String object, String model) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", "chatcmpl-stub-" + ids.incrementAndGet());
+        node.put("object", object);
+        node.put("created", System.currentTimeMillis() / 1000);
+        node.put("model", model);
+        node.putArray("choices");
+        return node;
+    }
+
+    private ObjectNode usage(int promptTokens, int completionTokens) {
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return usage;
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        HarnessArgs options = HarnessArgs.parse(args);
+        OpenAiStubServer stub = new OpenAiStubServer()
+                .configure(LatencyDistribution.parse(options.get("latency", "lognormal:800,0.6")),
+                        options.getDouble("error-rate", 0),
+                        options.getDouble("throttle-rate", 0),
+                        options.getDouble("malformed-rate", 0))
+                .tokenLatency(options.getDouble("token-latency-ms", 0))
+                .start(options.getInt("port", 8099));
+        System.out.println("OpenAI stub listening on " + stub.getBaseUrl() + " (latency=" + stub.latency + ")");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println(stub.stats());
+            stub.close();
+        }));
+        Thread.currentThread().join();
+    }
+}
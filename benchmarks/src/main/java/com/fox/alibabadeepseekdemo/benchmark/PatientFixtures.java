@@ -0,0 +1,169 @@
+package com.fox.alibabadeepseekdemo.benchmark;
+
+import com.fox.alibabadeepseekdemo.entity.PatientParameters;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试夹具：典型病例的患者参数
+ * 覆盖重症ARDS、心源性休克、高龄多器官功能不全和指标接近阈值的边界病例，分别落入不同的风险等级。
+ */
+public final class PatientFixtures {
+
+    private PatientFixtures() {
+    }
+
+    /**
+     * 重症肺炎合并ARDS，适合VV-ECMO
+     */
+    public static PatientParameters severeArds() {
+        PatientParameters p = base("P-ARDS", 52, "男");
+        p.setHeartRate(118);
+        p.setSystolicBP(102);
+        p.setDiastolicBP(61);
+        p.setRespiratoryRate(34);
+        p.setOxygenSaturation(84.0);
+        p.setpH(7.18);
+        p.setPaCO2(68.0);
+        p.setPaO2(68.0);
+        p.setLactate(3.2);
+        p.setEjectionFraction(55.0);
+        p.setpO2FiO2Ratio(68.0);
+        p.setPeep("16");
+        p.setPlateletCount(168.0);
+        p.setCreatinine(96.0);
+        p.setBilirubin(18.0);
+        p.setPrimaryDiagnosis("重症肺炎合并急性呼吸窘迫综合征");
+        p.setIllnessDuration(3);
+        p.setComorbidities("无");
+        p.setCurrentTreatment("机械通气 FiO2 100%，俯卧位通气，肌松");
+        p.setEcmoIndication("难治性低氧血症");
+        p.setContraindications("无");
+        return p;
+    }
+
+    /**
+     * 急性心梗后心源性休克，适合VA-ECMO
+     */
+    public static PatientParameters cardiogenicShock() {
+        PatientParameters p = base("P-SHOCK", 61, "男");
+        p.setHeartRate(132);
+        p.setSystolicBP(72);
+        p.setDiastolicBP(44);
+        p.setRespiratoryRate(28);
+        p.setOxygenSaturation(90.0);
+        p.setpH(7.21);
+        p.setPaCO2(38.0);
+        p.setPaO2(72.0);
+        p.setLactate(7.8);
+        p.setEjectionFraction(15.0);
+        p.setpO2FiO2Ratio(160.0);
+        p.setPlateletCount(142.0);
+        p.setCreatinine(168.0);
+        p.setBilirubin(32.0);
+        p.setPrimaryDiagnosis("急性前壁心肌梗死，心源性休克");
+        p.setIllnessDuration(1);
+        p.setComorbidities("高血压，2型糖尿病");
+        p.setCurrentTreatment("去甲肾上腺素 0.5μg/kg/min，多巴酚丁胺，IABP");
+        p.setEcmoIndication("难治性心源性休克");
+        p.setContraindications("无");
+        return p;
+    }
+
+    /**
+     * 高龄合并多器官功能不全，通常不推荐ECMO
+     */
+    public static PatientParameters elderlyMultiOrgan() {
+        PatientParameters p = base("P-ELDER", 81, "女");
+        p.setHeartRate(124);
+        p.setSystolicBP(84);
+        p.setDiastolicBP(48);
+        p.setRespiratoryRate(30);
+        p.setOxygenSaturation(86.0);
+        p.setpH(7.08);
+        p.setPaCO2(58.0);
+        p.setPaO2(58.0);
+        p.setLactate(9.6);
+        p.setEjectionFraction(30.0);
+        p.setpO2FiO2Ratio(72.0);
+        p.setPlateletCount(38.0);
+        p.setCreatinine(356.0);
+        p.setBilirubin(96.0);
+        p.setPrimaryDiagnosis("脓毒性休克，多器官功能障碍综合征");
+        p.setIllnessDuration(12);
+        p.setComorbidities("慢性肾功能不全，晚期恶性肿瘤");
+        p.setCurrentTreatment("机械通气，大剂量血管活性药物，CRRT");
+        p.setEcmoIndication("顽固性低氧血症");
+        p.setContraindications("晚期恶性肿瘤");
+        return p;
+    }
+
+    /**
+     * 各项指标接近评分阈值的边界病例
+     */
+    public static PatientParameters borderline() {
+        PatientParameters p = base("P-BORDER", 45, "女");
+        p.setHeartRate(104);
+        p.setSystolicBP(96);
+        p.setDiastolicBP(58);
+        p.setRespiratoryRate(26);
+        p.setOxygenSaturation(89.0);
+        p.setpH(7.26);
+        p.setPaCO2(52.0);
+        p.setPaO2(74.0);
+        p.setLactate(2.1);
+        p.setEjectionFraction(42.0);
+        p.setpO2FiO2Ratio(102.0);
+        p.setPlateletCount(96.0);
+        p.setCreatinine(118.0);
+        p.setBilirubin(24.0);
+        p.setPrimaryDiagnosis("病毒性肺炎，中度ARDS");
+        p.setIllnessDuration(6);
+        p.setComorbidities("哮喘");
+        p.setCurrentTreatment("机械通气 FiO2 70%，PEEP 12");
+        p.setEcmoIndication("待评估");
+        p.setContraindications("无");
+        return p;
+    }
+
+    public static List<PatientParameters> all() {
+        return List.of(severeArds(), cardiogenicShock(), elderlyMultiOrgan(), borderline());
+    }
+
+    /**
+     * 在典型病例基础上对数值指标加入小幅扰动，使每个请求的参数指纹不同，避免被缓存和请求合并吸收
+     */
+    public static PatientParameters randomized(Random random, String patientId) {
+        List<PatientParameters> all = all();
+        PatientParameters p = all.get(random.nextInt(all.size()));
+        p.setPatientId(patientId);
+        p.setHeartRate(p.getHeartRate() + random.nextInt(11) - 5);
+        p.setSystolicBP(p.getSystolicBP() + random.nextInt(7) - 3);
+        p.setLactate(round(p.getLactate() * (0.9 + 0.2 * random.nextDouble())));
+        p.setpO2FiO2Ratio(round(p.getpO2FiO2Ratio() * (0.95 + 0.1 * random.nextDouble())));
+        p.setCreatinine(round(p.getCreatinine() * (0.9 + 0.2 * random.nextDouble())));
+        return p;
+    }
+
+    private static PatientParameters base(String id, int age, String gender) {
+        PatientParameters p = new PatientParameters();
+        p.setPatientId(id);
+        p.setPatientName("测试患者" + id.substring(2));
+        p.setAge(age);
+        p.setGender(gender);
+        p.setWeight(68.0);
+        p.setHeight(168.0);
+        p.setTemperature(38.2);
+        p.setBicarbonate(20.0);
+        p.setBaseExcess(-6.0);
+        p.setHemoglobin(112.0);
+        p.setWhiteBloodCell(14.6);
+        p.setAlbumin(30.0);
+        return p;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -0,0 +1,41 @@
+package com.fox.alibabadeepseekdemo.benchmark;
+
+import com.fox.alibabadeepseekdemo.service.AIAssessmentResponse;
+import com.fox.alibabadeepseekdemo.service.AssessmentResponseParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型响应解析：旧版逐字段正则提取 vs 单次Jackson解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParserBenchmark {
+
+    @Param({"plain.json", "fenced.md", "escaped.json", "truncated.txt"})
+    public String fixture;
+
+    private String response;
+    private AssessmentResponseParser parser;
+
+    @Setup
+    public void setup() {
+        response = BenchmarkFixtures.recordedResponse(fixture);
+        parser = new AssessmentResponseParser();
+    }
+
+    @Benchmark
+    public AIAssessmentResponse legacyRegex() {
+        return LegacyRegexExtractor.extract(response);
+    }
+
+    @Benchmark
+    public AIAssessmentResponse jackson() {
+        return parser.parse(response);
+    }
+}